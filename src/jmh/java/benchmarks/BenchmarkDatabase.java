@@ -0,0 +1,110 @@
+package benchmarks;
+
+import common.ConnectionPool;
+import common.EmbeddedDatabase;
+import common.Migrations;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Comparator;
+import java.util.Properties;
+import java.util.stream.Collectors;
+
+/**
+ * An embedded H2 file in a temporary directory, migrated and ready to seed.
+ * The seed is computed from row numbers, so every run and every release gets the same data.
+ */
+final class BenchmarkDatabase implements AutoCloseable {
+
+    static final String MIGRATIONS = "src/main/resources/db/migration";
+
+    private final Path directory;
+    private final Properties settings;
+    private final ConnectionPool connectionPool;
+
+    private BenchmarkDatabase(String pool, int poolSize) throws IOException {
+
+        directory = Files.createTempDirectory("soc_bench");
+
+        settings = new Properties();
+        settings.setProperty("driver", "org.h2.Driver");
+        settings.setProperty("user", "sa");
+        settings.setProperty("password", "");
+        settings.setProperty("mode", EmbeddedDatabase.MODE);
+        settings.setProperty("embedded.path", directory.resolve("bench").toString());
+        settings.setProperty("pool", pool);
+        settings.setProperty("poolSize", String.valueOf(poolSize));
+        settings.setProperty("pool.minSize", String.valueOf(poolSize));
+        settings.setProperty("pool.maxSize", String.valueOf(poolSize));
+
+        connectionPool = ConnectionPool.create(settings);
+        new Migrations(connectionPool, MIGRATIONS).migrate();
+    }
+
+    static BenchmarkDatabase open(String pool, int poolSize) throws IOException {
+
+        return new BenchmarkDatabase(pool, poolSize);
+    }
+
+    ConnectionPool getConnectionPool() {
+
+        return connectionPool;
+    }
+
+    /**
+     * {@code users} users writing {@code postsPerUser} posts each, interleaved as they would arrive,
+     * every user following up to {@code followsPerUser} others, with comments and likes on every post.
+     */
+    static void seed(ConnectionPool connectionPool, int users, int postsPerUser, int followsPerUser,
+                     int commentsPerPost, int likesPerPost) throws SQLException {
+
+        int posts = users * postsPerUser;
+
+        try (Connection connection = connectionPool.getConnection()) {
+
+            Statement statement = connection.createStatement();
+
+            statement.execute("INSERT INTO User (username, email, password) " +
+                    "SELECT 'user' || X, 'user' || X || '@mail.com', 'password' FROM SYSTEM_RANGE(1, " + users + ")");
+
+            statement.execute("MERGE INTO Following (follower_id, follow_id) KEY (follower_id, follow_id) " +
+                    "SELECT u.X, MOD(u.X * 17 + f.X * 13, " + users + ") + 1 " +
+                    "FROM SYSTEM_RANGE(1, " + users + ") u, SYSTEM_RANGE(1, " + followsPerUser + ") f");
+
+            statement.execute("INSERT INTO Post (authorId, date, time, text, privacy, expandable) " +
+                    "SELECT MOD(X - 1, " + users + ") + 1, CURRENT_DATE, CURRENT_TIME, 'post number ' || X, " +
+                    "MOD(X, 10) = 0, FALSE FROM SYSTEM_RANGE(1, " + posts + ")");
+
+            if (commentsPerPost > 0)
+                statement.execute("INSERT INTO Comment (from_userId, from_username, to_postId, text, date, time) " +
+                        "SELECT MOD(p.X * 7 + c.X, " + users + ") + 1, 'user' || (MOD(p.X * 7 + c.X, " + users + ") + 1), " +
+                        "p.X, 'comment', CURRENT_DATE, CURRENT_TIME " +
+                        "FROM SYSTEM_RANGE(1, " + posts + ") p, SYSTEM_RANGE(1, " + commentsPerPost + ") c");
+
+            if (likesPerPost > 0)
+                statement.execute("MERGE INTO Likes (from_userId, to_postId) KEY (from_userId, to_postId) " +
+                        "SELECT MOD(p.X * 31 + l.X, " + users + ") + 1, p.X " +
+                        "FROM SYSTEM_RANGE(1, " + posts + ") p, SYSTEM_RANGE(1, " + likesPerPost + ") l");
+
+            statement.execute("UPDATE Post SET " +
+                    "likes_count = (SELECT COUNT(*) FROM Likes WHERE to_postId = Post.id), " +
+                    "comments_count = (SELECT COUNT(*) FROM Comment WHERE to_postId = Post.id)");
+
+            statement.execute("ANALYZE");
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+
+        connectionPool.close();
+        new EmbeddedDatabase(settings).close();
+
+        for (Path path : Files.walk(directory).sorted(Comparator.reverseOrder()).collect(Collectors.toList()))
+            Files.delete(path);
+    }
+}
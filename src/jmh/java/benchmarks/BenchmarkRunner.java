@@ -0,0 +1,52 @@
+package benchmarks;
+
+import org.openjdk.jmh.Main;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.results.format.ResultFormatFactory;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Runs the benchmarks selected by the usual JMH arguments once per thread count in
+ * {@code -Djmh.threads=1,4,16} and writes all results into one JSON file, {@code -Djmh.results},
+ * so that two releases can be put side by side with {@link CompareResults}.
+ */
+public class BenchmarkRunner {
+
+    public static void main(String[] args) throws Exception {
+
+        CommandLineOptions commandLine = new CommandLineOptions(args);
+
+        if (commandLine.shouldHelp() || commandLine.shouldList() || commandLine.shouldListWithParams()
+                || commandLine.shouldListProfilers() || commandLine.shouldListResultFormats()) {
+            Main.main(args);
+            return;
+        }
+
+        List<RunResult> results = new ArrayList<>();
+
+        for (String threads : System.getProperty("jmh.threads", "1").split(","))
+            results.addAll(new Runner(new OptionsBuilder()
+                    .parent(commandLine)
+                    .threads(Integer.parseInt(threads.trim()))
+                    .build()).run());
+
+        Path file = Paths.get(System.getProperty("jmh.results", "build/reports/jmh/results.json"));
+        if (file.toAbsolutePath().getParent() != null)
+            Files.createDirectories(file.toAbsolutePath().getParent());
+
+        try (PrintStream out = new PrintStream(file.toFile(), "UTF-8")) {
+            ResultFormatFactory.getInstance(ResultFormatType.JSON, out).writeOut(results);
+        }
+        System.out.println("results of " + results.size() + " runs written to " + file);
+    }
+}
@@ -0,0 +1,84 @@
+package benchmarks;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Two JSON result files of {@link BenchmarkRunner} side by side:
+ * <pre>java benchmarks.CompareResults base.json results.json</pre>
+ * A change is marked when the scores are further apart than their two error margins together.
+ */
+public class CompareResults {
+
+    public static void main(String[] args) throws IOException {
+
+        Map<String, JsonNode> base = read(new File(args[0]));
+        Map<String, JsonNode> current = read(new File(args[1]));
+
+        System.out.printf("%-90s %14s %14s %9s%n", "benchmark", "base", "current", "change");
+
+        current.forEach((key, result) -> {
+
+            JsonNode metric = result.get("primaryMetric");
+            double score = metric.get("score").asDouble();
+            String unit = metric.get("scoreUnit").asText();
+
+            JsonNode before = base.get(key);
+            if (before == null) {
+                System.out.printf("%-90s %14s %14.3f %9s  %s%n", key, "-", score, "new", unit);
+                return;
+            }
+
+            JsonNode beforeMetric = before.get("primaryMetric");
+            double beforeScore = beforeMetric.get("score").asDouble();
+            double margin = error(beforeMetric) + error(metric);
+            double change = (score - beforeScore) / beforeScore * 100;
+
+            System.out.printf("%-90s %14.3f %14.3f %+8.1f%%  %s%s%n", key, beforeScore, score, change, unit,
+                    Math.abs(score - beforeScore) > margin ? "  *" : "");
+        });
+
+        base.keySet().stream()
+                .filter(key -> !current.containsKey(key))
+                .forEach(key -> System.out.printf("%-90s %14s %14s %9s%n", key, "", "-", "gone"));
+    }
+
+    /**
+     * Results by benchmark, parameters and thread count.
+     */
+    private static Map<String, JsonNode> read(File file) throws IOException {
+
+        Map<String, JsonNode> results = new LinkedHashMap<>();
+
+        for (JsonNode result : new ObjectMapper().readTree(file)) {
+
+            StringBuilder key = new StringBuilder(result.get("benchmark").asText()
+                    .replaceFirst("^benchmarks\\.", ""));
+
+            JsonNode params = result.get("params");
+            if (params != null) {
+                Iterator<Map.Entry<String, JsonNode>> fields = params.fields();
+                while (fields.hasNext()) {
+                    Map.Entry<String, JsonNode> param = fields.next();
+                    key.append(' ').append(param.getKey()).append('=').append(param.getValue().asText());
+                }
+            }
+            key.append(" t=").append(result.get("threads").asInt());
+
+            results.put(key.toString(), result);
+        }
+        return results;
+    }
+
+    private static double error(JsonNode metric) {
+
+        double error = metric.get("scoreError").asDouble();
+        return Double.isNaN(error) ? 0 : error;
+    }
+}
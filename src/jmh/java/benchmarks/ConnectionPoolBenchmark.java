@@ -0,0 +1,77 @@
+package benchmarks;
+
+import common.ConnectionPool;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Borrowing a connection from each pool type, alone and with the smallest query on it.
+ * Contention is the point, so run it through {@link BenchmarkRunner} with several thread counts,
+ * e.g. {@code gradle jmh -PjmhThreads=1,4,16 -PjmhArgs=ConnectionPoolBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ConnectionPoolBenchmark {
+
+    @Param({"queue", "slots"})
+    private String pool;
+
+    @Param({"4", "16"})
+    private int poolSize;
+
+    private BenchmarkDatabase database;
+    private ConnectionPool connectionPool;
+
+    @Setup(Level.Trial)
+    public void open() throws Exception {
+
+        database = BenchmarkDatabase.open(pool, poolSize);
+        connectionPool = database.getConnectionPool();
+    }
+
+    @TearDown(Level.Trial)
+    public void close() {
+
+        database.close();
+    }
+
+    @Benchmark
+    public Connection getConnection() throws SQLException {
+
+        try (Connection connection = connectionPool.getConnection()) {
+            return connection;
+        }
+    }
+
+    @Benchmark
+    public int selectOne() throws SQLException {
+
+        try (Connection connection = connectionPool.getConnection()) {
+            PreparedStatement preparedStatement = connection.prepareStatement("SELECT 1");
+            ResultSet rs = preparedStatement.executeQuery();
+            rs.next();
+            return rs.getInt(1);
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package benchmarks;
+
+import common.ConnectionPool;
+import common.EmbeddedDatabase;
+import common.Migrations;
+import common.PostViewAssembler;
+import dao.H2.H2PostDAO;
+import dao.H2.H2UserDAO;
+import dao.PostQuery;
+import model.Post;
+import model.PostView;
+import org.h2.tools.Server;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * The same file database reached through an H2 TCP server ({@code mode=tcp}) and opened in
+ * process ({@code mode=embedded}). The server runs in the benchmark JVM, so the difference is
+ * the socket and the result serialization, not a second machine.
+ * {@code timelinePage} is what a timeline request does with the database, {@code postById}
+ * a single round trip.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DatabaseModeBenchmark {
+
+    private static final int USERS = 200;
+    private static final int POSTS = 20000;
+
+    @Param({"tcp", "embedded"})
+    private String mode;
+
+    private Path directory;
+    private Server server;
+    private EmbeddedDatabase embeddedDatabase;
+    private ConnectionPool connectionPool;
+    private H2PostDAO postDAO;
+    private PostViewAssembler postViewAssembler;
+
+    @Setup(Level.Trial)
+    public void open() throws Exception {
+
+        directory = Files.createTempDirectory("soc_bench");
+
+        Properties properties = new Properties();
+        properties.setProperty("driver", "org.h2.Driver");
+        properties.setProperty("user", "sa");
+        properties.setProperty("password", "");
+        properties.setProperty("poolSize", "8");
+
+        if (EmbeddedDatabase.MODE.equals(mode)) {
+            properties.setProperty("mode", EmbeddedDatabase.MODE);
+            properties.setProperty("embedded.path", directory.resolve("bench").toString());
+            embeddedDatabase = new EmbeddedDatabase(properties);
+        } else {
+            server = Server.createTcpServer("-tcpPort", "0", "-baseDir", directory.toString(), "-ifNotExists").start();
+            properties.setProperty("url", "jdbc:h2:tcp://localhost:" + server.getPort() + "/bench");
+        }
+
+        connectionPool = ConnectionPool.create(properties);
+        new Migrations(connectionPool, BenchmarkDatabase.MIGRATIONS).migrate();
+        BenchmarkDatabase.seed(connectionPool, USERS, POSTS / USERS, 20, 0, 0);
+
+        postDAO = new H2PostDAO(connectionPool);
+        postViewAssembler = new PostViewAssembler(new H2UserDAO(connectionPool));
+    }
+
+    @TearDown(Level.Trial)
+    public void close() throws IOException {
+
+        connectionPool.close();
+        if (embeddedDatabase != null)
+            embeddedDatabase.close();
+        if (server != null)
+            server.stop();
+
+        for (Path path : Files.walk(directory).sorted(Comparator.reverseOrder()).collect(Collectors.toList()))
+            Files.delete(path);
+    }
+
+    @Benchmark
+    public Collection<PostView> timelinePage() {
+
+        Collection<Post> posts = postDAO.find(PostQuery.timeline(ThreadLocalRandom.current().nextInt(USERS) + 1).limit(20).build());
+        return postViewAssembler.createPostViews(posts);
+    }
+
+    @Benchmark
+    public Optional<Post> postById() {
+
+        return postDAO.getPostById(ThreadLocalRandom.current().nextInt(POSTS) + 1);
+    }
+}
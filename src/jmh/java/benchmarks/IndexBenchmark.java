@@ -0,0 +1,156 @@
+package benchmarks;
+
+import common.ConnectionPool;
+import dao.H2.H2CommentDAO;
+import dao.H2.H2LikeDAO;
+import dao.H2.H2PostDAO;
+import dao.PostQuery;
+import model.Comment;
+import model.Like;
+import model.Post;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Collection;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The paged and counting DAO queries on a seeded embedded database with and without
+ * the indexes of migration V3 (the foreign key indexes are there in both cases).
+ * The query plans are printed on setup, so the run also shows which index each query uses.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class IndexBenchmark {
+
+    private static final String[] V3_INDEXES = {"post_author_id", "comment_post_id", "likes_post_user", "following_follower_follow"};
+
+    @Param({"false", "true"})
+    private boolean indexes;
+
+    @Param({"1000"})
+    private int users;
+
+    @Param({"100"})
+    private int postsPerUser;
+
+    private BenchmarkDatabase database;
+    private ConnectionPool connectionPool;
+    private H2PostDAO postDAO;
+    private H2CommentDAO commentDAO;
+    private H2LikeDAO likeDAO;
+    private int posts;
+
+    @Setup(Level.Trial)
+    public void createDatabase() throws Exception {
+
+        database = BenchmarkDatabase.open("queue", 4);
+        connectionPool = database.getConnectionPool();
+        BenchmarkDatabase.seed(connectionPool, users, postsPerUser, 50, 3, 3);
+
+        try (Connection connection = connectionPool.getConnection()) {
+            if (!indexes)
+                for (String index : V3_INDEXES)
+                    connection.createStatement().execute("DROP INDEX IF EXISTS " + index);
+            connection.createStatement().execute("ANALYZE");
+            printPlans(connection);
+        }
+
+        postDAO = new H2PostDAO(connectionPool);
+        commentDAO = new H2CommentDAO(connectionPool);
+        likeDAO = new H2LikeDAO(connectionPool);
+        posts = users * postsPerUser;
+    }
+
+    @TearDown(Level.Trial)
+    public void dropDatabase() throws Exception {
+
+        database.close();
+    }
+
+    @Benchmark
+    public Collection<Post> userTimeline() {
+
+        return postDAO.find(PostQuery.timeline(randomUser()).limit(20).build());
+    }
+
+    @Benchmark
+    public Collection<Post> userPostsPage() {
+
+        return postDAO.find(PostQuery.byAuthor(randomUser()).before(posts).limit(20).build());
+    }
+
+    @Benchmark
+    public int countUserPosts() {
+
+        return postDAO.countUserPosts(randomUser());
+    }
+
+    @Benchmark
+    public int countPostsInTimeline() {
+
+        return postDAO.countPostsInTimeline(randomUser());
+    }
+
+    @Benchmark
+    public Collection<Comment> commentsPage() {
+
+        return commentDAO.getCommentsFromPost(randomPost(), 0, 20);
+    }
+
+    @Benchmark
+    public Collection<Like> likersOfPost() {
+
+        return likeDAO.getByPostId(randomPost());
+    }
+
+    private long randomUser() {
+
+        return ThreadLocalRandom.current().nextInt(users) + 1;
+    }
+
+    private long randomPost() {
+
+        return ThreadLocalRandom.current().nextInt(posts) + 1;
+    }
+
+    private void printPlans(Connection connection) throws SQLException {
+
+        String[] queries = {
+                "SELECT * FROM (SELECT p.* FROM Following f JOIN Post p ON p.authorId = f.follow_id " +
+                        "WHERE f.follower_id = 1 AND f.follow_id <> 1 AND p.id > 0 " +
+                        "UNION ALL SELECT p.* FROM Post p WHERE p.authorId = 1 AND p.id > 0) ORDER BY id DESC LIMIT 20",
+                "SELECT * FROM Post WHERE authorId = 1 AND id < 100000 ORDER BY id DESC LIMIT 20",
+                "SELECT COUNT(*) FROM Post WHERE authorId = 1",
+                "SELECT * FROM Comment WHERE to_postId = 1 AND id > 0 LIMIT 20",
+                "SELECT * FROM Likes WHERE to_postId = 1"};
+
+        Statement statement = connection.createStatement();
+        System.out.println("indexes=" + indexes);
+        for (String query : queries) {
+            ResultSet rs = statement.executeQuery("EXPLAIN " + query);
+            rs.next();
+            System.out.println(rs.getString(1).replaceAll("\\s+", " "));
+        }
+    }
+}
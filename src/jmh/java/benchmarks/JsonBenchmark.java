@@ -0,0 +1,104 @@
+package benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import common.JsonWrapper;
+import model.Post;
+import model.PostView;
+import model.User;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serializing one timeline page the old way (new pretty-printing mapper per call),
+ * with the shared compact writer into a String, and streamed into the response.
+ * The old way gets the same date/time serializers, which newer Jackson versions require.
+ * Run with {@code -prof gc} to compare allocations per page.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JsonBenchmark {
+
+    @Param({"20"})
+    private int pageSize;
+
+    private List<PostView> page;
+
+    @Setup
+    public void createPage(){
+
+        page = new ArrayList<>(pageSize);
+
+        for (long id = 1; id <= pageSize; id++) {
+            User author = new User(id % 7, "user" + id % 7, "user" + id % 7 + "@mail.com", "", "First", "Last");
+            Post post = new Post(id, author.getId(), LocalDate.now(), LocalTime.now(),
+                    "post number " + id + " with some text in it", false, false, id % 5, id % 3);
+            page.add(new PostView(author, post, id % 5, id % 3));
+        }
+    }
+
+    @Benchmark
+    public String newPrettyMapperPerCall() throws IOException {
+
+        return new ObjectMapper()
+                .registerModule(JsonWrapper.javaTimeModule())
+                .writerWithDefaultPrettyPrinter()
+                .writeValueAsString(page);
+    }
+
+    @Benchmark
+    public String sharedWriterToString() throws IOException {
+
+        return JsonWrapper.toJson(page);
+    }
+
+    @Benchmark
+    public void sharedWriterStreaming(Blackhole blackhole) throws IOException {
+
+        JsonWrapper.writeJson(page, new BlackholeOutputStream(blackhole));
+    }
+
+    /**
+     * Stands in for the servlet response stream.
+     */
+    private static class BlackholeOutputStream extends OutputStream {
+
+        private final Blackhole blackhole;
+
+        BlackholeOutputStream(Blackhole blackhole) {
+            this.blackhole = blackhole;
+        }
+
+        @Override
+        public void write(int b) {
+            blackhole.consume(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            blackhole.consume(b);
+            blackhole.consume(len);
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package benchmarks;
+
+import common.ConnectionPool;
+import common.JsonWrapper;
+import common.PostViewAssembler;
+import dao.H2.H2PostDAO;
+import dao.H2.H2UserDAO;
+import dao.PostQuery;
+import model.Post;
+import model.PostView;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The steps of a timeline request against a seeded embedded database: the page query,
+ * turning a page into views (authors and counts) and the whole request up to the JSON string.
+ * Sizes are parameters, e.g. {@code -p users=10000 -p followsPerUser=200}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TimelineBenchmark {
+
+    private static final int PAGE = 20;
+    private static final int PAGES = 64;
+
+    @Param({"1000"})
+    private int users;
+
+    @Param({"50"})
+    private int postsPerUser;
+
+    @Param({"50"})
+    private int followsPerUser;
+
+    @Param({"8"})
+    private int poolSize;
+
+    private BenchmarkDatabase database;
+    private H2PostDAO postDAO;
+    private PostViewAssembler postViewAssembler;
+    private List<Collection<Post>> pages;
+
+    @Setup(Level.Trial)
+    public void open() throws Exception {
+
+        database = BenchmarkDatabase.open("queue", poolSize);
+        ConnectionPool connectionPool = database.getConnectionPool();
+        BenchmarkDatabase.seed(connectionPool, users, postsPerUser, followsPerUser, 3, 3);
+
+        postDAO = new H2PostDAO(connectionPool);
+        postViewAssembler = new PostViewAssembler(new H2UserDAO(connectionPool));
+
+        pages = new ArrayList<>();
+        for (int user = 1; user <= PAGES; user++)
+            pages.add(postDAO.find(PostQuery.timeline(user).limit(PAGE).build()));
+    }
+
+    @TearDown(Level.Trial)
+    public void close() {
+
+        database.close();
+    }
+
+    @Benchmark
+    public Collection<Post> userTimeline() {
+
+        return postDAO.find(PostQuery.timeline(randomUser()).limit(PAGE).build());
+    }
+
+    @Benchmark
+    public List<PostView> createPostViews() {
+
+        return postViewAssembler.createPostViews(pages.get(ThreadLocalRandom.current().nextInt(PAGES)));
+    }
+
+    @Benchmark
+    public String timelinePageJson() throws Exception {
+
+        return JsonWrapper.toJson(postViewAssembler.createPostViews(postDAO.find(PostQuery.timeline(randomUser()).limit(PAGE).build())));
+    }
+
+    private long randomUser() {
+
+        return ThreadLocalRandom.current().nextInt(users) + 1;
+    }
+}
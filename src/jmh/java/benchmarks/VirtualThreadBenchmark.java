@@ -0,0 +1,98 @@
+package benchmarks;
+
+import common.EventBus;
+import dao.H2.H2PostDAO;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * How long {@code concurrency} requests arriving together take when each waits {@code waitMillis}
+ * outside the database (the client, a long poll) and then reads a post, on a pool of
+ * {@value #PLATFORM_THREADS} platform threads (Tomcat's default {@code maxThreads}) or a virtual thread each.
+ * Up to that many requests both take about the same; beyond it the platform pool
+ * queues them in rounds while virtual threads only queue for the connections.
+ * Run with {@code -Djdk.tracePinnedThreads=short} to see virtual threads pinned by a monitor.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class VirtualThreadBenchmark {
+
+    private static final int PLATFORM_THREADS = 200;
+    private static final int USERS = 1000;
+    private static final int POSTS_PER_USER = 20;
+
+    @Param({"platform", "virtual"})
+    private String threads;
+
+    @Param({"100", "1000", "5000"})
+    private int concurrency;
+
+    @Param({"20"})
+    private int waitMillis;
+
+    @Param({"8"})
+    private int poolSize;
+
+    private BenchmarkDatabase database;
+    private H2PostDAO postDAO;
+    private ExecutorService executor;
+
+    @Setup(Level.Trial)
+    public void open() throws Exception {
+
+        database = BenchmarkDatabase.open("queue", poolSize);
+        BenchmarkDatabase.seed(database.getConnectionPool(), USERS, POSTS_PER_USER, 20, 0, 0);
+
+        postDAO = new H2PostDAO(database.getConnectionPool(), new EventBus());
+        executor = "virtual".equals(threads)
+                ? Executors.newVirtualThreadPerTaskExecutor()
+                : Executors.newFixedThreadPool(PLATFORM_THREADS);
+    }
+
+    @TearDown(Level.Trial)
+    public void close() {
+
+        executor.shutdownNow();
+        database.close();
+    }
+
+    @Benchmark
+    public int requests() throws Exception {
+
+        List<Future<Integer>> found = new ArrayList<>(concurrency);
+
+        for (int i = 0; i < concurrency; i++)
+            found.add(executor.submit(() -> {
+                Thread.sleep(waitMillis);
+                return postDAO.getPostById(ThreadLocalRandom.current().nextInt(USERS * POSTS_PER_USER) + 1).isPresent() ? 1 : 0;
+            }));
+
+        int posts = 0;
+        for (Future<Integer> post : found)
+            posts += post.get();
+        return posts;
+    }
+}
@@ -0,0 +1,399 @@
+package loadtest;
+
+import common.ConnectionPool;
+import common.Migrations;
+import dao.H2.H2PostCounters;
+import lombok.SneakyThrows;
+import lombok.extern.slf4j.Slf4j;
+import security.StringEncryptUtil;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Time;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.HashSet;
+import java.util.Properties;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Fills the schema with a synthetic social graph:
+ * <pre>java loadtest.DataGenerator db.properties [users=10000] [follows=50] [posts=20] [likes=5] [comments=2]
+ *      [skew=1.0] [seed=42] [migrations=src/main/resources/db/migration] [out=build/loadtest/data.properties]</pre>
+ * {@code follows}, {@code posts}, {@code likes} and {@code comments} are means per user or per post.
+ * Who gets followed, who writes and whose posts get liked and commented follow a power law
+ * with exponent {@code skew}, the lower user numbers being the celebrities; how many users each one
+ * follows is Pareto distributed. The same seed gives the same data.
+ * Users are called {@code load<n>} with the password {@value #PASSWORD}. The id ranges go to {@code out}
+ * for {@link LoadDriver}.
+ */
+@Slf4j
+public class DataGenerator {
+
+    static final String PREFIX = "load";
+    static final String PASSWORD = "password";
+    static final String[] WORDS = {"java", "coffee", "music", "travel", "football", "cats", "weather", "books",
+            "movie", "pizza", "summer", "winter", "code", "garden", "photo", "party", "news", "game", "run", "sea"};
+
+    private static final int BATCH = 1000;
+
+    private final ConnectionPool connectionPool;
+    private final Random random;
+    private final PowerLaw popularity;
+
+    private final int users;
+    private final double follows;
+    private final int posts;
+    private final double likes;
+    private final int comments;
+
+    private int[] userIds;
+    private int[] postIds;
+    private int[] authors;
+    private int[] postsByAuthor;
+    private int[] firstPostOf;
+
+    DataGenerator(ConnectionPool connectionPool, Properties options) {
+
+        this.connectionPool = connectionPool;
+        this.random = new Random(Long.parseLong(options.getProperty("seed", "42")));
+        this.users = Integer.parseInt(options.getProperty("users", "10000"));
+        this.follows = Double.parseDouble(options.getProperty("follows", "50"));
+        this.posts = (int) (users * Double.parseDouble(options.getProperty("posts", "20")));
+        this.likes = Double.parseDouble(options.getProperty("likes", "5"));
+        this.comments = (int) (posts * Double.parseDouble(options.getProperty("comments", "2")));
+        this.popularity = new PowerLaw(users, Double.parseDouble(options.getProperty("skew", "1.0")));
+    }
+
+    @SneakyThrows
+    public static void main(String[] args) {
+
+        Properties settings = new Properties();
+        try (FileInputStream inputStream = new FileInputStream(args[0])) {
+            settings.load(inputStream);
+        }
+
+        Properties options = new Properties();
+        for (int i = 1; i < args.length; i++)
+            options.setProperty(args[i].substring(0, args[i].indexOf('=')), args[i].substring(args[i].indexOf('=') + 1));
+
+        try (ConnectionPool connectionPool = ConnectionPool.create(settings)) {
+
+            new Migrations(connectionPool, options.getProperty("migrations", "src/main/resources/db/migration")).migrate();
+
+            Properties manifest = new DataGenerator(connectionPool, options).generate();
+
+            String out = options.getProperty("out", "build/loadtest/data.properties");
+            new File(out).getAbsoluteFile().getParentFile().mkdirs();
+            try (OutputStream outputStream = new FileOutputStream(out)) {
+                manifest.store(outputStream, "generated by loadtest.DataGenerator");
+            }
+            log.info("wrote {}", out);
+        }
+    }
+
+    /**
+     * @return the first and last user and post ids, all ids in between being generated ones
+     */
+    @SneakyThrows
+    Properties generate() {
+
+        try (Connection connection = connectionPool.getConnection()) {
+
+            connection.setAutoCommit(false);
+            try {
+                timed("users", () -> insertUsers(connection));
+                timed("follows", () -> insertFollows(connection));
+                timed("posts", () -> insertPosts(connection));
+                timed("likes", () -> insertLikes(connection));
+                timed("comments", () -> insertComments(connection));
+            } finally {
+                connection.setAutoCommit(true);
+            }
+        }
+
+        timed("counters", () -> {
+            try (H2PostCounters postCounters = new H2PostCounters(connectionPool)) {
+                return postCounters.repair();
+            }
+        });
+
+        Properties manifest = new Properties();
+        manifest.setProperty("prefix", PREFIX);
+        manifest.setProperty("password", PASSWORD);
+        manifest.setProperty("users.first", String.valueOf(userIds[0]));
+        manifest.setProperty("users.last", String.valueOf(userIds[users - 1]));
+        manifest.setProperty("posts.first", String.valueOf(postIds[0]));
+        manifest.setProperty("posts.last", String.valueOf(postIds[posts - 1]));
+        return manifest;
+    }
+
+    private int insertUsers(Connection connection) throws SQLException {
+
+        String password = encrypt(PASSWORD);
+
+        PreparedStatement user = connection.prepareStatement(
+                "INSERT INTO User (username, email, password, first_name, last_name) VALUES (?, ?, ?, ?, ?)",
+                Statement.RETURN_GENERATED_KEYS);
+        PreparedStatement role = connection.prepareStatement("INSERT INTO Roles (username, role) VALUES (?, 'user')");
+
+        userIds = new int[users];
+        int generated = 0;
+
+        for (int i = 0; i < users; i++) {
+
+            String username = PREFIX + (i + 1);
+
+            user.setString(1, username);
+            user.setString(2, username + "@mail.com");
+            user.setString(3, password);
+            user.setString(4, WORDS[i % WORDS.length]);
+            user.setString(5, username);
+            user.addBatch();
+
+            role.setString(1, username);
+            role.addBatch();
+
+            if ((i + 1) % BATCH == 0 || i == users - 1) {
+                user.executeBatch();
+                role.executeBatch();
+                generated = collectKeys(user, userIds, generated);
+                connection.commit();
+            }
+        }
+
+        checkContiguous(userIds, "users");
+        return users;
+    }
+
+    private int insertFollows(Connection connection) throws SQLException {
+
+        PreparedStatement preparedStatement = connection.prepareStatement(
+                "INSERT INTO Following (follower_id, follow_id) VALUES (?, ?)");
+
+        int rows = 0;
+
+        for (int follower = 0; follower < users; follower++) {
+
+            int count = PowerLaw.pareto(random, follows, users - 1);
+            Set<Integer> followed = new HashSet<>();
+
+//            celebrities come up again and again, give up on a user after a few misses
+            for (int tries = 0; followed.size() < count && tries < count * 4; tries++) {
+
+                int follow = popularity.next(random);
+                if (follow == follower || !followed.add(follow))
+                    continue;
+
+                preparedStatement.setInt(1, userIds[follower]);
+                preparedStatement.setInt(2, userIds[follow]);
+                preparedStatement.addBatch();
+
+                if (++rows % BATCH == 0) {
+                    preparedStatement.executeBatch();
+                    connection.commit();
+                }
+            }
+        }
+
+        preparedStatement.executeBatch();
+        connection.commit();
+        return rows;
+    }
+
+    /**
+     * Posts arrive interleaved over the last year, the popular users writing more of them.
+     */
+    private int insertPosts(Connection connection) throws SQLException {
+
+        PreparedStatement preparedStatement = connection.prepareStatement(
+                "INSERT INTO Post (authorId, date, time, text, privacy, expandable) VALUES (?, ?, ?, ?, ?, ?)",
+                Statement.RETURN_GENERATED_KEYS);
+
+        postIds = new int[posts];
+        authors = new int[posts];
+        int generated = 0;
+        LocalDate today = LocalDate.now();
+
+        for (int i = 0; i < posts; i++) {
+
+            authors[i] = random.nextInt(3) == 0 ? popularity.next(random) : random.nextInt(users);
+
+            preparedStatement.setInt(1, userIds[authors[i]]);
+            preparedStatement.setDate(2, Date.valueOf(today.minusDays(365L * (posts - i) / posts)));
+            preparedStatement.setTime(3, Time.valueOf(LocalTime.ofSecondOfDay(random.nextInt(24 * 60 * 60))));
+            preparedStatement.setString(4, text("post " + (i + 1) + " about", 3));
+            preparedStatement.setBoolean(5, random.nextInt(10) == 0);
+            preparedStatement.setBoolean(6, false);
+            preparedStatement.addBatch();
+
+            if ((i + 1) % BATCH == 0 || i == posts - 1) {
+                preparedStatement.executeBatch();
+                generated = collectKeys(preparedStatement, postIds, generated);
+                connection.commit();
+            }
+        }
+
+        checkContiguous(postIds, "posts");
+        indexByAuthor();
+        return posts;
+    }
+
+    /**
+     * The posts of popular authors get more likes, each from different users.
+     */
+    private int insertLikes(Connection connection) throws SQLException {
+
+        PreparedStatement preparedStatement = connection.prepareStatement(
+                "INSERT INTO Likes (from_userId, to_postId) VALUES (?, ?)");
+
+        double average = 0;
+        for (int author : authors)
+            average += popularity.probability(author) / posts;
+
+        int rows = 0;
+
+        for (int i = 0; i < posts; i++) {
+
+            int count = PowerLaw.pareto(random, likes * popularity.probability(authors[i]) / average, users);
+            Set<Integer> likers = new HashSet<>();
+
+            while (likers.size() < count) {
+
+                int liker = random.nextInt(users);
+                if (!likers.add(liker))
+                    continue;
+
+                preparedStatement.setInt(1, userIds[liker]);
+                preparedStatement.setInt(2, postIds[i]);
+                preparedStatement.addBatch();
+
+                if (++rows % BATCH == 0) {
+                    preparedStatement.executeBatch();
+                    connection.commit();
+                }
+            }
+        }
+
+        preparedStatement.executeBatch();
+        connection.commit();
+        return rows;
+    }
+
+    private int insertComments(Connection connection) throws SQLException {
+
+        PreparedStatement preparedStatement = connection.prepareStatement(
+                "INSERT INTO Comment (from_userId, from_username, to_postId, text, date, time) VALUES (?, ?, ?, ?, ?, ?)");
+
+        Date today = Date.valueOf(LocalDate.now());
+
+        for (int i = 0; i < comments; i++) {
+
+            int user = random.nextInt(users);
+
+            preparedStatement.setInt(1, userIds[user]);
+            preparedStatement.setString(2, PREFIX + (user + 1));
+            preparedStatement.setInt(3, popularPost());
+            preparedStatement.setString(4, text("", 4).trim());
+            preparedStatement.setDate(5, today);
+            preparedStatement.setTime(6, Time.valueOf(LocalTime.ofSecondOfDay(random.nextInt(24 * 60 * 60))));
+            preparedStatement.addBatch();
+
+            if ((i + 1) % BATCH == 0) {
+                preparedStatement.executeBatch();
+                connection.commit();
+            }
+        }
+
+        preparedStatement.executeBatch();
+        connection.commit();
+        return comments;
+    }
+
+    /**
+     * A post of a user picked by popularity, any post when that user wrote none.
+     */
+    private int popularPost() {
+
+        int author = popularity.next(random);
+        int written = firstPostOf[author + 1] - firstPostOf[author];
+
+        return written == 0
+                ? postIds[random.nextInt(posts)]
+                : postIds[postsByAuthor[firstPostOf[author] + random.nextInt(written)]];
+    }
+
+    /**
+     * Post indexes grouped by author: those of author {@code a} are
+     * {@code postsByAuthor[firstPostOf[a]]} up to {@code firstPostOf[a + 1]}.
+     */
+    private void indexByAuthor() {
+
+        firstPostOf = new int[users + 1];
+        for (int author : authors)
+            firstPostOf[author + 1]++;
+        for (int i = 0; i < users; i++)
+            firstPostOf[i + 1] += firstPostOf[i];
+
+        int[] next = firstPostOf.clone();
+        postsByAuthor = new int[posts];
+        for (int i = 0; i < posts; i++)
+            postsByAuthor[next[authors[i]]++] = i;
+    }
+
+    private String text(String start, int words) {
+
+        StringBuilder text = new StringBuilder(start);
+        for (int i = 0; i < words; i++)
+            text.append(' ').append(WORDS[random.nextInt(WORDS.length)]);
+
+        return text.toString();
+    }
+
+    private static int collectKeys(PreparedStatement preparedStatement, int[] ids, int from) throws SQLException {
+
+        ResultSet rs = preparedStatement.getGeneratedKeys();
+        while (rs.next())
+            ids[from++] = rs.getInt(1);
+
+        return from;
+    }
+
+    /**
+     * The driver picks ids from a range, so another writer interleaving rows would spoil it.
+     */
+    private static void checkContiguous(int[] ids, String what) {
+
+        if (ids[ids.length - 1] - ids[0] != ids.length - 1)
+            throw new IllegalStateException(what + " did not get contiguous ids, is something else writing to the database?");
+    }
+
+    @SneakyThrows
+    private static String encrypt(String password) {
+
+        return StringEncryptUtil.encrypt(password);
+    }
+
+    private interface Step {
+        int run() throws SQLException;
+    }
+
+    private static void timed(String what, Step step) throws SQLException {
+
+        long start = System.nanoTime();
+        int rows = step.run();
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        log.info("{}: {} rows in {} s, {} rows/s", what, rows, String.format("%.1f", seconds),
+                String.format("%.0f", rows / Math.max(seconds, 1e-9)));
+    }
+}
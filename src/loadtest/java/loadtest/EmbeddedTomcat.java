@@ -0,0 +1,76 @@
+package loadtest;
+
+import org.apache.catalina.LifecycleException;
+import org.apache.catalina.connector.Connector;
+import org.apache.catalina.startup.Tomcat;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * The application in an in-process Tomcat. Initer reads its settings and migrations from
+ * {@code WEB-INF/classes} under the real path, so the webapp, the compiled classes and the
+ * resources are copied into a temporary exploded war with {@code db.properties} swapped for the given one.
+ * With {@code virtualThreads} the connector starts a virtual thread per request instead of using its pool.
+ */
+final class EmbeddedTomcat implements AutoCloseable {
+
+    private final Path base;
+    private final Tomcat tomcat;
+
+    EmbeddedTomcat(Path webapp, List<Path> classes, Path dbProperties, int port, boolean virtualThreads) throws Exception {
+
+        base = Files.createTempDirectory("soc_loadtest");
+
+        Path docBase = base.resolve("webapp");
+        Path webInfClasses = docBase.resolve("WEB-INF/classes");
+
+        copy(webapp, docBase);
+        for (Path directory : classes)
+            copy(directory, webInfClasses);
+        Files.copy(dbProperties, webInfClasses.resolve("db.properties"), StandardCopyOption.REPLACE_EXISTING);
+
+        tomcat = new Tomcat();
+        tomcat.setBaseDir(base.resolve("tomcat").toString());
+        tomcat.setPort(port);
+        Connector connector = tomcat.getConnector();
+        if (virtualThreads && !connector.setProperty("useVirtualThreads", "true"))
+            throw new IllegalStateException("this Tomcat cannot run requests on virtual threads");
+        tomcat.addWebapp("", docBase.toString());
+        tomcat.start();
+    }
+
+    String getUrl() {
+
+        return "http://localhost:" + tomcat.getConnector().getLocalPort();
+    }
+
+    @Override
+    public void close() throws LifecycleException, IOException {
+
+        tomcat.stop();
+        tomcat.destroy();
+
+        for (Path path : Files.walk(base).sorted(Comparator.reverseOrder()).collect(Collectors.toList()))
+            Files.delete(path);
+    }
+
+    private static void copy(Path from, Path to) throws IOException {
+
+        if (!Files.isDirectory(from))
+            return;
+
+        for (Path source : Files.walk(from).collect(Collectors.toList())) {
+            Path target = to.resolve(from.relativize(source).toString());
+            if (Files.isDirectory(source))
+                Files.createDirectories(target);
+            else
+                Files.copy(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+}
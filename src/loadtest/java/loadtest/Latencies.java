@@ -0,0 +1,61 @@
+package loadtest;
+
+import java.util.Arrays;
+
+/**
+ * Response times of one kind of request, in nanoseconds. Every client keeps its own and they are merged at the end.
+ */
+final class Latencies {
+
+    private long[] samples = new long[1024];
+    private int count;
+    private int errors;
+    private boolean sorted;
+
+    void record(long nanos) {
+
+        if (count == samples.length)
+            samples = Arrays.copyOf(samples, count * 2);
+        samples[count++] = nanos;
+        sorted = false;
+    }
+
+    void error() {
+
+        errors++;
+    }
+
+    void addAll(Latencies other) {
+
+        for (int i = 0; i < other.count; i++)
+            record(other.samples[i]);
+        errors += other.errors;
+    }
+
+    int getCount() {
+
+        return count;
+    }
+
+    int getErrors() {
+
+        return errors;
+    }
+
+    /**
+     * @return the response time {@code percentile} percent of the requests were faster than, in milliseconds
+     */
+    double percentile(double percentile) {
+
+        if (count == 0)
+            return 0;
+
+        if (!sorted) {
+            Arrays.sort(samples, 0, count);
+            sorted = true;
+        }
+
+        int index = (int) Math.ceil(percentile / 100 * count) - 1;
+        return samples[Math.max(0, Math.min(index, count - 1))] / 1e6;
+    }
+}
@@ -0,0 +1,308 @@
+package loadtest;
+
+import lombok.SneakyThrows;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+
+/**
+ * A closed-loop load test: {@code clients} threads each send a request, wait for the answer, think for a
+ * while and send the next one, so the offered load follows how fast the application answers.
+ * <pre>java loadtest.LoadDriver [data=build/loadtest/data.properties] [url=http://host:port/context]
+ *      [db=src/main/resources/db.properties] [webapp=src/main/webapp] [classes=dir:dir] [port=0] [virtualThreads=false]
+ *      [clients=16] [warmup=10] [duration=60] [think=0] [mix=timeline:60,like:20,comments:15,search:5] [seed=42]</pre>
+ * The users and posts come from the id ranges {@link DataGenerator} wrote to {@code data}.
+ * Without {@code url} the application is started in an {@link EmbeddedTomcat} on {@code db}, which must point
+ * at the database the generator filled; {@code virtualThreads} runs its requests on virtual threads, together with
+ * {@code virtualThreads=true} in {@code db} for the DAO calls. Requests made during the {@code warmup} seconds are not counted;
+ * the throughput and latency percentiles of the next {@code duration} seconds are printed per request kind.
+ */
+@Slf4j
+public class LoadDriver {
+
+    private static final int PAGE = 20;
+
+    private final String url;
+    private final Properties data;
+    private final Map<String, Integer> mix = new LinkedHashMap<>();
+    private final int clients;
+    private final long warmupNanos;
+    private final long durationNanos;
+    private final long thinkMillis;
+    private final long seed;
+
+    private final long firstUser;
+    private final long users;
+    private final long firstPost;
+    private final long posts;
+
+    LoadDriver(String url, Properties data, Properties options) {
+
+        this.url = url;
+        this.data = data;
+        this.clients = Integer.parseInt(options.getProperty("clients", "16"));
+        this.warmupNanos = Long.parseLong(options.getProperty("warmup", "10")) * 1_000_000_000L;
+        this.durationNanos = Long.parseLong(options.getProperty("duration", "60")) * 1_000_000_000L;
+        this.thinkMillis = Long.parseLong(options.getProperty("think", "0"));
+        this.seed = Long.parseLong(options.getProperty("seed", "42"));
+
+        for (String entry : options.getProperty("mix", "timeline:60,like:20,comments:15,search:5").split(","))
+            mix.put(entry.split(":")[0].trim(), Integer.parseInt(entry.split(":")[1].trim()));
+
+        this.firstUser = Long.parseLong(data.getProperty("users.first"));
+        this.users = Long.parseLong(data.getProperty("users.last")) - firstUser + 1;
+        this.firstPost = Long.parseLong(data.getProperty("posts.first"));
+        this.posts = Long.parseLong(data.getProperty("posts.last")) - firstPost + 1;
+    }
+
+    @SneakyThrows
+    public static void main(String[] args) {
+
+        Properties options = new Properties();
+        for (String arg : args)
+            options.setProperty(arg.substring(0, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+
+        Properties data = new Properties();
+        try (FileInputStream inputStream = new FileInputStream(options.getProperty("data", "build/loadtest/data.properties"))) {
+            data.load(inputStream);
+        }
+
+        if (options.containsKey("url")) {
+            new LoadDriver(options.getProperty("url"), data, options).run();
+            return;
+        }
+
+        List<Path> classes = Arrays.stream(options.getProperty("classes", "build/classes/java/main:build/resources/main")
+                .split(File.pathSeparator)).map(Paths::get).collect(Collectors.toList());
+
+        try (EmbeddedTomcat tomcat = new EmbeddedTomcat(
+                Paths.get(options.getProperty("webapp", "src/main/webapp")),
+                classes,
+                Paths.get(options.getProperty("db", "src/main/resources/db.properties")),
+                Integer.parseInt(options.getProperty("port", "0")),
+                Boolean.parseBoolean(options.getProperty("virtualThreads", "false")))) {
+
+            new LoadDriver(tomcat.getUrl(), data, options).run();
+        }
+    }
+
+    void run() throws Exception {
+
+        log.info("{} clients against {} for {} s after {} s of warmup, mix {}",
+                clients, url, durationNanos / 1_000_000_000L, warmupNanos / 1_000_000_000L, mix);
+
+        ExecutorService executor = Executors.newFixedThreadPool(clients);
+        List<Future<Map<String, Latencies>>> results = new ArrayList<>();
+
+        long start = System.nanoTime();
+        for (int client = 0; client < clients; client++) {
+            Random random = new Random(seed + client);
+            results.add(executor.submit(() -> new Client(random).loop(start + warmupNanos, start + warmupNanos + durationNanos)));
+        }
+
+        Map<String, Latencies> total = new LinkedHashMap<>();
+        for (String kind : mix.keySet())
+            total.put(kind, new Latencies());
+        try {
+            for (Future<Map<String, Latencies>> result : results)
+                result.get().forEach((kind, latencies) -> total.get(kind).addAll(latencies));
+        } finally {
+            executor.shutdownNow();
+        }
+
+        report(total);
+    }
+
+    private void report(Map<String, Latencies> total) {
+
+        double seconds = durationNanos / 1e9;
+        Latencies all = new Latencies();
+
+        System.out.println(String.format("%-10s %9s %7s %9s %9s %9s %9s %9s %9s",
+                "request", "count", "errors", "req/s", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms"));
+
+        for (Map.Entry<String, Latencies> entry : total.entrySet()) {
+            print(entry.getKey(), entry.getValue(), seconds);
+            all.addAll(entry.getValue());
+        }
+        print("total", all, seconds);
+    }
+
+    private static void print(String kind, Latencies latencies, double seconds) {
+
+        System.out.println(String.format("%-10s %9d %7d %9.1f %9.2f %9.2f %9.2f %9.2f %9.2f",
+                kind, latencies.getCount(), latencies.getErrors(), latencies.getCount() / seconds,
+                latencies.percentile(50), latencies.percentile(90), latencies.percentile(99),
+                latencies.percentile(99.9), latencies.percentile(100)));
+    }
+
+    /**
+     * One simulated user session: logs in once, for the pages behind the security filter, then keeps sending.
+     */
+    private class Client {
+
+        private final Random random;
+        private final long userId;
+        private final int weights;
+        private String session;
+
+        Client(Random random) {
+
+            this.random = random;
+            this.userId = firstUser + (long) (random.nextDouble() * users);
+            this.weights = mix.values().stream().mapToInt(Integer::intValue).sum();
+        }
+
+        Map<String, Latencies> loop(long measureFrom, long until) throws IOException, InterruptedException {
+
+            Map<String, Latencies> latencies = new LinkedHashMap<>();
+            for (String kind : mix.keySet())
+                latencies.put(kind, new Latencies());
+
+            if (mix.containsKey("search"))
+                login();
+
+            long now;
+            while ((now = System.nanoTime()) < until) {
+
+                String kind = nextKind();
+                boolean ok;
+                try {
+                    ok = send(kind);
+                } catch (IOException e) {
+                    ok = false;
+                }
+                long end = System.nanoTime();
+
+                if (now >= measureFrom) {
+                    if (ok)
+                        latencies.get(kind).record(end - now);
+                    else
+                        latencies.get(kind).error();
+                }
+
+                if (thinkMillis > 0)
+                    Thread.sleep(thinkMillis);
+            }
+
+            return latencies;
+        }
+
+        private String nextKind() {
+
+            int pick = random.nextInt(weights);
+            for (Map.Entry<String, Integer> entry : mix.entrySet()) {
+                pick -= entry.getValue();
+                if (pick < 0)
+                    return entry.getKey();
+            }
+            throw new IllegalStateException("empty mix");
+        }
+
+        private boolean send(String kind) throws IOException {
+
+            switch (kind) {
+                case "timeline":
+                    return get("/webapi/posts/timeline/?userId=" + userId + "&offsetId=0&limit=" + PAGE);
+                case "like":
+                    return get("/webapi/likes/add?userId=" + userId + "&postId=" + recentPost());
+                case "comments":
+                    return get("/webapi/comments/" + recentPost() + "?offsetId=0&limit=" + PAGE);
+                case "search":
+                    return get("/s/search/?srch-term=" + URLEncoder.encode(
+                            DataGenerator.WORDS[random.nextInt(DataGenerator.WORDS.length)], "UTF-8"));
+                default:
+                    throw new IllegalArgumentException("unknown request kind " + kind);
+            }
+        }
+
+        /**
+         * Any post, the newer ones much more likely: people mostly like and read what just came in.
+         */
+        private long recentPost() {
+
+            double age = Math.pow(random.nextDouble(), 3);
+            return firstPost + posts - 1 - (long) (age * posts);
+        }
+
+        private void login() throws IOException {
+
+            HttpURLConnection connection = (HttpURLConnection) URI.create(url + "/login").toURL().openConnection();
+            connection.setInstanceFollowRedirects(false);
+            connection.setDoOutput(true);
+            connection.setRequestMethod("POST");
+            connection.setRequestProperty("Content-Type", "application/x-www-form-urlencoded");
+
+            String username = data.getProperty("prefix") + (userId - firstUser + 1);
+            byte[] form = ("j_username=" + URLEncoder.encode(username, "UTF-8") +
+                    "&j_password=" + URLEncoder.encode(data.getProperty("password"), "UTF-8"))
+                    .getBytes(StandardCharsets.UTF_8);
+
+            try (OutputStream outputStream = connection.getOutputStream()) {
+                outputStream.write(form);
+            }
+
+            drain(connection);
+
+            for (Map.Entry<String, List<String>> header : connection.getHeaderFields().entrySet())
+                if ("Set-Cookie".equalsIgnoreCase(header.getKey()))
+                    for (String cookie : header.getValue())
+                        if (cookie.startsWith("JSESSIONID="))
+                            session = cookie.split(";")[0];
+
+            if (connection.getResponseCode() != HttpURLConnection.HTTP_MOVED_TEMP || session == null)
+                throw new IllegalStateException("could not log in as " + username + ": " + connection.getResponseCode());
+        }
+
+        private boolean get(String path) throws IOException {
+
+            HttpURLConnection connection = (HttpURLConnection) URI.create(url + path).toURL().openConnection();
+            connection.setInstanceFollowRedirects(false);
+            if (session != null)
+                connection.setRequestProperty("Cookie", session);
+
+            int status = connection.getResponseCode();
+            drain(connection);
+
+            return status < 400;
+        }
+
+        /**
+         * Reads the body to the end, so the keep-alive connection goes back to be reused.
+         */
+        private void drain(HttpURLConnection connection) throws IOException {
+
+            InputStream body = connection.getResponseCode() < 400 ? connection.getInputStream() : connection.getErrorStream();
+            if (body == null)
+                return;
+
+            try (InputStream inputStream = body) {
+                byte[] buffer = new byte[8192];
+                while (inputStream.read(buffer) != -1) {
+                    // discard
+                }
+            }
+        }
+    }
+}
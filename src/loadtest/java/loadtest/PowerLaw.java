@@ -0,0 +1,47 @@
+package loadtest;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Picks ranks 0..n-1 with probability proportional to 1 / (rank + 1)^skew,
+ * so a few ranks are picked all the time and most hardly ever.
+ */
+final class PowerLaw {
+
+    private final double[] cumulative;
+
+    PowerLaw(int n, double skew) {
+
+        cumulative = new double[n];
+
+        double sum = 0;
+        for (int rank = 0; rank < n; rank++) {
+            sum += 1 / Math.pow(rank + 1, skew);
+            cumulative[rank] = sum;
+        }
+    }
+
+    int next(Random random) {
+
+        int rank = Arrays.binarySearch(cumulative, random.nextDouble() * cumulative[cumulative.length - 1]);
+
+        return Math.min(rank < 0 ? -rank - 1 : rank, cumulative.length - 1);
+    }
+
+    double probability(int rank) {
+
+        return (cumulative[rank] - (rank == 0 ? 0 : cumulative[rank - 1])) / cumulative[cumulative.length - 1];
+    }
+
+    /**
+     * A Pareto distributed count with the given mean: most draws are below it, a few are far above.
+     */
+    static int pareto(Random random, double mean, int max) {
+
+        double shape = 2;
+        double count = mean * (shape - 1) / shape / Math.pow(1 - random.nextDouble(), 1 / shape);
+
+        return (int) Math.min(Math.round(count), max);
+    }
+}
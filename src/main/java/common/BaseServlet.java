@@ -2,6 +2,7 @@ package common;
 
 import dao.*;
 import listeners.Initer;
+import search.SearchService;
 
 import javax.servlet.ServletConfig;
 import javax.servlet.ServletException;
@@ -35,6 +36,8 @@ public class BaseServlet extends HttpServlet {
     protected PostDAO postDAO;
     protected LikeDAO likeDAO;
     protected CommentDAO commentDAO;
+    protected PostViewAssembler postViewAssembler;
+    protected SearchService searchService;
 
     @Override
     public void init(ServletConfig config) throws ServletException {
@@ -45,6 +48,8 @@ public class BaseServlet extends HttpServlet {
         postDAO = (PostDAO) config.getServletContext().getAttribute(Initer.POST_DAO);
         likeDAO = (LikeDAO) config.getServletContext().getAttribute(Initer.LIKE_DAO);
         commentDAO = (CommentDAO) config.getServletContext().getAttribute(Initer.COMMENT_DAO);
+        postViewAssembler = (PostViewAssembler) config.getServletContext().getAttribute(Initer.POST_VIEW_ASSEMBLER);
+        searchService = (SearchService) config.getServletContext().getAttribute(Initer.SEARCH_SERVICE);
     }
 
     protected void writeToResponse(HttpServletResponse resp, String answer)
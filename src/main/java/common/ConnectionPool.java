@@ -2,49 +2,125 @@ package common;
 
 import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
+import metrics.Metrics;
+import metrics.Timer;
 
 import java.io.FileInputStream;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.SQLException;
 import java.sql.Statement;
-import java.util.Arrays;
+import java.util.Map;
 import java.util.Properties;
-import java.util.concurrent.ArrayBlockingQueue;
-import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.function.Supplier;
-import java.util.stream.Collectors;
 
 /**
  * Created by wopqw on 21.10.16.
+ *
+ * Pool of JDBC connections, configured by db.properties.
+ * {@code pool=queue} (default) is the original {@link QueueConnectionPool},
+ * {@code pool=slots} the {@link SlotConnectionPool}.
+ * Both keep a {@link StatementCache} of {@code statementCacheSize} statements
+ * per physical connection; {@code statementCacheSize=0} turns it off.
+ * {@code mode=embedded} ignores {@code url} and opens the database in process, see {@link EmbeddedDatabase}.
+ * {@code replica.url} adds a second pool for {@link #getReadConnection()}, see {@link ReadWriteConnectionPool}.
  */
 @Slf4j
-public class ConnectionPool implements AutoCloseable {
+public abstract class ConnectionPool implements AutoCloseable {
 
-    private static BlockingQueue<Connection> freeConnections;
-    private static BlockingQueue<Connection> reservedConnections;
-    private volatile boolean isClosing = false;
+    private static final int DEFAULT_STATEMENT_CACHE_SIZE = 64;
+
+    private final Map<Connection, StatementCache> statementCaches = new ConcurrentHashMap<>();
+    private final LongAdder statementCacheHits = new LongAdder();
+    private final LongAdder statementCacheMisses = new LongAdder();
+    private int statementCacheSize = DEFAULT_STATEMENT_CACHE_SIZE;
+    private Timer acquireTimer = Metrics.DISABLED.timer("pool.acquire");
+    private Timer holdTimer = Metrics.DISABLED.timer("pool.hold");
 
     @SneakyThrows
     public static ConnectionPool create(String pathToConfig){
 
         Properties properties = new Properties();
-        properties.load(new FileInputStream(pathToConfig));
 
-        int poolSize = Integer.parseInt(getValueAndRemoveKey(properties, "poolSize"));
+        try(FileInputStream inputStream = new FileInputStream(pathToConfig)){
+            properties.load(inputStream);
+        }
+
+        return create(properties);
+    }
+
+    public static ConnectionPool create(Properties properties){
+
+        String replicaUrl = properties.getProperty("replica.url", "");
 
-        return create(poolSize,getValueAndRemoveKey(properties,"driver"),
-                getValueAndRemoveKey(properties,"url"),
-                getValueAndRemoveKey(properties, "user"),
-                getValueAndRemoveKey(properties, "password"));
+        if (replicaUrl.isEmpty())
+            return create(properties, primaryUrl(properties));
+
+        Properties replica = new Properties();
+        replica.putAll(properties);
+        replica.setProperty("user", properties.getProperty("replica.user", properties.getProperty("user")));
+        replica.setProperty("password", properties.getProperty("replica.password", properties.getProperty("password")));
+        replica.setProperty("poolSize", properties.getProperty("replica.poolSize", properties.getProperty("poolSize")));
+        replica.setProperty("pool.maxSize", replica.getProperty("poolSize"));
+
+        return new ReadWriteConnectionPool(create(properties, primaryUrl(properties)), create(replica, replicaUrl));
+    }
+
+    private static String primaryUrl(Properties properties){
+
+        return EmbeddedDatabase.isEmbedded(properties)
+                ? EmbeddedDatabase.url(properties)
+                : properties.getProperty("url");
     }
 
-    private static ConnectionPool create(Integer poolSize, String driver, String url, String user, String password){
+    private static ConnectionPool create(Properties properties, String url){
+
+        int poolSize = Integer.parseInt(properties.getProperty("poolSize"));
+
+        Supplier<Connection> connectionSupplier = connectionSupplier(
+                properties.getProperty("driver"),
+                url,
+                properties.getProperty("user"),
+                properties.getProperty("password"));
+
+        String type = properties.getProperty("pool", "queue");
+        log.info("creating {} connection pool for {}", type, url);
+
+        ConnectionPool connectionPool;
+
+        switch (type) {
+            case "slots":
+                connectionPool = new SlotConnectionPool(
+                        Integer.parseInt(properties.getProperty("pool.minSize", "1")),
+                        Integer.parseInt(properties.getProperty("pool.maxSize", String.valueOf(poolSize))),
+                        Long.parseLong(properties.getProperty("pool.acquireTimeoutMillis", "5000")),
+                        Long.parseLong(properties.getProperty("pool.validateAfterMillis", "30000")),
+                        Long.parseLong(properties.getProperty("pool.idleTimeoutMillis", "600000")),
+                        Long.parseLong(properties.getProperty("pool.leakThresholdMillis", "0")),
+                        connectionSupplier);
+                break;
+            case "queue":
+                connectionPool = new QueueConnectionPool(poolSize, connectionSupplier);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown pool type: " + type);
+        }
+
+        connectionPool.statementCacheSize = Integer.parseInt(
+                properties.getProperty("statementCacheSize", String.valueOf(DEFAULT_STATEMENT_CACHE_SIZE)));
+
+        return connectionPool;
+    }
+
+    private static Supplier<Connection> connectionSupplier(String driver, String url, String user, String password){
 
         //noinspection Duplicates
-        return new ConnectionPool(poolSize, () ->{
+        return () ->{
 
             try {
                 Class.forName(driver);
@@ -53,80 +129,93 @@ public class ConnectionPool implements AutoCloseable {
                 e.printStackTrace();
             }
             return null;
-        });
+        };
+    }
 
+    public Connection getConnection() {
+
+        long start = acquireTimer.start();
+        Connection connection = acquire();
+        acquireTimer.stop(start);
+
+        return connection;
     }
 
-    private ConnectionPool(int poolSize, Supplier<Connection> connectionSupplier) {
+    /**
+     * Connection for queries that may see data slightly behind the primary.
+     * A single pool hands out one of its own connections marked read-only;
+     * returning it to the pool clears the flag.
+     */
+    @SneakyThrows
+    public Connection getReadConnection() {
 
-        freeConnections = new ArrayBlockingQueue<>(poolSize);
-        reservedConnections = new ArrayBlockingQueue<>(poolSize);
+        Connection connection = getConnection();
+        connection.setReadOnly(true);
 
-        for (int i = 0; i < poolSize; i++) {
-            freeConnections.add(connectionSupplier.get());
-        }
+        return connection;
     }
 
+    protected abstract Connection acquire();
+
+    public abstract int getActive();
+
+    public abstract int getIdle();
+
     @Override
-    public void close() throws Exception {
+    public abstract void close();
 
-        isClosing = true;
+    /**
+     * Starts timing how long the borrower holds a connection.
+     */
+    protected long borrowed() {
 
-        freeConnections.forEach(connection -> {
-            try {
-                connection.close();
-            } catch (Exception e) {
-                throw new RuntimeException(e);
-            }
-        });
+        return holdTimer.start();
     }
 
-    private static String getValueAndRemoveKey(Properties properties, String key) {
+    protected void released(long borrowedAt) {
 
-        return (String) properties.remove(key);
+        holdTimer.stop(borrowedAt);
     }
 
-    private ConnectionWrapper wrap(Connection connection) {
+    public void instrument(Metrics metrics) {
 
-        //noinspection Duplicates
-        return new ConnectionWrapper(connection) {
-            @Override
-            public void close() throws SQLException {
-                if (connection.isClosed()) {
-                    throw new SQLException("Connection is already closed");
-                }
-
-                if (connection.isReadOnly()) {
-                    connection.setReadOnly(false);
-                }
-
-                if (reservedConnections.contains(this) && !reservedConnections.remove(this)) {
-                    throw new RuntimeException("Cannot close reserved connection");
-                }
-
-                if (isClosing) {
-                    connection.close();
-                } else if (!freeConnections.offer(connection)) {
-                    throw new RuntimeException("Cannot return connection to the pool");
-                }
-            }
-        };
+        acquireTimer = metrics.timer("pool.acquire");
+        holdTimer = metrics.timer("pool.hold");
+
+        metrics.gauge("pool.active", this::getActive);
+        metrics.gauge("pool.idle", this::getIdle);
+        metrics.gauge("pool.statementCache.hits", this::getStatementCacheHits);
+        metrics.gauge("pool.statementCache.misses", this::getStatementCacheMisses);
     }
 
-    public Connection getConnection() {
+    /**
+     * Statements cached for a physical connection, or null when caching is off.
+     */
+    protected StatementCache statementCache(Connection connection) {
 
-        if (isClosing) {
-            throw new RuntimeException("Cannot get connection from the closing pool");
-        }
+        if (statementCacheSize <= 0)
+            return null;
 
-        //noinspection Duplicates
-        try {
-            Connection connection = wrap(freeConnections.take());
-            reservedConnections.add(connection);
-            return connection;
-        } catch (InterruptedException e) {
-            throw new RuntimeException(e);
-        }
+        return statementCaches.computeIfAbsent(connection,
+                c -> new StatementCache(c, statementCacheSize, statementCacheHits, statementCacheMisses));
+    }
+
+    /**
+     * Has to be called whenever the pool closes a physical connection.
+     */
+    protected void forgetStatements(Connection connection) {
+
+        statementCaches.remove(connection);
+    }
+
+    public long getStatementCacheHits() {
+
+        return statementCacheHits.sum();
+    }
+
+    public long getStatementCacheMisses() {
+
+        return statementCacheMisses.sum();
     }
 
     @SneakyThrows
@@ -136,17 +225,8 @@ public class ConnectionPool implements AutoCloseable {
 
             Statement stat = connection.createStatement();
 
-            Arrays.stream(
-                    Files.lines(Paths.get(pathToInit))
-                            .collect(Collectors.joining())
-                            .split(";"))
-                    .forEachOrdered(sql -> {
-                        try{
-                            stat.addBatch(sql);
-                        } catch (SQLException e){
-                            throw new RuntimeException(e);
-                        }
-                    });
+            for (String sql : Migrations.statements(new String(Files.readAllBytes(Paths.get(pathToInit)), StandardCharsets.UTF_8)))
+                stat.addBatch(sql);
             stat.executeBatch();
         }
     }
@@ -16,6 +16,12 @@ import java.util.concurrent.Executor;
 public abstract class ConnectionWrapper implements Connection {
 
     private final Connection connection;
+//    null when statement caching is off
+    private final StatementCache statementCache;
+
+    public ConnectionWrapper(Connection connection) {
+        this(connection, null);
+    }
 
     @Override
     public boolean isClosed() throws SQLException {
@@ -29,6 +35,8 @@ public abstract class ConnectionWrapper implements Connection {
 
     @Override
     public PreparedStatement prepareStatement(String sql) throws SQLException {
+        if (statementCache != null)
+            return statementCache.prepare(sql, Statement.NO_GENERATED_KEYS);
         return connection.prepareStatement(sql);
     }
 
@@ -184,6 +192,8 @@ public abstract class ConnectionWrapper implements Connection {
 
     @Override
     public PreparedStatement prepareStatement(String sql, int autoGeneratedKeys) throws SQLException {
+        if (statementCache != null)
+            return statementCache.prepare(sql, autoGeneratedKeys);
         return connection.prepareStatement(sql, autoGeneratedKeys);
     }
 
@@ -0,0 +1,74 @@
+package common;
+
+import lombok.SneakyThrows;
+import lombok.extern.slf4j.Slf4j;
+import org.h2.tools.Server;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.util.Properties;
+
+/**
+ * H2 running inside the web application ({@code mode=embedded} in db.properties) for single-node
+ * deployments, so that queries are method calls instead of round trips to a separate server.
+ * The file is locked against other processes; {@code embedded.tcpServer=true} serves the same
+ * database over TCP for admin tools. {@link #close()} shuts the database down, so that a redeploy
+ * into the same JVM can open the file again.
+ */
+@Slf4j
+public class EmbeddedDatabase implements AutoCloseable {
+
+    public static final String MODE = "embedded";
+
+    private final Properties settings;
+    private final Server tcpServer;
+
+    @SneakyThrows
+    public EmbeddedDatabase(Properties settings){
+
+        this.settings = settings;
+
+        if (Boolean.parseBoolean(settings.getProperty("embedded.tcpServer", "false"))) {
+            tcpServer = Server.createTcpServer(
+                    "-tcpPort", settings.getProperty("embedded.tcpPort", "9092"),
+                    "-ifExists").start();
+            log.info("serving {} for admin access at {}", settings.getProperty("embedded.path"), tcpServer.getURL());
+        } else {
+            tcpServer = null;
+        }
+    }
+
+    public static boolean isEmbedded(Properties settings){
+
+        return MODE.equals(settings.getProperty("mode"));
+    }
+
+    /**
+     * The file URL with the {@code embedded.*} settings. Switching {@code embedded.mvStore} starts
+     * a new, empty database, because the two storage engines keep different files.
+     */
+    public static String url(Properties settings){
+
+        return "jdbc:h2:file:" + settings.getProperty("embedded.path", "~/test_soc") +
+                ";FILE_LOCK=" + settings.getProperty("embedded.fileLock", "FILE") +
+                ";CACHE_SIZE=" + settings.getProperty("embedded.cacheSizeKb", "65536") +
+                ";MV_STORE=" + settings.getProperty("embedded.mvStore", "true") +
+                ";WRITE_DELAY=" + settings.getProperty("embedded.writeDelayMillis", "500") +
+                ";DB_CLOSE_DELAY=" + settings.getProperty("embedded.closeDelaySeconds", "-1");
+    }
+
+    @Override
+    public void close() {
+
+        if (tcpServer != null)
+            tcpServer.stop();
+
+//        a connection of its own: SHUTDOWN closes it, which a pooled one would report as an error
+        try(Connection connection = DriverManager.getConnection(url(settings),
+                settings.getProperty("user"), settings.getProperty("password"))){
+            connection.createStatement().execute("SHUTDOWN");
+        } catch (Exception e) {
+            log.error("cannot shut the embedded database down", e);
+        }
+    }
+}
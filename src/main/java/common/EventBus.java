@@ -0,0 +1,39 @@
+package common;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * In-process publish/subscribe for the events in the {@code events} package.
+ * Listeners are called on the publishing thread, so they have to be quick
+ * and hand anything heavy over to their own executor.
+ */
+@Slf4j
+public class EventBus {
+
+    private final Map<Class<?>, List<Consumer<Object>>> listeners = new ConcurrentHashMap<>();
+
+    public <E> void subscribe(Class<E> eventType, Consumer<? super E> listener){
+
+        listeners.computeIfAbsent(eventType, type -> new CopyOnWriteArrayList<>())
+                .add(event -> listener.accept(eventType.cast(event)));
+    }
+
+    public void publish(Object event){
+
+        listeners.getOrDefault(event.getClass(), Collections.emptyList())
+                .forEach(listener -> {
+                    try {
+                        listener.accept(event);
+                    } catch (RuntimeException e) {
+                        log.error("listener failed on {}", event, e);
+                    }
+                });
+    }
+}
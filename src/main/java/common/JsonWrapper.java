@@ -1,15 +1,90 @@
 package common;
 
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.LocalDate;
+import java.time.LocalTime;
 
 /**
  * Created by wopqw on 05.11.16.
+ *
+ * One mapper for the whole application: it is thread-safe and caches
+ * the serializers it builds. Output is compact unless started with {@code -Djson.pretty=true}.
  */
 public class JsonWrapper {
 
+    private static final ObjectMapper MAPPER = new ObjectMapper()
+            .configure(JsonGenerator.Feature.AUTO_CLOSE_TARGET, false)
+            .registerModule(javaTimeModule());
+
+    private static final ObjectWriter WRITER = Boolean.getBoolean("json.pretty")
+            ? MAPPER.writerWithDefaultPrettyPrinter()
+            : MAPPER.writer();
+
     public static String toJson(Object object) throws JsonProcessingException {
 
-        return new ObjectMapper().writerWithDefaultPrettyPrinter().writeValueAsString(object);
+        return WRITER.writeValueAsString(object);
+    }
+
+    /**
+     * Leaves {@code outputStream} open.
+     */
+    public static void writeJson(Object object, OutputStream outputStream) throws IOException {
+
+        WRITER.writeValue(outputStream, object);
+    }
+
+    public static SimpleModule javaTimeModule() {
+
+        return new SimpleModule()
+                .addSerializer(LocalDate.class, new LocalDateSerializer())
+                .addSerializer(LocalTime.class, new LocalTimeSerializer());
+    }
+
+    /**
+     * The fields userScript.js reads, as Jackson used to write them before java.time needed a module.
+     */
+    private static class LocalDateSerializer extends StdSerializer<LocalDate> {
+
+        private LocalDateSerializer() {
+            super(LocalDate.class);
+        }
+
+        @Override
+        public void serialize(LocalDate date, JsonGenerator generator, SerializerProvider provider) throws IOException {
+
+            generator.writeStartObject();
+            generator.writeNumberField("year", date.getYear());
+            generator.writeStringField("month", date.getMonth().name());
+            generator.writeNumberField("monthValue", date.getMonthValue());
+            generator.writeNumberField("dayOfMonth", date.getDayOfMonth());
+            generator.writeEndObject();
+        }
+    }
+
+    private static class LocalTimeSerializer extends StdSerializer<LocalTime> {
+
+        private LocalTimeSerializer() {
+            super(LocalTime.class);
+        }
+
+        @Override
+        public void serialize(LocalTime time, JsonGenerator generator, SerializerProvider provider) throws IOException {
+
+            generator.writeStartObject();
+            generator.writeNumberField("hour", time.getHour());
+            generator.writeNumberField("minute", time.getMinute());
+            generator.writeNumberField("second", time.getSecond());
+            generator.writeNumberField("nano", time.getNano());
+            generator.writeEndObject();
+        }
     }
 }
@@ -0,0 +1,159 @@
+package common;
+
+import lombok.SneakyThrows;
+import lombok.extern.slf4j.Slf4j;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.zip.CRC32;
+
+/**
+ * Brings the schema up to date from {@code V<version>__<description>.sql} scripts in a directory.
+ * Versions already recorded in SchemaVersion are skipped, the rest run in version order and are
+ * recorded one by one. H2 commits DDL as it goes, so scripts are written to be safe to re-run
+ * ({@code IF NOT EXISTS}) in case the process dies half way through one.
+ */
+@Slf4j
+public class Migrations {
+
+    private static final Pattern SCRIPT = Pattern.compile("V(\\d+)__(\\w+)\\.sql");
+
+    private static final String CREATE_TABLE = "CREATE TABLE IF NOT EXISTS SchemaVersion (" +
+            "version INT PRIMARY KEY, " +
+            "description VARCHAR(255) NOT NULL, " +
+            "checksum BIGINT NOT NULL, " +
+            "applied_on TIMESTAMP NOT NULL)";
+
+    private final ConnectionPool connectionPool;
+    private final Path directory;
+
+    public Migrations(ConnectionPool connectionPool, String directory){
+
+        this.connectionPool = connectionPool;
+        this.directory = Paths.get(directory);
+    }
+
+    /**
+     * @return how many scripts were applied
+     */
+    @SneakyThrows
+    public int migrate(){
+
+        TreeMap<Integer, Path> scripts = scripts();
+        int applied = 0;
+
+        try(Connection connection = connectionPool.getConnection()){
+
+            connection.createStatement().execute(CREATE_TABLE);
+            Map<Integer, Long> done = applied(connection);
+
+            for (Map.Entry<Integer, Path> script : scripts.entrySet()) {
+
+                int version = script.getKey();
+                String text = new String(Files.readAllBytes(script.getValue()), StandardCharsets.UTF_8);
+                long checksum = checksum(text);
+
+                if (done.containsKey(version)) {
+                    if (done.get(version) != checksum)
+                        log.warn("{} was changed after it had been applied, the change is ignored", script.getValue().getFileName());
+                    continue;
+                }
+
+                log.info("applying {}", script.getValue().getFileName());
+
+                Statement statement = connection.createStatement();
+                for (String sql : statements(text))
+                    statement.execute(sql);
+
+                PreparedStatement record = connection.prepareStatement(
+                        "INSERT INTO SchemaVersion (version, description, checksum, applied_on) VALUES (?, ?, ?, ?)");
+                record.setInt(1, version);
+                record.setString(2, description(script.getValue()));
+                record.setLong(3, checksum);
+                record.setTimestamp(4, new Timestamp(System.currentTimeMillis()));
+                record.executeUpdate();
+
+                applied++;
+            }
+        }
+
+        if (applied > 0)
+            log.info("schema is at version {} after {} migration(s)", scripts.lastKey(), applied);
+        return applied;
+    }
+
+    /**
+     * The statements of a script: {@code --} comments dropped, split on {@code ;}.
+     */
+    static List<String> statements(String script){
+
+        String code = Arrays.stream(script.split("\n"))
+                .map(line -> line.contains("--") ? line.substring(0, line.indexOf("--")) : line)
+                .collect(Collectors.joining("\n"));
+
+        List<String> statements = new ArrayList<>();
+        for (String sql : code.split(";"))
+            if (!sql.trim().isEmpty())
+                statements.add(sql.trim());
+        return statements;
+    }
+
+    @SneakyThrows
+    private TreeMap<Integer, Path> scripts(){
+
+        TreeMap<Integer, Path> scripts = new TreeMap<>();
+
+        for (Path path : Files.list(directory).collect(Collectors.toList())) {
+
+            Matcher matcher = SCRIPT.matcher(path.getFileName().toString());
+            if (!matcher.matches())
+                continue;
+
+            Path previous = scripts.put(Integer.parseInt(matcher.group(1)), path);
+            if (previous != null)
+                throw new IllegalStateException("two migrations with one version: " + previous + " and " + path);
+        }
+        return scripts;
+    }
+
+    @SneakyThrows
+    private static Map<Integer, Long> applied(Connection connection){
+
+        Map<Integer, Long> applied = new HashMap<>();
+
+        ResultSet rs = connection.createStatement().executeQuery("SELECT version, checksum FROM SchemaVersion");
+        while (rs.next())
+            applied.put(rs.getInt(1), rs.getLong(2));
+        return applied;
+    }
+
+    private static String description(Path script){
+
+        Matcher matcher = SCRIPT.matcher(script.getFileName().toString());
+        matcher.matches();
+        return matcher.group(2).replace('_', ' ');
+    }
+
+    private static long checksum(String text){
+
+        CRC32 crc = new CRC32();
+        crc.update(text.replace("\r\n", "\n").getBytes(StandardCharsets.UTF_8));
+        return crc.getValue();
+    }
+}
@@ -0,0 +1,63 @@
+package common;
+
+import dao.UserDAO;
+import lombok.AllArgsConstructor;
+import model.Post;
+import model.PostView;
+import model.User;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Builds {@link PostView}s for a whole page of posts at once.
+ * Authors are fetched with one query and like and comment counts come with the posts,
+ * so a page costs the same number of queries whatever its size.
+ * Views are in the order of the posts, which the DAOs already return in page order.
+ */
+@AllArgsConstructor
+public class PostViewAssembler {
+
+    private final UserDAO userDAO;
+
+    public ArrayList<PostView> createPostViews(Collection<Post> posts){
+
+        ArrayList<PostView> postViews = new ArrayList<>(posts.size());
+
+        if(posts.isEmpty())
+            return postViews;
+
+        Set<Long> authorIds = posts.stream()
+                .map(Post::getAuthorId)
+                .collect(Collectors.toSet());
+
+        Map<Long, User> authors = userDAO.getByIds(authorIds);
+
+        PostView.PostViewBuilder postViewBuilder = PostView.builder();
+
+        posts.stream()
+                .filter(p -> authors.containsKey(p.getAuthorId()))
+                .forEach(p -> postViews.add(
+                        postViewBuilder
+                                .user(authors.get(p.getAuthorId()))
+                                .post(p)
+                                .likesCount(p.getLikesCount())
+                                .commentsCount(p.getCommentsCount())
+                                .build()));
+
+        return postViews;
+    }
+
+    /**
+     * Empty if the author of {@code post} is gone, as {@link #createPostViews} leaves such posts out.
+     */
+    public Optional<PostView> createPostView(Post post){
+
+        return createPostViews(Collections.singletonList(post)).stream().findFirst();
+    }
+}
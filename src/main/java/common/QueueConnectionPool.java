@@ -0,0 +1,105 @@
+package common;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.function.Supplier;
+
+/**
+ * Created by wopqw on 21.10.16.
+ *
+ * Fixed number of connections handed out from a blocking queue.
+ */
+public class QueueConnectionPool extends ConnectionPool {
+
+    private final BlockingQueue<Connection> freeConnections;
+    private final BlockingQueue<Connection> reservedConnections;
+    private volatile boolean isClosing = false;
+
+    QueueConnectionPool(int poolSize, Supplier<Connection> connectionSupplier) {
+
+        freeConnections = new ArrayBlockingQueue<>(poolSize);
+        reservedConnections = new ArrayBlockingQueue<>(poolSize);
+
+        for (int i = 0; i < poolSize; i++) {
+            freeConnections.add(connectionSupplier.get());
+        }
+    }
+
+    @Override
+    public void close() {
+
+        isClosing = true;
+
+        freeConnections.forEach(connection -> {
+            try {
+                forgetStatements(connection);
+                connection.close();
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        });
+    }
+
+    private ConnectionWrapper wrap(Connection connection) {
+
+        long borrowedAt = borrowed();
+
+        //noinspection Duplicates
+        return new ConnectionWrapper(connection, statementCache(connection)) {
+            @Override
+            public void close() throws SQLException {
+                if (connection.isClosed()) {
+                    throw new SQLException("Connection is already closed");
+                }
+
+                released(borrowedAt);
+
+                if (connection.isReadOnly()) {
+                    connection.setReadOnly(false);
+                }
+
+                if (reservedConnections.contains(this) && !reservedConnections.remove(this)) {
+                    throw new RuntimeException("Cannot close reserved connection");
+                }
+
+                if (isClosing) {
+                    forgetStatements(connection);
+                    connection.close();
+                } else if (!freeConnections.offer(connection)) {
+                    throw new RuntimeException("Cannot return connection to the pool");
+                }
+            }
+        };
+    }
+
+    @Override
+    protected Connection acquire() {
+
+        if (isClosing) {
+            throw new RuntimeException("Cannot get connection from the closing pool");
+        }
+
+        //noinspection Duplicates
+        try {
+            Connection connection = wrap(freeConnections.take());
+            reservedConnections.add(connection);
+            return connection;
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public int getActive() {
+
+        return reservedConnections.size();
+    }
+
+    @Override
+    public int getIdle() {
+
+        return freeConnections.size();
+    }
+}
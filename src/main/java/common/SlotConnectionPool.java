@@ -0,0 +1,326 @@
+package common;
+
+import lombok.SneakyThrows;
+import lombok.extern.slf4j.Slf4j;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Connections live in a fixed array of slots whose state is switched with CAS,
+ * so borrowing and returning never take a lock. A semaphore with one permit per slot
+ * bounds how long a caller waits. The pool opens {@code minSize} connections up front
+ * and grows up to {@code maxSize} under load; a housekeeping thread closes connections
+ * idle above {@code minSize} and reports connections held longer than the leak threshold
+ * together with the stack that borrowed them.
+ */
+@Slf4j
+public class SlotConnectionPool extends ConnectionPool {
+
+    private static final int EMPTY = 0;
+    private static final int FREE = 1;
+    private static final int IN_USE = 2;
+
+    private static final int VALIDATION_TIMEOUT_SECONDS = 1;
+    private static final long HOUSEKEEPING_PERIOD_MILLIS = 5000;
+
+    private final Slot[] slots;
+    private final Semaphore permits;
+    private final int minSize;
+    private final long acquireTimeoutMillis;
+    private final long validateAfterMillis;
+    private final long idleTimeoutMillis;
+    private final long leakThresholdMillis;
+    private final Supplier<Connection> connectionSupplier;
+    private final ScheduledExecutorService housekeeper = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "connection-pool-housekeeper");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private volatile boolean isClosing = false;
+
+    SlotConnectionPool(int minSize, int maxSize, long acquireTimeoutMillis, long validateAfterMillis,
+                       long idleTimeoutMillis, long leakThresholdMillis, Supplier<Connection> connectionSupplier) {
+
+        if (minSize < 0 || maxSize < 1 || minSize > maxSize)
+            throw new IllegalArgumentException("Bad pool size: min " + minSize + ", max " + maxSize);
+
+        this.slots = new Slot[maxSize];
+        this.permits = new Semaphore(maxSize, true);
+        this.minSize = minSize;
+        this.acquireTimeoutMillis = acquireTimeoutMillis;
+        this.validateAfterMillis = validateAfterMillis;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.leakThresholdMillis = leakThresholdMillis;
+        this.connectionSupplier = connectionSupplier;
+
+        for (int i = 0; i < maxSize; i++)
+            slots[i] = new Slot();
+
+        for (int i = 0; i < minSize; i++) {
+            slots[i].connection = connectionSupplier.get();
+            slots[i].lastUsed = System.currentTimeMillis();
+            if (slots[i].connection != null)
+                slots[i].state.set(FREE);
+        }
+
+        housekeeper.scheduleWithFixedDelay(this::houseKeeping,
+                HOUSEKEEPING_PERIOD_MILLIS, HOUSEKEEPING_PERIOD_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    @SneakyThrows
+    protected Connection acquire() {
+
+        if (isClosing) {
+            throw new RuntimeException("Cannot get connection from the closing pool");
+        }
+
+        if (!permits.tryAcquire(acquireTimeoutMillis, TimeUnit.MILLISECONDS)) {
+            throw new SQLTransientConnectionException(
+                    "No connection available within " + acquireTimeoutMillis + " ms, " + getActive() + " in use");
+        }
+
+        try {
+            return borrow();
+        } catch (RuntimeException | Error e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Holding a permit guarantees a free or empty slot, so this loop always ends.
+     */
+    private Connection borrow() {
+
+        int start = ThreadLocalRandom.current().nextInt(slots.length);
+
+        while (true) {
+
+            for (int i = 0; i < slots.length; i++) {
+                Slot slot = slots[(start + i) % slots.length];
+                if (slot.state.get() == FREE && slot.state.compareAndSet(FREE, IN_USE))
+                    return lend(slot, validate(slot));
+            }
+
+            for (Slot slot : slots) {
+                if (slot.state.get() == EMPTY && slot.state.compareAndSet(EMPTY, IN_USE))
+                    return lend(slot, open(slot));
+            }
+        }
+    }
+
+    private Connection validate(Slot slot) {
+
+        Connection connection = slot.connection;
+
+        try {
+            if (System.currentTimeMillis() - slot.lastUsed < validateAfterMillis && !connection.isClosed())
+                return connection;
+
+            if (connection.isValid(VALIDATION_TIMEOUT_SECONDS))
+                return connection;
+        } catch (SQLException e) {
+            log.warn("connection validation failed", e);
+        }
+
+        log.warn("dropping broken connection");
+        quietlyClose(connection);
+        return open(slot);
+    }
+
+    private Connection open(Slot slot) {
+
+        Connection connection = connectionSupplier.get();
+
+        if (connection == null) {
+            slot.connection = null;
+            slot.state.set(EMPTY);
+            throw new RuntimeException("Cannot open a new connection");
+        }
+
+        slot.connection = connection;
+        return connection;
+    }
+
+    private Connection lend(Slot slot, Connection connection) {
+
+        slot.borrowedAt = System.currentTimeMillis();
+        slot.borrowedBy = leakThresholdMillis > 0 ? new Exception("Connection borrowed here") : null;
+        slot.leakReported = false;
+
+        return wrap(slot, connection);
+    }
+
+    private ConnectionWrapper wrap(Slot slot, Connection connection) {
+
+        AtomicBoolean returned = new AtomicBoolean();
+        long borrowedAt = borrowed();
+
+        return new ConnectionWrapper(connection, statementCache(connection)) {
+            @Override
+            public void close() throws SQLException {
+
+                if (!returned.compareAndSet(false, true)) {
+                    throw new SQLException("Connection is already closed");
+                }
+
+                released(borrowedAt);
+
+                try {
+                    if (!connection.isClosed()) {
+                        if (connection.isReadOnly()) {
+                            connection.setReadOnly(false);
+                        }
+                        if (!connection.getAutoCommit()) {
+                            connection.rollback();
+                            connection.setAutoCommit(true);
+                        }
+                    }
+                } catch (SQLException e) {
+                    log.warn("cannot reset connection, dropping it", e);
+                    quietlyClose(connection);
+                }
+
+                giveBack(slot, connection);
+            }
+        };
+    }
+
+    private void giveBack(Slot slot, Connection connection) {
+
+        slot.borrowedBy = null;
+        slot.lastUsed = System.currentTimeMillis();
+
+        boolean broken;
+        try {
+            broken = connection.isClosed();
+        } catch (SQLException e) {
+            broken = true;
+        }
+
+        if (isClosing || broken) {
+            quietlyClose(connection);
+            slot.connection = null;
+            slot.state.set(EMPTY);
+        } else {
+            slot.state.set(FREE);
+        }
+
+        permits.release();
+    }
+
+    private void houseKeeping() {
+
+        long now = System.currentTimeMillis();
+
+        for (Slot slot : slots) {
+
+            int state = slot.state.get();
+
+            if (state == IN_USE && leakThresholdMillis > 0 && !slot.leakReported
+                    && now - slot.borrowedAt > leakThresholdMillis) {
+
+                Exception borrowedBy = slot.borrowedBy;
+                if (borrowedBy != null) {
+                    slot.leakReported = true;
+                    log.warn("connection held for {} ms, possible leak", now - slot.borrowedAt, borrowedBy);
+                }
+            }
+
+            if (state == FREE && now - slot.lastUsed > idleTimeoutMillis && getOpen() > minSize
+                    && slot.state.compareAndSet(FREE, IN_USE)) {
+
+                quietlyClose(slot.connection);
+                slot.connection = null;
+                slot.state.set(EMPTY);
+            }
+        }
+    }
+
+    @Override
+    public int getActive() {
+
+        return count(IN_USE);
+    }
+
+    @Override
+    public int getIdle() {
+
+        return count(FREE);
+    }
+
+    public int getOpen() {
+
+        return getActive() + getIdle();
+    }
+
+    public int getMaxSize() {
+
+        return slots.length;
+    }
+
+    public int getWaiting() {
+
+        return permits.getQueueLength();
+    }
+
+    private int count(int state) {
+
+        int count = 0;
+        for (Slot slot : slots) {
+            if (slot.state.get() == state)
+                count++;
+        }
+        return count;
+    }
+
+    @Override
+    public void close() {
+
+        isClosing = true;
+        housekeeper.shutdownNow();
+
+        for (Slot slot : slots) {
+            if (slot.state.compareAndSet(FREE, IN_USE)) {
+                quietlyClose(slot.connection);
+                slot.connection = null;
+                slot.state.set(EMPTY);
+            }
+        }
+    }
+
+    private void quietlyClose(Connection connection) {
+
+        if (connection == null)
+            return;
+
+        forgetStatements(connection);
+
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            log.warn("cannot close connection", e);
+        }
+    }
+
+    private static class Slot {
+
+        private final AtomicInteger state = new AtomicInteger(EMPTY);
+        private volatile Connection connection;
+        private volatile long lastUsed;
+        private volatile long borrowedAt;
+        private volatile Exception borrowedBy;
+        private volatile boolean leakReported;
+    }
+}
@@ -0,0 +1,96 @@
+package common;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * LRU of prepared statements of one physical connection, keyed by SQL.
+ * A pooled connection is used by one thread at a time, so the cache is not synchronized.
+ * Statements handed out ignore {@code close()}: they stay open until evicted
+ * or until the physical connection itself is closed.
+ */
+@Slf4j
+class StatementCache {
+
+    private final Connection connection;
+    private final LongAdder hits;
+    private final LongAdder misses;
+    private final Map<String, PreparedStatement> statements;
+
+    StatementCache(Connection connection, int maxSize, LongAdder hits, LongAdder misses) {
+
+        this.connection = connection;
+        this.hits = hits;
+        this.misses = misses;
+        this.statements = new LinkedHashMap<String, PreparedStatement>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+
+                if (size() <= maxSize)
+                    return false;
+
+                try {
+                    eldest.getValue().unwrap(PreparedStatement.class).close();
+                } catch (SQLException e) {
+                    log.warn("cannot close evicted statement", e);
+                }
+                return true;
+            }
+        };
+    }
+
+    PreparedStatement prepare(String sql, int autoGeneratedKeys) throws SQLException {
+
+        String key = autoGeneratedKeys + ":" + sql;
+        PreparedStatement statement = statements.get(key);
+
+        if (statement != null && !statement.isClosed()) {
+            hits.increment();
+            statement.clearParameters();
+            statement.clearBatch();
+            return statement;
+        }
+
+        misses.increment();
+        statement = keepOpen(connection.prepareStatement(sql, autoGeneratedKeys));
+        statements.put(key, statement);
+        return statement;
+    }
+
+    int size() {
+
+        return statements.size();
+    }
+
+    private static PreparedStatement keepOpen(PreparedStatement statement) {
+
+        return (PreparedStatement) Proxy.newProxyInstance(
+                PreparedStatement.class.getClassLoader(),
+                new Class<?>[]{PreparedStatement.class},
+                (proxy, method, args) -> {
+
+                    switch (method.getName()) {
+                        case "close":
+                            return null;
+                        case "unwrap":
+                            if (((Class<?>) args[0]).isInstance(statement))
+                                return statement;
+                            break;
+                    }
+
+                    try {
+                        return method.invoke(statement, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                });
+    }
+}
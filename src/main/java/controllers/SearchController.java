@@ -3,18 +3,16 @@ package controllers;
 import common.BaseServlet;
 import lombok.extern.slf4j.Slf4j;
 import model.Comment;
-import model.Post;
 import model.PostView;
+import model.SearchPage;
 import model.User;
+import search.SearchService;
 
 import javax.servlet.ServletException;
 import javax.servlet.annotation.WebServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.Collection;
-import java.util.Comparator;
 
 /**
  * Created by wopqw on 05.12.16.
@@ -29,22 +27,21 @@ public class SearchController extends BaseServlet {
         log.info("doget in search");
 
         String text = req.getParameter("srch-term");
+        long visitorId = ((User) req.getSession().getAttribute(SUSER)).getId();
 
-//        usersearch
+//        the first page of each kind, the rest is fetched from /webapi/search/
 
-        ArrayList<User> possibleUsers = (ArrayList<User>) userDAO.searchUser(text);
-        req.setAttribute("possibleUsers", possibleUsers);
+        SearchPage<User> possibleUsers = searchService.searchUsers(text, null, SearchService.DEFAULT_LIMIT);
+        req.setAttribute("possibleUsers", possibleUsers.getItems());
+        req.setAttribute("nextUsers", possibleUsers.getNext());
 
-//        postssearch
+        SearchPage<PostView> possiblePosts = searchService.searchPosts(text, null, SearchService.DEFAULT_LIMIT, visitorId);
+        req.setAttribute("possiblePosts", possiblePosts.getItems());
+        req.setAttribute("nextPosts", possiblePosts.getNext());
 
-        ArrayList<Post> possiblePosts = (ArrayList<Post>) postDAO.searchPosts(text);
-        ArrayList<PostView> possiblePostViews = createPostViews(possiblePosts);
-        req.setAttribute("possiblePosts", possiblePostViews);
-
-//        commentssearch
-
-        ArrayList<Comment> possibleComments = (ArrayList<Comment>) commentDAO.searchComment(text);
-        req.setAttribute("possibleComments", possibleComments);
+        SearchPage<Comment> possibleComments = searchService.searchComments(text, null, SearchService.DEFAULT_LIMIT);
+        req.setAttribute("possibleComments", possibleComments.getItems());
+        req.setAttribute("nextComments", possibleComments.getNext());
 
         req.getRequestDispatcher("/WEB-INF/searchResults.jsp").forward(req,resp);
     }
@@ -53,26 +50,4 @@ public class SearchController extends BaseServlet {
     protected void doPost(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
         super.doPost(req, resp);
     }
-
-    @SuppressWarnings("Duplicates")
-    private ArrayList<PostView> createPostViews(Collection<Post> posts){
-
-        ArrayList<PostView> postViews = new ArrayList<>();
-
-        PostView.PostViewBuilder postViewBuilder = PostView.builder();
-
-        //noinspection OptionalGetWithoutIsPresent
-        posts.forEach(p -> postViews.add(
-                postViewBuilder
-                        .user(userDAO.getById(p.getAuthorId()).get())
-                        .post(p)
-                        .likesCount(likeDAO.countByPostId(p.getId()))
-                        .commentsCount(commentDAO.countByPostId(p.getId()))
-                        .build()));
-
-//        postViews.stream().sorted(Comparator.comparing(pV -> pV.getPost().getId()));
-        postViews.sort(Comparator.comparing(pv -> pv.getPost().getId()));
-        postViews.forEach(pv -> log.info("id: {}", pv.getPost().getId()));
-        return postViews;
-    }
 }
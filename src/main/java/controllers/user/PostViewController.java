@@ -2,7 +2,6 @@ package controllers.user;
 
 import common.BaseServlet;
 import lombok.extern.slf4j.Slf4j;
-import model.Post;
 import model.PostView;
 
 import javax.servlet.ServletException;
@@ -24,21 +23,13 @@ public class PostViewController extends BaseServlet {
 
         Long postId = Long.parseLong(req.getPathInfo().substring(1));
 
-        Post p;
-        Optional<Post> optPost = postDAO.getPostById(postId);
+//        a post whose author is gone is as good as gone
+        Optional<PostView> optPostView = postDAO.getPostById(postId)
+                .flatMap(postViewAssembler::createPostView);
 
-        if (optPost.isPresent()){
+        if (optPostView.isPresent()){
 
-            p = optPost.get();
-            PostView.PostViewBuilder postViewBuilder = PostView.builder();
-
-            PostView postView =postViewBuilder.user(userDAO.getById(p.getAuthorId()).get())
-                                                .post(p)
-                                                .likesCount(likeDAO.countByPostId(p.getId()))
-                                                .commentsCount(commentDAO.countByPostId(p.getId()))
-                                                .build();
-
-            req.setAttribute("postView",postView);
+            req.setAttribute("postView",optPostView.get());
 
             req.getRequestDispatcher("/WEB-INF/user/postView.jsp").forward(req,resp);
 
@@ -0,0 +1,262 @@
+package dao;
+
+import lombok.AllArgsConstructor;
+import model.User;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import java.util.stream.Collectors;
+
+/**
+ * Keeps users found by id or username for {@code ttlMillis}, at most {@code maxSize} of them.
+ * Changes made through this DAO evict the user at once; changes made elsewhere
+ * show up when the entry expires. Absent users are not cached.
+ * When full, expired entries go first, then arbitrary ones.
+ * A user read while this DAO updated or deleted it is not kept: the copy may predate the change.
+ */
+public class CachingUserDAO implements UserDAO {
+
+    private final UserDAO userDAO;
+    private final int maxSize;
+    private final long ttlMillis;
+    private final LongSupplier clock;
+
+    private final Map<Long, Entry> byId = new ConcurrentHashMap<>();
+    private final Map<String, Long> idsByUsername = new ConcurrentHashMap<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+//    counts updates and deletes, so that a read can tell whether one ran while it loaded
+    private final AtomicLong invalidations = new AtomicLong();
+
+    public CachingUserDAO(UserDAO userDAO, int maxSize, long ttl, TimeUnit unit){
+
+        this(userDAO, maxSize, unit.toMillis(ttl), System::currentTimeMillis);
+    }
+
+    CachingUserDAO(UserDAO userDAO, int maxSize, long ttlMillis, LongSupplier clock){
+
+        this.userDAO = userDAO;
+        this.maxSize = maxSize;
+        this.ttlMillis = ttlMillis;
+        this.clock = clock;
+    }
+
+    @Override
+    public Optional<User> getById(long id) {
+
+        User user = lookup(id);
+
+        if (user != null)
+            return Optional.of(user);
+
+        long generation = invalidations.get();
+        Optional<User> optUser = userDAO.getById(id);
+        optUser.ifPresent(u -> put(u, generation));
+        return optUser;
+    }
+
+    @Override
+    public Map<Long, User> getByIds(Collection<Long> ids) {
+
+        Map<Long, User> users = new HashMap<>();
+
+        List<Long> missing = ids.stream()
+                .filter(id -> {
+                    User user = lookup(id);
+                    if (user != null)
+                        users.put(id, user);
+                    return user == null;
+                })
+                .collect(Collectors.toList());
+
+        if (!missing.isEmpty()) {
+            long generation = invalidations.get();
+            Map<Long, User> loaded = userDAO.getByIds(missing);
+            loaded.values().forEach(u -> put(u, generation));
+            users.putAll(loaded);
+        }
+
+        return users;
+    }
+
+    @Override
+    public Optional<User> getByUsername(String username) {
+
+        Long id = idsByUsername.get(username);
+        User user = id == null ? null : lookup(id);
+
+        if (user != null && user.getUsername().equals(username))
+            return Optional.of(user);
+
+        if (id == null)
+            misses.increment();
+
+        long generation = invalidations.get();
+        Optional<User> optUser = userDAO.getByUsername(username);
+        optUser.ifPresent(u -> put(u, generation));
+        return optUser;
+    }
+
+    @Override
+    public String getUsernameByUserId(long userId) {
+
+        //noinspection OptionalGetWithoutIsPresent
+        return getById(userId).get().getUsername();
+    }
+
+    @Override
+    public User updateUser(User user) {
+
+        evict(user.getId());
+        User updated = userDAO.updateUser(user);
+        invalidate(user.getId());
+
+        return updated;
+    }
+
+    @Override
+    public void deleteUser(User user) {
+
+        evict(user.getId());
+        userDAO.deleteUser(user);
+        invalidate(user.getId());
+    }
+
+    @Override
+    public void addUser(User user) {
+
+        userDAO.addUser(user);
+    }
+
+    @Override
+    public Collection<User> getAll() {
+
+        return userDAO.getAll();
+    }
+
+    @Override
+    public Collection<String> getUserRole(User user) {
+
+        return userDAO.getUserRole(user);
+    }
+
+    @Override
+    public boolean isRegistered(String username, String hash) {
+
+        return userDAO.isRegistered(username, hash);
+    }
+
+    @Override
+    public Collection<User> searchUser(String text, long offsetId, int limit) {
+
+        return userDAO.searchUser(text, offsetId, limit);
+    }
+
+    public long getHits() {
+
+        return hits.sum();
+    }
+
+    public long getMisses() {
+
+        return misses.sum();
+    }
+
+    public double getHitRatio() {
+
+        long hits = getHits();
+        long total = hits + getMisses();
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    public int size() {
+
+        return byId.size();
+    }
+
+    private User lookup(long id) {
+
+        Entry entry = byId.get(id);
+
+        if (entry == null || entry.expiresAt < clock.getAsLong()) {
+            if (entry != null)
+                evict(id);
+            misses.increment();
+            return null;
+        }
+
+        hits.increment();
+        return entry.user;
+    }
+
+    /**
+     * Caches {@code user}, read when {@link #invalidations} was at {@code generation}.
+     * An update or delete since may have come after the read, so the entry is dropped again:
+     * one that comes after this check evicts it itself.
+     */
+    private void put(User user, long generation) {
+
+        if (byId.size() >= maxSize)
+            makeRoom();
+
+        Entry entry = new Entry(user, clock.getAsLong() + ttlMillis);
+        Entry previous = byId.put(user.getId(), entry);
+
+        if (previous != null && !previous.user.getUsername().equals(user.getUsername()))
+            idsByUsername.remove(previous.user.getUsername(), user.getId());
+        idsByUsername.put(user.getUsername(), user.getId());
+
+        if (invalidations.get() != generation && byId.remove(user.getId(), entry))
+            idsByUsername.remove(user.getUsername(), user.getId());
+    }
+
+    private void invalidate(long id) {
+
+        invalidations.incrementAndGet();
+        evict(id);
+    }
+
+    private void evict(long id) {
+
+        Entry entry = byId.remove(id);
+
+        if (entry != null)
+            idsByUsername.remove(entry.user.getUsername(), id);
+    }
+
+    private void makeRoom() {
+
+        long now = clock.getAsLong();
+        byId.entrySet().removeIf(e -> {
+            boolean expired = e.getValue().expiresAt < now;
+            if (expired)
+                idsByUsername.remove(e.getValue().user.getUsername(), e.getKey());
+            return expired;
+        });
+
+//        drop a tenth at once so that the next puts do not scan again
+        int target = maxSize - Math.max(1, maxSize / 10);
+        Iterator<Map.Entry<Long, Entry>> iterator = byId.entrySet().iterator();
+        while (byId.size() > target && iterator.hasNext()) {
+            Map.Entry<Long, Entry> e = iterator.next();
+            iterator.remove();
+            idsByUsername.remove(e.getValue().user.getUsername(), e.getKey());
+        }
+    }
+
+    @AllArgsConstructor
+    private static class Entry {
+
+        private final User user;
+        private final long expiresAt;
+    }
+}
@@ -5,6 +5,9 @@ import model.Comment;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashSet;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 /**
@@ -14,12 +17,30 @@ public interface CommentDAO {
 
     Collection<Comment> getAll();
 
-    boolean addComment(Comment comment);
+    /**
+     * @return {@code comment} with the id it was stored under
+     */
+    Comment addComment(Comment comment);
+
+    /**
+     * Completes with the id of the stored comment; writers that batch may complete it later.
+     */
+    default CompletableFuture<Long> addCommentAsync(Comment comment){
+
+        return CompletableFuture.completedFuture(addComment(comment).getId());
+    }
 
     boolean deleteComment(long commentId);
 
     boolean isReadyToUpdate(long postId, long offsetId);
 
+    default Map<Long, Comment> getByIds(Collection<Long> ids){
+
+        return getAll().stream()
+                .filter(c -> ids.contains(c.getId()))
+                .collect(Collectors.toMap(Comment::getId, Function.identity()));
+    }
+
     default Collection<Comment> getCommentsFromPost(long postId, long offsetId, long limit){
 
         return getAll().stream()
@@ -43,6 +64,16 @@ public interface CommentDAO {
                 .count();
     }
 
-    Collection<Comment> searchComment(String text);
+    default Map<Long, Long> countByPostIds(Collection<Long> postIds){
+
+        return getAll().stream()
+                .filter(c -> postIds.contains(c.getPostId()))
+                .collect(Collectors.groupingBy(Comment::getPostId, Collectors.counting()));
+    }
+
+    /**
+     * At most {@code limit} matches with ids below {@code offsetId}, newest first.
+     */
+    Collection<Comment> searchComment(String text, long offsetId, int limit);
 
 }
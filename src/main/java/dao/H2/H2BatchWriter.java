@@ -0,0 +1,323 @@
+package dao.H2;
+
+import common.ConnectionPool;
+import lombok.SneakyThrows;
+import lombok.extern.slf4j.Slf4j;
+import model.Comment;
+import model.Like;
+import model.Post;
+
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Time;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Group commit for new posts, comments and likes.
+ * Writes are queued and a single thread drains up to {@code maxRows} of them, waiting at most
+ * {@code maxDelayMillis} for the batch to fill, into one transaction of batched INSERTs,
+ * so concurrent writers share a commit instead of paying for one each.
+ * Futures complete after the commit, on a thread of their own so that slow event
+ * listeners do not hold up the next batch. If a batch fails its writes are retried
+ * one by one, and only the ones that fail alone fail their futures.
+ */
+@Slf4j
+public class H2BatchWriter implements AutoCloseable {
+
+    private static final String INSERT_POST =
+            "INSERT INTO Post (authorId, date, time, text, privacy, expandable) VALUES (?, ?, ?, ?, ?, ?)";
+    private static final String INSERT_COMMENT =
+            "INSERT INTO Comment (from_userId, from_username, to_postId, text, date, time) VALUES (?, ?, ?, ?, ?, ?)";
+    private static final String INSERT_LIKE =
+            "INSERT INTO Likes (from_userId, to_postId) SELECT ?, ? FROM DUAL " +
+            "WHERE NOT EXISTS (SELECT 1 FROM Likes WHERE from_userId = ? AND to_postId = ?)";
+
+    private final ConnectionPool connectionPool;
+    private final int maxRows;
+    private final long maxDelayNanos;
+
+    private final BlockingQueue<Write<?>> queue;
+    private final Thread writer;
+    private final ExecutorService completer = Executors.newSingleThreadExecutor();
+    private volatile boolean running = true;
+
+    public H2BatchWriter(ConnectionPool connectionPool, int maxRows, long maxDelayMillis){
+
+        this.connectionPool = connectionPool;
+        this.maxRows = maxRows;
+        this.maxDelayNanos = TimeUnit.MILLISECONDS.toNanos(maxDelayMillis);
+//        callers block once a few batches are waiting
+        this.queue = new ArrayBlockingQueue<>(maxRows * 16);
+
+        writer = new Thread(this::drain, "batch-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * @return the id of the stored post
+     */
+    public CompletableFuture<Long> addPost(Post post){
+
+        return enqueue(new Write<Long>(post));
+    }
+
+    /**
+     * @return the id of the stored comment
+     */
+    public CompletableFuture<Long> addComment(Comment comment){
+
+        return enqueue(new Write<Long>(comment));
+    }
+
+    /**
+     * @return false if the like was there already
+     */
+    public CompletableFuture<Boolean> addLike(Like like){
+
+        return enqueue(new Write<Boolean>(like));
+    }
+
+    public int countQueued(){
+
+        return queue.size();
+    }
+
+    /**
+     * Writes everything queued so far and stops.
+     */
+    @Override
+    public void close() {
+
+        running = false;
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        List<Write<?>> rest = new ArrayList<>();
+        queue.drainTo(rest);
+        if (!rest.isEmpty())
+            write(rest);
+
+        completer.shutdown();
+    }
+
+    /**
+     * {@link CompletableFuture#join()} that throws what the write threw.
+     */
+    @SneakyThrows
+    static <T> T await(CompletableFuture<T> future){
+
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            throw e.getCause();
+        }
+    }
+
+    private <T> CompletableFuture<T> enqueue(Write<T> write){
+
+        if (!running)
+            throw new IllegalStateException("batch writer is closed");
+
+        try {
+            queue.put(write);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted while queueing a write", e);
+        }
+        return write.future;
+    }
+
+    private void drain(){
+
+        List<Write<?>> batch = new ArrayList<>(maxRows);
+
+        while (running) {
+            try {
+                Write<?> first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null)
+                    continue;
+                batch.add(first);
+
+                long deadline = System.nanoTime() + maxDelayNanos;
+                while (batch.size() < maxRows) {
+                    Write<?> next = queue.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                    if (next == null)
+                        break;
+                    batch.add(next);
+                    queue.drainTo(batch, maxRows - batch.size());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                running = false;
+            }
+
+            if (!batch.isEmpty())
+                write(batch);
+            batch = new ArrayList<>(maxRows);
+        }
+    }
+
+    private void write(List<Write<?>> batch){
+
+        try {
+            try (Connection connection = connectionPool.getConnection()) {
+                Transactions.inTransaction(connection, () -> insert(connection, batch));
+            }
+        } catch (SQLException | RuntimeException e) {
+            if (batch.size() == 1) {
+                Write<?> write = batch.get(0);
+                completer.execute(() -> write.future.completeExceptionally(e));
+                return;
+            }
+            log.warn("batch of {} write(s) failed, retrying one by one", batch.size(), e);
+            for (Write<?> write : batch)
+                write(Collections.singletonList(write));
+            return;
+        }
+
+        completer.execute(() -> batch.forEach(Write::complete));
+    }
+
+    private Void insert(Connection connection, List<Write<?>> batch) throws SQLException {
+
+        List<Write<?>> posts = new ArrayList<>();
+        List<Write<?>> comments = new ArrayList<>();
+        List<Write<?>> likes = new ArrayList<>();
+
+        for (Write<?> write : batch) {
+            if (write.row instanceof Post)
+                posts.add(write);
+            else if (write.row instanceof Comment)
+                comments.add(write);
+            else
+                likes.add(write);
+        }
+
+        if (!posts.isEmpty())
+            insertPosts(connection, posts);
+        if (!comments.isEmpty())
+            insertComments(connection, comments);
+        if (!likes.isEmpty())
+            insertLikes(connection, likes);
+        return null;
+    }
+
+    private void insertPosts(Connection connection, List<Write<?>> writes) throws SQLException {
+
+        PreparedStatement preparedStatement = connection.prepareStatement(INSERT_POST, Statement.RETURN_GENERATED_KEYS);
+
+        for (Write<?> write : writes) {
+            Post post = (Post) write.row;
+            preparedStatement.setLong(1, post.getAuthorId());
+            preparedStatement.setDate(2, Date.valueOf(post.getDate()));
+            preparedStatement.setTime(3, Time.valueOf(post.getTime()));
+            preparedStatement.setString(4, post.getText());
+            preparedStatement.setBoolean(5, post.isPrivacy());
+            preparedStatement.setBoolean(6, post.isExpandable());
+            preparedStatement.addBatch();
+        }
+
+        preparedStatement.executeBatch();
+        readKeys(preparedStatement, writes);
+    }
+
+    private void insertComments(Connection connection, List<Write<?>> writes) throws SQLException {
+
+        PreparedStatement preparedStatement = connection.prepareStatement(INSERT_COMMENT, Statement.RETURN_GENERATED_KEYS);
+        Map<Long, Integer> added = new HashMap<>();
+
+        for (Write<?> write : writes) {
+            Comment comment = (Comment) write.row;
+            preparedStatement.setLong(1, comment.getUserId());
+            preparedStatement.setString(2, comment.getUsername());
+            preparedStatement.setLong(3, comment.getPostId());
+            preparedStatement.setString(4, comment.getText());
+            preparedStatement.setDate(5, Date.valueOf(comment.getDate()));
+            preparedStatement.setTime(6, Time.valueOf(comment.getTime()));
+            preparedStatement.addBatch();
+
+            added.merge(comment.getPostId(), 1, Integer::sum);
+        }
+
+        preparedStatement.executeBatch();
+        readKeys(preparedStatement, writes);
+
+        for (Map.Entry<Long, Integer> post : added.entrySet())
+            H2PostCounters.adjust(connection, H2PostCounters.COMMENTS, post.getKey(), post.getValue());
+    }
+
+    private void insertLikes(Connection connection, List<Write<?>> writes) throws SQLException {
+
+        PreparedStatement preparedStatement = connection.prepareStatement(INSERT_LIKE);
+        Map<Long, Integer> added = new HashMap<>();
+
+        for (Write<?> write : writes) {
+            Like like = (Like) write.row;
+            preparedStatement.setLong(1, like.getFromUserId());
+            preparedStatement.setLong(2, like.getToPostId());
+            preparedStatement.setLong(3, like.getFromUserId());
+            preparedStatement.setLong(4, like.getToPostId());
+            preparedStatement.addBatch();
+        }
+
+        int[] counts = preparedStatement.executeBatch();
+
+        for (int i = 0; i < writes.size(); i++) {
+            boolean inserted = counts[i] > 0;
+            writes.get(i).result = inserted;
+            if (inserted)
+                added.merge(((Like) writes.get(i).row).getToPostId(), 1, Integer::sum);
+        }
+
+        for (Map.Entry<Long, Integer> post : added.entrySet())
+            H2PostCounters.adjust(connection, H2PostCounters.LIKES, post.getKey(), post.getValue());
+    }
+
+    private static void readKeys(PreparedStatement preparedStatement, List<Write<?>> writes) throws SQLException {
+
+        ResultSet keys = preparedStatement.getGeneratedKeys();
+
+        for (Write<?> write : writes) {
+            if (!keys.next())
+                throw new SQLException("fewer generated keys than rows in the batch");
+            write.result = keys.getLong(1);
+        }
+    }
+
+    private static class Write<T> {
+
+        private final Object row;
+        private final CompletableFuture<T> future = new CompletableFuture<>();
+        private Object result;
+
+        private Write(Object row){
+
+            this.row = row;
+        }
+
+        @SuppressWarnings("unchecked")
+        private void complete(){
+
+            future.complete((T) result);
+        }
+    }
+}
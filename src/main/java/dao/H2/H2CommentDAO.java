@@ -1,7 +1,10 @@
 package dao.H2;
 
 import common.ConnectionPool;
+import common.EventBus;
 import dao.CommentDAO;
+import events.CommentAddedEvent;
+import events.CommentDeletedEvent;
 import lombok.AllArgsConstructor;
 import lombok.SneakyThrows;
 import model.Comment;
@@ -9,6 +12,9 @@ import model.Comment;
 import java.sql.*;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Created by wopqw on 09.11.16.
@@ -17,6 +23,19 @@ import java.util.Collection;
 public class H2CommentDAO implements CommentDAO {
 
     private ConnectionPool connectionPool;
+    private EventBus eventBus;
+//    null writes every comment in its own transaction
+    private H2BatchWriter batchWriter;
+
+    public H2CommentDAO(ConnectionPool connectionPool){
+
+        this(connectionPool, new EventBus());
+    }
+
+    public H2CommentDAO(ConnectionPool connectionPool, EventBus eventBus){
+
+        this(connectionPool, eventBus, null);
+    }
 
     @Override
     @SneakyThrows
@@ -35,13 +54,18 @@ public class H2CommentDAO implements CommentDAO {
 
     @Override
     @SneakyThrows
-    public boolean addComment(Comment comment) {
+    public Comment addComment(Comment comment) {
+
+        if(batchWriter != null) {
+            H2BatchWriter.await(addCommentAsync(comment));
+            return comment;
+        }
 
         try(Connection connection = connectionPool.getConnection()){
 
             String sql = "INSERT INTO Comment (from_userId, from_username, to_postId, text, date, time) VALUES (?,?, ?, ?, ?, ?)";
 
-            PreparedStatement preparedStatement = connection.prepareStatement(sql);
+            PreparedStatement preparedStatement = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
 
             preparedStatement.setLong(1, comment.getUserId());
             preparedStatement.setString(2, comment.getUsername());
@@ -50,24 +74,68 @@ public class H2CommentDAO implements CommentDAO {
             preparedStatement.setDate(5, Date.valueOf(comment.getDate()));
             preparedStatement.setTime(6, Time.valueOf(comment.getTime()));
 
-            return preparedStatement.executeUpdate()>0;
+            long id = Transactions.inTransaction(connection, () -> {
+                preparedStatement.executeUpdate();
+                H2PostCounters.adjust(connection, H2PostCounters.COMMENTS, comment.getPostId(), 1);
+
+                ResultSet keys = preparedStatement.getGeneratedKeys();
+                keys.next();
+                return keys.getLong(1);
+            });
 
+            comment.setId(id);
         }
+
+        eventBus.publish(new CommentAddedEvent(comment));
+        return comment;
+    }
+
+    @Override
+    public CompletableFuture<Long> addCommentAsync(Comment comment) {
+
+        if(batchWriter == null)
+            return CommentDAO.super.addCommentAsync(comment);
+
+        return batchWriter.addComment(comment).thenApply(id -> {
+            comment.setId(id);
+            eventBus.publish(new CommentAddedEvent(comment));
+            return id;
+        });
     }
 
     @Override
     @SneakyThrows
     public boolean deleteComment(long commentId) {
 
+        boolean deleted;
+
         try(Connection connection = connectionPool.getConnection()){
 
+            PreparedStatement select = connection.prepareStatement("SELECT to_postId FROM Comment WHERE id = ?");
+
             String sql = "DELETE FROM Comment WHERE id = ?";
             PreparedStatement preparedStatement = connection.prepareStatement(sql);
 
+            select.setLong(1, commentId);
             preparedStatement.setLong(1, commentId);
 
-            return preparedStatement.executeUpdate()>0;
+            deleted = Transactions.inTransaction(connection, () -> {
+                ResultSet rs = select.executeQuery();
+                if (!rs.next())
+                    return false;
+
+                long postId = rs.getLong(1);
+                boolean removed = preparedStatement.executeUpdate()>0;
+                if (removed)
+                    H2PostCounters.adjust(connection, H2PostCounters.COMMENTS, postId, -1);
+                return removed;
+            });
         }
+
+        if (deleted)
+            eventBus.publish(new CommentDeletedEvent(commentId));
+
+        return deleted;
     }
 
     @Override
@@ -90,9 +158,9 @@ public class H2CommentDAO implements CommentDAO {
     @SneakyThrows
     public long countByPostId(long postId){
 
-        try(Connection connection = connectionPool.getConnection()){
+        try(Connection connection = connectionPool.getReadConnection()){
 
-            String sql = "SELECT COUNT(id) FROM Comment WHERE to_postId = ?";
+            String sql = "SELECT comments_count FROM Post WHERE id = ?";
             final PreparedStatement preparedStatement = connection.prepareStatement(sql);
 
             preparedStatement.setLong(1, postId);
@@ -100,16 +168,40 @@ public class H2CommentDAO implements CommentDAO {
             final ResultSet rs = preparedStatement.executeQuery();
 
             if(rs.next())
-                return rs.getInt(1);
+                return rs.getLong(1);
             return 0;
         }
     }
 
+    @Override
+    @SneakyThrows
+    public Map<Long, Long> countByPostIds(Collection<Long> postIds){
+
+        Map<Long, Long> counts = new HashMap<>();
+
+        if(postIds.isEmpty())
+            return counts;
+
+        try(Connection connection = connectionPool.getReadConnection()){
+
+            String sql = "SELECT id, comments_count FROM Post WHERE id IN (SELECT X FROM TABLE(X BIGINT = ?))";
+            final PreparedStatement preparedStatement = connection.prepareStatement(sql);
+
+            preparedStatement.setObject(1, postIds.toArray());
+
+            final ResultSet rs = preparedStatement.executeQuery();
+
+            while (rs.next())
+                counts.put(rs.getLong(1), rs.getLong(2));
+            return counts;
+        }
+    }
+
     @Override
     @SneakyThrows
     public Collection<Comment> getCommentsFromPost(long postId, long offsetId, long limit){
 
-        try(Connection connection = connectionPool.getConnection()){
+        try(Connection connection = connectionPool.getReadConnection()){
 
             String sql = "SELECT * FROM Comment WHERE to_postId = ? AND id > ? LIMIT ?";
             final PreparedStatement preparedStatement = connection.prepareStatement(sql);
@@ -126,17 +218,41 @@ public class H2CommentDAO implements CommentDAO {
 
     @Override
     @SneakyThrows
-    public Collection<Comment> searchComment(String text){
+    public Map<Long, Comment> getByIds(Collection<Long> ids){
+
+        Map<Long, Comment> comments = new HashMap<>();
+
+        if (ids.isEmpty())
+            return comments;
 
         try(Connection connection = connectionPool.getConnection()){
 
-            String sql = "SELECT * FROM Comment WHERE LOWER(text) LIKE LOWER(?)";
+            String sql = "SELECT * FROM Comment WHERE id IN (SELECT X FROM TABLE(X BIGINT = ?))";
+
+            final PreparedStatement preparedStatement = connection.prepareStatement(sql);
+
+            preparedStatement.setObject(1, ids.toArray());
+
+            createCollection(preparedStatement.executeQuery()).forEach(c -> comments.put(c.getId(), c));
+            return comments;
+        }
+    }
+
+    @Override
+    @SneakyThrows
+    public Collection<Comment> searchComment(String text, long offsetId, int limit){
+
+        try(Connection connection = connectionPool.getReadConnection()){
+
+            String sql = "SELECT * FROM Comment WHERE LOWER(text) LIKE LOWER(?) AND id<? ORDER BY id DESC LIMIT ?";
 
             final PreparedStatement preparedStatement = connection.prepareStatement(sql);
 
             text = "%"+text+"%";
 
             preparedStatement.setString(1, text);
+            preparedStatement.setLong(2, offsetId);
+            preparedStatement.setInt(3, limit);
 
             return createCollection(preparedStatement.executeQuery());
         }
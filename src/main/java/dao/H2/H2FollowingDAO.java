@@ -1,7 +1,9 @@
 package dao.H2;
 
 import common.ConnectionPool;
+import common.EventBus;
 import dao.FollowingDAO;
+import events.FollowingChangedEvent;
 import lombok.AllArgsConstructor;
 import lombok.SneakyThrows;
 import model.Following;
@@ -19,6 +21,12 @@ import java.util.HashSet;
 public class H2FollowingDAO implements FollowingDAO {
 
     private ConnectionPool connectionPool;
+    private EventBus eventBus;
+
+    public H2FollowingDAO(ConnectionPool connectionPool){
+
+        this(connectionPool, new EventBus());
+    }
 
     @Override
     @SneakyThrows
@@ -73,28 +81,12 @@ public class H2FollowingDAO implements FollowingDAO {
     @SneakyThrows
     public boolean revertFollowing(Following following) {
 
-        try( Connection connection = connectionPool.getConnection()){
-
-//            String sql = "INSERT INTO Following (follower_id, follow_id) VALUES (?,?)";
-            String sql = "SELECT * FROM Following WHERE follower_id = ? AND follow_id = ?";
-
-            PreparedStatement preparedStatement = connection.prepareStatement(sql);
-
-            preparedStatement.setLong(1, following.getFollowerId());
-            preparedStatement.setLong(2, following.getFollowId());
-
-            ResultSet rs = preparedStatement.executeQuery();
-            int count = 0;
-            while (rs.next())
-                count++;
-            if(count==0){
-                addFollowing(following);
-                return true;
-            } else {
-                deleteFollowing(following);
-                return false;
-            }
-
+        if(isFirstFollowSecond(following.getFollowerId(), following.getFollowId())){
+            deleteFollowing(following);
+            return false;
+        } else {
+            addFollowing(following);
+            return true;
         }
     }
 
@@ -135,12 +127,16 @@ public class H2FollowingDAO implements FollowingDAO {
 
             preparedStatement.executeUpdate();
         }
+
+        eventBus.publish(new FollowingChangedEvent(following, true));
     }
 
     @Override
     @SneakyThrows
     public void deleteFollowing(Following following) {
 
+        boolean deleted = false;
+
         try(Connection connection = connectionPool.getConnection()){
 
             String sql = "DELETE FROM Following WHERE follower_id = ? AND follow_id = ?";
@@ -149,15 +145,19 @@ public class H2FollowingDAO implements FollowingDAO {
             preparedStatement.setLong(1,following.getFollowerId());
             preparedStatement.setLong(2,following.getFollowId());
 
-            preparedStatement.executeUpdate();
+            if(preparedStatement.executeUpdate()>0)
+                deleted = true;
         }
+
+        if(deleted)
+            eventBus.publish(new FollowingChangedEvent(following, false));
     }
 
     @Override
     @SneakyThrows
     public int countFollowersById(long followId){
 
-        try(Connection connection = connectionPool.getConnection()){
+        try(Connection connection = connectionPool.getReadConnection()){
 
             String sql = "SELECT COUNT(follower_id) FROM Following WHERE follow_id = ?";
             final PreparedStatement preparedStatement = connection.prepareStatement(sql);
@@ -176,7 +176,7 @@ public class H2FollowingDAO implements FollowingDAO {
     @SneakyThrows
     public int countFollowingsById(long followerId){
 
-        try(Connection connection = connectionPool.getConnection()){
+        try(Connection connection = connectionPool.getReadConnection()){
 
             String sql = "SELECT COUNT(follow_id) FROM Following WHERE follower_id = ?";
             final PreparedStatement preparedStatement = connection.prepareStatement(sql);
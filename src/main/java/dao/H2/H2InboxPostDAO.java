@@ -0,0 +1,364 @@
+package dao.H2;
+
+import common.ConnectionPool;
+import common.EventBus;
+import dao.PostQuery;
+import events.FollowingChangedEvent;
+import events.PostAddedEvent;
+import lombok.SneakyThrows;
+import lombok.extern.slf4j.Slf4j;
+import model.Following;
+import model.Post;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link H2PostDAO} with a materialized home timeline.
+ * New posts are written into the TimelineInbox rows of the author and every follower,
+ * so a timeline page is a range scan over the (user_id, post_id) primary key.
+ * Authors with at least {@code celebrityThreshold} followers are not fanned out;
+ * their posts are read from Post at query time and merged in.
+ * Every user keeps at most {@code inboxSize} rows; older pages, and timelines of users with no rows,
+ * are read from Post as before.
+ * The table and its first fill come from the V5 migration.
+ */
+@Slf4j
+public class H2InboxPostDAO extends H2PostDAO implements AutoCloseable {
+
+    private static final String SELECT_FROM_INBOX = "SELECT p.id, p.authorId, p.date, p.time, p.text, p.privacy, p.expandable, " +
+            "p.likes_count, p.comments_count " +
+            "FROM TimelineInbox i JOIN Post p ON p.id = i.post_id WHERE i.user_id = ? AND ";
+
+    private static final String SELECT_FROM_CELEBRITIES = "SELECT id, authorId, date, time, text, privacy, expandable, likes_count, comments_count " +
+            "FROM Post WHERE authorId IN (SELECT follow_id FROM Following WHERE follower_id = ? " +
+            "AND follow_id IN (SELECT X FROM TABLE(X BIGINT = ?))) AND ";
+
+    private static final long TRIM_PERIOD_MINUTES = 10;
+
+    private final int inboxSize;
+    private final int celebrityThreshold;
+    private final Set<Long> celebrities = ConcurrentHashMap.newKeySet();
+    private final ScheduledExecutorService trimmer = Executors.newSingleThreadScheduledExecutor();
+
+    public H2InboxPostDAO(ConnectionPool connectionPool, EventBus eventBus, int inboxSize, int celebrityThreshold){
+
+        this(connectionPool, eventBus, null, inboxSize, celebrityThreshold);
+    }
+
+    public H2InboxPostDAO(ConnectionPool connectionPool, EventBus eventBus, H2BatchWriter batchWriter,
+                          int inboxSize, int celebrityThreshold){
+
+        super(connectionPool, eventBus, batchWriter);
+
+        this.inboxSize = inboxSize;
+        this.celebrityThreshold = celebrityThreshold;
+
+        loadCelebrities();
+
+        eventBus.subscribe(PostAddedEvent.class, e -> fanOut(e.getPost()));
+        eventBus.subscribe(FollowingChangedEvent.class, e -> {
+            if (e.isFollowed())
+                follow(e.getFollowing());
+            else
+                unfollow(e.getFollowing());
+        });
+
+        trimmer.scheduleWithFixedDelay(this::trim, 0, TRIM_PERIOD_MINUTES, TimeUnit.MINUTES);
+    }
+
+    /**
+     * Timelines are read from the inbox; a public-only timeline or a user's own posts from Post, as before.
+     * The inbox only covers ids from its oldest row up, so whatever part of a page lies below that,
+     * trimmed away or never filled in, is read from Post and Following.
+     */
+    @Override
+    public List<Post> find(PostQuery query) {
+
+        if (query.getScope() != PostQuery.Scope.TIMELINE || query.isPublicOnly())
+            return super.find(query);
+
+        String operator = query.getDirection() == PostQuery.Direction.NEWER ? " > ?" : " < ?";
+
+        List<Post> page = merge(
+                queryInbox(query.getUserId(), "i.post_id" + operator, query.getCursor(), query.getLimit()),
+                queryCelebrities(query.getUserId(), "id" + operator, query.getCursor(), query.getLimit()),
+                query.getLimit());
+
+//        read after the page: a trim in between only raises it, and rows from it up were all there
+        Optional<Long> floor = queryFloor(query.getUserId());
+
+        if (!floor.isPresent())
+            return super.find(query);
+
+//        celebrity posts below the floor would stand in for the trimmed posts next to them
+        page.removeIf(p -> p.getId() < floor.get());
+
+        if (page.size() == query.getLimit())
+            return query.inPageOrder(page);
+
+        if (query.getDirection() == PostQuery.Direction.NEWER)
+            return query.getCursor() + 1 >= floor.get() ? query.inPageOrder(page) : super.find(query);
+
+//        past the end of the inbox: read the rest the old way
+        page.addAll(super.find(query.toBuilder()
+                .before(Math.min(query.getCursor(), floor.get()))
+                .limit(query.getLimit() - page.size())
+                .build()));
+        return page;
+    }
+
+    @Override
+    public boolean isTimelineReadyToUpdate(long userId, long offsetId) {
+
+        return !find(PostQuery.timeline(userId).after(offsetId).limit(1).build()).isEmpty();
+    }
+
+    @SneakyThrows
+    private List<Post> queryInbox(long userId, String condition, long offsetId, int limit){
+
+        try(Connection connection = connectionPool.getReadConnection()){
+
+            String sql = SELECT_FROM_INBOX + condition + " ORDER BY i.post_id DESC LIMIT ?";
+
+            PreparedStatement preparedStatement = connection.prepareStatement(sql);
+
+            preparedStatement.setLong(1, userId);
+            preparedStatement.setLong(2, offsetId);
+            preparedStatement.setInt(3, limit);
+
+            return createCollection(preparedStatement.executeQuery());
+        }
+    }
+
+    @SneakyThrows
+    private List<Post> queryCelebrities(long userId, String condition, long offsetId, int limit){
+
+        if (celebrities.isEmpty())
+            return new ArrayList<>();
+
+        try(Connection connection = connectionPool.getReadConnection()){
+
+            String sql = SELECT_FROM_CELEBRITIES + condition + " ORDER BY id DESC LIMIT ?";
+
+            PreparedStatement preparedStatement = connection.prepareStatement(sql);
+
+            preparedStatement.setLong(1, userId);
+            preparedStatement.setObject(2, celebrities.toArray());
+            preparedStatement.setLong(3, offsetId);
+            preparedStatement.setInt(4, limit);
+
+            return createCollection(preparedStatement.executeQuery());
+        }
+    }
+
+    /**
+     * The oldest post the inbox of {@code userId} still has, empty if it has none.
+     */
+    @SneakyThrows
+    private Optional<Long> queryFloor(long userId){
+
+        try(Connection connection = connectionPool.getReadConnection()){
+
+            String sql = "SELECT MIN(post_id) FROM TimelineInbox WHERE user_id = ?";
+
+            PreparedStatement preparedStatement = connection.prepareStatement(sql);
+
+            preparedStatement.setLong(1, userId);
+
+            ResultSet rs = preparedStatement.executeQuery();
+            rs.next();
+            long floor = rs.getLong(1);
+            return rs.wasNull() ? Optional.empty() : Optional.of(floor);
+        }
+    }
+
+    private List<Post> merge(List<Post> inbox, List<Post> celebrityPosts, int limit){
+
+        if (celebrityPosts.isEmpty())
+            return inbox;
+
+        Map<Long, Post> merged = new TreeMap<>(Comparator.reverseOrder());
+
+        inbox.forEach(p -> merged.put(p.getId(), p));
+        celebrityPosts.forEach(p -> merged.put(p.getId(), p));
+
+        List<Post> page = new ArrayList<>();
+        merged.values().stream().limit(limit).forEach(page::add);
+        return page;
+    }
+
+    @SneakyThrows
+    private void fanOut(Post post){
+
+        try(Connection connection = connectionPool.getConnection()){
+
+            String self = "MERGE INTO TimelineInbox (user_id, post_id, author_id) KEY (user_id, post_id) VALUES (?, ?, ?)";
+
+            PreparedStatement preparedStatement = connection.prepareStatement(self);
+
+            preparedStatement.setLong(1, post.getAuthorId());
+            preparedStatement.setLong(2, post.getId());
+            preparedStatement.setLong(3, post.getAuthorId());
+            preparedStatement.executeUpdate();
+
+            if (celebrities.contains(post.getAuthorId()))
+                return;
+
+            String followers = "MERGE INTO TimelineInbox (user_id, post_id, author_id) KEY (user_id, post_id) " +
+                    "SELECT follower_id, ?, ? FROM Following WHERE follow_id = ?";
+
+            preparedStatement = connection.prepareStatement(followers);
+
+            preparedStatement.setLong(1, post.getId());
+            preparedStatement.setLong(2, post.getAuthorId());
+            preparedStatement.setLong(3, post.getAuthorId());
+            preparedStatement.executeUpdate();
+        }
+    }
+
+    private void follow(Following following){
+
+        if (countFollowers(following.getFollowId()) >= celebrityThreshold) {
+            celebrities.add(following.getFollowId());
+        } else {
+            backfill(following.getFollowId(), "SELECT ?, id, authorId FROM Post WHERE authorId = ? " +
+                    "ORDER BY id DESC LIMIT ?", following.getFollowerId());
+        }
+    }
+
+    @SneakyThrows
+    private void unfollow(Following following){
+
+        try(Connection connection = connectionPool.getConnection()){
+
+            String sql = "DELETE FROM TimelineInbox WHERE user_id = ? AND author_id = ?";
+
+            PreparedStatement preparedStatement = connection.prepareStatement(sql);
+
+            preparedStatement.setLong(1, following.getFollowerId());
+            preparedStatement.setLong(2, following.getFollowId());
+            preparedStatement.executeUpdate();
+        }
+
+        if (celebrities.contains(following.getFollowId())
+                && countFollowers(following.getFollowId()) < celebrityThreshold) {
+
+//            no longer a celebrity: its recent posts have to be in the inboxes again
+            celebrities.remove(following.getFollowId());
+            backfill(following.getFollowId(), "SELECT f.follower_id, p.id, p.authorId FROM Following f " +
+                    "JOIN (SELECT id, authorId FROM Post WHERE authorId = ? ORDER BY id DESC LIMIT ?) p " +
+                    "ON f.follow_id = p.authorId", null);
+        }
+    }
+
+    @SneakyThrows
+    private void backfill(long authorId, String select, Long followerId){
+
+        try(Connection connection = connectionPool.getConnection()){
+
+            String sql = "MERGE INTO TimelineInbox (user_id, post_id, author_id) KEY (user_id, post_id) " + select;
+
+            PreparedStatement preparedStatement = connection.prepareStatement(sql);
+
+            int index = 1;
+            if (followerId != null)
+                preparedStatement.setLong(index++, followerId);
+            preparedStatement.setLong(index++, authorId);
+            preparedStatement.setInt(index, inboxSize);
+
+            preparedStatement.executeUpdate();
+        }
+    }
+
+    @SneakyThrows
+    private int countFollowers(long followId){
+
+        try(Connection connection = connectionPool.getConnection()){
+
+            String sql = "SELECT COUNT(follower_id) FROM Following WHERE follow_id = ?";
+
+            PreparedStatement preparedStatement = connection.prepareStatement(sql);
+
+            preparedStatement.setLong(1, followId);
+
+            ResultSet rs = preparedStatement.executeQuery();
+            if (rs.next())
+                return rs.getInt(1);
+            return 0;
+        }
+    }
+
+    @SneakyThrows
+    private void loadCelebrities(){
+
+        try(Connection connection = connectionPool.getConnection()){
+
+            String sql = "SELECT follow_id FROM Following GROUP BY follow_id HAVING COUNT(follower_id) >= ?";
+
+            PreparedStatement preparedStatement = connection.prepareStatement(sql);
+
+            preparedStatement.setInt(1, celebrityThreshold);
+
+            ResultSet rs = preparedStatement.executeQuery();
+            while (rs.next())
+                celebrities.add(rs.getLong(1));
+        }
+        log.info("{} author(s) are read on fan-out-on-read", celebrities.size());
+    }
+
+    /**
+     * Cuts every inbox that grew past {@code inboxSize} down to its newest rows.
+     */
+    private void trim(){
+
+        try(Connection connection = connectionPool.getConnection()){
+
+            PreparedStatement overfull = connection.prepareStatement(
+                    "SELECT user_id FROM TimelineInbox GROUP BY user_id HAVING COUNT(post_id) > ?");
+            overfull.setInt(1, inboxSize);
+
+            ResultSet users = overfull.executeQuery();
+
+            PreparedStatement cutoff = connection.prepareStatement(
+                    "SELECT post_id FROM TimelineInbox WHERE user_id = ? ORDER BY post_id DESC LIMIT 1 OFFSET ?");
+            PreparedStatement delete = connection.prepareStatement(
+                    "DELETE FROM TimelineInbox WHERE user_id = ? AND post_id < ?");
+
+            while (users.next()) {
+
+                long userId = users.getLong(1);
+
+                cutoff.setLong(1, userId);
+                cutoff.setInt(2, inboxSize - 1);
+
+                ResultSet rs = cutoff.executeQuery();
+                if (rs.next()) {
+                    delete.setLong(1, userId);
+                    delete.setLong(2, rs.getLong(1));
+                    delete.executeUpdate();
+                }
+            }
+        } catch (Exception e) {
+            log.error("cannot trim TimelineInbox", e);
+        }
+    }
+
+    @Override
+    public void close() {
+
+        trimmer.shutdownNow();
+    }
+}
@@ -1,7 +1,9 @@
 package dao.H2;
 
 import common.ConnectionPool;
+import common.EventBus;
 import dao.LikeDAO;
+import events.LikeChangedEvent;
 import lombok.AllArgsConstructor;
 import lombok.SneakyThrows;
 import model.Like;
@@ -11,7 +13,11 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.Statement;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Created by wopqw on 08.11.16.
@@ -20,6 +26,19 @@ import java.util.HashSet;
 public class H2LikeDAO implements LikeDAO {
 
     private ConnectionPool connectionPool;
+    private EventBus eventBus;
+//    null writes every like in its own transaction
+    private H2BatchWriter batchWriter;
+
+    public H2LikeDAO(ConnectionPool connectionPool){
+
+        this(connectionPool, new EventBus());
+    }
+
+    public H2LikeDAO(ConnectionPool connectionPool, EventBus eventBus){
+
+        this(connectionPool, eventBus, null);
+    }
 
     @Override
     @SneakyThrows
@@ -39,6 +58,11 @@ public class H2LikeDAO implements LikeDAO {
     @SneakyThrows
     public boolean addLike(Like like){
 
+        if(batchWriter != null)
+            return H2BatchWriter.await(addLikeAsync(like));
+
+        boolean added;
+
         try(Connection connection = connectionPool.getConnection()){
 
             String sql = "INSERT INTO Likes (from_userId, to_postId) VALUES (?, ?) ";
@@ -47,14 +71,38 @@ public class H2LikeDAO implements LikeDAO {
             preparedStatement.setLong(1,like.getFromUserId());
             preparedStatement.setLong(2,like.getToPostId());
 
-            return preparedStatement.executeUpdate()>0;
+            added = Transactions.inTransaction(connection, () -> {
+                boolean inserted = preparedStatement.executeUpdate()>0;
+                if (inserted)
+                    H2PostCounters.adjust(connection, H2PostCounters.LIKES, like.getToPostId(), 1);
+                return inserted;
+            });
         }
+
+        if(added)
+            eventBus.publish(new LikeChangedEvent(like, true));
+        return added;
+    }
+
+    @Override
+    public CompletableFuture<Boolean> addLikeAsync(Like like){
+
+        if(batchWriter == null)
+            return LikeDAO.super.addLikeAsync(like);
+
+        return batchWriter.addLike(like).thenApply(added -> {
+            if(added)
+                eventBus.publish(new LikeChangedEvent(like, true));
+            return added;
+        });
     }
 
     @Override
     @SneakyThrows
     public boolean removeLike(Like like){
 
+        boolean removed;
+
         try(Connection connection = connectionPool.getConnection()){
 
             String sql = "DELETE FROM Likes WHERE from_userId = ? AND to_postId = ?";
@@ -64,8 +112,56 @@ public class H2LikeDAO implements LikeDAO {
             preparedStatement.setLong(1, like.getFromUserId());
             preparedStatement.setLong(2, like.getToPostId());
 
-            return preparedStatement.executeUpdate()>0;
+            removed = Transactions.inTransaction(connection, () -> {
+                boolean deleted = preparedStatement.executeUpdate()>0;
+                if (deleted)
+                    H2PostCounters.adjust(connection, H2PostCounters.LIKES, like.getToPostId(), -1);
+                return deleted;
+            });
+        }
+
+        if(removed)
+            eventBus.publish(new LikeChangedEvent(like, false));
+        return removed;
+    }
+
+    @Override
+    @SneakyThrows
+    public void saveLikes(Map<Like, Boolean> changes){
+
+        if (changes.isEmpty())
+            return;
+
+        try(Connection connection = connectionPool.getConnection()){
+
+            PreparedStatement insert = connection.prepareStatement(
+                    "MERGE INTO Likes (from_userId, to_postId) KEY (from_userId, to_postId) " +
+                    "SELECT u.id, p.id FROM User u, Post p WHERE u.id = ? AND p.id = ?");
+            PreparedStatement delete = connection.prepareStatement(
+                    "DELETE FROM Likes WHERE from_userId = ? AND to_postId = ?");
+            PreparedStatement recount = connection.prepareStatement(
+                    "UPDATE Post SET likes_count = (SELECT COUNT(*) FROM Likes WHERE to_postId = Post.id) " +
+                    "WHERE id IN (SELECT X FROM TABLE(X BIGINT = ?))");
+
+            Set<Long> postIds = new HashSet<>();
+
+            for (Map.Entry<Like, Boolean> change : changes.entrySet()) {
+
+                PreparedStatement statement = change.getValue() ? insert : delete;
+                statement.setLong(1, change.getKey().getFromUserId());
+                statement.setLong(2, change.getKey().getToPostId());
+                statement.addBatch();
+
+                postIds.add(change.getKey().getToPostId());
+            }
 
+            recount.setObject(1, postIds.toArray());
+
+            Transactions.inTransaction(connection, () -> {
+                insert.executeBatch();
+                delete.executeBatch();
+                return recount.executeUpdate();
+            });
         }
     }
 
@@ -124,7 +220,7 @@ public class H2LikeDAO implements LikeDAO {
 
         try(Connection connection = connectionPool.getConnection()){
 
-            String sql = "SELECT COUNT(from_userId) FROM Likes WHERE to_postId = ?";
+            String sql = "SELECT likes_count FROM Post WHERE id = ?";
 
             final PreparedStatement preparedStatement = connection.prepareStatement(sql);
 
@@ -138,6 +234,31 @@ public class H2LikeDAO implements LikeDAO {
         }
     }
 
+    @Override
+    @SneakyThrows
+    public Map<Long, Long> countByPostIds(Collection<Long> postIds){
+
+        Map<Long, Long> counts = new HashMap<>();
+
+        if(postIds.isEmpty())
+            return counts;
+
+        try(Connection connection = connectionPool.getConnection()){
+
+            String sql = "SELECT id, likes_count FROM Post WHERE id IN (SELECT X FROM TABLE(X BIGINT = ?))";
+
+            final PreparedStatement preparedStatement = connection.prepareStatement(sql);
+
+            preparedStatement.setObject(1, postIds.toArray());
+
+            final ResultSet rs = preparedStatement.executeQuery();
+
+            while (rs.next())
+                counts.put(rs.getLong(1), rs.getLong(2));
+            return counts;
+        }
+    }
+
     @SneakyThrows
     private Collection<Like> createCollection(ResultSet rs){
 
@@ -0,0 +1,101 @@
+package dao.H2;
+
+import common.ConnectionPool;
+import lombok.SneakyThrows;
+import lombok.extern.slf4j.Slf4j;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Post.likes_count and Post.comments_count, which {@link H2LikeDAO} and {@link H2CommentDAO}
+ * change in the same transaction as the rows they count, so that post queries return counts
+ * without a COUNT per post.
+ * The columns come from migration V2; this recounts on a schedule
+ * to fix drift left by writes that went around the DAOs.
+ */
+@Slf4j
+public class H2PostCounters implements AutoCloseable {
+
+    static final String LIKES = "likes_count";
+    static final String COMMENTS = "comments_count";
+
+//    posts recounted per statement, so that a repair never locks the whole table
+    private static final int REPAIR_BATCH = 1000;
+
+    private static final String RECOUNT_LIKES = "(SELECT COUNT(*) FROM Likes WHERE to_postId = Post.id)";
+    private static final String RECOUNT_COMMENTS = "(SELECT COUNT(*) FROM Comment WHERE to_postId = Post.id)";
+
+    private final ConnectionPool connectionPool;
+    private final ScheduledExecutorService repairer = Executors.newSingleThreadScheduledExecutor();
+
+    public H2PostCounters(ConnectionPool connectionPool){
+
+        this.connectionPool = connectionPool;
+    }
+
+    public void scheduleRepair(long period, TimeUnit unit){
+
+        repairer.scheduleWithFixedDelay(() -> {
+            try {
+                repair();
+            } catch (Exception e) {
+                log.error("cannot repair post counters", e);
+            }
+        }, period, period, unit);
+    }
+
+    /**
+     * Recounts likes and comments of every post.
+     *
+     * @return how many posts had wrong counters
+     */
+    @SneakyThrows
+    public int repair(){
+
+        int repaired = 0;
+
+        try(Connection connection = connectionPool.getConnection()){
+
+            ResultSet rs = connection.createStatement().executeQuery("SELECT MAX(id) FROM Post");
+            long maxId = rs.next() ? rs.getLong(1) : 0;
+
+            PreparedStatement preparedStatement = connection.prepareStatement(
+                    "UPDATE Post SET " + LIKES + " = " + RECOUNT_LIKES + ", " + COMMENTS + " = " + RECOUNT_COMMENTS +
+                    " WHERE id >= ? AND id < ? AND (" + LIKES + " <> " + RECOUNT_LIKES +
+                    " OR " + COMMENTS + " <> " + RECOUNT_COMMENTS + ")");
+
+            for (long from = 0; from <= maxId; from += REPAIR_BATCH) {
+                preparedStatement.setLong(1, from);
+                preparedStatement.setLong(2, from + REPAIR_BATCH);
+                repaired += preparedStatement.executeUpdate();
+            }
+        }
+
+        if (repaired > 0)
+            log.warn("repaired like and comment counters of {} post(s)", repaired);
+        return repaired;
+    }
+
+    @Override
+    public void close(){
+
+        repairer.shutdownNow();
+    }
+
+    static void adjust(Connection connection, String counter, long postId, int delta) throws SQLException {
+
+        PreparedStatement preparedStatement = connection.prepareStatement(
+                "UPDATE Post SET " + counter + " = " + counter + " + ? WHERE id = ?");
+
+        preparedStatement.setInt(1, delta);
+        preparedStatement.setLong(2, postId);
+
+        preparedStatement.executeUpdate();
+    }
+}
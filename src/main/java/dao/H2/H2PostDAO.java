@@ -1,7 +1,11 @@
 package dao.H2;
 
 import common.ConnectionPool;
+import common.EventBus;
 import dao.PostDAO;
+import dao.PostQuery;
+import events.PostAddedEvent;
+import events.PostDeletedEvent;
 import lombok.AllArgsConstructor;
 import lombok.SneakyThrows;
 import model.Post;
@@ -9,7 +13,11 @@ import model.Post;
 import java.sql.*;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Created by wopqw on 05.11.16.
@@ -17,7 +25,43 @@ import java.util.Optional;
 @AllArgsConstructor
 public class H2PostDAO implements PostDAO {
 
-    private ConnectionPool connectionPool;
+    static final String COLUMNS = "p.id, p.authorId, p.date, p.time, p.text, p.privacy, p.expandable, " +
+            "p.likes_count, p.comments_count";
+
+    /**
+     * A statement for every shape of {@link PostQuery}, newest first off the (authorId, id DESC) index.
+     * The SQL of a shape never changes, so each is prepared once per connection and then found in its statement cache.
+     */
+    private static final String[] FIND = new String[PostQuery.Scope.values().length * PostQuery.Direction.values().length * 2];
+
+    static {
+        for (PostQuery.Scope scope : PostQuery.Scope.values())
+            for (PostQuery.Direction direction : PostQuery.Direction.values())
+                for (boolean publicOnly : new boolean[]{false, true}) {
+
+                    String condition = condition(direction, publicOnly);
+
+                    FIND[shape(scope, direction, publicOnly)] = scope == PostQuery.Scope.TIMELINE
+                            ? "SELECT * FROM (" + timeline(COLUMNS, condition) + ") ORDER BY id DESC LIMIT ?"
+                            : "SELECT " + COLUMNS + " FROM Post p WHERE p.authorId = ? AND " + condition +
+                            " ORDER BY p.id DESC LIMIT ?";
+                }
+    }
+
+    protected ConnectionPool connectionPool;
+    private EventBus eventBus;
+//    null writes every post in its own transaction
+    private H2BatchWriter batchWriter;
+
+    public H2PostDAO(ConnectionPool connectionPool){
+
+        this(connectionPool, new EventBus());
+    }
+
+    public H2PostDAO(ConnectionPool connectionPool, EventBus eventBus){
+
+        this(connectionPool, eventBus, null);
+    }
 
     @Override
     @SneakyThrows
@@ -35,37 +79,41 @@ public class H2PostDAO implements PostDAO {
 
     @Override
     @SneakyThrows
-    public Collection<Post> getUserTimeline(long userId, long offsetId, int limit) {
+    public List<Post> find(PostQuery query) {
 
-        try(Connection connection = connectionPool.getConnection()){
+        try(Connection connection = connectionPool.getReadConnection()){
 
-            String sql = "SELECT id, authorId, date, time, text, privacy, expandable " +
-                    "FROM Post WHERE (authorId IN " +
-                    "(SELECT follow_id FROM Following WHERE follower_id = ?) OR authorId=?) AND " +
-                    "id>? ORDER BY id DESC LIMIT ?";
+            PreparedStatement preparedStatement = connection.prepareStatement(FIND[shape(query)]);
 
-            PreparedStatement preparedStatement = connection.prepareStatement(sql);
-
-            preparedStatement.setLong(1,userId);
-            preparedStatement.setLong(2,userId);
-            preparedStatement.setLong(3,offsetId);
-            preparedStatement.setInt(4,limit);
-
-            ResultSet rs = preparedStatement.executeQuery();
+            int index;
+            if (query.getScope() == PostQuery.Scope.TIMELINE) {
+                setTimeline(preparedStatement, query.getUserId(), query.getCursor());
+                index = 6;
+            } else {
+                preparedStatement.setLong(1, query.getUserId());
+                preparedStatement.setLong(2, query.getCursor());
+                index = 3;
+            }
+            preparedStatement.setInt(index, query.getLimit());
 
-            return createCollection(rs);
+            return query.inPageOrder(createCollection(preparedStatement.executeQuery()));
         }
     }
 
     @Override
     @SneakyThrows
-    public void addPost(Post post) {
+    public Post addPost(Post post) {
+
+        if(batchWriter != null) {
+            H2BatchWriter.await(addPostAsync(post));
+            return post;
+        }
 
         try(Connection connection = connectionPool.getConnection()){
 
             String sql = "INSERT INTO Post (authorId, date, time, text, privacy, expandable) VALUES (?, ?, ?, ?, ?, ?)";
 
-            PreparedStatement preparedStatement = connection.prepareStatement(sql);
+            PreparedStatement preparedStatement = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
 
             preparedStatement.setLong(1, post.getAuthorId());
             preparedStatement.setDate(2, Date.valueOf(post.getDate()));
@@ -75,7 +123,27 @@ public class H2PostDAO implements PostDAO {
             preparedStatement.setBoolean(6, post.isExpandable());
 
             preparedStatement.executeUpdate();
+
+            ResultSet keys = preparedStatement.getGeneratedKeys();
+            if(keys.next())
+                post.setId(keys.getLong(1));
         }
+
+        eventBus.publish(new PostAddedEvent(post));
+        return post;
+    }
+
+    @Override
+    public CompletableFuture<Long> addPostAsync(Post post) {
+
+        if(batchWriter == null)
+            return PostDAO.super.addPostAsync(post);
+
+        return batchWriter.addPost(post).thenApply(id -> {
+            post.setId(id);
+            eventBus.publish(new PostAddedEvent(post));
+            return id;
+        });
     }
 
     @Override
@@ -98,58 +166,29 @@ public class H2PostDAO implements PostDAO {
 
     @Override
     @SneakyThrows
-    public Collection<Post> getAllByUser(long userId, long offsetId, int limit){
+    public boolean isPostsReadyToUpdate(long userId, long offsetId){
 
         try(Connection connection = connectionPool.getConnection()){
 
-            String sql = "SELECT id, authorId, date, time, text, privacy, expandable "+
-                    "FROM Post WHERE authorId = ? AND id>? ORDER BY id DESC LIMIT ?";
+            String sql = "SELECT id FROM Post WHERE authorId=? AND id>?";
             PreparedStatement preparedStatement = connection.prepareStatement(sql);
 
             preparedStatement.setLong(1, userId);
             preparedStatement.setLong(2, offsetId);
-            preparedStatement.setInt(3, limit);
 
-            return createCollection(preparedStatement.executeQuery());
+            return preparedStatement.executeQuery().isBeforeFirst();
         }
     }
 
-    @Override
-    @SneakyThrows
-    public boolean isPostsReadyToUpdate(long userId, long offsetId){
-
-        String sql = "SELECT id FROM Post WHERE authorId=? AND id>?";
-
-        return isReadyToUpdate(userId, offsetId, sql, 2);
-    }
-
     @Override
     @SneakyThrows
     public boolean isTimelineReadyToUpdate(long userId, long offsetId){
 
-        String sql = "SELECT id FROM Post WHERE (authorId IN " +
-                "(SELECT follow_id FROM Following WHERE follower_id = ?) " +
-                "OR Post.authorId = ?) AND id >?";
-        return isReadyToUpdate(userId, offsetId, sql, 3);
-    }
-
-    @SneakyThrows
-    private boolean isReadyToUpdate(long userId, long offsetId, String sql, int params){
+        try(Connection connection = connectionPool.getReadConnection()){
 
-        try(Connection connection = connectionPool.getConnection()){
-            PreparedStatement preparedStatement = connection.prepareStatement(sql);
+            PreparedStatement preparedStatement = connection.prepareStatement(timeline("p.id", "p.id > ?"));
 
-            preparedStatement.setLong(1, userId);
-            switch (params){
-                case 2:{
-                    preparedStatement.setLong(2, offsetId);
-                    break;
-                }
-                case 3:{
-                    preparedStatement.setLong(2, userId);
-                    preparedStatement.setLong(3, offsetId);
-                }
-            }
+            setTimeline(preparedStatement, userId, offsetId);
 
             return preparedStatement.executeQuery().isBeforeFirst();
         }
@@ -159,7 +198,7 @@ public class H2PostDAO implements PostDAO {
     @SneakyThrows
     public int countUserPosts(long userId) {
 
-        try (Connection connection = connectionPool.getConnection()) {
+        try (Connection connection = connectionPool.getReadConnection()) {
 
             String sql = "SELECT COUNT(id) FROM Post WHERE authorId = ?";
             PreparedStatement preparedStatement = connection.prepareStatement(sql);
@@ -172,138 +211,124 @@ public class H2PostDAO implements PostDAO {
         }
     }
 
+    @Override
     @SneakyThrows
-    private Collection<Post> createCollection(ResultSet rs){
+    public Map<Long, Post> getByIds(Collection<Long> ids){
 
-        Collection<Post> posts = new ArrayList<>();
-        Post.PostBuilder postBuilder = Post.builder();
+        Map<Long, Post> posts = new HashMap<>();
 
-        while(rs.next())
-            posts.add(
-                    postBuilder
-                            .id(rs.getLong("id"))
-                            .authorId(rs.getLong("authorId"))
-                            .date(rs.getDate("date").toLocalDate())
-                            .time(rs.getTime("time").toLocalTime())
-                            .text(rs.getString("text"))
-                            .privacy(rs.getBoolean("privacy"))
-                            .expandable(rs.getBoolean("expandable"))
-                            .build()
-            );
-
-        return posts;
-    }
+        if (ids.isEmpty())
+            return posts;
 
+        try(Connection connection = connectionPool.getConnection()){
 
-    @Override
-    @SneakyThrows
-    public void deletePost(long postId){
-
-        try (Connection connection = connectionPool.getConnection()){
-
-            String sql = "DELETE FROM Post WHERE id = ?";
+            String sql = "SELECT id, authorId, date, time, text, privacy, expandable, likes_count, comments_count FROM Post " +
+                    "WHERE id IN (SELECT X FROM TABLE(X BIGINT = ?))";
 
             PreparedStatement preparedStatement = connection.prepareStatement(sql);
 
-            preparedStatement.setLong(1, postId);
+            preparedStatement.setObject(1, ids.toArray());
 
-            preparedStatement.execute();
+            createCollection(preparedStatement.executeQuery()).forEach(p -> posts.put(p.getId(), p));
+            return posts;
         }
     }
 
-    @Override
-    @SneakyThrows
-    public Collection<Post> getNotPrivateUserPosts(long userId, long offsetId, int limit){
-
-        try(Connection connection = connectionPool.getConnection()){
+    /**
+     * Posts of everyone the user follows, then the user's own, that meet {@code condition} on the offset.
+     * Two joins that start from an index rather than "authorId IN (...) OR authorId = ?",
+     * which H2 answers by testing every post against the IN.
+     * Parameters 1 to 5 are set by {@link #setTimeline}.
+     */
+    private static String timeline(String columns, String condition){
+
+        return "SELECT " + columns + " FROM Following f JOIN Post p ON p.authorId = f.follow_id " +
+                "WHERE f.follower_id = ? AND f.follow_id <> ? AND " + condition + " " +
+                "UNION ALL SELECT " + columns + " FROM Post p WHERE p.authorId = ? AND " + condition;
+    }
 
-            String sql = "SELECT id, authorId, date, time, text, privacy, expandable "+
-                    "FROM Post WHERE (authorId = ? AND id>? AND privacy = FALSE) ORDER BY id DESC LIMIT ?";
-            PreparedStatement preparedStatement = connection.prepareStatement(sql);
+    /**
+     * The id and privacy condition of {@code query} on a Post aliased p, with the cursor as its one parameter.
+     */
+    static String condition(PostQuery.Direction direction, boolean publicOnly){
 
-            preparedStatement.setLong(1, userId);
-            preparedStatement.setLong(2, offsetId);
-            preparedStatement.setInt(3, limit);
-
-            return createCollection(preparedStatement.executeQuery());
-        }
+        return "p.id " + (direction == PostQuery.Direction.NEWER ? ">" : "<") + " ?" +
+                (publicOnly ? " AND p.privacy = FALSE" : "");
     }
 
-    @Override
-    @SneakyThrows
-    public Collection<Post> getNotPrivatePrevPosts(long userId, long offsetId, int limit){
+    private static int shape(PostQuery.Scope scope, PostQuery.Direction direction, boolean publicOnly){
 
-        try(Connection connection = connectionPool.getConnection()){
-
-            String sql = "SELECT id, authorId, date, time, text, privacy, expandable "+
-                    "FROM Post WHERE (authorId = ? AND id<? AND privacy = FALSE) ORDER BY id DESC LIMIT ?";
-            PreparedStatement preparedStatement = connection.prepareStatement(sql);
+        return (scope.ordinal() * PostQuery.Direction.values().length + direction.ordinal()) * 2 + (publicOnly ? 1 : 0);
+    }
 
-            preparedStatement.setLong(1, userId);
-            preparedStatement.setLong(2, offsetId);
-            preparedStatement.setInt(3, limit);
+    private static int shape(PostQuery query){
 
-            return createCollection(preparedStatement.executeQuery());
-        }
+        return shape(query.getScope(), query.getDirection(), query.isPublicOnly());
     }
 
+    private static void setTimeline(PreparedStatement preparedStatement, long userId, long offsetId) throws SQLException {
 
-    // TODO: 05.12.16 make one method from this 2;
+        preparedStatement.setLong(1, userId);
+        preparedStatement.setLong(2, userId);
+        preparedStatement.setLong(3, offsetId);
+        preparedStatement.setLong(4, userId);
+        preparedStatement.setLong(5, offsetId);
+    }
 
-    @Override
     @SneakyThrows
-    public Collection<Post> getPrevByUser(long userId, long offsetId, int limit){
+    protected List<Post> createCollection(ResultSet rs){
 
-        try(Connection connection = connectionPool.getConnection()){
-
-            String sql = "SELECT id, authorId, date, time, text, privacy, expandable "+
-                    "FROM Post WHERE authorId = ? AND id<? ORDER BY id DESC LIMIT ?";
-            PreparedStatement preparedStatement = connection.prepareStatement(sql);
+        List<Post> posts = new ArrayList<>();
+        Post.PostBuilder postBuilder = Post.builder();
 
-            preparedStatement.setLong(1, userId);
-            preparedStatement.setLong(2, offsetId);
-            preparedStatement.setInt(3, limit);
+        while(rs.next())
+            posts.add(
+                    postBuilder
+                            .id(rs.getLong("id"))
+                            .authorId(rs.getLong("authorId"))
+                            .date(rs.getDate("date").toLocalDate())
+                            .time(rs.getTime("time").toLocalTime())
+                            .text(rs.getString("text"))
+                            .privacy(rs.getBoolean("privacy"))
+                            .expandable(rs.getBoolean("expandable"))
+                            .likesCount(rs.getLong("likes_count"))
+                            .commentsCount(rs.getLong("comments_count"))
+                            .build()
+            );
 
-            return createCollection(preparedStatement.executeQuery());
-        }
+        return posts;
     }
 
+
     @Override
     @SneakyThrows
-    public Collection<Post> getPrevTimeline(long userId, long offsetId, int limit){
+    public void deletePost(long postId){
 
-        try(Connection connection = connectionPool.getConnection()){
+        try (Connection connection = connectionPool.getConnection()){
 
-            String sql = "SELECT id, authorId, date, time, text, privacy, expandable " +
-                    "FROM Post WHERE (authorId IN " +
-                    "(SELECT follow_id FROM Following WHERE follower_id = ?) OR authorId=?) AND " +
-                    "id<? ORDER BY id DESC LIMIT ?";
+            String sql = "DELETE FROM Post WHERE id = ?";
 
-            final PreparedStatement preparedStatement = connection.prepareStatement(sql);
+            PreparedStatement preparedStatement = connection.prepareStatement(sql);
 
-            preparedStatement.setLong(1,userId);
-            preparedStatement.setLong(2,userId);
-            preparedStatement.setLong(3,offsetId);
-            preparedStatement.setInt(4,limit);
+            preparedStatement.setLong(1, postId);
 
-            return createCollection(preparedStatement.executeQuery());
+            preparedStatement.execute();
         }
+
+        eventBus.publish(new PostDeletedEvent(postId));
     }
 
     @Override
     @SneakyThrows
     public int countPostsInTimeline(long userId){
 
-        try(Connection connection = connectionPool.getConnection()){
+        try(Connection connection = connectionPool.getReadConnection()){
 
-            String sql = "SELECT COUNT(id) FROM Post WHERE (authorId IN " +
-                    "(SELECT follow_id FROM Following WHERE follower_id = ?) OR authorId=?)";
+            String sql = "SELECT COUNT(*) FROM (" + timeline("p.id", "p.id > ?") + ")";
 
             final PreparedStatement preparedStatement = connection.prepareStatement(sql);
 
-            preparedStatement.setLong(1, userId);
-            preparedStatement.setLong(2, userId);
-
+            setTimeline(preparedStatement, userId, 0);
 
             final ResultSet rs = preparedStatement.executeQuery();
             if(rs.next())
@@ -314,17 +339,19 @@ public class H2PostDAO implements PostDAO {
 
     @Override
     @SneakyThrows
-    public Collection<Post> searchPosts(String text){
+    public Collection<Post> searchPosts(String text, long offsetId, int limit){
 
-        try(Connection connection = connectionPool.getConnection()){
+        try(Connection connection = connectionPool.getReadConnection()){
 
-            String sql = "SELECT * FROM Post WHERE LOWER(text) LIKE LOWER(?)";
+            String sql = "SELECT * FROM Post WHERE LOWER(text) LIKE LOWER(?) AND id<? ORDER BY id DESC LIMIT ?";
 
             final PreparedStatement preparedStatement = connection.prepareStatement(sql);
 
             text = "%"+text+"%";
 
             preparedStatement.setString(1, text);
+            preparedStatement.setLong(2, offsetId);
+            preparedStatement.setInt(3, limit);
 
             return createCollection(preparedStatement.executeQuery());
         }
@@ -1,7 +1,10 @@
 package dao.H2;
 
 import common.ConnectionPool;
+import common.EventBus;
 import dao.UserDAO;
+import events.UserAddedEvent;
+import events.UserChangedEvent;
 import lombok.AllArgsConstructor;
 import lombok.SneakyThrows;
 import model.User;
@@ -12,7 +15,9 @@ import java.sql.ResultSet;
 import java.sql.Statement;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Optional;
 
 /**
@@ -22,6 +27,12 @@ import java.util.Optional;
 public class H2UserDAO implements UserDAO {
 
     private ConnectionPool connectionPool;
+    private EventBus eventBus;
+
+    public H2UserDAO(ConnectionPool connectionPool){
+
+        this(connectionPool, new EventBus());
+    }
 
     @Override
     @SneakyThrows
@@ -78,7 +89,7 @@ public class H2UserDAO implements UserDAO {
 
             String sql = "INSERT INTO User (username, email, password, first_name, last_name) VALUES (?,?,?,?,?)";
 
-            PreparedStatement preparedStatement = connection.prepareStatement(sql);
+            PreparedStatement preparedStatement = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
 
             preparedStatement.setString(1,user.getUsername());
             preparedStatement.setString(2,user.getEmail());
@@ -86,8 +97,14 @@ public class H2UserDAO implements UserDAO {
             preparedStatement.setString(4,user.getFirstName());
             preparedStatement.setString(5,user.getLastName());
 
-            preparedStatement.execute();
+            preparedStatement.executeUpdate();
+
+            ResultSet keys = preparedStatement.getGeneratedKeys();
+            if (keys.next())
+                user.setId(keys.getLong(1));
         }
+
+        eventBus.publish(new UserAddedEvent(user));
     }
 
     @Override
@@ -122,6 +139,73 @@ public class H2UserDAO implements UserDAO {
         }
     }
 
+    @Override
+    @SneakyThrows
+    public Optional<User> getByUsername(String username){
+
+        try (Connection connection = connectionPool.getConnection()){
+
+            String sql = "SELECT * FROM User WHERE username=?";
+
+            PreparedStatement preparedStatement = connection.prepareStatement(sql);
+
+            preparedStatement.setString(1, username);
+
+            ResultSet rs = preparedStatement.executeQuery();
+
+            Optional<User> optUser = Optional.empty();
+
+            if (rs.next()){
+                optUser = Optional.of(User.builder()
+                        .email(rs.getString("email"))
+                        .id(rs.getLong("id"))
+                        .username(rs.getString("username"))
+                        .firstName(rs.getString("first_name"))
+                        .lastName(rs.getString("last_name"))
+                        .password(rs.getString("password"))
+                        .build());
+            }
+
+            return optUser;
+        }
+    }
+
+    @Override
+    @SneakyThrows
+    public Map<Long, User> getByIds(Collection<Long> ids){
+
+        Map<Long, User> users = new HashMap<>();
+
+        if (ids.isEmpty())
+            return users;
+
+        try (Connection connection = connectionPool.getConnection()){
+
+            String sql = "SELECT * FROM User WHERE id IN (SELECT X FROM TABLE(X BIGINT = ?))";
+
+            PreparedStatement preparedStatement = connection.prepareStatement(sql);
+
+            preparedStatement.setObject(1, ids.toArray());
+
+            ResultSet rs = preparedStatement.executeQuery();
+
+            User.UserBuilder userBuilder = User.builder();
+
+            while (rs.next()){
+                User user = userBuilder.email(rs.getString("email"))
+                        .id(rs.getLong("id"))
+                        .username(rs.getString("username"))
+                        .firstName(rs.getString("first_name"))
+                        .lastName(rs.getString("last_name"))
+                        .password(rs.getString("password"))
+                        .build();
+                users.put(user.getId(), user);
+            }
+
+            return users;
+        }
+    }
+
     @Override
     @SneakyThrows
     public User updateUser(User user){
@@ -141,6 +225,8 @@ public class H2UserDAO implements UserDAO {
             preparedStatement.execute();
         }
 
+        eventBus.publish(new UserChangedEvent(user, false));
+
         //noinspection OptionalGetWithoutIsPresent
         return getById(user.getId()).get();
     }
@@ -159,16 +245,19 @@ public class H2UserDAO implements UserDAO {
 
             preparedStatement.execute();
         }
+
+        eventBus.publish(new UserChangedEvent(user, true));
     }
 
     @Override
     @SneakyThrows
-    public Collection<User> searchUser(String text){
+    public Collection<User> searchUser(String text, long offsetId, int limit){
 
-        try(Connection connection = connectionPool.getConnection()){
+        try(Connection connection = connectionPool.getReadConnection()){
 
             String sql = "SELECT * FROM User WHERE (LOWER(email) LIKE LOWER(?) OR LOWER(username) LIKE LOWER(?) " +
-                    "OR LOWER(first_name) LIKE LOWER(?) OR LOWER(last_name) LIKE LOWER(?))";
+                    "OR LOWER(first_name) LIKE LOWER(?) OR LOWER(last_name) LIKE LOWER(?)) AND id<? " +
+                    "ORDER BY id DESC LIMIT ?";
 
             final PreparedStatement preparedStatement = connection.prepareStatement(sql);
 
@@ -178,6 +267,8 @@ public class H2UserDAO implements UserDAO {
             preparedStatement.setString(2,text);
             preparedStatement.setString(3,text);
             preparedStatement.setString(4,text);
+            preparedStatement.setLong(5,offsetId);
+            preparedStatement.setInt(6,limit);
 
             return createCollection(preparedStatement.executeQuery());
         }
@@ -192,6 +283,7 @@ public class H2UserDAO implements UserDAO {
         while(rs.next())
             users.add(
                     userBuilder
+                            .id(rs.getLong("id"))
                             .email(rs.getString("email"))
                             .username(rs.getString("username"))
                             .firstName(rs.getString("first_name"))
@@ -0,0 +1,154 @@
+package dao.H2;
+
+import common.ConnectionPool;
+import lombok.SneakyThrows;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.FileInputStream;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Moves buckets between {@link Shards}, e.g. onto a shard just added to {@code shards.urls}.
+ * The application keeps the bucket map in memory, so this runs while it is stopped:
+ * <pre>java dao.H2.ShardRebalancer db.properties db/migration</pre>
+ * A bucket is copied before it is pointed to the new shard and deleted from the old one
+ * only after that, so a move cut short leaves the data readable and can simply be run again.
+ */
+@Slf4j
+public class ShardRebalancer {
+
+    private static final int BATCH = 1000;
+
+    private final Shards shards;
+
+    public ShardRebalancer(Shards shards){
+
+        this.shards = shards;
+    }
+
+    @SneakyThrows
+    public static void main(String[] args){
+
+        Properties settings = new Properties();
+        try(FileInputStream inputStream = new FileInputStream(args[0])){
+            settings.load(inputStream);
+        }
+
+        try(ConnectionPool primary = ConnectionPool.create(settings);
+            Shards shards = Shards.create(settings, primary, args.length > 1 ? args[1] : "src/main/resources/db/migration")){
+
+            log.info("moved {} buckets", new ShardRebalancer(shards).rebalance());
+        }
+    }
+
+    /**
+     * Moves buckets from the fullest to the emptiest shard until no two shards differ by more than one.
+     *
+     * @return how many buckets were moved
+     */
+    public int rebalance(){
+
+        int moved = 0;
+
+        while (true) {
+
+            Map<Integer, List<Integer>> byShard = shards.bucketsByShard();
+
+            int fullest = 0;
+            int emptiest = 0;
+            for (int shard = 0; shard < shards.count(); shard++) {
+                if (byShard.get(shard).size() > byShard.get(fullest).size())
+                    fullest = shard;
+                if (byShard.get(shard).size() < byShard.get(emptiest).size())
+                    emptiest = shard;
+            }
+
+            if (byShard.get(fullest).size() - byShard.get(emptiest).size() <= 1)
+                return moved;
+
+            List<Integer> buckets = byShard.get(fullest);
+            move(buckets.get(buckets.size() - 1), emptiest);
+            moved++;
+        }
+    }
+
+    /**
+     * Copies the posts, comments, likes and follows of {@code bucket} to {@code target},
+     * points the bucket there and deletes them from the shard that had them.
+     */
+    @SneakyThrows
+    public void move(int bucket, int target){
+
+        int source = shards.shardOfBucket(bucket);
+        if (source == target)
+            return;
+
+        String inBucket = " WHERE MOD(%s, " + shards.getBuckets() + ") = " + bucket;
+
+        try(Connection from = shards.pool(source).getConnection();
+            Connection to = shards.pool(target).getConnection()){
+
+//            users first: a shard added later has none of them yet
+            if (target != 0) {
+                try(Connection first = shards.pool(0).getConnection()){
+                    Transactions.inTransaction(to, () ->
+                            copy(first, to, "User", "id", "") + copy(first, to, "Roles", "username, role", ""));
+                }
+            }
+
+            int rows = Transactions.inTransaction(to, () ->
+                    copy(from, to, "Post", "id", String.format(inBucket, "id")) +
+                    copy(from, to, "Comment", "id", String.format(inBucket, "to_postId")) +
+                    copy(from, to, "Likes", "from_userId, to_postId", String.format(inBucket, "to_postId")) +
+                    copy(from, to, "Following", "follow_id, follower_id", String.format(inBucket, "follower_id")));
+
+            shards.assign(bucket, target);
+
+//            comments and likes go with their posts
+            Transactions.inTransaction(from, () ->
+                    from.createStatement().executeUpdate("DELETE FROM Following" + String.format(inBucket, "follower_id")) +
+                    from.createStatement().executeUpdate("DELETE FROM Post" + String.format(inBucket, "id")));
+
+            log.info("moved bucket {} from shard {} to shard {}, {} rows", bucket, source, target, rows);
+        }
+    }
+
+    /**
+     * Merges the rows of {@code table} matching {@code where} into the same table on {@code to}.
+     */
+    private static int copy(Connection from, Connection to, String table, String keys, String where) throws SQLException {
+
+        ResultSet rs = from.createStatement().executeQuery("SELECT * FROM " + table + where);
+        ResultSetMetaData metaData = rs.getMetaData();
+
+        List<String> columns = new ArrayList<>();
+        List<String> params = new ArrayList<>();
+        for (int i = 1; i <= metaData.getColumnCount(); i++) {
+            columns.add(metaData.getColumnName(i));
+            params.add("?");
+        }
+
+        PreparedStatement merge = to.prepareStatement("MERGE INTO " + table + " (" + String.join(", ", columns) +
+                ") KEY (" + keys + ") VALUES (" + String.join(", ", params) + ")");
+
+        int rows = 0;
+        while (rs.next()) {
+            for (int i = 1; i <= columns.size(); i++)
+                merge.setObject(i, rs.getObject(i));
+            merge.addBatch();
+            if (++rows % BATCH == 0)
+                merge.executeBatch();
+        }
+        merge.executeBatch();
+
+        return rows;
+    }
+}
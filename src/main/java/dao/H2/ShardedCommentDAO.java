@@ -0,0 +1,150 @@
+package dao.H2;
+
+import common.EventBus;
+import dao.CommentDAO;
+import events.CommentAddedEvent;
+import lombok.SneakyThrows;
+import model.Comment;
+
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.Time;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Comments are kept on the shard of their post, in the post's bucket.
+ */
+public class ShardedCommentDAO implements CommentDAO {
+
+    private final Shards shards;
+    private final EventBus eventBus;
+    private final List<H2CommentDAO> commentDAOs = new ArrayList<>();
+
+    public ShardedCommentDAO(Shards shards, EventBus eventBus){
+
+        this.shards = shards;
+        this.eventBus = eventBus;
+
+        for (int shard = 0; shard < shards.count(); shard++)
+            commentDAOs.add(new H2CommentDAO(shards.pool(shard), eventBus));
+    }
+
+    @Override
+    public Collection<Comment> getAll() {
+
+        Collection<Comment> comments = new ArrayList<>();
+        shards.scatter(shard -> commentDAOs.get(shard).getAll()).forEach(comments::addAll);
+
+        return comments;
+    }
+
+    @Override
+    @SneakyThrows
+    public Comment addComment(Comment comment) {
+
+        long id = shards.nextId(Shards.COMMENT_TICKET, shards.bucketOf(comment.getPostId()));
+
+        try(Connection connection = shards.pool(shards.shardOf(comment.getPostId())).getConnection()){
+
+            String sql = "INSERT INTO Comment (id, from_userId, from_username, to_postId, text, date, time) VALUES (?,?,?,?,?,?,?)";
+
+            PreparedStatement preparedStatement = connection.prepareStatement(sql);
+
+            preparedStatement.setLong(1, id);
+            preparedStatement.setLong(2, comment.getUserId());
+            preparedStatement.setString(3, comment.getUsername());
+            preparedStatement.setLong(4, comment.getPostId());
+            preparedStatement.setString(5, comment.getText());
+            preparedStatement.setDate(6, Date.valueOf(comment.getDate()));
+            preparedStatement.setTime(7, Time.valueOf(comment.getTime()));
+
+            Transactions.inTransaction(connection, () -> {
+                preparedStatement.executeUpdate();
+                H2PostCounters.adjust(connection, H2PostCounters.COMMENTS, comment.getPostId(), 1);
+                return null;
+            });
+        }
+
+        comment.setId(id);
+        eventBus.publish(new CommentAddedEvent(comment));
+        return comment;
+    }
+
+    @Override
+    public boolean deleteComment(long commentId) {
+
+        return of(commentId).deleteComment(commentId);
+    }
+
+    @Override
+    public boolean isReadyToUpdate(long postId, long offsetId) {
+
+        return of(postId).isReadyToUpdate(postId, offsetId);
+    }
+
+    @Override
+    public Map<Long, Comment> getByIds(Collection<Long> ids) {
+
+        Map<Long, Comment> comments = new HashMap<>();
+        Map<Integer, List<Long>> byShard = shards.group(ids, id -> id);
+        shards.scatter(byShard.keySet(), shard -> commentDAOs.get(shard).getByIds(byShard.get(shard)))
+                .values().forEach(comments::putAll);
+
+        return comments;
+    }
+
+    @Override
+    public Collection<Comment> getCommentsFromPost(long postId, long offsetId, long limit) {
+
+        return of(postId).getCommentsFromPost(postId, offsetId, limit);
+    }
+
+    @Override
+    public Collection<Comment> getCommentsFromUser(long userId) {
+
+        Collection<Comment> comments = new HashSet<>();
+        shards.scatter(shard -> commentDAOs.get(shard).getCommentsFromUser(userId)).forEach(comments::addAll);
+
+        return comments;
+    }
+
+    @Override
+    public long countByPostId(long postId) {
+
+        return of(postId).countByPostId(postId);
+    }
+
+    @Override
+    public Map<Long, Long> countByPostIds(Collection<Long> postIds) {
+
+        Map<Long, Long> counts = new HashMap<>();
+        Map<Integer, List<Long>> byShard = shards.group(postIds, id -> id);
+        shards.scatter(byShard.keySet(), shard -> commentDAOs.get(shard).countByPostIds(byShard.get(shard)))
+                .values().forEach(counts::putAll);
+
+        return counts;
+    }
+
+    @Override
+    public Collection<Comment> searchComment(String text, long offsetId, int limit) {
+
+        return shards.scatter(shard -> commentDAOs.get(shard).searchComment(text, offsetId, limit)).stream()
+                .flatMap(Collection::stream)
+                .sorted(Comparator.comparingLong(Comment::getId).reversed())
+                .limit(limit)
+                .collect(Collectors.toCollection(ArrayList::new));
+    }
+
+    private H2CommentDAO of(long id){
+
+        return commentDAOs.get(shards.shardOf(id));
+    }
+}
@@ -0,0 +1,84 @@
+package dao.H2;
+
+import common.EventBus;
+import dao.FollowingDAO;
+import model.Following;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+
+/**
+ * Follows are kept in the follower's bucket, so the followers of a user are gathered from every shard.
+ */
+public class ShardedFollowingDAO implements FollowingDAO {
+
+    private final Shards shards;
+    private final List<H2FollowingDAO> followingDAOs = new ArrayList<>();
+
+    public ShardedFollowingDAO(Shards shards, EventBus eventBus){
+
+        this.shards = shards;
+
+        for (int shard = 0; shard < shards.count(); shard++)
+            followingDAOs.add(new H2FollowingDAO(shards.pool(shard), eventBus));
+    }
+
+    @Override
+    public Collection<Following> getFollowersById(long followId) {
+
+        Collection<Following> followers = new HashSet<>();
+        shards.scatter(shard -> followingDAOs.get(shard).getFollowersById(followId)).forEach(followers::addAll);
+
+        return followers;
+    }
+
+    @Override
+    public Collection<Following> getFollowingsById(long followerId) {
+
+        return of(followerId).getFollowingsById(followerId);
+    }
+
+    @Override
+    public boolean revertFollowing(Following following) {
+
+        return of(following.getFollowerId()).revertFollowing(following);
+    }
+
+    @Override
+    public boolean isFirstFollowSecond(long followerId, long followId) {
+
+        return of(followerId).isFirstFollowSecond(followerId, followId);
+    }
+
+    @Override
+    public void addFollowing(Following following) {
+
+        of(following.getFollowerId()).addFollowing(following);
+    }
+
+    @Override
+    public void deleteFollowing(Following following) {
+
+        of(following.getFollowerId()).deleteFollowing(following);
+    }
+
+    @Override
+    public int countFollowersById(long followId) {
+
+        return shards.scatter(shard -> followingDAOs.get(shard).countFollowersById(followId))
+                .stream().mapToInt(Integer::intValue).sum();
+    }
+
+    @Override
+    public int countFollowingsById(long followerId) {
+
+        return of(followerId).countFollowingsById(followerId);
+    }
+
+    private H2FollowingDAO of(long followerId){
+
+        return followingDAOs.get(shards.shardOf(followerId));
+    }
+}
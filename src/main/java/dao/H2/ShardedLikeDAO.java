@@ -0,0 +1,101 @@
+package dao.H2;
+
+import common.EventBus;
+import dao.LikeDAO;
+import model.Like;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Likes are kept on the shard of the post they are for.
+ */
+public class ShardedLikeDAO implements LikeDAO {
+
+    private final Shards shards;
+    private final List<H2LikeDAO> likeDAOs = new ArrayList<>();
+
+    public ShardedLikeDAO(Shards shards, EventBus eventBus){
+
+        this.shards = shards;
+
+        for (int shard = 0; shard < shards.count(); shard++)
+            likeDAOs.add(new H2LikeDAO(shards.pool(shard), eventBus));
+    }
+
+    @Override
+    public Collection<Like> getAll() {
+
+        Collection<Like> likes = new HashSet<>();
+        shards.scatter(shard -> likeDAOs.get(shard).getAll()).forEach(likes::addAll);
+
+        return likes;
+    }
+
+    @Override
+    public boolean isLiked(Like like) {
+
+        return of(like.getToPostId()).isLiked(like);
+    }
+
+    @Override
+    public boolean addLike(Like like) {
+
+        return of(like.getToPostId()).addLike(like);
+    }
+
+    @Override
+    public boolean removeLike(Like like) {
+
+        return of(like.getToPostId()).removeLike(like);
+    }
+
+    @Override
+    public void saveLikes(Map<Like, Boolean> changes) {
+
+        shards.group(changes.keySet(), Like::getToPostId).forEach((shard, likes) ->
+                likeDAOs.get(shard).saveLikes(likes.stream().collect(Collectors.toMap(like -> like, changes::get))));
+    }
+
+    @Override
+    public Collection<Like> getByPostId(long postId) {
+
+        return of(postId).getByPostId(postId);
+    }
+
+    @Override
+    public Collection<Like> getAllUserPost(long userId) {
+
+        Collection<Like> likes = new HashSet<>();
+        shards.scatter(shard -> likeDAOs.get(shard).getAllUserPost(userId)).forEach(likes::addAll);
+
+        return likes;
+    }
+
+    @Override
+    public long countByPostId(long postId) {
+
+        return of(postId).countByPostId(postId);
+    }
+
+    @Override
+    public Map<Long, Long> countByPostIds(Collection<Long> postIds) {
+
+        Map<Long, Long> counts = new HashMap<>();
+        Map<Integer, List<Long>> byShard = shards.group(postIds, id -> id);
+        shards.scatter(byShard.keySet(), shard -> likeDAOs.get(shard).countByPostIds(byShard.get(shard)))
+                .values().forEach(counts::putAll);
+
+        return counts;
+    }
+
+    private H2LikeDAO of(long postId){
+
+        return likeDAOs.get(shards.shardOf(postId));
+    }
+}
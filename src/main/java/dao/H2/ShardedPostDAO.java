@@ -0,0 +1,227 @@
+package dao.H2;
+
+import common.EventBus;
+import dao.PostDAO;
+import dao.PostQuery;
+import events.PostAddedEvent;
+import lombok.SneakyThrows;
+import model.Post;
+
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Time;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Posts are kept in their author's bucket, so a user's own posts are on one shard.
+ * A timeline reads the follows from the user's shard and then the newest posts of the
+ * followed authors from each shard holding some of them, merged by id.
+ */
+public class ShardedPostDAO implements PostDAO {
+
+    private static final String TIMELINE = "SELECT " + H2PostDAO.COLUMNS + " FROM Post p " +
+            "WHERE p.authorId IN (SELECT X FROM TABLE(X BIGINT = ?)) AND ";
+
+    private final Shards shards;
+    private final EventBus eventBus;
+    private final List<H2PostDAO> postDAOs = new ArrayList<>();
+
+    public ShardedPostDAO(Shards shards, EventBus eventBus){
+
+        this.shards = shards;
+        this.eventBus = eventBus;
+
+        for (int shard = 0; shard < shards.count(); shard++)
+            postDAOs.add(new H2PostDAO(shards.pool(shard), eventBus));
+    }
+
+    @Override
+    public Collection<Post> getAll() {
+
+        Collection<Post> posts = new ArrayList<>();
+        shards.scatter(shard -> postDAOs.get(shard).getAll()).forEach(posts::addAll);
+
+        return posts;
+    }
+
+    @Override
+    public List<Post> find(PostQuery query) {
+
+        if (query.getScope() == PostQuery.Scope.AUTHOR)
+            return of(query.getUserId()).find(query);
+
+        return query.inPageOrder(timeline(query));
+    }
+
+    @Override
+    public boolean isTimelineReadyToUpdate(long userId, long offsetId) {
+
+        return !find(PostQuery.timeline(userId).after(offsetId).limit(1).build()).isEmpty();
+    }
+
+    @Override
+    public int countPostsInTimeline(long userId) {
+
+        Map<Integer, List<Long>> authors = authorsByShard(userId);
+
+        return shards.scatter(authors.keySet(), shard -> countPosts(shard, authors.get(shard)))
+                .values().stream().mapToInt(Integer::intValue).sum();
+    }
+
+    @Override
+    @SneakyThrows
+    public Post addPost(Post post) {
+
+        long id = shards.nextId(Shards.POST_TICKET, shards.bucketOf(post.getAuthorId()));
+
+        try(Connection connection = shards.pool(shards.shardOf(post.getAuthorId())).getConnection()){
+
+            String sql = "INSERT INTO Post (id, authorId, date, time, text, privacy, expandable) VALUES (?, ?, ?, ?, ?, ?, ?)";
+
+            PreparedStatement preparedStatement = connection.prepareStatement(sql);
+
+            preparedStatement.setLong(1, id);
+            preparedStatement.setLong(2, post.getAuthorId());
+            preparedStatement.setDate(3, Date.valueOf(post.getDate()));
+            preparedStatement.setTime(4, Time.valueOf(post.getTime()));
+            preparedStatement.setString(5, post.getText());
+            preparedStatement.setBoolean(6, post.isPrivacy());
+            preparedStatement.setBoolean(7, post.isExpandable());
+
+            preparedStatement.executeUpdate();
+        }
+
+        post.setId(id);
+        eventBus.publish(new PostAddedEvent(post));
+        return post;
+    }
+
+    @Override
+    public Optional<Post> getPostById(long id) {
+
+        return of(id).getPostById(id);
+    }
+
+    @Override
+    public Map<Long, Post> getByIds(Collection<Long> ids) {
+
+        Map<Long, Post> posts = new HashMap<>();
+        Map<Integer, List<Long>> byShard = shards.group(ids, id -> id);
+        shards.scatter(byShard.keySet(), shard -> postDAOs.get(shard).getByIds(byShard.get(shard)))
+                .values().forEach(posts::putAll);
+
+        return posts;
+    }
+
+    @Override
+    public boolean isPostsReadyToUpdate(long userId, long offsetId) {
+
+        return of(userId).isPostsReadyToUpdate(userId, offsetId);
+    }
+
+    @Override
+    public int countUserPosts(long userId) {
+
+        return of(userId).countUserPosts(userId);
+    }
+
+    @Override
+    public void deletePost(long postId) {
+
+        of(postId).deletePost(postId);
+    }
+
+    @Override
+    public Collection<Post> searchPosts(String text, long offsetId, int limit) {
+
+        return newest(shards.scatter(shard -> postDAOs.get(shard).searchPosts(text, offsetId, limit)).stream(), limit);
+    }
+
+    private List<Post> timeline(PostQuery query) {
+
+        Map<Integer, List<Long>> authors = authorsByShard(query.getUserId());
+
+        return newest(shards.scatter(authors.keySet(), shard ->
+                queryPosts(shard, authors.get(shard), query)).values().stream(), query.getLimit());
+    }
+
+    /**
+     * The user and everyone they follow, by the shard holding their posts.
+     */
+    @SneakyThrows
+    private Map<Integer, List<Long>> authorsByShard(long userId) {
+
+        Set<Long> authors = new HashSet<>();
+        authors.add(userId);
+
+        try(Connection connection = shards.pool(shards.shardOf(userId)).getReadConnection()){
+
+            PreparedStatement preparedStatement = connection.prepareStatement(
+                    "SELECT follow_id FROM Following WHERE follower_id = ?");
+            preparedStatement.setLong(1, userId);
+
+            ResultSet rs = preparedStatement.executeQuery();
+            while (rs.next())
+                authors.add(rs.getLong(1));
+        }
+
+        return shards.group(authors, id -> id);
+    }
+
+    @SneakyThrows
+    private Collection<Post> queryPosts(int shard, List<Long> authors, PostQuery query) {
+
+        try(Connection connection = shards.pool(shard).getReadConnection()){
+
+            PreparedStatement preparedStatement = connection.prepareStatement(
+                    TIMELINE + H2PostDAO.condition(query.getDirection(), query.isPublicOnly()) + " ORDER BY p.id DESC LIMIT ?");
+
+            preparedStatement.setObject(1, authors.toArray());
+            preparedStatement.setLong(2, query.getCursor());
+            preparedStatement.setInt(3, query.getLimit());
+
+            return postDAOs.get(shard).createCollection(preparedStatement.executeQuery());
+        }
+    }
+
+    @SneakyThrows
+    private int countPosts(int shard, List<Long> authors) {
+
+        try(Connection connection = shards.pool(shard).getReadConnection()){
+
+            PreparedStatement preparedStatement = connection.prepareStatement(
+                    "SELECT COUNT(*) FROM Post WHERE authorId IN (SELECT X FROM TABLE(X BIGINT = ?))");
+
+            preparedStatement.setObject(1, authors.toArray());
+
+            ResultSet rs = preparedStatement.executeQuery();
+            rs.next();
+            return rs.getInt(1);
+        }
+    }
+
+    private static List<Post> newest(Stream<Collection<Post>> pages, int limit) {
+
+        return pages.flatMap(Collection::stream)
+                .sorted(Comparator.comparingLong(Post::getId).reversed())
+                .limit(limit)
+                .collect(Collectors.toCollection(ArrayList::new));
+    }
+
+    private H2PostDAO of(long id){
+
+        return postDAOs.get(shards.shardOf(id));
+    }
+}
@@ -0,0 +1,136 @@
+package dao.H2;
+
+import common.EventBus;
+import dao.UserDAO;
+import events.UserAddedEvent;
+import events.UserChangedEvent;
+import lombok.SneakyThrows;
+import model.User;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Every shard keeps all users, see {@link Shards}: reads go to any one of them,
+ * writes to all. A new user's bucket comes from a hash of the username.
+ */
+public class ShardedUserDAO implements UserDAO {
+
+    private final Shards shards;
+    private final EventBus eventBus;
+//    one per shard, each with a bus of its own, so that a write to every shard is published once
+    private final List<H2UserDAO> userDAOs = new ArrayList<>();
+
+    public ShardedUserDAO(Shards shards, EventBus eventBus){
+
+        this.shards = shards;
+        this.eventBus = eventBus;
+
+        for (int shard = 0; shard < shards.count(); shard++)
+            userDAOs.add(new H2UserDAO(shards.pool(shard)));
+    }
+
+    @Override
+    public Collection<User> getAll() {
+
+        return any().getAll();
+    }
+
+    @Override
+    public Collection<String> getUserRole(User user) {
+
+        return any().getUserRole(user);
+    }
+
+    @Override
+    public Optional<User> getById(long id) {
+
+        return userDAOs.get(shards.shardOf(id)).getById(id);
+    }
+
+    @Override
+    public Map<Long, User> getByIds(Collection<Long> ids) {
+
+        return any().getByIds(ids);
+    }
+
+    @Override
+    public Optional<User> getByUsername(String username) {
+
+        return any().getByUsername(username);
+    }
+
+    @Override
+    @SneakyThrows
+    public void addUser(User user) {
+
+        long id = shards.nextId(Shards.USER_TICKET, shards.bucketOf(user.getUsername()));
+
+        int shard = 0;
+        try {
+            for (; shard < shards.count(); shard++)
+                insert(shard, id, user);
+        } catch (Exception e) {
+//            no half-registered user left behind on the shards that took it
+            for (int inserted = 0; inserted < shard; inserted++)
+                userDAOs.get(inserted).deleteUser(User.builder().id(id).build());
+            throw e;
+        }
+
+        user.setId(id);
+        eventBus.publish(new UserAddedEvent(user));
+    }
+
+    @Override
+    public User updateUser(User user) {
+
+        userDAOs.forEach(userDAO -> userDAO.updateUser(user));
+        eventBus.publish(new UserChangedEvent(user, false));
+
+        //noinspection OptionalGetWithoutIsPresent
+        return getById(user.getId()).get();
+    }
+
+    @Override
+    public void deleteUser(User user) {
+
+        userDAOs.forEach(userDAO -> userDAO.deleteUser(user));
+        eventBus.publish(new UserChangedEvent(user, true));
+    }
+
+    @Override
+    public Collection<User> searchUser(String text, long offsetId, int limit) {
+
+        return any().searchUser(text, offsetId, limit);
+    }
+
+    private H2UserDAO any(){
+
+        return userDAOs.get(ThreadLocalRandom.current().nextInt(userDAOs.size()));
+    }
+
+    private void insert(int shard, long id, User user) throws Exception {
+
+        try(Connection connection = shards.pool(shard).getConnection()){
+
+            String sql = "INSERT INTO User (id, username, email, password, first_name, last_name) VALUES (?,?,?,?,?,?)";
+
+            PreparedStatement preparedStatement = connection.prepareStatement(sql);
+
+            preparedStatement.setLong(1, id);
+            preparedStatement.setString(2, user.getUsername());
+            preparedStatement.setString(3, user.getEmail());
+            preparedStatement.setString(4, user.getPassword());
+            preparedStatement.setString(5, user.getFirstName());
+            preparedStatement.setString(6, user.getLastName());
+
+            preparedStatement.executeUpdate();
+        }
+    }
+}
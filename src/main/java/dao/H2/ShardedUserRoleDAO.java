@@ -0,0 +1,34 @@
+package dao.H2;
+
+import dao.UserRoleDAO;
+import model.UserRole;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Roles are kept on every shard next to the users they name.
+ */
+public class ShardedUserRoleDAO implements UserRoleDAO {
+
+    private final List<H2UserRoleDAO> userRoleDAOs = new ArrayList<>();
+
+    public ShardedUserRoleDAO(Shards shards){
+
+        for (int shard = 0; shard < shards.count(); shard++)
+            userRoleDAOs.add(new H2UserRoleDAO(shards.pool(shard)));
+    }
+
+    @Override
+    public Collection<UserRole> getAll() {
+
+        return userRoleDAOs.get(0).getAll();
+    }
+
+    @Override
+    public void addUserRole(UserRole userRole) {
+
+        userRoleDAOs.forEach(userRoleDAO -> userRoleDAO.addUserRole(userRole));
+    }
+}
@@ -0,0 +1,281 @@
+package dao.H2;
+
+import common.ConnectionPool;
+import common.Migrations;
+import lombok.SneakyThrows;
+import lombok.extern.slf4j.Slf4j;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntFunction;
+import java.util.function.ToLongFunction;
+import java.util.stream.Collectors;
+
+/**
+ * Several H2 databases behind the {@code Sharded*DAO}s, set up by {@code shards.urls} in db.properties.
+ * Users, posts and follows live in one of {@code shards.buckets} buckets: a new user gets a bucket
+ * from a hash of the username, a post is in its author's bucket, a follow in the follower's and
+ * comments and likes in their post's. Ids are {@code ticket * buckets + bucket} with tickets taken
+ * from one sequence on the first shard, so the bucket of any row follows from its id and ids still
+ * grow in the order rows were written. A database that already has rows without such ids cannot
+ * become a shard. Which shard holds a bucket is kept in ShardBucket on the first
+ * shard and changed by {@link ShardRebalancer}. Users and roles are copied to every shard, so that
+ * the foreign keys of comments, likes and follows hold wherever those rows are.
+ */
+@Slf4j
+public class Shards implements AutoCloseable {
+
+    public static final String USER_TICKET = "user_ticket";
+    public static final String POST_TICKET = "post_ticket";
+    public static final String COMMENT_TICKET = "comment_ticket";
+
+    private static final int DEFAULT_BUCKETS = 16;
+
+    private final List<ConnectionPool> pools;
+    private final int buckets;
+    private final ExecutorService scatter;
+    private final List<H2PostCounters> postCounters = new ArrayList<>();
+    private volatile int[] bucketShards;
+
+    public Shards(List<ConnectionPool> pools, int buckets){
+
+        this.pools = new ArrayList<>(pools);
+        this.buckets = buckets;
+        this.scatter = Executors.newFixedThreadPool(pools.size() * 2, r -> {
+            Thread thread = new Thread(r, "shard-scatter");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.bucketShards = loadBuckets();
+    }
+
+    public static boolean isSharded(Properties settings){
+
+        return !settings.getProperty("shards.urls", "").trim().isEmpty();
+    }
+
+    /**
+     * Shards for {@code shards.urls}; the first URL is the one {@code primary} was opened on.
+     * Every shard is migrated with the scripts in {@code migrations}.
+     */
+    public static Shards create(Properties settings, ConnectionPool primary, String migrations){
+
+        List<ConnectionPool> pools = new ArrayList<>();
+        pools.add(primary);
+
+        String[] urls = settings.getProperty("shards.urls").split(",");
+        for (int i = 1; i < urls.length; i++) {
+
+            Properties shard = new Properties();
+            shard.putAll(settings);
+            shard.setProperty("url", urls[i].trim());
+            shard.remove("mode");
+            shard.remove("replica.url");
+
+            ConnectionPool connectionPool = ConnectionPool.create(shard);
+            new Migrations(connectionPool, migrations).migrate();
+            pools.add(connectionPool);
+        }
+
+        return new Shards(pools, Integer.parseInt(settings.getProperty("shards.buckets", String.valueOf(DEFAULT_BUCKETS))));
+    }
+
+    public int count(){
+
+        return pools.size();
+    }
+
+    public int getBuckets(){
+
+        return buckets;
+    }
+
+    public ConnectionPool pool(int shard){
+
+        return pools.get(shard);
+    }
+
+    int bucketOf(long id){
+
+        return (int) Math.floorMod(id, (long) buckets);
+    }
+
+    int bucketOf(String key){
+
+        return Math.floorMod(key.hashCode(), buckets);
+    }
+
+    /**
+     * The shard holding the bucket of a user, post or comment id.
+     */
+    public int shardOf(long id){
+
+        return bucketShards[bucketOf(id)];
+    }
+
+    int shardOfBucket(int bucket){
+
+        return bucketShards[bucket];
+    }
+
+    @SneakyThrows
+    long nextId(String ticket, int bucket){
+
+        try(Connection connection = pools.get(0).getConnection()){
+
+            ResultSet rs = connection.createStatement().executeQuery("SELECT NEXT VALUE FOR " + ticket);
+            rs.next();
+
+            return rs.getLong(1) * buckets + bucket;
+        }
+    }
+
+    /**
+     * Runs {@code query} on every shard at once, results in shard order.
+     */
+    <T> List<T> scatter(IntFunction<T> query){
+
+        List<Integer> all = new ArrayList<>();
+        for (int shard = 0; shard < pools.size(); shard++)
+            all.add(shard);
+
+        Map<Integer, T> results = scatter(all, query);
+
+        return all.stream().map(results::get).collect(Collectors.toList());
+    }
+
+    /**
+     * Runs {@code query} on the given shards at once; a single shard is queried on the calling thread.
+     */
+    <T> Map<Integer, T> scatter(Collection<Integer> shards, IntFunction<T> query){
+
+        Map<Integer, T> results = new HashMap<>();
+
+        if (shards.size() == 1) {
+            int shard = shards.iterator().next();
+            results.put(shard, query.apply(shard));
+            return results;
+        }
+
+        Map<Integer, CompletableFuture<T>> futures = new HashMap<>();
+        for (int shard : shards)
+            futures.put(shard, CompletableFuture.supplyAsync(() -> query.apply(shard), scatter));
+
+        futures.forEach((shard, future) -> results.put(shard, H2BatchWriter.await(future)));
+        return results;
+    }
+
+    /**
+     * {@code items} by the shard of their key.
+     */
+    <T> Map<Integer, List<T>> group(Collection<T> items, ToLongFunction<T> key){
+
+        return items.stream().collect(Collectors.groupingBy(item -> shardOf(key.applyAsLong(item))));
+    }
+
+    public void scheduleCounterRepair(long period, TimeUnit unit){
+
+        for (ConnectionPool connectionPool : pools) {
+            H2PostCounters counters = new H2PostCounters(connectionPool);
+            counters.scheduleRepair(period, unit);
+            postCounters.add(counters);
+        }
+    }
+
+    /**
+     * Points {@code bucket} to {@code shard}; the rows have to be there already.
+     */
+    @SneakyThrows
+    void assign(int bucket, int shard){
+
+        try(Connection connection = pools.get(0).getConnection()){
+
+            PreparedStatement preparedStatement = connection.prepareStatement(
+                    "MERGE INTO ShardBucket (bucket, shard) KEY (bucket) VALUES (?, ?)");
+            preparedStatement.setInt(1, bucket);
+            preparedStatement.setInt(2, shard);
+            preparedStatement.executeUpdate();
+        }
+
+        int[] updated = bucketShards.clone();
+        updated[bucket] = shard;
+        bucketShards = updated;
+    }
+
+    Map<Integer, List<Integer>> bucketsByShard(){
+
+        Map<Integer, List<Integer>> byShard = new HashMap<>();
+        for (int shard = 0; shard < pools.size(); shard++)
+            byShard.put(shard, new ArrayList<>());
+        for (int bucket = 0; bucket < buckets; bucket++)
+            byShard.get(bucketShards[bucket]).add(bucket);
+
+        return byShard;
+    }
+
+    /**
+     * Reads the bucket map, spreading the buckets round robin the first time.
+     */
+    @SneakyThrows
+    private int[] loadBuckets(){
+
+        int[] shards = new int[buckets];
+
+        try(Connection connection = pools.get(0).getConnection()){
+
+            ResultSet rs = connection.createStatement().executeQuery("SELECT bucket, shard FROM ShardBucket");
+
+            int loaded = 0;
+            while (rs.next()) {
+                int bucket = rs.getInt(1);
+                int shard = rs.getInt(2);
+                if (bucket >= buckets || shard >= pools.size())
+                    throw new IllegalStateException("ShardBucket maps bucket " + bucket + " to shard " + shard +
+                            ", but there are " + buckets + " buckets and " + pools.size() + " shards");
+                shards[bucket] = shard;
+                loaded++;
+            }
+
+            if (loaded == 0) {
+
+                PreparedStatement preparedStatement = connection.prepareStatement(
+                        "INSERT INTO ShardBucket (bucket, shard) VALUES (?, ?)");
+                for (int bucket = 0; bucket < buckets; bucket++) {
+                    shards[bucket] = bucket % pools.size();
+                    preparedStatement.setInt(1, bucket);
+                    preparedStatement.setInt(2, shards[bucket]);
+                    preparedStatement.addBatch();
+                }
+                preparedStatement.executeBatch();
+                log.info("spread {} buckets over {} shards", buckets, pools.size());
+
+            } else if (loaded != buckets) {
+                throw new IllegalStateException("ShardBucket has " + loaded + " of " + buckets + " buckets");
+            }
+        }
+
+        return shards;
+    }
+
+    @Override
+    public void close() {
+
+        scatter.shutdownNow();
+        postCounters.forEach(H2PostCounters::close);
+
+//        the first pool belongs to whoever opened it
+        for (ConnectionPool connectionPool : pools.subList(1, pools.size()))
+            connectionPool.close();
+    }
+}
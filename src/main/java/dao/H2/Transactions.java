@@ -0,0 +1,34 @@
+package dao.H2;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * Runs several statements on one pooled connection as a single transaction,
+ * handing the connection back in autocommit mode whatever happens.
+ */
+final class Transactions {
+
+    interface Work<T> {
+
+        T run() throws SQLException;
+    }
+
+    private Transactions() {
+    }
+
+    static <T> T inTransaction(Connection connection, Work<T> work) throws SQLException {
+
+        connection.setAutoCommit(false);
+        try {
+            T result = work.run();
+            connection.commit();
+            return result;
+        } catch (SQLException | RuntimeException e) {
+            connection.rollback();
+            throw e;
+        } finally {
+            connection.setAutoCommit(true);
+        }
+    }
+}
@@ -0,0 +1,355 @@
+package dao;
+
+import common.EventBus;
+import events.LikeChangedEvent;
+import lombok.extern.slf4j.Slf4j;
+import model.Like;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Collectors;
+
+/**
+ * {@link LikeDAO} that keeps likes in memory and writes them behind.
+ * A post's likers are read from {@code likeDAO} the first time the post is asked about;
+ * from then on likes, unlikes, {@code isLiked} and counts do not touch the database.
+ * Changes go to a {@link LikeJournal} and are written by {@link #flush()} as one batch,
+ * on a schedule and on {@link #close()}. A journal left behind by a crash is written by {@link #start()}.
+ * Post.likes_count, and so the counts on rendered posts, lag by up to one flush period.
+ * At most {@code maxPosts} posts are kept: past that, each flush drops the least recently used
+ * ones that have no pending changes, and they are read again when next asked about.
+ */
+@Slf4j
+public class LikeCounterService implements LikeDAO, AutoCloseable {
+
+    private static final int STRIPES = 64;
+    public static final int DEFAULT_MAX_POSTS = 100000;
+
+    private final LikeDAO likeDAO;
+    private final EventBus eventBus;
+    private final LikeJournal journal;
+    private final int maxPosts;
+
+    private final Map<Long, PostLikes> posts = new ConcurrentHashMap<>();
+//    keeps the changes of one like in the same order in memory, journal and pending
+//    locks rather than monitors, the journal write under them would pin a virtual thread's carrier
+    private final ReentrantLock[] stripes = new ReentrantLock[STRIPES];
+    private final ReentrantLock flushLock = new ReentrantLock();
+
+//    shared by changes and loads, taken alone by flush to swap pending and the journal and to evict posts
+    private final ReadWriteLock pendingLock = new ReentrantReadWriteLock();
+    private volatile Map<Like, Boolean> pending = new ConcurrentHashMap<>();
+
+    private final ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor();
+
+    public LikeCounterService(LikeDAO likeDAO, EventBus eventBus, Path journal){
+
+        this(likeDAO, eventBus, journal, DEFAULT_MAX_POSTS);
+    }
+
+    public LikeCounterService(LikeDAO likeDAO, EventBus eventBus, Path journal, int maxPosts){
+
+        this.likeDAO = likeDAO;
+        this.eventBus = eventBus;
+        this.journal = new LikeJournal(journal);
+        this.maxPosts = maxPosts;
+
+        for (int i = 0; i < STRIPES; i++)
+            stripes[i] = new ReentrantLock();
+    }
+
+    /**
+     * Writes the changes a crash left in the journal. To be called once, before the service is used.
+     */
+    public void start(){
+
+        Map<Like, Boolean> unflushed = journal.read();
+        if (!unflushed.isEmpty()) {
+            log.info("writing {} like change(s) left in the journal", unflushed.size());
+            pending.putAll(unflushed);
+            flush();
+        }
+    }
+
+    public void scheduleFlush(long period, TimeUnit unit){
+
+        flusher.scheduleWithFixedDelay(() -> {
+            try {
+                flush();
+            } catch (Exception e) {
+                log.error("cannot flush likes, will retry", e);
+            }
+        }, period, period, unit);
+    }
+
+    /**
+     * Writes every change made so far in one batch. If that fails the changes
+     * stay pending and in the journal.
+     */
+    public void flush(){
+
+        flushLock.lock();
+        try {
+            flushChanges();
+            evict();
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    public int countPosts(){
+
+        return posts.size();
+    }
+
+    private void flushChanges(){
+
+        Map<Like, Boolean> changes;
+
+        pendingLock.writeLock().lock();
+        try {
+            if (pending.isEmpty())
+                return;
+
+            journal.rotate();
+            changes = pending;
+            pending = new ConcurrentHashMap<>();
+        } finally {
+            pendingLock.writeLock().unlock();
+        }
+
+        try {
+            likeDAO.saveLikes(changes);
+        } catch (RuntimeException e) {
+            pendingLock.writeLock().lock();
+            try {
+//                changes made meanwhile are newer
+                changes.forEach(pending::putIfAbsent);
+            } finally {
+                pendingLock.writeLock().unlock();
+            }
+            throw e;
+        }
+
+        journal.flushed();
+    }
+
+    public int countPending(){
+
+        return pending.size();
+    }
+
+    @Override
+    public boolean addLike(Like like) {
+
+        if (!change(like, true))
+            return false;
+
+        eventBus.publish(new LikeChangedEvent(like, true));
+        return true;
+    }
+
+    @Override
+    public boolean removeLike(Like like) {
+
+        if (!change(like, false))
+            return false;
+
+        eventBus.publish(new LikeChangedEvent(like, false));
+        return true;
+    }
+
+    @Override
+    public void saveLikes(Map<Like, Boolean> changes) {
+
+        changes.forEach(this::change);
+    }
+
+    @Override
+    public boolean isLiked(Like like) {
+
+        return load(like.getToPostId()).likers.contains(like.getFromUserId());
+    }
+
+    @Override
+    public long countByPostId(long postId) {
+
+        return load(postId).count.sum();
+    }
+
+    @Override
+    public Map<Long, Long> countByPostIds(Collection<Long> postIds) {
+
+        Map<Long, Long> counts = new HashMap<>();
+        List<Long> notLoaded = new ArrayList<>();
+
+        for (Long postId : postIds) {
+            PostLikes post = posts.get(postId);
+            if (post != null)
+                counts.put(postId, post.count.sum());
+            else
+                notLoaded.add(postId);
+        }
+
+//        posts not in memory, never asked about or evicted, have no pending changes
+        if (!notLoaded.isEmpty())
+            counts.putAll(likeDAO.countByPostIds(notLoaded));
+        return counts;
+    }
+
+    @Override
+    public Collection<Like> getByPostId(long postId) {
+
+        return load(postId).likers.stream()
+                .map(userId -> new Like(userId, postId))
+                .collect(Collectors.toCollection(HashSet::new));
+    }
+
+    @Override
+    public Collection<Like> getAll() {
+
+        flush();
+        return likeDAO.getAll();
+    }
+
+    @Override
+    public Collection<Like> getAllUserPost(long userId) {
+
+        flush();
+        return likeDAO.getAllUserPost(userId);
+    }
+
+    @Override
+    public void close() {
+
+        flusher.shutdown();
+        try {
+            flusher.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        flush();
+        journal.close();
+    }
+
+    private boolean change(Like like, boolean liked){
+
+        long userId = like.getFromUserId();
+
+        ReentrantLock stripe = stripes[Math.floorMod(like.hashCode(), STRIPES)];
+
+        while (true) {
+
+            PostLikes post = load(like.getToPostId());
+
+            stripe.lock();
+            pendingLock.readLock().lock();
+            try {
+//                evicted since it was loaded: the change has to go to the one read again
+                if (posts.get(like.getToPostId()) != post)
+                    continue;
+
+                if (liked ? !post.likers.add(userId) : !post.likers.remove(userId))
+                    return false;
+
+                try {
+                    journal.append(like, liked);
+                    pending.put(like, liked);
+                } catch (RuntimeException e) {
+                    if (liked)
+                        post.likers.remove(userId);
+                    else
+                        post.likers.add(userId);
+                    throw e;
+                }
+
+                post.count.add(liked ? 1 : -1);
+                return true;
+            } finally {
+                pendingLock.readLock().unlock();
+                stripe.unlock();
+            }
+        }
+    }
+
+    private PostLikes load(long postId){
+
+        PostLikes post = posts.get(postId);
+
+        if (post != null) {
+            post.lastUsed = System.nanoTime();
+            return post;
+        }
+
+//        not computeIfAbsent: that would query holding the map bin's monitor;
+//        under the read lock so that no flush writes or evicts this post meanwhile
+        pendingLock.readLock().lock();
+        try {
+            PostLikes loaded = new PostLikes(likeDAO.getByPostId(postId));
+            post = posts.putIfAbsent(postId, loaded);
+
+            return post != null ? post : loaded;
+        } finally {
+            pendingLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Drops the least recently used posts over {@code maxPosts}. A post with pending changes is kept:
+     * read again from the database it would miss them.
+     */
+    private void evict(){
+
+        if (posts.size() <= maxPosts)
+            return;
+
+        pendingLock.writeLock().lock();
+        try {
+            Set<Long> changed = pending.keySet().stream()
+                    .map(Like::getToPostId)
+                    .collect(Collectors.toSet());
+
+            List<Map.Entry<Long, PostLikes>> byAge = new ArrayList<>(posts.entrySet());
+            byAge.sort(Comparator.comparingLong(e -> e.getValue().lastUsed));
+
+            int excess = posts.size() - maxPosts;
+            for (Map.Entry<Long, PostLikes> entry : byAge) {
+                if (excess == 0)
+                    break;
+                if (!changed.contains(entry.getKey()) && posts.remove(entry.getKey(), entry.getValue()))
+                    excess--;
+            }
+        } finally {
+            pendingLock.writeLock().unlock();
+        }
+    }
+
+    private static class PostLikes {
+
+        private final Set<Long> likers = ConcurrentHashMap.newKeySet();
+        private final LongAdder count = new LongAdder();
+        private volatile long lastUsed = System.nanoTime();
+
+        private PostLikes(Collection<Like> likes){
+
+            likes.forEach(l -> likers.add(l.getFromUserId()));
+            count.add(likers.size());
+        }
+    }
+}
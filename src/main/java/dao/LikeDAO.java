@@ -4,6 +4,8 @@ import model.Like;
 
 import java.util.Collection;
 import java.util.HashSet;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
 
 /**
@@ -17,8 +19,30 @@ public interface LikeDAO {
 
     boolean addLike(Like like);
 
+    /**
+     * Completes with what {@link #addLike} returns; writers that batch may complete it later.
+     */
+    default CompletableFuture<Boolean> addLikeAsync(Like like){
+
+        return CompletableFuture.completedFuture(addLike(like));
+    }
+
     boolean removeLike(Like like);
 
+    /**
+     * Applies likes ({@code true}) and unlikes ({@code false}) made elsewhere, without publishing events.
+     * Likes of posts or by users that are gone are skipped.
+     */
+    default void saveLikes(Map<Like, Boolean> changes){
+
+        changes.forEach((like, liked) -> {
+            if (!liked)
+                removeLike(like);
+            else if (!isLiked(like))
+                addLike(like);
+        });
+    }
+
     default Collection<Like> getByPostId(long postId){
 
         return getAll().stream()
@@ -39,4 +63,11 @@ public interface LikeDAO {
                 .filter(l -> l.getToPostId() == postId)
                 .count();
     }
+
+    default Map<Long, Long> countByPostIds(Collection<Long> postIds){
+
+        return getAll().stream()
+                .filter(l -> postIds.contains(l.getToPostId()))
+                .collect(Collectors.groupingBy(Like::getToPostId, Collectors.counting()));
+    }
 }
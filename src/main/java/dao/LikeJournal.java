@@ -0,0 +1,188 @@
+package dao;
+
+import lombok.extern.slf4j.Slf4j;
+import model.Like;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Append-only log of likes and unlikes that {@link LikeCounterService} has not written
+ * to the database yet, one {@code +userId postId} or {@code -userId postId} line each.
+ * Every line is handed to the OS before the change is acknowledged, so it survives
+ * the process dying. A flush moves the file aside as {@code <name>.flushing}
+ * and deletes that once the database has the changes.
+ */
+@Slf4j
+class LikeJournal implements AutoCloseable {
+
+    private final Path path;
+    private final Path flushing;
+//    a lock rather than synchronized: a virtual thread blocked in a write under a monitor would pin its carrier
+    private final ReentrantLock lock = new ReentrantLock();
+    private FileChannel channel;
+
+    LikeJournal(Path path){
+
+        this.path = path;
+        this.flushing = Paths.get(path + ".flushing");
+
+        dropTornLine(flushing);
+        dropTornLine(path);
+        this.channel = open(path);
+    }
+
+    void append(Like like, boolean liked){
+
+        lock.lock();
+        try {
+            String line = (liked ? "+" : "-") + like.getFromUserId() + " " + like.getToPostId() + "\n";
+            ByteBuffer buffer = ByteBuffer.wrap(line.getBytes(StandardCharsets.US_ASCII));
+            while (buffer.hasRemaining())
+                channel.write(buffer);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Every change in the journal in the order it was made, the last one per like winning.
+     * Changes set aside by a flush that did not finish come first.
+     */
+    Map<Like, Boolean> read(){
+
+        lock.lock();
+        try {
+            Map<Like, Boolean> changes = new LinkedHashMap<>();
+            readInto(flushing, changes);
+            readInto(path, changes);
+            return changes;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Sets the current changes aside for a flush and starts an empty journal.
+     * Changes left from a failed flush stay set aside together with them.
+     */
+    void rotate(){
+
+        lock.lock();
+        try {
+            channel.force(false);
+            channel.close();
+
+            if (Files.exists(flushing)) {
+                Files.write(flushing, Files.readAllBytes(path), StandardOpenOption.APPEND);
+                Files.delete(path);
+            } else {
+                Files.move(path, flushing, StandardCopyOption.ATOMIC_MOVE);
+            }
+
+            channel = open(path);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * The changes set aside by {@link #rotate()} are in the database.
+     */
+    void flushed(){
+
+        lock.lock();
+        try {
+            Files.deleteIfExists(flushing);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void close(){
+
+        lock.lock();
+        try {
+            channel.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static FileChannel open(Path path){
+
+        try {
+            return FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void readInto(Path path, Map<Like, Boolean> changes){
+
+        if (!Files.exists(path))
+            return;
+
+        try {
+            for (String line : Files.readAllLines(path, StandardCharsets.US_ASCII)) {
+
+                String[] ids = line.length() < 2 ? new String[0] : line.substring(1).split(" ");
+
+                if (ids.length != 2 || (line.charAt(0) != '+' && line.charAt(0) != '-')) {
+                    log.warn("skipping malformed line in {}: {}", path, line);
+                    continue;
+                }
+
+                Like like = new Like(Long.parseLong(ids[0]), Long.parseLong(ids[1]));
+                changes.remove(like);
+                changes.put(like, line.charAt(0) == '+');
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * A line without its newline was cut short by a crash and was never acknowledged.
+     */
+    private static void dropTornLine(Path path){
+
+        if (!Files.exists(path))
+            return;
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+
+            byte[] bytes = Files.readAllBytes(path);
+            int end = bytes.length;
+            while (end > 0 && bytes[end - 1] != '\n')
+                end--;
+
+            if (end < bytes.length) {
+                log.warn("dropping {} byte(s) of a torn line at the end of {}", bytes.length - end, path);
+                channel.truncate(end);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
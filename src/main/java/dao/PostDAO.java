@@ -3,7 +3,12 @@ package dao;
 import model.Post;
 
 import java.util.Collection;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 /**
  * Created by wopqw on 05.11.16.
@@ -12,13 +17,32 @@ public interface PostDAO {
 
     Collection<Post> getAll();
 
-    Collection<Post> getUserTimeline(long userId, long offsetId, int limit);
+    /**
+     * One page of {@code query}, in the order given by {@link PostQuery#getDirection()}.
+     */
+    List<Post> find(PostQuery query);
 
-    void addPost(Post post);
+    /**
+     * @return {@code post} with the id it was stored under
+     */
+    Post addPost(Post post);
+
+    /**
+     * Completes with the id of the stored post; writers that batch may complete it later.
+     */
+    default CompletableFuture<Long> addPostAsync(Post post){
+
+        return CompletableFuture.completedFuture(addPost(post).getId());
+    }
 
     Optional<Post> getPostById(long id);
 
-    Collection<Post> getAllByUser(long userId, long offsetId, int limit);
+    default Map<Long, Post> getByIds(Collection<Long> ids){
+
+        return getAll().stream()
+                .filter(p -> ids.contains(p.getId()))
+                .collect(Collectors.toMap(Post::getId, Function.identity()));
+    }
 
     boolean isPostsReadyToUpdate(long userId, long offsetId);
 
@@ -28,15 +52,10 @@ public interface PostDAO {
 
     void deletePost(long postId);
 
-    Collection<Post> getNotPrivateUserPosts(long userId, long offsetId, int limit);
-
-    Collection<Post> getPrevByUser(long userId, long offsetId, int limit);
-
-    Collection<Post> getNotPrivatePrevPosts(long userId, long offsetId, int limit);
-
-    Collection<Post> searchPosts(String text);
-
-    Collection<Post> getPrevTimeline(long userId, long offsetId, int limit);
+    /**
+     * At most {@code limit} matches with ids below {@code offsetId}, newest first.
+     */
+    Collection<Post> searchPosts(String text, long offsetId, int limit);
 
     int countPostsInTimeline(long userId);
 }
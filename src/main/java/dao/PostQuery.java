@@ -0,0 +1,63 @@
+package dao;
+
+import lombok.Builder;
+import lombok.Value;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * One page of posts for {@link PostDAO#find}: a user's own posts or their timeline,
+ * the newest {@code limit} ids above the cursor or below it.
+ * Pages come back in the order they are laid out: posts {@link PostQueryBuilder#after after} the cursor oldest first,
+ * as the page puts each on top of the previous one, posts {@link PostQueryBuilder#before before} it newest first, as it appends them.
+ */
+@Value
+@Builder(toBuilder = true)
+public class PostQuery {
+
+    public enum Scope {AUTHOR, TIMELINE}
+
+    public enum Direction {NEWER, OLDER}
+
+    Scope scope;
+    long userId;
+    boolean publicOnly;
+    @Builder.Default
+    Direction direction = Direction.NEWER;
+    long cursor;
+    int limit;
+
+    public static PostQueryBuilder byAuthor(long authorId){
+
+        return builder().scope(Scope.AUTHOR).userId(authorId);
+    }
+
+    public static PostQueryBuilder timeline(long userId){
+
+        return builder().scope(Scope.TIMELINE).userId(userId);
+    }
+
+    /**
+     * Puts a page read newest first, as the indexes give it, in the order of {@link #getDirection()}.
+     */
+    public <T> List<T> inPageOrder(List<T> newestFirst){
+
+        if (direction == Direction.NEWER)
+            Collections.reverse(newestFirst);
+        return newestFirst;
+    }
+
+    public static class PostQueryBuilder {
+
+        public PostQueryBuilder after(long id){
+
+            return direction(Direction.NEWER).cursor(id);
+        }
+
+        public PostQueryBuilder before(long id){
+
+            return direction(Direction.OLDER).cursor(id);
+        }
+    }
+}
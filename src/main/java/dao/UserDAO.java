@@ -3,7 +3,10 @@ package dao;
 import model.User;
 
 import java.util.Collection;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 /**
  * Created by wopqw on 30.10.16.
@@ -21,6 +24,13 @@ public interface UserDAO {
                 .findAny();
     }
 
+    default Map<Long, User> getByIds(Collection<Long> ids){
+
+        return getAll().stream()
+                .filter(u -> ids.contains(u.getId()))
+                .collect(Collectors.toMap(User::getId, Function.identity()));
+    }
+
     default Optional<User> getByUsername(String username){
 
         return getAll().stream()
@@ -50,5 +60,8 @@ public interface UserDAO {
 
     void deleteUser(User user);
 
-    Collection<User> searchUser(String text);
+    /**
+     * At most {@code limit} matches with ids below {@code offsetId}, newest first.
+     */
+    Collection<User> searchUser(String text, long offsetId, int limit);
 }
@@ -0,0 +1,15 @@
+package events;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import model.Comment;
+
+/**
+ * Published by {@link dao.CommentDAO#addComment} once the comment is stored.
+ */
+@Data
+@AllArgsConstructor
+public class CommentAddedEvent {
+
+    private Comment comment;
+}
@@ -0,0 +1,14 @@
+package events;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * Published by {@link dao.CommentDAO#deleteComment} when a comment was actually deleted.
+ */
+@Data
+@AllArgsConstructor
+public class CommentDeletedEvent {
+
+    private long commentId;
+}
@@ -0,0 +1,16 @@
+package events;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import model.Following;
+
+/**
+ * Published by {@link dao.FollowingDAO#addFollowing} and {@link dao.FollowingDAO#deleteFollowing}.
+ */
+@Data
+@AllArgsConstructor
+public class FollowingChangedEvent {
+
+    private Following following;
+    private boolean followed;
+}
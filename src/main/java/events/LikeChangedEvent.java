@@ -0,0 +1,17 @@
+package events;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import model.Like;
+
+/**
+ * Published by {@link dao.LikeDAO#addLike} and {@link dao.LikeDAO#removeLike}
+ * when a like was actually added or removed.
+ */
+@Data
+@AllArgsConstructor
+public class LikeChangedEvent {
+
+    private Like like;
+    private boolean liked;
+}
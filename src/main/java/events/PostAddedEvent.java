@@ -0,0 +1,15 @@
+package events;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import model.Post;
+
+/**
+ * Published by {@link dao.PostDAO#addPost} once the post is stored.
+ */
+@Data
+@AllArgsConstructor
+public class PostAddedEvent {
+
+    private Post post;
+}
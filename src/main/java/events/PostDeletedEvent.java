@@ -0,0 +1,14 @@
+package events;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * Published by {@link dao.PostDAO#deletePost}.
+ */
+@Data
+@AllArgsConstructor
+public class PostDeletedEvent {
+
+    private long postId;
+}
@@ -0,0 +1,15 @@
+package events;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import model.User;
+
+/**
+ * Published by {@link dao.UserDAO#addUser}, with the generated id set on the user.
+ */
+@Data
+@AllArgsConstructor
+public class UserAddedEvent {
+
+    private User user;
+}
@@ -0,0 +1,16 @@
+package events;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import model.User;
+
+/**
+ * Published by {@link dao.UserDAO#updateUser} and {@link dao.UserDAO#deleteUser}.
+ */
+@Data
+@AllArgsConstructor
+public class UserChangedEvent {
+
+    private User user;
+    private boolean deleted;
+}
@@ -0,0 +1,47 @@
+package filters;
+
+import listeners.Initer;
+import metrics.Metrics;
+
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.annotation.WebFilter;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * Times each request as {@code servlet.<servlet name>}.
+ * Jersey requests are timed per resource method by {@code webapi.ResourceMetricsFilter}.
+ */
+@WebFilter(urlPatterns = "/*", asyncSupported = true)
+public class ServletMetricsFilter implements HttpFilter {
+
+    private static final String JERSEY_PATH = "/webapi";
+
+    private Metrics metrics;
+
+    @Override
+    public void init(FilterConfig filterConfig) throws ServletException {
+
+        metrics = (Metrics) filterConfig.getServletContext().getAttribute(Initer.METRICS);
+    }
+
+    @Override
+    public void doFilter(HttpServletRequest request, HttpServletResponse response, FilterChain chain) throws IOException, ServletException {
+
+        if (metrics == null || !metrics.isEnabled() || JERSEY_PATH.equals(request.getServletPath())) {
+            chain.doFilter(request, response);
+            return;
+        }
+
+        long start = System.nanoTime();
+
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            metrics.timer("servlet." + request.getHttpServletMapping().getServletName()).stop(start);
+        }
+    }
+}
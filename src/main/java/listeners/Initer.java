@@ -1,19 +1,34 @@
 package listeners;
 
 import common.ConnectionPool;
+import common.EmbeddedDatabase;
+import common.EventBus;
+import common.Migrations;
+import common.PostViewAssembler;
 import dao.*;
 import dao.H2.*;
 import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
+import metrics.Metrics;
 import security.StringEncryptUtil;
+import search.SearchIndex;
+import search.SearchService;
+import security.UserRevocations;
+import webapi.DaoExecutor;
+import webapi.PendingUpdates;
+import websocket.UpdatesHub;
 
 import javax.servlet.ServletContext;
 import javax.servlet.ServletContextEvent;
 import javax.servlet.ServletContextListener;
 import javax.servlet.annotation.WebListener;
+import java.io.FileInputStream;
+import java.nio.file.Paths;
 import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.Statement;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
 
 @Slf4j
 @WebListener
@@ -22,6 +37,7 @@ public class Initer implements ServletContextListener {
     private static final String PATH_CLASSES = "WEB-INF/classes/";
     private static final String DB_PROPERTIES = "db.properties";
     private static final String H2_JSP_SQL = "h2_jsp.sql";
+    private static final String MIGRATIONS = "db/migration";
 
 
     public static final String USER_DAO = "userDAO";
@@ -30,6 +46,19 @@ public class Initer implements ServletContextListener {
     public static final String POST_DAO = "postDAO";
     public static final String LIKE_DAO = "likeDAO";
     public static final String COMMENT_DAO = "commentDAO";
+    public static final String POST_VIEW_ASSEMBLER = "postViewAssembler";
+    public static final String EVENT_BUS = "eventBus";
+    public static final String PENDING_UPDATES = "pendingUpdates";
+    public static final String UPDATES_HUB = "updatesHub";
+    public static final String METRICS = "metrics";
+    public static final String USER_REVOCATIONS = "userRevocations";
+    public static final String SEARCH_SERVICE = "searchService";
+    public static final String POST_COUNTERS = "postCounters";
+    public static final String BATCH_WRITER = "batchWriter";
+    public static final String EMBEDDED_DATABASE = "embeddedDatabase";
+    public static final String SHARDS = "shards";
+    public static final String DAO_EXECUTOR = "daoExecutor";
+    public static final String CONNECTION_POOL = "connectionPool";
 
     @Override
     public void contextInitialized(ServletContextEvent sce) {
@@ -39,18 +68,122 @@ public class Initer implements ServletContextListener {
         //noinspection Split Declaration
         String path = servletContext.getRealPath("/") + PATH_CLASSES;
 
+        Properties settings = loadSettings(path + DB_PROPERTIES);
         ConnectionPool connectionPool = ConnectionPool.create(path + DB_PROPERTIES);
+        servletContext.setAttribute(CONNECTION_POOL, connectionPool);
+
+        if (EmbeddedDatabase.isEmbedded(settings))
+            servletContext.setAttribute(EMBEDDED_DATABASE, new EmbeddedDatabase(settings));
+
+        new Migrations(connectionPool, path + MIGRATIONS).migrate();
 
 //        connectionPool.initDb(path+ H2_JSP_SQL);
 
 //        reinitDbWithHash(connectionPool);
 
-        UserDAO userDAO = new H2UserDAO(connectionPool);
-        UserRoleDAO userRoleDAO = new H2UserRoleDAO(connectionPool);
-        FollowingDAO followingDAO = new H2FollowingDAO(connectionPool);
-        PostDAO postDAO = new H2PostDAO(connectionPool);
-        LikeDAO likeDAO = new H2LikeDAO(connectionPool);
-        CommentDAO commentDAO = new H2CommentDAO(connectionPool);
+        Shards shards = Shards.isSharded(settings) ? Shards.create(settings, connectionPool, path + MIGRATIONS) : null;
+
+        long repairMinutes = Long.parseLong(settings.getProperty("postCounters.repairMinutes", "60"));
+        H2PostCounters postCounters = null;
+        if (shards != null) {
+            shards.scheduleCounterRepair(repairMinutes, TimeUnit.MINUTES);
+        } else {
+            postCounters = new H2PostCounters(connectionPool);
+            postCounters.scheduleRepair(repairMinutes, TimeUnit.MINUTES);
+        }
+
+        Metrics metrics = new Metrics(Boolean.parseBoolean(settings.getProperty("metrics", "false")));
+        connectionPool.instrument(metrics);
+
+        EventBus eventBus = new EventBus();
+
+        UserDAO userDAO = metrics.instrument(UserDAO.class, shards != null
+                ? new ShardedUserDAO(shards, eventBus)
+                : new H2UserDAO(connectionPool, eventBus), "dao.user");
+        if (Boolean.parseBoolean(settings.getProperty("userCache", "false"))) {
+            CachingUserDAO cachingUserDAO = new CachingUserDAO(userDAO,
+                    Integer.parseInt(settings.getProperty("userCache.size", "10000")),
+                    Long.parseLong(settings.getProperty("userCache.ttlSeconds", "300")), TimeUnit.SECONDS);
+            metrics.gauge("userCache.hits", cachingUserDAO::getHits);
+            metrics.gauge("userCache.misses", cachingUserDAO::getMisses);
+            metrics.gauge("userCache.size", cachingUserDAO::size);
+            userDAO = cachingUserDAO;
+        }
+        H2BatchWriter batchWriter = null;
+        if (shards != null && (Boolean.parseBoolean(settings.getProperty("batchWriter", "false"))
+                || Boolean.parseBoolean(settings.getProperty("timelineInbox", "false")))) {
+            log.warn("batchWriter and timelineInbox work on a single database and are off with shards.urls");
+        } else if (Boolean.parseBoolean(settings.getProperty("batchWriter", "false"))) {
+            batchWriter = new H2BatchWriter(connectionPool,
+                    Integer.parseInt(settings.getProperty("batchWriter.maxRows", "100")),
+                    Long.parseLong(settings.getProperty("batchWriter.maxDelayMillis", "2")));
+            metrics.gauge("batchWriter.queued", batchWriter::countQueued);
+        }
+
+        UserRoleDAO userRoleDAO = metrics.instrument(UserRoleDAO.class, shards != null
+                ? new ShardedUserRoleDAO(shards)
+                : new H2UserRoleDAO(connectionPool), "dao.userRole");
+        FollowingDAO followingDAO = metrics.instrument(FollowingDAO.class, shards != null
+                ? new ShardedFollowingDAO(shards, eventBus)
+                : new H2FollowingDAO(connectionPool, eventBus), "dao.following");
+        PostDAO postDAO;
+        if (shards != null)
+            postDAO = new ShardedPostDAO(shards, eventBus);
+        else if (Boolean.parseBoolean(settings.getProperty("timelineInbox", "false")))
+            postDAO = new H2InboxPostDAO(connectionPool, eventBus, batchWriter,
+                    Integer.parseInt(settings.getProperty("timelineInbox.size", "500")),
+                    Integer.parseInt(settings.getProperty("timelineInbox.celebrityThreshold", "1000")));
+        else
+            postDAO = new H2PostDAO(connectionPool, eventBus, batchWriter);
+        postDAO = metrics.instrument(PostDAO.class, postDAO, "dao.post");
+        LikeDAO likeDAO = metrics.instrument(LikeDAO.class, shards != null
+                ? new ShardedLikeDAO(shards, eventBus)
+                : new H2LikeDAO(connectionPool, eventBus, batchWriter), "dao.like");
+        if (Boolean.parseBoolean(settings.getProperty("likeCounter", "false"))) {
+            LikeCounterService likeCounterService = new LikeCounterService(likeDAO, eventBus,
+                    Paths.get(settings.getProperty("likeCounter.journal", System.getProperty("user.home") + "/soc_likes.journal")),
+                    Integer.parseInt(settings.getProperty("likeCounter.maxPosts", String.valueOf(LikeCounterService.DEFAULT_MAX_POSTS))));
+            likeCounterService.start();
+            likeCounterService.scheduleFlush(Long.parseLong(settings.getProperty("likeCounter.flushMillis", "1000")),
+                    TimeUnit.MILLISECONDS);
+            metrics.gauge("likeCounter.pending", likeCounterService::countPending);
+            metrics.gauge("likeCounter.posts", likeCounterService::countPosts);
+            likeDAO = likeCounterService;
+        }
+        CommentDAO commentDAO = metrics.instrument(CommentDAO.class, shards != null
+                ? new ShardedCommentDAO(shards, eventBus)
+                : new H2CommentDAO(connectionPool, eventBus, batchWriter), "dao.comment");
+
+        UserRevocations userRevocations = "revocations".equals(settings.getProperty("sessionValidation", "database"))
+                ? new UserRevocations(eventBus)
+                : null;
+
+        SearchIndex searchIndex = null;
+        if (Boolean.parseBoolean(settings.getProperty("searchIndex", "false"))) {
+            searchIndex = new SearchIndex(eventBus, userDAO, postDAO, commentDAO);
+            Thread rebuild = new Thread(searchIndex::rebuild, "search-index-rebuild");
+            rebuild.setDaemon(true);
+            rebuild.start();
+        }
+
+        PostViewAssembler postViewAssembler = new PostViewAssembler(userDAO);
+        UpdatesHub updatesHub = new UpdatesHub(eventBus, userDAO, followingDAO, postDAO, likeDAO);
+        SearchService searchService = new SearchService(searchIndex, userDAO, postDAO, commentDAO, postViewAssembler);
+
+//        as many threads as connections, so a request waits for one here rather than on a container thread
+        String poolSize = "slots".equals(settings.getProperty("pool", "queue"))
+                ? settings.getProperty("pool.maxSize", settings.getProperty("poolSize"))
+                : settings.getProperty("poolSize");
+        DaoExecutor daoExecutor = new DaoExecutor(
+                Integer.parseInt(settings.getProperty("daoExecutor.threads", poolSize)),
+                Integer.parseInt(settings.getProperty("daoExecutor.queueSize", "200")),
+                Long.parseLong(settings.getProperty("daoExecutor.retryAfterSeconds", "1")),
+                Boolean.parseBoolean(settings.getProperty("virtualThreads", "false")));
+        daoExecutor.instrument(metrics);
+        PendingUpdates pendingUpdates = new PendingUpdates(eventBus, followingDAO, daoExecutor);
+
+        metrics.gauge("longPoll.waiting", pendingUpdates::countWaiting);
+        metrics.gauge("webSocket.subscribers", updatesHub::countSubscribers);
 
         servletContext.setAttribute(USER_DAO,userDAO);
         servletContext.setAttribute(USER_ROLE_DAO,userRoleDAO);
@@ -58,6 +191,53 @@ public class Initer implements ServletContextListener {
         servletContext.setAttribute(POST_DAO,postDAO);
         servletContext.setAttribute(LIKE_DAO, likeDAO);
         servletContext.setAttribute(COMMENT_DAO, commentDAO);
+        servletContext.setAttribute(POST_VIEW_ASSEMBLER, postViewAssembler);
+        servletContext.setAttribute(EVENT_BUS, eventBus);
+        servletContext.setAttribute(PENDING_UPDATES, pendingUpdates);
+        servletContext.setAttribute(UPDATES_HUB, updatesHub);
+        servletContext.setAttribute(METRICS, metrics);
+        servletContext.setAttribute(SEARCH_SERVICE, searchService);
+        servletContext.setAttribute(DAO_EXECUTOR, daoExecutor);
+        if (postCounters != null)
+            servletContext.setAttribute(POST_COUNTERS, postCounters);
+        if (shards != null)
+            servletContext.setAttribute(SHARDS, shards);
+        if (batchWriter != null)
+            servletContext.setAttribute(BATCH_WRITER, batchWriter);
+        if (userRevocations != null)
+            servletContext.setAttribute(USER_REVOCATIONS, userRevocations);
+    }
+
+    @Override
+    public void contextDestroyed(ServletContextEvent sce) {
+
+        ServletContext servletContext = sce.getServletContext();
+
+//        users of the pool first, then the pool, then the embedded database it connects to
+        for (String name : new String[]{DAO_EXECUTOR, UPDATES_HUB, PENDING_UPDATES, LIKE_DAO, POST_DAO, BATCH_WRITER, POST_COUNTERS, METRICS, SHARDS,
+                CONNECTION_POOL, EMBEDDED_DATABASE}) {
+
+            Object attribute = servletContext.getAttribute(name);
+
+            if (attribute instanceof AutoCloseable) {
+                try {
+                    ((AutoCloseable) attribute).close();
+                } catch (Exception e) {
+                    log.error("cannot close {}", name, e);
+                }
+            }
+        }
+    }
+
+    @SneakyThrows
+    private Properties loadSettings(String pathToConfig){
+
+        Properties settings = new Properties();
+
+        try(FileInputStream inputStream = new FileInputStream(pathToConfig)){
+            settings.load(inputStream);
+        }
+        return settings;
     }
 
     @SneakyThrows
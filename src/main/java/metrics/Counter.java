@@ -0,0 +1,25 @@
+package metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+public class Counter implements CounterMBean {
+
+    static final Counter NOOP = new Counter() {
+        @Override
+        public void increment() {
+        }
+    };
+
+    private final LongAdder count = new LongAdder();
+
+    public void increment() {
+
+        count.increment();
+    }
+
+    @Override
+    public long getCount() {
+
+        return count.sum();
+    }
+}
@@ -0,0 +1,6 @@
+package metrics;
+
+public interface CounterMBean {
+
+    long getCount();
+}
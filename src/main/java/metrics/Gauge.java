@@ -0,0 +1,20 @@
+package metrics;
+
+import lombok.AllArgsConstructor;
+
+import java.util.function.LongSupplier;
+
+/**
+ * Reads its value on demand, so it costs nothing between reads.
+ */
+@AllArgsConstructor
+public class Gauge implements GaugeMBean {
+
+    private final LongSupplier supplier;
+
+    @Override
+    public long getValue() {
+
+        return supplier.getAsLong();
+    }
+}
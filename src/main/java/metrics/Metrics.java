@@ -0,0 +1,170 @@
+package metrics;
+
+import lombok.extern.slf4j.Slf4j;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Named counters, gauges and timers of the application, each also published as an MBean
+ * under {@code soc:type=<kind>,name=<name>}. A disabled registry hands out no-op metrics,
+ * registers nothing and leaves {@link #instrument} targets unwrapped.
+ */
+@Slf4j
+public class Metrics implements AutoCloseable {
+
+    public static final Metrics DISABLED = new Metrics(false);
+
+    private static final String DOMAIN = "soc";
+
+    private final boolean enabled;
+    private final Map<String, Object> metrics = new ConcurrentSkipListMap<>();
+    private final List<ObjectName> mbeans = new CopyOnWriteArrayList<>();
+
+    public Metrics(boolean enabled) {
+
+        this.enabled = enabled;
+    }
+
+    public boolean isEnabled() {
+
+        return enabled;
+    }
+
+    public Counter counter(String name) {
+
+        return enabled ? register(name, Counter.class, Counter::new) : Counter.NOOP;
+    }
+
+    public Timer timer(String name) {
+
+        return enabled ? register(name, Timer.class, Timer::new) : Timer.NOOP;
+    }
+
+    public void gauge(String name, LongSupplier supplier) {
+
+        if (enabled)
+            register(name, Gauge.class, () -> new Gauge(supplier));
+    }
+
+    /**
+     * Sorted by name.
+     */
+    public Map<String, Object> getAll() {
+
+        return Collections.unmodifiableMap(metrics);
+    }
+
+    /**
+     * Times every interface method of {@code target} as {@code <prefix>.<method>}
+     * and counts its failures as {@code <prefix>.<method>.errors}.
+     * The proxy implements all interfaces of {@code target}, not only {@code type}.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T instrument(Class<T> type, T target, String prefix) {
+
+        if (!enabled)
+            return target;
+
+        Set<Class<?>> interfaces = new LinkedHashSet<>();
+        for (Class<?> c = target.getClass(); c != null; c = c.getSuperclass())
+            Collections.addAll(interfaces, c.getInterfaces());
+
+        Map<Method, Timer> timers = new ConcurrentHashMap<>();
+
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), interfaces.toArray(new Class<?>[0]),
+                (proxy, method, args) -> {
+
+                    if (method.getDeclaringClass() == Object.class)
+                        return invoke(method, target, args);
+
+                    Timer timer = timers.computeIfAbsent(method, m -> timer(prefix + "." + m.getName()));
+                    long start = timer.start();
+
+                    try {
+                        return invoke(method, target, args);
+                    } catch (Throwable e) {
+                        counter(prefix + "." + method.getName() + ".errors").increment();
+                        throw e;
+                    } finally {
+                        timer.stop(start);
+                    }
+                });
+    }
+
+    private static Object invoke(Method method, Object target, Object[] args) throws Throwable {
+
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    private <M> M register(String name, Class<M> kind, Supplier<M> factory) {
+
+        Object metric = metrics.get(name);
+
+        if (metric == null) {
+            M created = factory.get();
+            metric = metrics.putIfAbsent(name, created);
+
+            if (metric == null) {
+                publish(name, kind, created);
+                return created;
+            }
+        }
+
+        if (!kind.isInstance(metric))
+            throw new IllegalArgumentException(name + " is already registered as " + metric.getClass().getSimpleName());
+
+        return kind.cast(metric);
+    }
+
+    private void publish(String name, Class<?> kind, Object metric) {
+
+        try {
+            ObjectName objectName = new ObjectName(
+                    DOMAIN + ":type=" + kind.getSimpleName() + ",name=" + ObjectName.quote(name));
+
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            if (server.isRegistered(objectName))
+                server.unregisterMBean(objectName);
+
+            server.registerMBean(metric, objectName);
+            mbeans.add(objectName);
+        } catch (JMException e) {
+            log.warn("cannot publish metric {} over JMX", name, e);
+        }
+    }
+
+    @Override
+    public void close() {
+
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+
+        for (ObjectName objectName : mbeans) {
+            try {
+                server.unregisterMBean(objectName);
+            } catch (JMException e) {
+                log.warn("cannot unregister {}", objectName, e);
+            }
+        }
+        mbeans.clear();
+    }
+}
@@ -0,0 +1,150 @@
+package metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency histogram in the spirit of HdrHistogram: each power of two is split
+ * into {@code SUB_BUCKETS} linear buckets, so any recorded value is known within
+ * 1/{@code SUB_BUCKETS} of itself while the whole nanosecond range fits in a few
+ * hundred counters. Recording is lock-free; values accumulate from startup.
+ */
+public class Timer implements TimerMBean {
+
+    static final Timer NOOP = new Timer() {
+        @Override
+        public long start() {
+            return 0;
+        }
+
+        @Override
+        public void record(long nanos) {
+        }
+    };
+
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = Long.SIZE * SUB_BUCKETS;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Long::max, 0);
+
+    public long start() {
+
+        return System.nanoTime();
+    }
+
+    public void stop(long startNanos) {
+
+        record(System.nanoTime() - startNanos);
+    }
+
+    public void record(long nanos) {
+
+        if (nanos < 0)
+            nanos = 0;
+
+        buckets.incrementAndGet(indexOf(nanos));
+        count.increment();
+        sum.add(nanos);
+        max.accumulate(nanos);
+    }
+
+    @Override
+    public long getCount() {
+
+        return count.sum();
+    }
+
+    @Override
+    public double getMeanMillis() {
+
+        long count = getCount();
+        return count == 0 ? 0 : toMillis(sum.sum() / (double) count);
+    }
+
+    @Override
+    public double getMaxMillis() {
+
+        return toMillis(max.get());
+    }
+
+    @Override
+    public double getP50Millis() {
+
+        return getPercentileMillis(50);
+    }
+
+    @Override
+    public double getP95Millis() {
+
+        return getPercentileMillis(95);
+    }
+
+    @Override
+    public double getP99Millis() {
+
+        return getPercentileMillis(99);
+    }
+
+    /**
+     * Middle of the bucket holding the {@code percentile}-th value, capped by the maximum.
+     */
+    public double getPercentileMillis(double percentile) {
+
+        long total = 0;
+        long[] counts = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = buckets.get(i);
+            total += counts[i];
+        }
+
+        if (total == 0)
+            return 0;
+
+        long rank = (long) Math.ceil(total * percentile / 100);
+        long seen = 0;
+
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= Math.max(rank, 1)) {
+                long lower = lowerBound(i);
+                long upper = lowerBound(i + 1) - 1;
+                return toMillis(Math.min((lower + upper) / 2.0, max.get()));
+            }
+        }
+
+        return getMaxMillis();
+    }
+
+    static int indexOf(long value) {
+
+        if (value < SUB_BUCKETS)
+            return (int) value;
+
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    static long lowerBound(int index) {
+
+        if (index < SUB_BUCKETS)
+            return index;
+
+        int exponent = index / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        int subBucket = index % SUB_BUCKETS;
+
+        return (long) (SUB_BUCKETS + subBucket) << (exponent - SUB_BUCKET_BITS);
+    }
+
+    private static double toMillis(double nanos) {
+
+        return nanos / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+}
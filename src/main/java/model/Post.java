@@ -24,4 +24,7 @@ public class Post {
     private String text;
     private boolean privacy;
     private boolean expandable;
+//    kept by the like and comment DAOs, see H2PostCounters
+    private long likesCount;
+    private long commentsCount;
 }
@@ -0,0 +1,18 @@
+package model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * One page of search results; {@code next} is passed back to get the following page
+ * and is null on the last one.
+ */
+@Data
+@AllArgsConstructor
+public class SearchPage<T> {
+
+    private List<T> items;
+    private String next;
+}
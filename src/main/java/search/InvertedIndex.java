@@ -0,0 +1,187 @@
+package search;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Term to document postings for one kind of document, kept in a sorted map
+ * so that a query word also matches the terms it is a prefix of.
+ * Every query word has to match; documents are ranked by tf-idf, exact terms
+ * weighing more than prefix matches, and then newest first.
+ * Writes are serialized, reads are lock-free.
+ */
+public class InvertedIndex {
+
+//    bounds the work a one-letter query can cause
+    static final int MAX_EXPANSIONS = 256;
+    private static final double PREFIX_WEIGHT = 0.5;
+
+    private final NavigableMap<String, Map<Long, Integer>> postings = new ConcurrentSkipListMap<>();
+    private final Map<Long, Map<String, Integer>> documents = new ConcurrentHashMap<>();
+
+    /**
+     * Replaces whatever was indexed for {@code id}.
+     */
+    public synchronized void add(long id, String... fields) {
+
+        remove(id);
+
+        Map<String, Integer> frequencies = new HashMap<>();
+        for (String field : fields)
+            Tokenizer.tokenize(field).forEach(term -> frequencies.merge(term, 1, Integer::sum));
+
+        if (frequencies.isEmpty())
+            return;
+
+        frequencies.forEach((term, frequency) ->
+                postings.computeIfAbsent(term, t -> new ConcurrentHashMap<>()).put(id, frequency));
+        documents.put(id, frequencies);
+    }
+
+    public synchronized void remove(long id) {
+
+        Map<String, Integer> frequencies = documents.remove(id);
+
+        if (frequencies == null)
+            return;
+
+        frequencies.keySet().forEach(term -> postings.computeIfPresent(term, (t, docs) -> {
+            docs.remove(id);
+            return docs.isEmpty() ? null : docs;
+        }));
+    }
+
+    public int size() {
+
+        return documents.size();
+    }
+
+    /**
+     * All matches, best first.
+     */
+    public List<Hit> search(String query) {
+
+        return search(query, null, Integer.MAX_VALUE);
+    }
+
+    /**
+     * The best {@code limit} matches ranked below {@code after}, best first.
+     * Only {@code limit} hits are kept while ranking, so a page costs
+     * the same memory however many documents match.
+     */
+    public List<Hit> search(String query, Hit after, int limit) {
+
+        Map<Long, Double> scores = match(query);
+
+//        worst of the best on top
+        PriorityQueue<Hit> best = new PriorityQueue<>(Hit.ORDER.reversed());
+
+        for (Map.Entry<Long, Double> e : scores.entrySet()) {
+
+            Hit hit = new Hit(e.getKey(), e.getValue());
+            if (after != null && Hit.ORDER.compare(hit, after) <= 0)
+                continue;
+
+            best.add(hit);
+            if (best.size() > limit)
+                best.poll();
+        }
+
+        List<Hit> hits = new ArrayList<>(best);
+        hits.sort(Hit.ORDER);
+        return hits;
+    }
+
+    private Map<Long, Double> match(String query) {
+
+        List<String> words = Tokenizer.tokenize(query);
+
+        if (words.isEmpty())
+            return Collections.emptyMap();
+
+        Map<Long, Double> scores = null;
+
+        for (String word : words) {
+
+            Map<Long, Double> wordScores = score(word);
+
+            if (scores == null) {
+                scores = wordScores;
+            } else {
+                Map<Long, Double> both = new HashMap<>();
+                for (Map.Entry<Long, Double> e : scores.entrySet()) {
+                    Double score = wordScores.get(e.getKey());
+                    if (score != null)
+                        both.put(e.getKey(), e.getValue() + score);
+                }
+                scores = both;
+            }
+
+            if (scores.isEmpty())
+                return scores;
+        }
+
+        return scores;
+    }
+
+    private Map<Long, Double> score(String word) {
+
+        Map<Long, Double> scores = new HashMap<>();
+        double documentCount = Math.max(1, documents.size());
+        int expansions = 0;
+
+        for (Map.Entry<String, Map<Long, Integer>> e : postings.tailMap(word, true).entrySet()) {
+
+            String term = e.getKey();
+            if (!term.startsWith(word) || expansions++ >= MAX_EXPANSIONS)
+                break;
+
+            Map<Long, Integer> docs = e.getValue();
+            double idf = Math.log(1 + documentCount / docs.size());
+            double weight = term.equals(word) ? 1 : PREFIX_WEIGHT;
+
+            docs.forEach((id, frequency) -> scores.merge(id, frequency * idf * weight, Math::max));
+        }
+
+        return scores;
+    }
+
+    @Data
+    @AllArgsConstructor
+    public static class Hit {
+
+        static final Comparator<Hit> ORDER = Comparator.comparingDouble((Hit h) -> -h.score)
+                .thenComparingLong(h -> -h.id);
+
+        private long id;
+        private double score;
+
+        /**
+         * Where the next page starts; {@link #fromCursor(String)} reads it back.
+         */
+        public String toCursor() {
+
+            return score + ":" + id;
+        }
+
+        public static Hit fromCursor(String cursor) {
+
+            int colon = cursor.indexOf(':');
+            if (colon < 0)
+                throw new IllegalArgumentException("not a search cursor: " + cursor);
+
+            return new Hit(Long.parseLong(cursor.substring(colon + 1)), Double.parseDouble(cursor.substring(0, colon)));
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package search;
+
+import common.EventBus;
+import dao.CommentDAO;
+import dao.PostDAO;
+import dao.UserDAO;
+import events.CommentAddedEvent;
+import events.CommentDeletedEvent;
+import events.PostAddedEvent;
+import events.PostDeletedEvent;
+import events.UserAddedEvent;
+import events.UserChangedEvent;
+import lombok.extern.slf4j.Slf4j;
+import model.Comment;
+import model.Post;
+import model.SearchPage;
+import model.User;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * In-memory full-text indexes of users, posts and comments for {@code /s/search/}.
+ * Kept up to date from the {@link EventBus}; filled from the DAOs by {@link #rebuild()},
+ * until which {@link #isReady()} is false and callers should search the database.
+ * Hits are resolved through the DAOs, so rows deleted behind the index's back are skipped
+ * and dropped from it.
+ */
+@Slf4j
+public class SearchIndex {
+
+    private final UserDAO userDAO;
+    private final PostDAO postDAO;
+    private final CommentDAO commentDAO;
+
+    private final InvertedIndex users = new InvertedIndex();
+    private final InvertedIndex posts = new InvertedIndex();
+    private final InvertedIndex comments = new InvertedIndex();
+
+    private volatile boolean ready = false;
+
+    public SearchIndex(EventBus eventBus, UserDAO userDAO, PostDAO postDAO, CommentDAO commentDAO){
+
+        this.userDAO = userDAO;
+        this.postDAO = postDAO;
+        this.commentDAO = commentDAO;
+
+        eventBus.subscribe(UserAddedEvent.class, e -> add(e.getUser()));
+        eventBus.subscribe(UserChangedEvent.class, e -> {
+            if (e.isDeleted())
+                users.remove(e.getUser().getId());
+            else
+                add(e.getUser());
+        });
+        eventBus.subscribe(PostAddedEvent.class, e -> add(e.getPost()));
+        eventBus.subscribe(PostDeletedEvent.class, e -> posts.remove(e.getPostId()));
+        eventBus.subscribe(CommentAddedEvent.class, e -> add(e.getComment()));
+        eventBus.subscribe(CommentDeletedEvent.class, e -> comments.remove(e.getCommentId()));
+    }
+
+    /**
+     * Reads every user, post and comment. Changes published meanwhile are applied as well,
+     * a row deleted meanwhile may come back until it is next met in search results.
+     */
+    public void rebuild(){
+
+        long start = System.currentTimeMillis();
+
+        userDAO.getAll().forEach(this::add);
+        postDAO.getAll().forEach(this::add);
+        commentDAO.getAll().forEach(this::add);
+
+        ready = true;
+
+        log.info("search index built in {} ms: {} users, {} posts, {} comments",
+                System.currentTimeMillis() - start, users.size(), posts.size(), comments.size());
+    }
+
+    public boolean isReady(){
+
+        return ready;
+    }
+
+    /**
+     * @param cursor {@link SearchPage#getNext()} of the previous page, or null for the first one
+     */
+    public SearchPage<User> searchUsers(String query, String cursor, int limit){
+
+        return resolve(users, query, cursor, limit, userDAO::getByIds);
+    }
+
+    public SearchPage<Post> searchPosts(String query, String cursor, int limit){
+
+        return resolve(posts, query, cursor, limit, postDAO::getByIds);
+    }
+
+    public SearchPage<Comment> searchComments(String query, String cursor, int limit){
+
+        return resolve(comments, query, cursor, limit, commentDAO::getByIds);
+    }
+
+    private <T> SearchPage<T> resolve(InvertedIndex index, String query, String cursor, int limit,
+                                      Function<List<Long>, Map<Long, T>> loader){
+
+        InvertedIndex.Hit after = cursor == null ? null : InvertedIndex.Hit.fromCursor(cursor);
+        List<InvertedIndex.Hit> hits = index.search(query, after, limit + 1);
+
+        String next = null;
+        if (hits.size() > limit) {
+            hits = hits.subList(0, limit);
+            next = hits.get(limit - 1).toCursor();
+        }
+
+        List<Long> ids = hits.stream()
+                .map(InvertedIndex.Hit::getId)
+                .collect(Collectors.toList());
+
+        Map<Long, T> found = ids.isEmpty() ? Collections.emptyMap() : loader.apply(ids);
+
+        List<T> results = new ArrayList<>(found.size());
+        for (Long id : ids) {
+            T result = found.get(id);
+            if (result != null)
+                results.add(result);
+            else
+                index.remove(id);
+        }
+        return new SearchPage<>(results, next);
+    }
+
+    private void add(User user){
+
+        users.add(user.getId(), user.getUsername(), user.getFirstName(), user.getLastName(), user.getEmail());
+    }
+
+    private void add(Post post){
+
+        posts.add(post.getId(), post.getText());
+    }
+
+    private void add(Comment comment){
+
+        comments.add(comment.getId(), comment.getText());
+    }
+}
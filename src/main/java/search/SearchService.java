@@ -0,0 +1,135 @@
+package search;
+
+import common.PostViewAssembler;
+import dao.CommentDAO;
+import dao.PostDAO;
+import dao.UserDAO;
+import lombok.AllArgsConstructor;
+import model.Comment;
+import model.Post;
+import model.PostView;
+import model.SearchPage;
+import model.User;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+import java.util.stream.Collectors;
+
+/**
+ * Pages of search results for the search page and {@code /webapi/search/}.
+ * Uses the {@link SearchIndex} once it is ready and the database before that;
+ * a cursor is always continued by the side that handed it out.
+ * Pages are capped at {@link #MAX_LIMIT} items and queries at {@link #MAX_QUERY_LENGTH} characters,
+ * so a request costs one bounded lookup per kind however many rows match.
+ */
+@AllArgsConstructor
+public class SearchService {
+
+    public static final int DEFAULT_LIMIT = 20;
+    static final int MAX_LIMIT = 50;
+    static final int MAX_QUERY_LENGTH = 100;
+
+    /**
+     * Null when search always goes to the database.
+     */
+    private final SearchIndex searchIndex;
+    private final UserDAO userDAO;
+    private final PostDAO postDAO;
+    private final CommentDAO commentDAO;
+    private final PostViewAssembler postViewAssembler;
+
+    /**
+     * @param cursor {@link SearchPage#getNext()} of the previous page, or null for the first one
+     * @throws IllegalArgumentException if {@code cursor} was not handed out by this service
+     */
+    public SearchPage<User> searchUsers(String query, String cursor, int limit){
+
+        String text = clean(query);
+        int size = clamp(limit);
+
+        if (text.isEmpty())
+            return new SearchPage<>(Collections.emptyList(), null);
+
+        if (useIndex(cursor))
+            return searchIndex.searchUsers(text, cursor, size);
+
+        return page(userDAO.searchUser(text, offsetId(cursor), size + 1), size, User::getId);
+    }
+
+    /**
+     * Private posts are left out unless {@code visitorId} wrote them, as on the other pages;
+     * the cursor still continues after the last match, so a page may come out short.
+     */
+    public SearchPage<PostView> searchPosts(String query, String cursor, int limit, long visitorId){
+
+        String text = clean(query);
+        int size = clamp(limit);
+
+        if (text.isEmpty())
+            return new SearchPage<>(Collections.emptyList(), null);
+
+        SearchPage<Post> posts = useIndex(cursor)
+                ? searchIndex.searchPosts(text, cursor, size)
+                : page(postDAO.searchPosts(text, offsetId(cursor), size + 1), size, Post::getId);
+
+        List<Post> visible = posts.getItems().stream()
+                .filter(p -> !p.isPrivacy() || p.getAuthorId() == visitorId)
+                .collect(Collectors.toList());
+
+        return new SearchPage<>(postViewAssembler.createPostViews(visible), posts.getNext());
+    }
+
+    public SearchPage<Comment> searchComments(String query, String cursor, int limit){
+
+        String text = clean(query);
+        int size = clamp(limit);
+
+        if (text.isEmpty())
+            return new SearchPage<>(Collections.emptyList(), null);
+
+        if (useIndex(cursor))
+            return searchIndex.searchComments(text, cursor, size);
+
+        return page(commentDAO.searchComment(text, offsetId(cursor), size + 1), size, Comment::getId);
+    }
+
+    private boolean useIndex(String cursor){
+
+//        index cursors carry a score, database cursors are bare ids
+        return searchIndex != null && searchIndex.isReady() && (cursor == null || cursor.indexOf(':') >= 0);
+    }
+
+    private static long offsetId(String cursor){
+
+        return cursor == null ? Long.MAX_VALUE : Long.parseLong(cursor);
+    }
+
+    private static <T> SearchPage<T> page(Collection<T> found, int limit, ToLongFunction<T> id){
+
+        List<T> items = new ArrayList<>(found);
+
+        if (items.size() <= limit)
+            return new SearchPage<>(items, null);
+
+        items = items.subList(0, limit);
+        return new SearchPage<>(items, String.valueOf(id.applyAsLong(items.get(limit - 1))));
+    }
+
+    private static String clean(String query){
+
+        if (query == null)
+            return "";
+
+        String text = query.trim();
+        return text.length() > MAX_QUERY_LENGTH ? text.substring(0, MAX_QUERY_LENGTH) : text;
+    }
+
+    private static int clamp(int limit){
+
+        return limit <= 0 ? DEFAULT_LIMIT : Math.min(limit, MAX_LIMIT);
+    }
+}
@@ -0,0 +1,66 @@
+package search;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Splits text into case-folded terms for the {@link InvertedIndex}.
+ * Words are runs of letters and digits in any script; {@code ё} is folded to {@code е}
+ * and the commonest Russian and English inflections are cut off, so that
+ * "котики" finds "котика" and "posted" finds "posting". Queries go through the same steps.
+ */
+public class Tokenizer {
+
+    private static final int MIN_STEM = 3;
+
+//    longest first
+    private static final String[] ENDINGS = {
+            "иями", "ями", "ами", "ого", "его", "ому", "ему", "ыми", "ими", "иях",
+            "ing",
+            "ах", "ях", "ов", "ев", "ей", "ой", "ий", "ый", "ая", "яя", "ое", "ее",
+            "ом", "ем", "ам", "ям", "ую", "юю", "ых", "их", "ие", "ые",
+            "ed", "ly",
+            "а", "я", "ы", "и", "у", "ю", "е", "о", "ь", "й",
+            "s"
+    };
+
+    public static List<String> tokenize(String text) {
+
+        List<String> terms = new ArrayList<>();
+
+        if (text == null)
+            return terms;
+
+        int start = -1;
+
+        for (int i = 0; i <= text.length(); i++) {
+
+            boolean isWordChar = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+
+            if (isWordChar && start < 0) {
+                start = i;
+            } else if (!isWordChar && start >= 0) {
+                terms.add(normalize(text.substring(start, i)));
+                start = -1;
+            }
+        }
+
+        return terms;
+    }
+
+    static String normalize(String word) {
+
+        String term = word.toLowerCase(Locale.ROOT).replace('ё', 'е');
+
+        for (String ending : ENDINGS) {
+            if (term.length() - ending.length() >= MIN_STEM && term.endsWith(ending)) {
+                if (ending.equals("s") && term.endsWith("ss"))
+                    break;
+                return term.substring(0, term.length() - ending.length());
+            }
+        }
+
+        return term;
+    }
+}
@@ -2,6 +2,7 @@ package security;
 
 import dao.UserDAO;
 import filters.HttpFilter;
+import listeners.Initer;
 import lombok.extern.slf4j.Slf4j;
 import model.User;
 
@@ -25,13 +26,17 @@ public class SecurityFilter implements HttpFilter {
 
     private static final String USER = "user";
     private static final String SUSER = "sUser";
+    private static final String SUSER_VERSION = "sUserVersion";
 
     private UserDAO userDAO;
+//    null when every request re-reads the user
+    private UserRevocations userRevocations;
 
     @Override
     public void init(FilterConfig filterConfig) throws ServletException {
 
         userDAO = (UserDAO)filterConfig.getServletContext().getAttribute("userDAO");
+        userRevocations = (UserRevocations) filterConfig.getServletContext().getAttribute(Initer.USER_REVOCATIONS);
     }
 
     @Override
@@ -42,17 +47,30 @@ public class SecurityFilter implements HttpFilter {
         HttpSession httpSession = request.getSession();
         String fromUri = request.getRequestURI();
 
+        User sUser = (User) httpSession.getAttribute(SUSER);
+        Long stamp = (Long) httpSession.getAttribute(SUSER_VERSION);
+
+        if (userRevocations != null && sUser != null && stamp != null
+                && !userRevocations.isChangedSince(sUser.getId(), stamp)) {
+            chain.doFilter(request, response);
+            return;
+        }
+
+        long version = userRevocations == null ? 0 : userRevocations.currentVersion();
+
         Optional<User> userOpt =
-                Optional.ofNullable((User) httpSession.getAttribute(SUSER))
+                Optional.ofNullable(sUser)
                         .map(User::getId)
                         .flatMap(userDAO::getById);
         if (userOpt.isPresent()){
             log.info("true");
             httpSession.setAttribute(SUSER,userOpt.get());
+            httpSession.setAttribute(SUSER_VERSION, version);
             chain.doFilter(request,response);
         } else {
             log.info("false");
             httpSession.removeAttribute(SUSER);
+            httpSession.removeAttribute(SUSER_VERSION);
             httpSession.setAttribute("next", fromUri);
             request.getRequestDispatcher("/login").forward(request, response);
         }
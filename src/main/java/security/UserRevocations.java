@@ -0,0 +1,44 @@
+package security;
+
+import common.EventBus;
+import events.UserChangedEvent;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Users changed or deleted since startup, each with the version at which it happened.
+ * A session stamped with the version current when its user was last read from the database
+ * stays valid until that user changes again. Holds one entry per changed user and only
+ * knows about changes made on this node.
+ */
+public final class UserRevocations {
+
+    private final AtomicLong version = new AtomicLong();
+    private final Map<Long, Long> changedAt = new ConcurrentHashMap<>();
+
+    public UserRevocations(EventBus eventBus){
+
+        eventBus.subscribe(UserChangedEvent.class, e -> revoke(e.getUser().getId()));
+    }
+
+    public void revoke(long userId){
+
+        changedAt.put(userId, version.incrementAndGet());
+    }
+
+    /**
+     * Has to be taken before reading the user, so a change made meanwhile is not missed.
+     */
+    public long currentVersion(){
+
+        return version.get();
+    }
+
+    public boolean isChangedSince(long userId, long stamp){
+
+        Long changed = changedAt.get(userId);
+        return changed != null && changed > stamp;
+    }
+}
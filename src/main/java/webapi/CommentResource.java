@@ -1,6 +1,5 @@
 package webapi;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
 import common.JsonWrapper;
 import dao.CommentDAO;
 import dao.UserDAO;
@@ -9,10 +8,11 @@ import lombok.extern.slf4j.Slf4j;
 import model.Comment;
 import org.json.simple.JSONObject;
 import org.json.simple.parser.JSONParser;
-import org.json.simple.parser.ParseException;
 
 import javax.servlet.ServletContext;
 import javax.ws.rs.*;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.Suspended;
 import javax.ws.rs.core.Context;
 import javax.ws.rs.core.Response;
 import java.time.LocalDate;
@@ -33,6 +33,8 @@ public class CommentResource {
 
     private static CommentDAO commentDAO;
     private static UserDAO userDAO;
+    private static PendingUpdates pendingUpdates;
+    private static DaoExecutor daoExecutor;
 
     @Context
     public void init(ServletContext servletContext){
@@ -41,77 +43,91 @@ public class CommentResource {
             commentDAO = (CommentDAO) servletContext.getAttribute(Initer.COMMENT_DAO);
         if(userDAO == null)
             userDAO = (UserDAO) servletContext.getAttribute(Initer.USER_DAO);
+        if(pendingUpdates == null)
+            pendingUpdates = (PendingUpdates) servletContext.getAttribute(Initer.PENDING_UPDATES);
+        if(daoExecutor == null)
+            daoExecutor = (DaoExecutor) servletContext.getAttribute(Initer.DAO_EXECUTOR);
     }
 
     @GET
     @Path("{postId}")
     @Produces(APPLICATION_JSON)
-    public Response getCommentsByPost(@PathParam("postId") long postId,
-                                      @QueryParam("offsetId") long offsetId,
-                                      @QueryParam("limit") long limit)
-            throws JsonProcessingException {
+    public void getCommentsByPost(@Suspended AsyncResponse asyncResponse,
+                                  @PathParam("postId") long postId,
+                                  @QueryParam("offsetId") long offsetId,
+                                  @QueryParam("limit") long limit) {
 
-        ArrayList<Comment> comments = (ArrayList<Comment>) commentDAO.getCommentsFromPost(postId, offsetId, limit);
+        daoExecutor.submit(asyncResponse, () -> {
 
+            ArrayList<Comment> comments = (ArrayList<Comment>) commentDAO.getCommentsFromPost(postId, offsetId, limit);
 
-        String json = JsonWrapper.toJson(comments);
 
-        return Response.ok(json).build();
+            return Response.ok(comments).build();
+        });
     }
 
     @POST
     @Path("add")
     @Consumes(APPLICATION_JSON)
-    public void addComment(final String params) throws ParseException {
+    @Produces(APPLICATION_JSON)
+    public void addComment(@Suspended AsyncResponse asyncResponse, final String params) {
+
+        daoExecutor.submit(asyncResponse, () -> {
+
+            log.info("adding comment with text {}",params);
 
-        log.info("adding comment with text {}",params);
+            JSONParser parser = new JSONParser();
+            JSONObject map = (JSONObject) parser.parse(params);
 
-        JSONParser parser = new JSONParser();
-        JSONObject map = (JSONObject) parser.parse(params);
+//            HashMap<String, String> map = (HashMap<String, String>) parse(params.toString());
 
-//        HashMap<String, String> map = (HashMap<String, String>) parse(params.toString());
+            Comment.CommentBuilder commentBuilder = Comment.builder();
 
-        Comment.CommentBuilder commentBuilder = Comment.builder();
+            Comment newComment = commentBuilder.userId(Long.valueOf((String) map.get("userId")))
+                                    .username((String) map.get("username"))
+                                    .postId(Long.valueOf((String) map.get("postId")))
+                                    .text((String) map.get("text"))
+                                    .date(LocalDate.now())
+                                    .time(LocalTime.now())
+                                    .build();
+            log.info("we have comment: {}", newComment);
 
-        Comment newComment = commentBuilder.userId(Long.valueOf((String) map.get("userId")))
-                                .username((String) map.get("username"))
-                                .postId(Long.valueOf((String) map.get("postId")))
-                                .text((String) map.get("text"))
-                                .date(LocalDate.now())
-                                .time(LocalTime.now())
-                                .build();
-        log.info("we have comment: {}", newComment);
-        commentDAO.addComment(newComment);
+            return Response.ok(commentDAO.addComment(newComment)).build();
+        });
     }
 
     @GET
     @Path("update")
     @Produces(APPLICATION_JSON)
-    public Response update(@QueryParam("postId") long postId,
-                           @QueryParam("offsetId") long offsetId,
-                           @QueryParam("limit") long limit)
-            throws InterruptedException, JsonProcessingException {
+    public void update(@Suspended AsyncResponse asyncResponse,
+                       @QueryParam("postId") long postId,
+                       @QueryParam("offsetId") long offsetId,
+                       @QueryParam("limit") long limit) {
 
         log.info("update comments");
         log.info("offsetId: {}", offsetId);
 
-        while(!commentDAO.isReadyToUpdate(postId, offsetId)){
-            Thread.sleep(10000);
-        }
+        pendingUpdates.suspend(asyncResponse, PendingUpdates.Channel.COMMENTS, postId,
+                () -> commentDAO.isReadyToUpdate(postId, offsetId),
+                () -> {
+                    log.info("going to update");
+                    ArrayList<Comment> comments = (ArrayList<Comment>) commentDAO.getCommentsFromPost(postId, offsetId, limit);
 
-        log.info("going to update");
-        ArrayList<Comment> comments = (ArrayList<Comment>) commentDAO.getCommentsFromPost(postId, offsetId, limit);
-
-        return Response.ok(JsonWrapper.toJson(comments)).build();
+                    return Response.ok(comments).build();
+                });
     }
 
     @DELETE
     @Path("delete/{commentId}")
     @Consumes(APPLICATION_JSON)
-    public void delete(@PathParam("commentId") long commentId){
+    public void delete(@Suspended AsyncResponse asyncResponse, @PathParam("commentId") long commentId){
+
+        daoExecutor.submit(asyncResponse, () -> {
 
-        log.info("delete comment with id: "+commentId);
-        commentDAO.deleteComment(commentId);
+            log.info("delete comment with id: "+commentId);
+            commentDAO.deleteComment(commentId);
+            return null;
+        });
     }
 
     private Map<String,String> parse(String params){
@@ -127,9 +143,12 @@ public class CommentResource {
     @GET
     @Path("getusername/{userId}")
     @Produces(APPLICATION_JSON)
-    public Response getUsernameByUserId(@PathParam("userId") long userId) throws JsonProcessingException {
+    public void getUsernameByUserId(@Suspended AsyncResponse asyncResponse, @PathParam("userId") long userId) {
+
+        daoExecutor.submit(asyncResponse, () -> {
 
-        log.info("get username by userId");
-        return Response.ok(JsonWrapper.toJson(userDAO.getUsernameByUserId(userId))).build();
+            log.info("get username by userId");
+            return Response.ok(JsonWrapper.toJson(userDAO.getUsernameByUserId(userId))).build();
+        });
     }
 }
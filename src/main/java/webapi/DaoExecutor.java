@@ -0,0 +1,100 @@
+package webapi;
+
+import lombok.extern.slf4j.Slf4j;
+import metrics.Counter;
+import metrics.Metrics;
+
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.Response;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Runs resource methods off the container threads. There are about as many threads as pooled
+ * connections, so requests wait in a bounded queue here instead of holding a container thread
+ * blocked in {@code ConnectionPool.getConnection()}; when the queue is full they are turned away
+ * at once with 503 and a {@code Retry-After}.
+ * With virtual threads every request gets its own thread and waits for a connection in the pool,
+ * which costs no platform thread; the same bound on requests in flight still applies.
+ */
+@Slf4j
+public class DaoExecutor implements AutoCloseable {
+
+    private final ExecutorService executor;
+    private final Semaphore inFlight;
+    private final int maxInFlight;
+    private final long retryAfterSeconds;
+    private Counter rejected = Metrics.DISABLED.counter("daoExecutor.rejected");
+
+    public DaoExecutor(int threads, int queueSize, long retryAfterSeconds, boolean virtual){
+
+        this.maxInFlight = threads + queueSize;
+        this.inFlight = new Semaphore(maxInFlight);
+        this.retryAfterSeconds = retryAfterSeconds;
+        this.executor = virtual
+                ? Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("dao-executor-", 0).factory())
+                : Executors.newFixedThreadPool(threads, Thread.ofPlatform().name("dao-executor-", 0).daemon(true).factory());
+
+        log.info("dao executor on {} threads, at most {} requests in flight", virtual ? "virtual" : threads, maxInFlight);
+    }
+
+    public void instrument(Metrics metrics){
+
+        metrics.gauge("daoExecutor.inFlight", () -> maxInFlight - inFlight.availablePermits());
+        rejected = metrics.counter("daoExecutor.rejected");
+    }
+
+    /**
+     * Resumes {@code asyncResponse} with what {@code call} returns, or with what it throws,
+     * so the answer is the same as if the resource method had returned it.
+     */
+    public void submit(AsyncResponse asyncResponse, Callable<?> call){
+
+        execute(asyncResponse, () -> asyncResponse.resume(call.call()));
+    }
+
+    /**
+     * Runs {@code task} within the same bound as {@link #submit}, for a task that resumes
+     * {@code asyncResponse} itself, or leaves it suspended. What it throws is still the answer.
+     */
+    public void execute(AsyncResponse asyncResponse, Callable<?> task){
+
+        if (!inFlight.tryAcquire()) {
+            reject(asyncResponse);
+            return;
+        }
+
+        try {
+            executor.execute(() -> {
+                try {
+                    task.call();
+                } catch (Throwable e) {
+                    asyncResponse.resume(e);
+                } finally {
+                    inFlight.release();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            inFlight.release();
+            reject(asyncResponse);
+        }
+    }
+
+    @Override
+    public void close() {
+
+        executor.shutdownNow();
+    }
+
+    private void reject(AsyncResponse asyncResponse){
+
+        rejected.increment();
+        asyncResponse.resume(Response.status(Response.Status.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, retryAfterSeconds)
+                .build());
+    }
+}
@@ -0,0 +1,48 @@
+package webapi;
+
+import common.JsonWrapper;
+import model.Comment;
+import model.PostView;
+import model.SearchPage;
+
+import javax.ws.rs.Produces;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.ext.MessageBodyWriter;
+import javax.ws.rs.ext.Provider;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+import java.util.Collection;
+
+import static javax.ws.rs.core.MediaType.APPLICATION_JSON;
+
+/**
+ * Serializes post views, comments, search pages and collections returned as response entities
+ * straight into the response stream with {@link JsonWrapper}'s shared mapper,
+ * without building the whole document as a {@code String} first.
+ */
+@Provider
+@Produces(APPLICATION_JSON)
+public class JsonStreamingWriter implements MessageBodyWriter<Object> {
+
+    @Override
+    public boolean isWriteable(Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+
+        return MediaType.APPLICATION_JSON_TYPE.isCompatible(mediaType)
+                && (Collection.class.isAssignableFrom(type)
+                    || PostView.class.isAssignableFrom(type)
+                    || SearchPage.class.isAssignableFrom(type)
+                    || Comment.class.isAssignableFrom(type));
+    }
+
+    @Override
+    public void writeTo(Object object, Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType,
+                        MultivaluedMap<String, Object> httpHeaders, OutputStream entityStream)
+            throws IOException, WebApplicationException {
+
+        JsonWrapper.writeJson(object, entityStream);
+    }
+}
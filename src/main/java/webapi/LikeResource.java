@@ -1,6 +1,5 @@
 package webapi;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
 import common.JsonWrapper;
 import dao.LikeDAO;
 import dao.PostDAO;
@@ -13,10 +12,13 @@ import model.User;
 
 import javax.servlet.ServletContext;
 import javax.ws.rs.*;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.Suspended;
 import javax.ws.rs.core.Context;
 import javax.ws.rs.core.Response;
 import java.util.Collection;
 import java.util.HashSet;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 import static javax.ws.rs.core.MediaType.APPLICATION_JSON;
@@ -31,6 +33,7 @@ public class LikeResource {
     private static LikeDAO likeDAO;
     private static UserDAO userDAO;
     private static PostDAO postDAO;
+    private static DaoExecutor daoExecutor;
 
 
     @Context
@@ -42,112 +45,130 @@ public class LikeResource {
             userDAO = (UserDAO) servletContext.getAttribute(Initer.USER_DAO);
         if(postDAO == null)
             postDAO = (PostDAO) servletContext.getAttribute(Initer.POST_DAO);
+        if(daoExecutor == null)
+            daoExecutor = (DaoExecutor) servletContext.getAttribute(Initer.DAO_EXECUTOR);
     }
 
 
     @GET
     @Path("add")
     @Produces(APPLICATION_JSON)
-    public Response addLike(
+    public void addLike(
+            @Suspended AsyncResponse asyncResponse,
             @QueryParam("userId") long userId,
-            @QueryParam("postId") long postId)
-            throws JsonProcessingException {
+            @QueryParam("postId") long postId) {
 
-        log.info("in addLike method with userId:{} and postId:{}",userId,postId);
+        daoExecutor.submit(asyncResponse, () -> {
 
-        Like.LikeBuilder likeBuilder = Like.builder();
+            log.info("in addLike method with userId:{} and postId:{}",userId,postId);
 
-        boolean answer = likeDAO.addLike(likeBuilder
-                .fromUserId(userId)
-                .toPostId(postId)
-                .build());
+            Like.LikeBuilder likeBuilder = Like.builder();
 
-        log.info("naswer: "+answer);
-        Long likesCount = likeDAO.countByPostId(postId);
-        log.info("likeCount: "+likesCount);
-        String json = JsonWrapper.toJson(likesCount);
+            boolean answer = likeDAO.addLike(likeBuilder
+                    .fromUserId(userId)
+                    .toPostId(postId)
+                    .build());
 
-        return Response.ok(json).build();
+            log.info("naswer: "+answer);
+            Long likesCount = likeDAO.countByPostId(postId);
+            log.info("likeCount: "+likesCount);
+            String json = JsonWrapper.toJson(likesCount);
+
+            return Response.ok(json).build();
+        });
     }
 
     @GET
     @Path("remove")
     @Produces(APPLICATION_JSON)
-    public Response removeLike(
+    public void removeLike(
+            @Suspended AsyncResponse asyncResponse,
             @QueryParam("userId") long userId,
-            @QueryParam("postId") long postId)
-        throws JsonProcessingException{
+            @QueryParam("postId") long postId) {
+
+        daoExecutor.submit(asyncResponse, () -> {
 
-        log.info("in removeLike method with userId:{} and postId:{}",userId,postId);
+            log.info("in removeLike method with userId:{} and postId:{}",userId,postId);
 
-        Like.LikeBuilder likeBuilder = Like.builder();
+            Like.LikeBuilder likeBuilder = Like.builder();
 
-        boolean answer = likeDAO.removeLike(likeBuilder
-                .fromUserId(userId)
-                .toPostId(postId)
-                .build());
+            boolean answer = likeDAO.removeLike(likeBuilder
+                    .fromUserId(userId)
+                    .toPostId(postId)
+                    .build());
 
-        log.info("naswer: "+answer);
-        Long likesCount = likeDAO.countByPostId(postId);
-        String json = JsonWrapper.toJson(likesCount);
+            log.info("naswer: "+answer);
+            Long likesCount = likeDAO.countByPostId(postId);
+            String json = JsonWrapper.toJson(likesCount);
 
-        return Response.ok(json).build();
+            return Response.ok(json).build();
+        });
     }
 
 //    return users
     @GET
     @Path("post/{postId}")
     @Produces(APPLICATION_JSON)
-    public Response liked(@PathParam("postId") long postId) throws JsonProcessingException{
+    public void liked(@Suspended AsyncResponse asyncResponse, @PathParam("postId") long postId){
 
-        log.info("who likes this post {}",postId);
+        daoExecutor.submit(asyncResponse, () -> {
 
-        Collection<Like> likes = likeDAO.getByPostId(postId);
+            log.info("who likes this post {}",postId);
 
-        //noinspection OptionalGetWithoutIsPresent
-        Collection<User> users = likes.stream()
-                        .map(l -> userDAO.getById(l.getFromUserId()).get())
-                        .collect(Collectors.toCollection(HashSet::new));
+            Set<Long> userIds = likeDAO.getByPostId(postId).stream()
+                    .map(Like::getFromUserId)
+                    .collect(Collectors.toSet());
 
+//            one query for all the likers, as PostViewAssembler does for authors
+            Collection<User> users = userIds.isEmpty()
+                    ? new HashSet<>()
+                    : new HashSet<>(userDAO.getByIds(userIds).values());
 
-        return Response.ok(JsonWrapper.toJson(users)).build();
+            return Response.ok(JsonWrapper.toJson(users)).build();
+        });
     }
 
 //    return posts
     @GET
     @Path("user/{userId}")
     @Produces(APPLICATION_JSON)
-    public Response userLikes(@PathParam("userId") long userId) throws JsonProcessingException{
+    public void userLikes(@Suspended AsyncResponse asyncResponse, @PathParam("userId") long userId){
 
-        log.info("likes by this user: {}", userId);
+        daoExecutor.submit(asyncResponse, () -> {
 
-        Collection<Like> likes = likeDAO.getAllUserPost(userId);
+            log.info("likes by this user: {}", userId);
 
-        //noinspection OptionalGetWithoutIsPresent
-        Collection<Post> posts = likes.stream()
-                .map(l -> postDAO.getPostById(l.getToPostId()).get())
-                .collect(Collectors.toCollection(HashSet::new));
+            Collection<Like> likes = likeDAO.getAllUserPost(userId);
 
-        return Response.ok(JsonWrapper.toJson(posts)).build();
+            //noinspection OptionalGetWithoutIsPresent
+            Collection<Post> posts = likes.stream()
+                    .map(l -> postDAO.getPostById(l.getToPostId()).get())
+                    .collect(Collectors.toCollection(HashSet::new));
+
+            return Response.ok(JsonWrapper.toJson(posts)).build();
+        });
     }
     @GET
     @Path("isliked")
     @Produces(APPLICATION_JSON)
-    public Response isLicked(
+    public void isLicked(
+            @Suspended AsyncResponse asyncResponse,
             @QueryParam("userId") long userId,
-            @QueryParam("postId") long postId)
-            throws JsonProcessingException{
+            @QueryParam("postId") long postId) {
+
+        daoExecutor.submit(asyncResponse, () -> {
 
-        log.info("check is clicked with user: {} and post: {}", userId, postId);
+            log.info("check is clicked with user: {} and post: {}", userId, postId);
 
-        Like.LikeBuilder likeBuilder = Like.builder();
+            Like.LikeBuilder likeBuilder = Like.builder();
 
-        boolean isLiked = likeDAO.isLiked(likeBuilder
-                                            .toPostId(postId)
-                                            .fromUserId(userId)
-                                            .build());
-        log.info("answer is {}", isLiked);
+            boolean isLiked = likeDAO.isLiked(likeBuilder
+                                                .toPostId(postId)
+                                                .fromUserId(userId)
+                                                .build());
+            log.info("answer is {}", isLiked);
 
-        return Response.ok(JsonWrapper.toJson(isLiked)).build();
+            return Response.ok(JsonWrapper.toJson(isLiked)).build();
+        });
     }
 }
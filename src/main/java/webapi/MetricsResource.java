@@ -0,0 +1,101 @@
+package webapi;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import common.JsonWrapper;
+import listeners.Initer;
+import metrics.Counter;
+import metrics.Gauge;
+import metrics.Metrics;
+import metrics.Timer;
+
+import javax.servlet.ServletContext;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.Response;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static javax.ws.rs.core.MediaType.APPLICATION_JSON;
+import static javax.ws.rs.core.MediaType.TEXT_PLAIN;
+
+/**
+ * Current values of all metrics: JSON by default,
+ * Prometheus text exposition format for {@code Accept: text/plain}.
+ */
+@Path("/metrics")
+public class MetricsResource {
+
+    private static final String PROMETHEUS_PREFIX = "soc_";
+    private static final double[] QUANTILES = {0.5, 0.95, 0.99};
+
+    private static Metrics metrics;
+
+    @Context
+    public void init(ServletContext servletContext){
+
+        if (metrics == null)
+            metrics = (Metrics) servletContext.getAttribute(Initer.METRICS);
+    }
+
+    @GET
+    @Produces(APPLICATION_JSON)
+    public Response getJson() throws JsonProcessingException {
+
+        Map<String, Object> values = new LinkedHashMap<>();
+
+        metrics.getAll().forEach((name, metric) -> {
+
+            if (metric instanceof Counter) {
+                values.put(name, ((Counter) metric).getCount());
+            } else if (metric instanceof Gauge) {
+                values.put(name, ((Gauge) metric).getValue());
+            } else if (metric instanceof Timer) {
+                Timer timer = (Timer) metric;
+                Map<String, Object> summary = new LinkedHashMap<>();
+                summary.put("count", timer.getCount());
+                summary.put("meanMillis", timer.getMeanMillis());
+                summary.put("p50Millis", timer.getP50Millis());
+                summary.put("p95Millis", timer.getP95Millis());
+                summary.put("p99Millis", timer.getP99Millis());
+                summary.put("maxMillis", timer.getMaxMillis());
+                values.put(name, summary);
+            }
+        });
+
+        return Response.ok(JsonWrapper.toJson(values)).build();
+    }
+
+    @GET
+    @Produces(TEXT_PLAIN)
+    public Response getPrometheus() {
+
+        StringBuilder text = new StringBuilder();
+
+        metrics.getAll().forEach((name, metric) -> {
+
+            String metricName = PROMETHEUS_PREFIX + name.replaceAll("[^a-zA-Z0-9_]", "_");
+
+            if (metric instanceof Counter) {
+                text.append("# TYPE ").append(metricName).append("_total counter\n")
+                        .append(metricName).append("_total ").append(((Counter) metric).getCount()).append('\n');
+            } else if (metric instanceof Gauge) {
+                text.append("# TYPE ").append(metricName).append(" gauge\n")
+                        .append(metricName).append(' ').append(((Gauge) metric).getValue()).append('\n');
+            } else if (metric instanceof Timer) {
+                Timer timer = (Timer) metric;
+                metricName += "_seconds";
+                text.append("# TYPE ").append(metricName).append(" summary\n");
+                for (double quantile : QUANTILES)
+                    text.append(metricName).append("{quantile=\"").append(quantile).append("\"} ")
+                            .append(timer.getPercentileMillis(quantile * 100) / 1000).append('\n');
+                text.append(metricName).append("_count ").append(timer.getCount()).append('\n')
+                        .append(metricName).append("_sum ")
+                        .append(timer.getMeanMillis() * timer.getCount() / 1000).append('\n');
+            }
+        });
+
+        return Response.ok(text.toString(), "text/plain; version=0.0.4").build();
+    }
+}
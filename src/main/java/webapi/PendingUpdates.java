@@ -0,0 +1,139 @@
+package webapi;
+
+import common.EventBus;
+import dao.FollowingDAO;
+import events.CommentAddedEvent;
+import events.PostAddedEvent;
+import lombok.extern.slf4j.Slf4j;
+import model.Post;
+
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.CompletionCallback;
+import javax.ws.rs.core.Response;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Long-poll requests parked until something they watch changes.
+ * A suspended request holds no container thread and runs no queries;
+ * it is resumed by the {@link EventBus} when a post or comment is added
+ * for its channel, or answered with an empty list on timeout.
+ * Woken requests run their update on the {@link DaoExecutor}, like any other request;
+ * a single thread of its own only looks up whose timelines a new post wakes.
+ */
+@Slf4j
+public class PendingUpdates implements AutoCloseable {
+
+    public enum Channel { POSTS, TIMELINE, COMMENTS }
+
+//    a bit less than the 11 s ajax timeout in userScript.js
+    private static final long TIMEOUT_SECONDS = 10;
+    private static final String EMPTY = "[]";
+
+    private final Map<Channel, Map<Long, Set<Runnable>>> waiters = new ConcurrentHashMap<>();
+    private final FollowingDAO followingDAO;
+    private final DaoExecutor daoExecutor;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+    public PendingUpdates(EventBus eventBus, FollowingDAO followingDAO, DaoExecutor daoExecutor){
+
+        this.followingDAO = followingDAO;
+        this.daoExecutor = daoExecutor;
+
+        for (Channel channel : Channel.values())
+            waiters.put(channel, new ConcurrentHashMap<>());
+
+        eventBus.subscribe(PostAddedEvent.class, e -> executor.execute(() -> onPostAdded(e.getPost())));
+        eventBus.subscribe(CommentAddedEvent.class, e -> wake(Channel.COMMENTS, e.getComment().getPostId()));
+    }
+
+    /**
+     * Suspends {@code asyncResponse} until {@code channel}/{@code id} is woken up,
+     * then answers it with {@code update}. If {@code isReady} already holds, answers at once.
+     * Both run on the {@link DaoExecutor}; when it is full the request gets its 503 instead.
+     */
+    public void suspend(AsyncResponse asyncResponse, Channel channel, long id,
+                        BooleanSupplier isReady, Callable<Response> update){
+
+        AtomicBoolean resumed = new AtomicBoolean();
+
+        Runnable waiter = () -> {
+            if (resumed.compareAndSet(false, true))
+                daoExecutor.submit(asyncResponse, update);
+        };
+
+        asyncResponse.setTimeout(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        asyncResponse.setTimeoutHandler(response -> {
+            cancel(channel, id, waiter);
+            if (resumed.compareAndSet(false, true))
+                response.resume(Response.ok(EMPTY).build());
+        });
+        asyncResponse.register((CompletionCallback) throwable -> cancel(channel, id, waiter));
+
+        waiters.get(channel).compute(id, (key, byId) -> {
+            Set<Runnable> added = byId == null ? ConcurrentHashMap.newKeySet() : byId;
+            added.add(waiter);
+            return added;
+        });
+
+//        the first check queries too, so it waits its turn on the DaoExecutor like the update would
+        daoExecutor.execute(asyncResponse, () -> {
+            if (isReady.getAsBoolean()) {
+                cancel(channel, id, waiter);
+                if (resumed.compareAndSet(false, true))
+                    asyncResponse.resume(update.call());
+            }
+            return null;
+        });
+    }
+
+    public int countWaiting(){
+
+        return waiters.values().stream()
+                .flatMap(byId -> byId.values().stream())
+                .mapToInt(Set::size)
+                .sum();
+    }
+
+    private void cancel(Channel channel, long id, Runnable waiter){
+
+//        an empty set would make onPostAdded look up followers for nobody
+        waiters.get(channel).computeIfPresent(id, (key, byId) -> {
+            byId.remove(waiter);
+            return byId.isEmpty() ? null : byId;
+        });
+    }
+
+    private void wake(Channel channel, long id){
+
+        Set<Runnable> byId = waiters.get(channel).remove(id);
+
+        if (byId != null) {
+            log.info("waking {} {} request(s) for {}", byId.size(), channel, id);
+            byId.forEach(Runnable::run);
+        }
+    }
+
+    private void onPostAdded(Post post){
+
+        wake(Channel.POSTS, post.getAuthorId());
+        wake(Channel.TIMELINE, post.getAuthorId());
+
+        if (!waiters.get(Channel.TIMELINE).isEmpty())
+            followingDAO.getFollowersById(post.getAuthorId())
+                    .forEach(f -> wake(Channel.TIMELINE, f.getFollowerId()));
+    }
+
+    @Override
+    public void close() {
+
+        executor.shutdownNow();
+    }
+}
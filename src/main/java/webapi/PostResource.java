@@ -1,7 +1,7 @@
 package webapi;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
 import common.JsonWrapper;
+import common.PostViewAssembler;
 import dao.*;
 import listeners.Initer;
 import lombok.extern.slf4j.Slf4j;
@@ -10,6 +10,8 @@ import model.PostView;
 
 import javax.servlet.ServletContext;
 import javax.ws.rs.*;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.Suspended;
 import javax.ws.rs.core.Context;
 import javax.ws.rs.core.Response;
 import java.time.LocalDate;
@@ -34,6 +36,9 @@ public class PostResource {
     private static FollowingDAO followingDAO;
     private static LikeDAO likeDAO;
     private static CommentDAO commentDAO;
+    private static PostViewAssembler postViewAssembler;
+    private static PendingUpdates pendingUpdates;
+    private static DaoExecutor daoExecutor;
 
     @Context
     public void init(ServletContext servletContext) {
@@ -52,271 +57,255 @@ public class PostResource {
 
         if (commentDAO == null)
             commentDAO = (CommentDAO) servletContext.getAttribute(Initer.COMMENT_DAO);
+
+        if (postViewAssembler == null)
+            postViewAssembler = (PostViewAssembler) servletContext.getAttribute(Initer.POST_VIEW_ASSEMBLER);
+
+        if (pendingUpdates == null)
+            pendingUpdates = (PendingUpdates) servletContext.getAttribute(Initer.PENDING_UPDATES);
+
+        if (daoExecutor == null)
+            daoExecutor = (DaoExecutor) servletContext.getAttribute(Initer.DAO_EXECUTOR);
     }
 
     @GET
     @Produces(APPLICATION_JSON)
-    public Response getPostByUser(
+    public void getPostByUser(
+            @Suspended AsyncResponse asyncResponse,
             @QueryParam("userId") long userId,
             @QueryParam("visitorId") long visitorId,
             @QueryParam("offsetId") long offsetId,
-            @QueryParam("limit") int limit)
-            throws JsonProcessingException {
-
-        log.info("getPostsByUser");
-        log.info("visitorId: "+visitorId);
+            @QueryParam("limit") int limit) {
 
-        ArrayList<Post> posts;
+        daoExecutor.submit(asyncResponse, () -> {
 
-        if(visitorId == 0){
+            log.info("getPostsByUser");
+            log.info("visitorId: "+visitorId);
 
-            posts = (ArrayList<Post>) postDAO.getNotPrivateUserPosts(userId, offsetId, limit);
-        } else {
+            List<Post> posts = postDAO.find(PostQuery.byAuthor(userId)
+                    .publicOnly(visitorId == 0)
+                    .after(offsetId)
+                    .limit(limit)
+                    .build());
 
-            posts = postDAO.getAllByUser(userId, offsetId, limit).stream()
-                    .collect(Collectors.toCollection(ArrayList::new));
-        }
-
-        log.info(Arrays.toString(posts.toArray()));
-        Collection<PostView> postViews = createPostViews(posts);
+            log.info(Arrays.toString(posts.toArray()));
+            Collection<PostView> postViews = createPostViews(posts);
 
-        log.info(String.valueOf(postViews.size()));
+            log.info(String.valueOf(postViews.size()));
 
-        String json = JsonWrapper.toJson(postViews);
-
-        return Response.ok(json).build();
+            return Response.ok(postViews).build();
+        });
     }
 
     @GET
     @Path("timeline/")
     @Produces(APPLICATION_JSON)
-    public Response getTimeLine(
+    public void getTimeLine(
+            @Suspended AsyncResponse asyncResponse,
             @QueryParam("userId") long userId,
             @QueryParam("offsetId") long offsetId,
-            @QueryParam("limit") int limit)
-            throws JsonProcessingException {
+            @QueryParam("limit") int limit) {
 
-        log.info("getUserTimeline");
+        daoExecutor.submit(asyncResponse, () -> {
 
-        log.info("userId: "+userId);
-        log.info("offsetId: "+offsetId);
-        log.info("lmit: "+limit);
+            log.info("getUserTimeline");
 
-        Collection<Post> timeline =  postDAO.getUserTimeline(userId, offsetId, limit);
+            log.info("userId: "+userId);
+            log.info("offsetId: "+offsetId);
+            log.info("lmit: "+limit);
 
-        Collection<PostView> pvTimeline = createPostViews(timeline);
+            Collection<Post> timeline =  postDAO.find(PostQuery.timeline(userId).after(offsetId).limit(limit).build());
 
-        log.info(String.valueOf(pvTimeline.size()));
+            Collection<PostView> pvTimeline = createPostViews(timeline);
 
-        String json = JsonWrapper.toJson(pvTimeline);
+            log.info(String.valueOf(pvTimeline.size()));
 
-        return Response.ok(json).build();
+            return Response.ok(pvTimeline).build();
+        });
     }
 
     @GET
     @Path("{id}")
     @Produces(APPLICATION_JSON)
-    public Response getPostById(@PathParam("id") long id) throws JsonProcessingException {
+    public void getPostById(@Suspended AsyncResponse asyncResponse, @PathParam("id") long id) {
 
-        Optional<Post> optPost = postDAO.getPostById(id);
+        daoExecutor.submit(asyncResponse, () -> {
 
-        if(optPost.isPresent()){
+            Optional<PostView> optPostView = postDAO.getPostById(id)
+                    .flatMap(postViewAssembler::createPostView);
 
-            Post post = optPost.get();
+            if(optPostView.isPresent()){
 
-            //noinspection OptionalGetWithoutIsPresent
-            PostView postView = new PostView(
-                    userDAO.getById(post.getAuthorId()).get(),
-                    post,
-                    likeDAO.countByPostId(post.getId()),
-                    commentDAO.countByPostId(post.getId()));
-
-            String json = JsonWrapper.toJson(postView);
-            return Response.ok(json).build();
-        } else {
-            return Response.serverError().build();
-        }
+                return Response.ok(optPostView.get()).build();
+            } else {
+                return Response.serverError().build();
+            }
+        });
     }
 
     @POST
     @Path("delete/{postId}")
-    public void deletePostById(@PathParam("postId") long postId){
+    public void deletePostById(@Suspended AsyncResponse asyncResponse, @PathParam("postId") long postId){
+
+        daoExecutor.submit(asyncResponse, () -> {
 
-        log.info("deleting post");
-        postDAO.deletePost(postId);
+            log.info("deleting post");
+            postDAO.deletePost(postId);
+            return null;
+        });
     }
 
     @GET
     @Path("update")
     @Produces(APPLICATION_JSON)
-    public Response updatePosts(@QueryParam("userId") long userId,
-                                @QueryParam("visitorId") long visitorId,
-                                @QueryParam("offsetId") long offsetId,
-                                @QueryParam("limit") int limit)
-                                throws JsonProcessingException, InterruptedException {
+    public void updatePosts(@Suspended AsyncResponse asyncResponse,
+                            @QueryParam("userId") long userId,
+                            @QueryParam("visitorId") long visitorId,
+                            @QueryParam("offsetId") long offsetId,
+                            @QueryParam("limit") int limit) {
         log.info("updatePosts");
         log.info("offsetId: "+offsetId);
 
-        while(!postDAO.isPostsReadyToUpdate(userId, offsetId))
-            Thread.sleep(10000);
-
-        ArrayList<Post> posts = postDAO.getAllByUser(userId, offsetId, limit).stream()
-                .collect(Collectors.toCollection(ArrayList::new));
-
-        if(visitorId == 0){
-
-            posts = sortByPrivacy(posts);
-        }
-
-        Collection<PostView> postViews = createPostViews(posts);
+        pendingUpdates.suspend(asyncResponse, PendingUpdates.Channel.POSTS, userId,
+                () -> postDAO.isPostsReadyToUpdate(userId, offsetId),
+                () -> {
+                    List<Post> posts = postDAO.find(PostQuery.byAuthor(userId)
+                            .publicOnly(visitorId == 0)
+                            .after(offsetId)
+                            .limit(limit)
+                            .build());
 
-        log.info(String.valueOf(postViews.size()));
+                    Collection<PostView> postViews = createPostViews(posts);
 
-        String json = JsonWrapper.toJson(postViews);
+                    log.info(String.valueOf(postViews.size()));
 
-        return Response.ok(json).build();
+                    return Response.ok(postViews).build();
+                });
     }
 
     @GET
     @Path("updatetimeline")
     @Produces(APPLICATION_JSON)
-    public Response updateTimeline(
+    public void updateTimeline(
+            @Suspended AsyncResponse asyncResponse,
             @QueryParam("userId") long userId,
             @QueryParam("offsetId") long offsetId,
-            @QueryParam("limit") int limit)
-            throws JsonProcessingException, InterruptedException {
+            @QueryParam("limit") int limit) {
 
         log.info("update timeline");
 
-        while (!postDAO.isTimelineReadyToUpdate(userId, offsetId))
-            Thread.sleep(10000);
-
-        Collection<Post> timeline =  postDAO.getUserTimeline(userId, offsetId, limit);
+        pendingUpdates.suspend(asyncResponse, PendingUpdates.Channel.TIMELINE, userId,
+                () -> postDAO.isTimelineReadyToUpdate(userId, offsetId),
+                () -> {
+                    Collection<Post> timeline =  postDAO.find(PostQuery.timeline(userId).after(offsetId).limit(limit).build());
 
-        Collection<PostView> pvTimeline = createPostViews(timeline);
+                    Collection<PostView> pvTimeline = createPostViews(timeline);
 
-        log.info(String.valueOf(pvTimeline.size()));
+                    log.info(String.valueOf(pvTimeline.size()));
 
-        String json = JsonWrapper.toJson(pvTimeline);
-
-        return Response.ok(json).build();
+                    return Response.ok(pvTimeline).build();
+                });
     }
 
     @POST
     @Path("add")
     @Consumes(APPLICATION_JSON)
-    public void addPost(final String params){
+    @Produces(APPLICATION_JSON)
+    public void addPost(@Suspended AsyncResponse asyncResponse, final String params){
 
-        HashMap<String, String> map = (HashMap<String, String>) parse(params);
+        daoExecutor.submit(asyncResponse, () -> {
 
-        Post.PostBuilder postBuilder = Post.builder();
+            HashMap<String, String> map = (HashMap<String, String>) parse(params);
 
-        Post newPost = postBuilder.authorId(Long.parseLong(map.get("userId")))
-                .date(LocalDate.now())
-                .time(LocalTime.now())
-                .expandable(Boolean.parseBoolean(map.get("expandable")))
-                .privacy(Boolean.parseBoolean(map.get("privacy")))
-                .text(map.get("text"))
-                .build();
+            Post.PostBuilder postBuilder = Post.builder();
 
-        postDAO.addPost(newPost);
+            Post newPost = postBuilder.authorId(Long.parseLong(map.get("userId")))
+                    .date(LocalDate.now())
+                    .time(LocalTime.now())
+                    .expandable(Boolean.parseBoolean(map.get("expandable")))
+                    .privacy(Boolean.parseBoolean(map.get("privacy")))
+                    .text(map.get("text"))
+                    .build();
+
+//            empty only if the author was deleted meanwhile
+            return postViewAssembler.createPostView(postDAO.addPost(newPost))
+                    .map(postView -> Response.ok(postView).build())
+                    .orElseGet(() -> Response.serverError().build());
+        });
     }
 
     @GET
     @Path("getprev/")
     @Produces(APPLICATION_JSON)
-    public Response getPrevByUser(
+    public void getPrevByUser(
+            @Suspended AsyncResponse asyncResponse,
             @QueryParam("userId") long userId,
             @QueryParam("visitorId") long visitorId,
             @QueryParam("offsetId") long offsetId,
-            @QueryParam("limit") int limit)
-            throws JsonProcessingException {
-
-        log.info("getPrevByUser");
-        log.info("visitorId: "+visitorId);
-
-        ArrayList<Post> posts;
-
-        if(visitorId == 0){
+            @QueryParam("limit") int limit) {
 
-            posts = (ArrayList<Post>) postDAO.getNotPrivatePrevPosts(userId, offsetId, limit);
-        } else {
+        daoExecutor.submit(asyncResponse, () -> {
 
-            posts = postDAO.getPrevByUser(userId, offsetId, limit).stream()
-                    .collect(Collectors.toCollection(ArrayList::new));
-        }
+            log.info("getPrevByUser");
+            log.info("visitorId: "+visitorId);
 
-        log.info(Arrays.toString(posts.toArray()));
-        Collection<PostView> postViews = createPostViews(posts)
-                .stream()
-                .sorted((p1, p2) -> Long.compare(p2.getPost().getId(), p1.getPost().getId()))
-                .collect(Collectors.toCollection(ArrayList::new));
+            List<Post> posts = postDAO.find(PostQuery.byAuthor(userId)
+                    .publicOnly(visitorId == 0)
+                    .before(offsetId)
+                    .limit(limit)
+                    .build());
 
-        log.info(String.valueOf(postViews.size()));
+            log.info(Arrays.toString(posts.toArray()));
+            Collection<PostView> postViews = createPostViews(posts);
 
-        String json = JsonWrapper.toJson(postViews);
+            log.info(String.valueOf(postViews.size()));
 
-        return Response.ok(json).build();
+            return Response.ok(postViews).build();
+        });
     }
 
     @GET
     @Path("getprevtimeline/")
     @Produces(APPLICATION_JSON)
-    public Response getPrevTimeline(
+    public void getPrevTimeline(
+            @Suspended AsyncResponse asyncResponse,
             @QueryParam("userId") long userId,
             @QueryParam("offsetId") long offsetId,
-            @QueryParam("limit") int limit)
-            throws JsonProcessingException {
-        ArrayList<Post> posts;
+            @QueryParam("limit") int limit) {
 
-        posts = postDAO.getPrevTimeline(userId, offsetId, limit).stream()
-                .collect(Collectors.toCollection(ArrayList::new));
+        daoExecutor.submit(asyncResponse, () -> {
 
-        log.info(Arrays.toString(posts.toArray()));
+            List<Post> posts = postDAO.find(PostQuery.timeline(userId).before(offsetId).limit(limit).build());
 
-        Collection<PostView> postViews = createPostViews(posts)
-                .stream()
-                .sorted((p1, p2) -> Long.compare(p2.getPost().getId(), p1.getPost().getId()))
-                .collect(Collectors.toCollection(ArrayList::new));
+            log.info(Arrays.toString(posts.toArray()));
 
-        log.info(String.valueOf(postViews.size()));
+            Collection<PostView> postViews = createPostViews(posts);
 
-        String json = JsonWrapper.toJson(postViews);
+            log.info(String.valueOf(postViews.size()));
 
-        return Response.ok(json).build();
+            return Response.ok(postViews).build();
+        });
     }
 
     @GET
     @Path("getTimelineCount/{userId}")
     @Produces(APPLICATION_JSON)
-    public Response getTimelineCount(@PathParam("userId") long userId)
-            throws JsonProcessingException {
+    public void getTimelineCount(@Suspended AsyncResponse asyncResponse, @PathParam("userId") long userId) {
+
+        daoExecutor.submit(asyncResponse, () -> {
 
-        int timelineCount = postDAO.countPostsInTimeline(userId);
+            int timelineCount = postDAO.countPostsInTimeline(userId);
 
-        String json = JsonWrapper.toJson(timelineCount);
+            String json = JsonWrapper.toJson(timelineCount);
 
-        return Response.ok(json).build();
+            return Response.ok(json).build();
+        });
     }
 
-    @SuppressWarnings("Duplicates")
     private Collection<PostView> createPostViews(Collection<Post> posts){
 
-        ArrayList<PostView> postViews = new ArrayList<>();
-
-        PostView.PostViewBuilder postViewBuilder = PostView.builder();
+        ArrayList<PostView> postViews = postViewAssembler.createPostViews(posts);
 
-        //noinspection OptionalGetWithoutIsPresent
-        posts.forEach(p -> postViews.add(
-                postViewBuilder
-                        .user(userDAO.getById(p.getAuthorId()).get())
-                        .post(p)
-                        .likesCount(likeDAO.countByPostId(p.getId()))
-                        .commentsCount(commentDAO.countByPostId(p.getId()))
-                        .build()));
-
-//        postViews.stream().sorted(Comparator.comparing(pV -> pV.getPost().getId()));
-        postViews.sort(Comparator.comparing(pv -> pv.getPost().getId()));
         postViews.forEach(pv -> log.info("id: {}", pv.getPost().getId()));
         return postViews;
     }
@@ -331,14 +320,6 @@ public class PostResource {
         ));
     }
 
-    private ArrayList<Post> sortByPrivacy(Collection<Post> posts){
-
-        log.info("sorting by privacy");
-        return posts.stream()
-                .filter(p -> !p.isPrivacy())
-                .collect(Collectors.toCollection(ArrayList::new));
-    }
-
 //    @POST
 //    @Path("create")
 //    public Response createPost(
@@ -0,0 +1,56 @@
+package webapi;
+
+import listeners.Initer;
+import metrics.Metrics;
+
+import javax.servlet.ServletContext;
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerRequestFilter;
+import javax.ws.rs.container.ContainerResponseContext;
+import javax.ws.rs.container.ContainerResponseFilter;
+import javax.ws.rs.container.ResourceInfo;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.ext.Provider;
+import java.lang.reflect.Method;
+
+/**
+ * Times resource methods as {@code webapi.<resource>.<method>}.
+ * For suspended long-poll requests this includes the time spent parked.
+ */
+@Provider
+public class ResourceMetricsFilter implements ContainerRequestFilter, ContainerResponseFilter {
+
+    private static final String STARTED = "metrics.started";
+
+    private static Metrics metrics;
+
+    @Context
+    private ResourceInfo resourceInfo;
+
+    @Context
+    public void init(ServletContext servletContext){
+
+        if (metrics == null)
+            metrics = (Metrics) servletContext.getAttribute(Initer.METRICS);
+    }
+
+    @Override
+    public void filter(ContainerRequestContext requestContext) {
+
+        if (metrics != null && metrics.isEnabled())
+            requestContext.setProperty(STARTED, System.nanoTime());
+    }
+
+    @Override
+    public void filter(ContainerRequestContext requestContext, ContainerResponseContext responseContext) {
+
+        Object started = requestContext.getProperty(STARTED);
+        Method method = resourceInfo.getResourceMethod();
+
+        if (started == null || method == null)
+            return;
+
+        metrics.timer("webapi." + resourceInfo.getResourceClass().getSimpleName() + "." + method.getName())
+                .stop((Long) started);
+    }
+}
@@ -0,0 +1,100 @@
+package webapi;
+
+import listeners.Initer;
+import model.SearchPage;
+import model.User;
+import search.SearchService;
+import security.StringEncryptUtil;
+
+import javax.servlet.ServletContext;
+import javax.servlet.http.HttpServletRequest;
+import javax.ws.rs.BadRequestException;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.Response;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import static javax.ws.rs.core.MediaType.APPLICATION_JSON;
+
+/**
+ * Further pages of {@code /s/search/}: each takes the query {@code q},
+ * the {@code cursor} the previous page ended with and an optional {@code limit}.
+ * {@code /webapi/*} is not behind {@code SecurityFilter}, so every page checks the session user itself.
+ */
+@Path("/search/")
+public class SearchResource {
+
+    private static SearchService searchService;
+
+    @Context
+    public void init(ServletContext servletContext){
+
+        if (searchService == null)
+            searchService = (SearchService) servletContext.getAttribute(Initer.SEARCH_SERVICE);
+    }
+
+    @GET
+    @Path("users")
+    @Produces(APPLICATION_JSON)
+    public Response searchUsers(
+            @Context HttpServletRequest request,
+            @QueryParam("q") String query,
+            @QueryParam("cursor") String cursor,
+            @QueryParam("limit") int limit){
+
+        visitor(request);
+        SearchPage<User> page = search(() -> searchService.searchUsers(query, cursor, limit));
+
+//        users come from the DAO with their password hashes and emails
+        return Response.ok(new SearchPage<>(page.getItems().stream()
+                .map(u -> new User(u.getId(), u.getUsername(), null, null, u.getFirstName(), u.getLastName()))
+                .collect(Collectors.toList()), page.getNext())).build();
+    }
+
+    @GET
+    @Path("posts")
+    @Produces(APPLICATION_JSON)
+    public Response searchPosts(
+            @Context HttpServletRequest request,
+            @QueryParam("q") String query,
+            @QueryParam("cursor") String cursor,
+            @QueryParam("limit") int limit){
+
+        long visitorId = visitor(request).getId();
+
+        return Response.ok(search(() -> searchService.searchPosts(query, cursor, limit, visitorId))).build();
+    }
+
+    @GET
+    @Path("comments")
+    @Produces(APPLICATION_JSON)
+    public Response searchComments(
+            @Context HttpServletRequest request,
+            @QueryParam("q") String query,
+            @QueryParam("cursor") String cursor,
+            @QueryParam("limit") int limit){
+
+        visitor(request);
+        return Response.ok(search(() -> searchService.searchComments(query, cursor, limit))).build();
+    }
+
+    private static User visitor(HttpServletRequest request){
+
+        return StringEncryptUtil.getSUserOpt(request.getSession(false))
+                .orElseThrow(() -> new WebApplicationException(Response.Status.UNAUTHORIZED));
+    }
+
+    private static <T> SearchPage<T> search(Supplier<SearchPage<T>> search){
+
+        try {
+            return search.get();
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException(e.getMessage());
+        }
+    }
+}
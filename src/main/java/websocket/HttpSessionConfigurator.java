@@ -0,0 +1,22 @@
+package websocket;
+
+import javax.servlet.http.HttpSession;
+import javax.websocket.HandshakeResponse;
+import javax.websocket.server.HandshakeRequest;
+import javax.websocket.server.ServerEndpointConfig;
+
+/**
+ * Hands the http session of the handshake over to the endpoint,
+ * which needs it for the logged in user and the servlet context.
+ */
+public class HttpSessionConfigurator extends ServerEndpointConfig.Configurator {
+
+    @Override
+    public void modifyHandshake(ServerEndpointConfig config, HandshakeRequest request, HandshakeResponse response) {
+
+        HttpSession httpSession = (HttpSession) request.getHttpSession();
+
+        if (httpSession != null)
+            config.getUserProperties().put(HttpSession.class.getName(), httpSession);
+    }
+}
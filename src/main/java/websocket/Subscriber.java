@@ -0,0 +1,82 @@
+package websocket;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.websocket.CloseReason;
+import javax.websocket.Session;
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * One open socket. Messages go through a bounded queue with at most one
+ * asynchronous send in flight, so {@link #send} never blocks the fan-out.
+ * A client that lets the queue fill up is disconnected and falls back to long-polling.
+ */
+@Slf4j
+public class Subscriber {
+
+    static final int QUEUE_CAPACITY = 64;
+
+    @Getter
+    private final long userId;
+    @Getter
+    private final Set<Long> watchedPosts = ConcurrentHashMap.newKeySet();
+
+    private final Session session;
+    private final BlockingQueue<String> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final AtomicBoolean sending = new AtomicBoolean();
+
+    public Subscriber(long userId, Session session){
+
+        this.userId = userId;
+        this.session = session;
+    }
+
+    public void send(String message){
+
+        if (!queue.offer(message)) {
+            log.warn("send queue of user {} is full, closing socket", userId);
+            close(CloseReason.CloseCodes.TRY_AGAIN_LATER, "too slow");
+            return;
+        }
+        flush();
+    }
+
+    private void flush(){
+
+        while (!queue.isEmpty() && sending.compareAndSet(false, true)) {
+
+            String next = queue.poll();
+
+            if (next == null) {
+                sending.set(false);
+                continue;
+            }
+
+            session.getAsyncRemote().sendText(next, result -> {
+                sending.set(false);
+                if (result.isOK())
+                    flush();
+                else
+                    close(CloseReason.CloseCodes.UNEXPECTED_CONDITION, "send failed");
+            });
+            return;
+        }
+    }
+
+    private void close(CloseReason.CloseCode code, String reason){
+
+        queue.clear();
+        try {
+            if (session.isOpen())
+                session.close(new CloseReason(code, reason));
+        } catch (IOException e) {
+            log.warn("cannot close socket of user {}", userId, e);
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package websocket;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * What goes over the socket: {@code post} carries a {@link model.PostView},
+ * {@code comment} a {@link model.Comment} and {@code likes} the post id with its new count.
+ */
+@Data
+@AllArgsConstructor
+public class UpdateMessage {
+
+    private String type;
+    private Object data;
+}
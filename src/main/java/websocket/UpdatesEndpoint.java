@@ -0,0 +1,68 @@
+package websocket;
+
+import listeners.Initer;
+import lombok.extern.slf4j.Slf4j;
+import model.User;
+import security.StringEncryptUtil;
+
+import javax.servlet.http.HttpSession;
+import javax.websocket.*;
+import javax.websocket.server.ServerEndpoint;
+import java.io.IOException;
+import java.util.Optional;
+
+/**
+ * Opened once per page by userScript.js. Anonymous sessions are refused.
+ * The client may send {@code watch:<postId>} to get comments and likes of a post it has open.
+ */
+@Slf4j
+@ServerEndpoint(value = "/ws/updates", configurator = HttpSessionConfigurator.class)
+public class UpdatesEndpoint {
+
+    private static final String WATCH = "watch:";
+
+    private UpdatesHub updatesHub;
+    private Subscriber subscriber;
+
+    @OnOpen
+    public void onOpen(Session session, EndpointConfig config) throws IOException {
+
+        HttpSession httpSession = (HttpSession) config.getUserProperties().get(HttpSession.class.getName());
+        Optional<User> sUserOpt = StringEncryptUtil.getSUserOpt(httpSession);
+
+        if (!sUserOpt.isPresent()) {
+            session.close(new CloseReason(CloseReason.CloseCodes.VIOLATED_POLICY, "not logged in"));
+            return;
+        }
+
+        updatesHub = (UpdatesHub) httpSession.getServletContext().getAttribute(Initer.UPDATES_HUB);
+        subscriber = new Subscriber(sUserOpt.get().getId(), session);
+        updatesHub.register(subscriber);
+    }
+
+    @OnMessage
+    public void onMessage(String message){
+
+        if (subscriber != null && message.startsWith(WATCH)) {
+            try {
+                updatesHub.watch(subscriber, Long.parseLong(message.substring(WATCH.length())));
+            } catch (NumberFormatException e) {
+                log.info("bad watch message: {}", message);
+            }
+        }
+    }
+
+    @OnClose
+    public void onClose(){
+
+        if (subscriber != null)
+            updatesHub.unregister(subscriber);
+    }
+
+    @OnError
+    public void onError(Throwable throwable){
+
+        log.info("socket error", throwable);
+        onClose();
+    }
+}
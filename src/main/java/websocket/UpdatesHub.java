@@ -0,0 +1,153 @@
+package websocket;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import common.EventBus;
+import common.JsonWrapper;
+import dao.FollowingDAO;
+import dao.LikeDAO;
+import dao.PostDAO;
+import dao.UserDAO;
+import events.CommentAddedEvent;
+import events.LikeChangedEvent;
+import events.PostAddedEvent;
+import lombok.extern.slf4j.Slf4j;
+import model.Comment;
+import model.Post;
+import model.PostView;
+import model.User;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Pushes new posts, like counts and comments to the open sockets that care:
+ * the author, the author's followers and whoever watches the post.
+ * Fan-out runs on its own thread and only queries the database while someone is connected.
+ */
+@Slf4j
+public class UpdatesHub implements AutoCloseable {
+
+    private final Map<Long, Set<Subscriber>> byUser = new ConcurrentHashMap<>();
+    private final Map<Long, Set<Subscriber>> byPost = new ConcurrentHashMap<>();
+
+    private final UserDAO userDAO;
+    private final FollowingDAO followingDAO;
+    private final PostDAO postDAO;
+    private final LikeDAO likeDAO;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+    public UpdatesHub(EventBus eventBus, UserDAO userDAO, FollowingDAO followingDAO,
+                      PostDAO postDAO, LikeDAO likeDAO){
+
+        this.userDAO = userDAO;
+        this.followingDAO = followingDAO;
+        this.postDAO = postDAO;
+        this.likeDAO = likeDAO;
+
+        eventBus.subscribe(PostAddedEvent.class, e -> fanOut(() -> onPostAdded(e.getPost())));
+        eventBus.subscribe(CommentAddedEvent.class, e -> fanOut(() -> onCommentAdded(e.getComment())));
+        eventBus.subscribe(LikeChangedEvent.class, e -> fanOut(() -> onLikeChanged(e.getLike().getToPostId())));
+    }
+
+    public void register(Subscriber subscriber){
+
+        byUser.computeIfAbsent(subscriber.getUserId(), id -> ConcurrentHashMap.newKeySet()).add(subscriber);
+    }
+
+    public void watch(Subscriber subscriber, long postId){
+
+        subscriber.getWatchedPosts().add(postId);
+        byPost.computeIfAbsent(postId, id -> ConcurrentHashMap.newKeySet()).add(subscriber);
+    }
+
+    public void unregister(Subscriber subscriber){
+
+        remove(byUser, subscriber.getUserId(), subscriber);
+        subscriber.getWatchedPosts().forEach(postId -> remove(byPost, postId, subscriber));
+    }
+
+    public int countSubscribers(){
+
+        return byUser.values().stream()
+                .mapToInt(Set::size)
+                .sum();
+    }
+
+    private void fanOut(Runnable task){
+
+        if (!byUser.isEmpty())
+            executor.execute(task);
+    }
+
+    private void onPostAdded(Post post){
+
+        Optional<User> author = userDAO.getById(post.getAuthorId());
+
+        author.ifPresent(user -> send(
+                audience(post.getAuthorId(), post.getId()),
+                new UpdateMessage("post", new PostView(user, post, 0, 0))));
+    }
+
+    private void onCommentAdded(Comment comment){
+
+        postDAO.getPostById(comment.getPostId()).ifPresent(post -> send(
+                audience(post.getAuthorId(), post.getId()),
+                new UpdateMessage("comment", comment)));
+    }
+
+    private void onLikeChanged(long postId){
+
+        postDAO.getPostById(postId).ifPresent(post -> {
+            Map<String, Long> likes = new HashMap<>();
+            likes.put("postId", postId);
+            likes.put("likesCount", likeDAO.countByPostId(postId));
+            send(audience(post.getAuthorId(), postId), new UpdateMessage("likes", likes));
+        });
+    }
+
+    private Set<Subscriber> audience(long authorId, long postId){
+
+        Set<Subscriber> audience = new HashSet<>();
+
+        audience.addAll(byUser.getOrDefault(authorId, Collections.emptySet()));
+        audience.addAll(byPost.getOrDefault(postId, Collections.emptySet()));
+        followingDAO.getFollowersById(authorId)
+                .forEach(f -> audience.addAll(byUser.getOrDefault(f.getFollowerId(), Collections.emptySet())));
+
+        return audience;
+    }
+
+    private void send(Set<Subscriber> audience, UpdateMessage message){
+
+        if (audience.isEmpty())
+            return;
+
+        try {
+            String json = JsonWrapper.toJson(message);
+            audience.forEach(s -> s.send(json));
+        } catch (JsonProcessingException e) {
+            log.error("cannot serialize {}", message, e);
+        }
+    }
+
+    private static void remove(Map<Long, Set<Subscriber>> index, long key, Subscriber subscriber){
+
+        index.computeIfPresent(key, (k, subscribers) -> {
+            subscribers.remove(subscriber);
+            return subscribers.isEmpty() ? null : subscribers;
+        });
+    }
+
+    @Override
+    public void close() {
+
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,54 @@
+CREATE TABLE IF NOT EXISTS User(
+  id INT PRIMARY KEY AUTO_INCREMENT,
+  username VARCHAR(255) NOT NULL,
+  email VARCHAR(255) NOT NULL,
+  password VARCHAR(255) NOT NULL,
+  first_name VARCHAR(255),
+  last_name VARCHAR(255)
+);
+
+CREATE TABLE IF NOT EXISTS Roles (
+  username VARCHAR(255) NOT NULL,
+  role  VARCHAR(15)  NOT NULL,
+  PRIMARY KEY (username, role),
+  FOREIGN KEY (username) REFERENCES User (username) ON DELETE CASCADE
+);
+
+CREATE TABLE IF NOT EXISTS Following (
+  follower_id INT NOT NULL,
+  follow_id INT NOT NULL,
+  PRIMARY KEY (follow_id, follower_id),
+  FOREIGN KEY (follower_id) REFERENCES User(id) ON DELETE CASCADE
+);
+
+CREATE TABLE IF NOT EXISTS Post(
+  id INT PRIMARY KEY AUTO_INCREMENT,
+  authorId INT NOT NULL,
+  date DATE NOT NULL,
+  time TIME NOT NULL,
+  text VARCHAR(200) NOT NULL,
+  privacy BOOL NOT NULL,
+  expandable BOOL NOT NULL,
+  FOREIGN KEY (authorId) REFERENCES User(id) ON DELETE CASCADE
+);
+
+CREATE TABLE IF NOT EXISTS Likes (
+  from_userId INT NOT NULL,
+  to_postId INT NOT NULL,
+  PRIMARY KEY (from_userId, to_postId),
+  FOREIGN KEY (from_userId) REFERENCES User(id) ON DELETE CASCADE,
+  FOREIGN KEY (to_postId) REFERENCES Post(id) ON DELETE CASCADE
+);
+
+CREATE TABLE IF NOT EXISTS Comment (
+  id INT PRIMARY KEY AUTO_INCREMENT,
+  from_userId INT NOT NULL,
+  from_username VARCHAR(255) NOT NULL,
+  to_postId INT NOT NULL,
+  text VARCHAR(200) NOT NULL,
+  date DATE NOT NULL,
+  time TIME NOT NULL,
+  FOREIGN KEY (from_userId) REFERENCES User(id) ON DELETE CASCADE,
+  FOREIGN KEY (from_username) REFERENCES User(username) ON DELETE CASCADE,
+  FOREIGN KEY (to_postId) REFERENCES Post(id) ON DELETE CASCADE
+);
@@ -0,0 +1,6 @@
+-- denormalized counts kept by the like and comment DAOs, see H2PostCounters
+ALTER TABLE Post ADD COLUMN IF NOT EXISTS likes_count INT NOT NULL DEFAULT 0;
+ALTER TABLE Post ADD COLUMN IF NOT EXISTS comments_count INT NOT NULL DEFAULT 0;
+
+UPDATE Post SET likes_count = (SELECT COUNT(*) FROM Likes WHERE to_postId = Post.id),
+  comments_count = (SELECT COUNT(*) FROM Comment WHERE to_postId = Post.id);
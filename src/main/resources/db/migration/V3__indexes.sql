@@ -0,0 +1,14 @@
+-- foreign keys already have single-column indexes (and User.username a unique one);
+-- these let the paged queries seek and read in id order without sorting
+
+-- posts of a user, newest first: getAllByUser, getPrevByUser, getNotPrivate*, countUserPosts
+CREATE INDEX IF NOT EXISTS post_author_id ON Post(authorId, id DESC);
+
+-- comments of a post after an id: getCommentsFromPost, isReadyToUpdate
+CREATE INDEX IF NOT EXISTS comment_post_id ON Comment(to_postId, id);
+
+-- likers of a post without touching the table: getByPostId, counter repair
+CREATE INDEX IF NOT EXISTS likes_post_user ON Likes(to_postId, from_userId);
+
+-- who a user follows, the inner query of every timeline
+CREATE INDEX IF NOT EXISTS following_follower_follow ON Following(follower_id, follow_id);
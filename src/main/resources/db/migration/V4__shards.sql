@@ -0,0 +1,12 @@
+-- used on the first shard only when shards.urls is set, see dao.H2.Shards
+
+-- tickets for ids that carry their bucket, id = ticket * buckets + bucket
+CREATE SEQUENCE IF NOT EXISTS user_ticket;
+CREATE SEQUENCE IF NOT EXISTS post_ticket;
+CREATE SEQUENCE IF NOT EXISTS comment_ticket;
+
+-- which shard holds the users, posts and follows of each bucket
+CREATE TABLE IF NOT EXISTS ShardBucket (
+  bucket INT PRIMARY KEY,
+  shard INT NOT NULL
+);
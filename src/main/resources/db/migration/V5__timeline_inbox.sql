@@ -0,0 +1,18 @@
+-- materialized home timelines, see dao.H2.H2InboxPostDAO: one row per post per reader
+CREATE TABLE IF NOT EXISTS TimelineInbox (
+  user_id INT NOT NULL,
+  post_id INT NOT NULL,
+  author_id INT NOT NULL,
+  PRIMARY KEY (user_id, post_id),
+  FOREIGN KEY (user_id) REFERENCES User(id) ON DELETE CASCADE,
+  FOREIGN KEY (post_id) REFERENCES Post(id) ON DELETE CASCADE
+);
+
+-- the rows of one followed author in an inbox: unfollow
+CREATE INDEX IF NOT EXISTS timeline_inbox_user_author ON TimelineInbox(user_id, author_id);
+
+-- every post in its author's inbox and its followers'; H2InboxPostDAO trims them to timelineInbox.size
+MERGE INTO TimelineInbox (user_id, post_id, author_id) KEY (user_id, post_id)
+  SELECT authorId, id, authorId FROM Post;
+MERGE INTO TimelineInbox (user_id, post_id, author_id) KEY (user_id, post_id)
+  SELECT f.follower_id, p.id, p.authorId FROM Post p JOIN Following f ON f.follow_id = p.authorId;
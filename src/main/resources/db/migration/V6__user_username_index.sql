@@ -0,0 +1,2 @@
+-- a user by name, on every login and profile link: getByUsername; names are unique
+CREATE UNIQUE INDEX IF NOT EXISTS user_username ON User(username);
@@ -1,23 +1,10 @@
-CREATE TABLE User(
-  id INT PRIMARY KEY AUTO_INCREMENT,
-  username VARCHAR(255) NOT NULL,
-  email VARCHAR(255) NOT NULL,
-  password VARCHAR(255) NOT NULL,
-  first_name VARCHAR(255),
-  last_name VARCHAR(255)
-);
+-- demo data, loaded over the schema from db/migration
 
 INSERT INTO User(username, email, password, first_name, last_name) VALUES ('ivan', 'ivan@mail.ru', 'qwerty', 'Ivan', 'Ivanov');
 INSERT INTO User(username, email, password, first_name, last_name) VALUES ('peter', 'peter@mail.ru', 'qwerty', 'Peter', 'Petrov');
 INSERT INTO User(username, email, password, first_name, last_name) VALUES ('Andrew', 'andrew@mail.ru', 'qwerty', 'Andrew', 'Andreev');
 INSERT INTO User(username, email, password, first_name, last_name) VALUES ('alex', 'alex@mail.ru', 'qwerty', 'Alexander', 'Alexandrov');
 
-CREATE TABLE Roles (
-  username VARCHAR(255) NOT NULL,
-  role  VARCHAR(15)  NOT NULL,
-  PRIMARY KEY (username, role),
-  FOREIGN KEY (username) REFERENCES User (username) ON DELETE CASCADE
-);
 
 INSERT INTO Roles (username, role) VALUES ('ivan', 'admin');
 INSERT INTO Roles (username, role) VALUES ('ivan', 'moderator');
@@ -26,28 +13,12 @@ INSERT INTO Roles (username, role) VALUES ('peter', 'moderator');
 INSERT INTO Roles (username, role) VALUES ('peter', 'user');
 INSERT INTO Roles (username, role) VALUES ('alex', 'user');
 
-CREATE TABLE Following (
-  follower_id INT NOT NULL,
-  follow_id INT NOT NULL,
-  PRIMARY KEY (follow_id, follower_id),
-  FOREIGN KEY (follower_id) REFERENCES User(id) ON DELETE CASCADE
-);
 
 INSERT INTO Following (follower_id, follow_id) VALUES (4,1);
 INSERT INTO Following (follower_id, follow_id) VALUES (3,1);
 INSERT INTO Following (follower_id, follow_id) VALUES (2,1);
 INSERT INTO Following (follower_id, follow_id) VALUES (1,2);
 
-CREATE TABLE Post(
-  id INT PRIMARY KEY AUTO_INCREMENT,
-  authorId INT NOT NULL,
-  date DATE NOT NULL,
-  time TIME NOT NULL,
-  text VARCHAR(200) NOT NULL,
-  privacy BOOL NOT NULL,
-  expandable BOOL NOT NULL,
-  FOREIGN KEY (authorId) REFERENCES User(id) ON DELETE CASCADE
-);
 
 INSERT INTO Post (authorId, date, time, text, privacy, expandable) VALUES (3,'2016-01-01','00:05:00','LOOOOOOOLOOOOL',FALSE ,FALSE );
 INSERT INTO Post (authorId, date, time, text, privacy, expandable) VALUES (1,'2016-01-01','01:00:01','Happy new Year, by the way!',FALSE ,FALSE );
@@ -84,14 +55,6 @@ INSERT INTO Post (authorId, date, time, text, privacy, expandable) VALUES (1,'20
 
 INSERT INTO Post (authorId, date, time, text, privacy, expandable) VALUES (2,'2016-02-01','00:01:00','Hey there! I am smth like moderator here',FALSE ,FALSE );
 
-CREATE TABLE Likes (
-  from_userId INT NOT NULL,
-  to_postId INT NOT NULL,
-  PRIMARY KEY (from_userId, to_postId),
-  FOREIGN KEY (from_userId) REFERENCES User(id) ON DELETE CASCADE,
-  FOREIGN KEY (to_postId) REFERENCES Post(id) ON DELETE CASCADE
-
-);
 
 INSERT into Likes (from_userId, to_postId) VALUES (1,3);
 INSERT into Likes (from_userId, to_postId) VALUES (2,3);
@@ -103,18 +66,6 @@ INSERT into Likes (from_userId, to_postId) VALUES (2,2);
 INSERT into Likes (from_userId, to_postId) VALUES (4,2);
 
 
-CREATE TABLE Comment (
-  id INT PRIMARY KEY AUTO_INCREMENT,
-  from_userId INT NOT NULL,
-  from_username VARCHAR(255) NOT NULL,
-  to_postId INT NOT NULL,
-  text VARCHAR(200) NOT NULL,
-  date DATE NOT NULL,
-  time TIME NOT NULL,
-  FOREIGN KEY (from_userId) REFERENCES User(id) ON DELETE CASCADE,
-  FOREIGN KEY (from_username) REFERENCES User(username) ON DELETE CASCADE,
-  FOREIGN KEY (to_postId) REFERENCES Post(id) ON DELETE CASCADE
-);
 
 INSERT INTO Comment (from_userId, from_username, to_postId, text, date, time) VALUES (2, 'peter', 3, 'AYO! I am the moderator', '2016-01-01', '00:01:00');
 INSERT INTO Comment (from_userId, from_username, to_postId, text, date, time) VALUES (3, 'Andrew', 3, 'Hello! I am a user', '2016-01-01', '00:10:00');
@@ -147,3 +98,5 @@ INSERT INTO Comment (from_userId, from_username, to_postId, text, date, time) VA
 
 INSERT INTO Comment (from_userId, from_username, to_postId, text, date, time) VALUES (4, 'alex', 1, 'GTFO', '2016-01-01', '05:00:00');
 
+UPDATE Post SET likes_count = (SELECT COUNT(*) FROM Likes WHERE to_postId = Post.id),
+  comments_count = (SELECT COUNT(*) FROM Comment WHERE to_postId = Post.id);
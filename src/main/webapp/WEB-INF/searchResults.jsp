@@ -9,9 +9,9 @@
 <%@ taglib prefix="c" uri="http://java.sun.com/jsp/jstl/core" %>
 <%@ taglib prefix="fmt" uri="http://java.sun.com/jsp/jstl/fmt" %>
 
-<jsp:useBean id="possibleUsers" class="java.util.ArrayList" scope="request"/>
-<jsp:useBean id="possiblePosts" class="java.util.ArrayList" scope="request"/>
-<jsp:useBean id="possibleComments" class="java.util.ArrayList" scope="request"/>
+<jsp:useBean id="possibleUsers" type="java.util.List" scope="request"/>
+<jsp:useBean id="possiblePosts" type="java.util.List" scope="request"/>
+<jsp:useBean id="possibleComments" type="java.util.List" scope="request"/>
 <html>
 <head>
     <title>SEARCH RESULTS</title>
@@ -25,7 +25,7 @@
     <link rel="stylesheet" href="<c:url value='../../resources/css/page.css'/>"/>
 </head>
 <body>
-<div class="wrapper">
+<div class="wrapper" id="searchTerm" data-term="<c:out value='${param["srch-term"]}'/>">
     <div class="box">
         <div class="row row-offcanvas row-offcanvas-left">
             <div class="column col-sm-10 col-xs-11" style="width:100%" id="main">
@@ -49,6 +49,7 @@
                                             <p class="lead"><fmt:message key="search.users"/></p>
                                         </div>
                                     </div>
+                                    <div id="search-users">
                                     <c:forEach items="${possibleUsers}" var="user">
                                         <div class="panel panel-default" id="'${user.username}'">
                                             <div class="panel-heading">
@@ -65,6 +66,11 @@
                                             </div>
                                         </div>
                                     </c:forEach>
+                                    </div>
+                                    <c:if test="${nextUsers != null}">
+                                        <a class="btn btn-info" data-kind="users" data-cursor="<c:out value='${nextUsers}'/>"
+                                           onclick="SearchResults.more(this)"><fmt:message key="search.loadmore"/></a>
+                                    </c:if>
                                 </c:if>
                             </div>
                             <div role="tabpanel" class="tab-pane fade in" id="vtab2">
@@ -75,6 +81,7 @@
                                             <p class="lead"><fmt:message key="search.posts"/></p>
                                         </div>
                                     </div>
+                                    <div id="search-posts">
                                     <c:forEach items="${possiblePosts}" var="postView">
                                         <div class="panel panel-default" id="'${postView.post.id}'">
                                             <div class="panel-heading">
@@ -104,6 +111,11 @@
                                             </div>
                                         </div>
                                     </c:forEach>
+                                    </div>
+                                    <c:if test="${nextPosts != null}">
+                                        <a class="btn btn-info" data-kind="posts" data-cursor="<c:out value='${nextPosts}'/>"
+                                           onclick="SearchResults.more(this)"><fmt:message key="search.loadmore"/></a>
+                                    </c:if>
                                 </c:if>
                             </div>
                             <div role="tabpanel" class="tab-pane fade in" id="vtab3">
@@ -114,6 +126,7 @@
                                             <p class="lead"><fmt:message key="search.comments"/></p>
                                         </div>
                                     </div>
+                                    <div id="search-comments">
                                     <c:forEach items="${possibleComments}" var="comment">
                                         <div class="panel panel-default" id="'${comment.id}'">
                                             <div class="panel-heading">
@@ -131,6 +144,11 @@
                                             </div>
                                         </div>
                                     </c:forEach>
+                                    </div>
+                                    <c:if test="${nextComments != null}">
+                                        <a class="btn btn-info" data-kind="comments" data-cursor="<c:out value='${nextComments}'/>"
+                                           onclick="SearchResults.more(this)"><fmt:message key="search.loadmore"/></a>
+                                    </c:if>
                                 </c:if>
                             </div>
                         </div>
@@ -89,8 +89,10 @@
             else likes.className = "btn btn-default";
     })}
 
+    let cController;
+
     function startComment() {
-        let cController = new CommentController('${sUser.id}','${postView.post.id}', 0, document.getElementById('comments'), '${userRoles}');
+        cController = new CommentController('${sUser.id}','${postView.post.id}', 0, document.getElementById('comments'), '${userRoles}');
         cController.viewComments();
     }
     function addComment(form) {
@@ -108,8 +110,9 @@
             }),
             contentType: 'application/json',
             dataType: "json",
-            success: function (answer) {
-                window.location.reload();
+            success: function (comment) {
+                form.text.value = '';
+                cController.added(comment);
             }
         })
     }
@@ -258,6 +258,7 @@ class PostHandler {
             else likes.className = "btn btn-default";
 
         });
+        likes.id = 'likes'+view.post.id;
         likes.innerHTML = "+"+view.likesCount;
         pBody.appendChild(likes);
         let comments = document.createElement("div");
@@ -334,7 +335,22 @@ class Timeline{
                 if(count >= 10) {
                     document.getElementById("buttonMore").style.display = 'block';
                 }
-                Timeline.updateTimeline(userId, offsetId, 10, postContainer, isAdmin, ids);
+                Updates.connect(function (update) {
+                    if (update.type === 'post'
+                        && postContainer.querySelector('[id="' + update.data.post.id + '"]') === null) {
+                        if (isAdmin == true) {
+                            PostHandler.createContainers(update.data, postContainer, update.data.post.authorId);
+                        } else {
+                            PostHandler.createContainers(update.data, postContainer, userId);
+                        }
+                        if (offsetId < update.data.post.id)
+                            offsetId = update.data.post.id;
+                        ids.push(update.data.post.id);
+                        Timeline.increment();
+                    }
+                }, function () {
+                    Timeline.updateTimeline(userId, offsetId, 10, postContainer, isAdmin, ids);
+                });
             }
         })
     }
@@ -519,6 +535,7 @@ class CommentController{
             me.list = res;
             let chandler = document.createElement('ul');
             chandler.className = "commentList";
+            me.chandler = chandler;
             console.log(me.list);
             me.list.forEach(function (l) {
                 CommentController.createContainer(chandler, l, me.userId, me.userRoles);
@@ -526,10 +543,29 @@ class CommentController{
                     me.offsetId = l.id;
             });
             me.container.appendChild(chandler);
-            CommentController.updateComments(me.postId, me.offsetId, me.limit, chandler, me.container, me.userId, me.userRoles);
+            Updates.watch(me.postId);
+            Updates.connect(function (update) {
+                if (update.type === 'comment' && update.data.postId == me.postId
+                    && chandler.querySelector('li[id="' + update.data.id + '"]') === null) {
+                    CommentController.createContainer(chandler, update.data, me.userId, me.userRoles);
+                    if (me.offsetId < update.data.id)
+                        me.offsetId = update.data.id;
+                }
+            }, function () {
+                CommentController.updateComments(me.postId, me.offsetId, me.limit, chandler, me.container, me.userId, me.userRoles);
+            });
         })
     }
 
+    // shows a comment /comments/add returned without waiting for the update
+    added(comment) {
+        if (this.chandler === undefined || this.chandler.querySelector('li[id="' + comment.id + '"]') !== null)
+            return;
+        CommentController.createContainer(this.chandler, comment, this.userId, this.userRoles);
+        if (this.offsetId < comment.id)
+            this.offsetId = comment.id;
+    }
+
     static createContainer(container, comment, userId, userRoles){
         console.log(comment);
         let li = document.createElement('li');
@@ -635,6 +671,62 @@ class CommentController{
         })
     }
 }
+class Updates {
+
+    // one socket per page; every caller gets the pushed updates and its own
+    // fallback, which restarts its long-poll loop once the socket is gone
+    static connect(onUpdate, onFallback) {
+        if (!('WebSocket' in window)) {
+            onFallback();
+            return;
+        }
+        Updates.listeners = Updates.listeners || [];
+        Updates.listeners.push({onUpdate: onUpdate, onFallback: onFallback});
+        if (Updates.socket) {
+            return;
+        }
+        let protocol = location.protocol === 'https:' ? 'wss://' : 'ws://';
+        let socket = new WebSocket(protocol + location.host + '/ws/updates');
+        Updates.socket = socket;
+        socket.onopen = function () {
+            (Updates.watched || []).forEach(function (postId) {
+                socket.send('watch:' + postId);
+            });
+        };
+        socket.onmessage = function (event) {
+            let update = JSON.parse(event.data);
+            if (update.type === 'likes') {
+                Updates.showLikes(update.data);
+            }
+            Updates.listeners.forEach(function (l) {
+                l.onUpdate(update);
+            });
+        };
+        socket.onclose = function () {
+            let listeners = Updates.listeners;
+            Updates.socket = null;
+            Updates.listeners = [];
+            listeners.forEach(function (l) {
+                l.onFallback();
+            });
+        };
+    }
+
+    static watch(postId) {
+        Updates.watched = Updates.watched || [];
+        Updates.watched.push(postId);
+        if (Updates.socket && Updates.socket.readyState === WebSocket.OPEN) {
+            Updates.socket.send('watch:' + postId);
+        }
+    }
+
+    static showLikes(likes) {
+        let button = document.getElementById('likes' + likes.postId);
+        if (button !== null) {
+            button.innerHTML = "+" + likes.likesCount;
+        }
+    }
+}
 class TimeParser{
 
     static parseDate(date){
@@ -665,3 +757,65 @@ class TimeParser{
         return h+m+s;
     }
 }
+class SearchResults {
+
+    static more(button) {
+        let kind = button.getAttribute('data-kind');
+        $.ajax({
+            url: '/webapi/search/' + kind,
+            type: 'GET',
+            data: {
+                q: document.getElementById('searchTerm').getAttribute('data-term'),
+                cursor: button.getAttribute('data-cursor')
+            },
+            dataType: 'json',
+            success: function (page) {
+                let container = document.getElementById('search-' + kind);
+                page.items.forEach(function (item) {
+                    container.appendChild(SearchResults.createPanel(kind, item));
+                });
+                if (page.next === null) {
+                    button.style.display = 'none';
+                } else {
+                    button.setAttribute('data-cursor', page.next);
+                }
+            }
+        });
+    }
+
+    static createPanel(kind, item) {
+        let panel = document.createElement('div');
+        panel.className = 'panel panel-default';
+        let heading = document.createElement('div');
+        heading.className = 'panel-heading';
+        let body = document.createElement('div');
+        body.className = 'panel-body';
+        let title = document.createElement('h4');
+        let author = document.createElement('a');
+        title.appendChild(author);
+
+        if (kind === 'users') {
+            author.href = '/user/' + item.username;
+            author.textContent = item.username;
+            body.textContent = item.firstName + ' ' + item.lastName;
+        } else {
+            let username = kind === 'posts' ? item.user.username : item.username;
+            let postId = kind === 'posts' ? item.post.id : item.postId;
+            let open = document.createElement('a');
+            open.href = '/post/' + postId;
+            open.className = 'pull-right';
+            open.textContent = '>>';
+            heading.appendChild(open);
+            author.href = '/user/' + username;
+            author.textContent = '@' + username;
+            let text = document.createElement('p');
+            text.textContent = kind === 'posts' ? item.post.text : item.text;
+            body.appendChild(text);
+        }
+
+        heading.appendChild(title);
+        panel.appendChild(heading);
+        panel.appendChild(body);
+        return panel;
+    }
+}
@@ -0,0 +1,98 @@
+package common;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.util.Arrays;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+public class MigrationsTest {
+
+    private static final String PATH_TO_CONFIG = "src/test/resources/h2_mem.properties";
+    private static final String PATH_TO_MIGRATIONS = "src/main/resources/db/migration";
+
+    private ConnectionPool connectionPool;
+
+    @Before
+    public void init() throws Exception {
+
+        connectionPool = ConnectionPool.create(PATH_TO_CONFIG);
+        try (Connection connection = connectionPool.getConnection()) {
+            connection.createStatement().execute("DROP ALL OBJECTS");
+        }
+    }
+
+    @Test
+    public void appliedMigrationsAreSkippedTest() throws Exception {
+
+        assertThat(new Migrations(connectionPool, PATH_TO_MIGRATIONS).migrate(), is(6));
+        assertThat(new Migrations(connectionPool, PATH_TO_MIGRATIONS).migrate(), is(0));
+
+        try (Connection connection = connectionPool.getConnection()) {
+            ResultSet rs = connection.getMetaData().getIndexInfo(null, null, "POST", false, false);
+            boolean found = false;
+            while (rs.next())
+                found |= "POST_AUTHOR_ID".equals(rs.getString("INDEX_NAME"));
+            assertThat(found, is(true));
+        }
+    }
+
+    @Test
+    public void databasePastV3GetsUsernameIndexTest() throws Exception {
+
+//        as a database migrated before V6 existed
+        new Migrations(connectionPool, PATH_TO_MIGRATIONS).migrate();
+        try (Connection connection = connectionPool.getConnection()) {
+            connection.createStatement().execute("DROP INDEX user_username");
+            connection.createStatement().execute("DELETE FROM SchemaVersion WHERE version = 6");
+        }
+
+        assertThat(new Migrations(connectionPool, PATH_TO_MIGRATIONS).migrate(), is(1));
+
+        try (Connection connection = connectionPool.getConnection()) {
+            ResultSet rs = connection.getMetaData().getIndexInfo(null, null, "USER", true, false);
+            boolean found = false;
+            while (rs.next())
+                found |= "USER_USERNAME".equals(rs.getString("INDEX_NAME"));
+            assertThat(found, is(true));
+        }
+    }
+
+    @Test
+    public void databaseFromOldBootstrapIsUpgradedTest() throws Exception {
+
+//        tables as the old h2_jsp.sql created them, without counters or SchemaVersion
+        try (Connection connection = connectionPool.getConnection()) {
+            connection.createStatement().execute("CREATE TABLE User(id INT PRIMARY KEY AUTO_INCREMENT, " +
+                    "username VARCHAR(255) NOT NULL, email VARCHAR(255) NOT NULL, password VARCHAR(255) NOT NULL, " +
+                    "first_name VARCHAR(255), last_name VARCHAR(255))");
+            connection.createStatement().execute("CREATE TABLE Post(id INT PRIMARY KEY AUTO_INCREMENT, authorId INT NOT NULL, " +
+                    "date DATE NOT NULL, time TIME NOT NULL, text VARCHAR(200) NOT NULL, privacy BOOL NOT NULL, " +
+                    "expandable BOOL NOT NULL, FOREIGN KEY (authorId) REFERENCES User(id) ON DELETE CASCADE)");
+            connection.createStatement().execute("INSERT INTO User(username, email, password) VALUES ('ivan', 'ivan@mail.ru', 'qwerty')");
+            connection.createStatement().execute("INSERT INTO Post(authorId, date, time, text, privacy, expandable) " +
+                    "VALUES (1, '2016-01-01', '00:00:00', 'kept', FALSE, FALSE)");
+        }
+
+        assertThat(new Migrations(connectionPool, PATH_TO_MIGRATIONS).migrate(), is(6));
+
+        try (Connection connection = connectionPool.getConnection()) {
+            ResultSet rs = connection.createStatement().executeQuery("SELECT text, likes_count FROM Post");
+            rs.next();
+            assertThat(rs.getString(1), is("kept"));
+            assertThat(rs.getInt(2), is(0));
+        }
+    }
+
+    @Test
+    public void commentsAndBlankStatementsAreDroppedTest(){
+
+        String script = "-- a comment; with a semicolon\nCREATE TABLE A(id INT); -- trailing\n\n;\nDROP TABLE A;\n";
+
+        assertThat(Migrations.statements(script), is(Arrays.asList("CREATE TABLE A(id INT)", "DROP TABLE A")));
+    }
+}
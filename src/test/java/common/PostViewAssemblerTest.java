@@ -0,0 +1,135 @@
+package common;
+
+import dao.UserDAO;
+import model.Post;
+import model.PostView;
+import model.User;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Counts DAO round trips made by {@link PostViewAssembler} for pages of different sizes.
+ */
+public class PostViewAssemblerTest {
+
+    private static final int AUTHORS = 7;
+    private static final long DELETED_AUTHOR = AUTHORS;
+
+    private AtomicInteger queries;
+    private PostViewAssembler assembler;
+
+    @Before
+    public void init(){
+
+        queries = new AtomicInteger();
+
+        UserDAO userDAO = new UserDAO() {
+            @Override
+            public Collection<User> getAll() {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public Collection<String> getUserRole(User user) {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public Map<Long, User> getByIds(Collection<Long> ids) {
+                queries.incrementAndGet();
+                Map<Long, User> users = new HashMap<>();
+                ids.stream()
+                        .filter(id -> id != DELETED_AUTHOR)
+                        .forEach(id -> users.put(id, new User(id, "user" + id, "", "", "", "")));
+                return users;
+            }
+
+            @Override
+            public void addUser(User user) {
+            }
+
+            @Override
+            public User updateUser(User user) {
+                return user;
+            }
+
+            @Override
+            public void deleteUser(User user) {
+            }
+
+            @Override
+            public Collection<User> searchUser(String text, long offsetId, int limit) {
+                return Collections.emptyList();
+            }
+        };
+
+        assembler = new PostViewAssembler(userDAO);
+    }
+
+    @Test
+    public void queryCountDoesNotDependOnPageSizeTest(){
+
+        for (int size : new int[]{10, 50, 200}) {
+
+            queries.set(0);
+
+            List<PostView> postViews = assembler.createPostViews(createPosts(size));
+
+            assertThat(postViews.size(), is(size));
+            assertThat(queries.get(), is(1));
+        }
+    }
+
+    @Test
+    public void countsAndAuthorsAreMatchedByIdTest(){
+
+        List<PostView> postViews = assembler.createPostViews(createPosts(10));
+
+        postViews.forEach(pv -> {
+            assertThat(pv.getUser().getId(), is(pv.getPost().getAuthorId()));
+            assertThat(pv.getLikesCount(), is(pv.getPost().getId() % 3));
+            assertThat(pv.getCommentsCount(), is(0L));
+        });
+//        in the order of the page, newest first here
+        assertThat(postViews.get(0).getPost().getId(), is(10L));
+    }
+
+    @Test
+    public void emptyPageMakesNoQueriesTest(){
+
+        assertThat(assembler.createPostViews(Collections.emptyList()).size(), is(0));
+        assertThat(queries.get(), is(0));
+    }
+
+    @Test
+    public void postOfDeletedAuthorHasNoViewTest(){
+
+        Post orphan = new Post(1, DELETED_AUTHOR, LocalDate.now(), LocalTime.now(), "post 1", false, false, 0, 0);
+
+        assertThat(assembler.createPostView(orphan).isPresent(), is(false));
+        assertThat(assembler.createPostView(createPosts(1).iterator().next()).isPresent(), is(true));
+    }
+
+    private Collection<Post> createPosts(int size){
+
+        List<Post> posts = new ArrayList<>();
+
+        for (long id = size; id > 0; id--)
+            posts.add(new Post(id, id % AUTHORS, LocalDate.now(), LocalTime.now(), "post " + id, false, false, id % 3, 0));
+
+        return posts;
+    }
+}
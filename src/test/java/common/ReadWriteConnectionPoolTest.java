@@ -0,0 +1,85 @@
+package common;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.util.Properties;
+
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Two in-memory databases stand in for the primary and its replica.
+ */
+public class ReadWriteConnectionPoolTest {
+
+    private ConnectionPool connectionPool;
+
+    @Before
+    public void init() throws Exception {
+
+        Properties properties = new Properties();
+        properties.setProperty("driver", "org.h2.Driver");
+        properties.setProperty("url", "jdbc:h2:mem:rw_primary;DB_CLOSE_DELAY=-1");
+        properties.setProperty("replica.url", "jdbc:h2:mem:rw_replica;DB_CLOSE_DELAY=-1");
+        properties.setProperty("replica.poolSize", "2");
+        properties.setProperty("user", "sa");
+        properties.setProperty("password", "");
+        properties.setProperty("poolSize", "2");
+
+        connectionPool = ConnectionPool.create(properties);
+
+        try (Connection connection = connectionPool.getConnection()) {
+            connection.createStatement().execute("DROP ALL OBJECTS");
+            connection.createStatement().execute("CREATE TABLE Node(name VARCHAR(16))");
+            connection.createStatement().execute("INSERT INTO Node VALUES ('primary')");
+        }
+        try (Connection connection = connectionPool.getReadConnection()) {
+            connection.createStatement().execute("DROP ALL OBJECTS");
+            connection.createStatement().execute("CREATE TABLE Node(name VARCHAR(16))");
+            connection.createStatement().execute("INSERT INTO Node VALUES ('replica')");
+        }
+    }
+
+    @After
+    public void close() throws Exception {
+
+        connectionPool.close();
+    }
+
+    @Test
+    public void readsGoToReplicaTest() throws Exception {
+
+        assertThat(connectionPool, instanceOf(ReadWriteConnectionPool.class));
+        assertThat(node(connectionPool.getConnection()), is("primary"));
+        assertThat(node(connectionPool.getReadConnection()), is("replica"));
+    }
+
+    @Test
+    public void singlePoolServesReadsItselfTest() throws Exception {
+
+        ConnectionPool single = ConnectionPool.create("src/test/resources/h2_mem.properties");
+        try (Connection connection = single.getConnection()) {
+            connection.createStatement().execute("DROP ALL OBJECTS");
+            connection.createStatement().execute("CREATE TABLE Node(name VARCHAR(16))");
+            connection.createStatement().execute("INSERT INTO Node VALUES ('single')");
+        }
+
+        assertThat(node(single.getReadConnection()), is("single"));
+        assertThat(single.getActive(), is(0));
+        single.close();
+    }
+
+    private static String node(Connection connection) throws Exception {
+
+        try (Connection c = connection) {
+            ResultSet rs = c.createStatement().executeQuery("SELECT name FROM Node");
+            rs.next();
+            return rs.getString(1);
+        }
+    }
+}
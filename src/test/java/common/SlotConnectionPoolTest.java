@@ -0,0 +1,153 @@
+package common;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+/**
+ * Created against an in-memory H2, one fresh pool per test.
+ */
+public class SlotConnectionPoolTest {
+
+    private static final String URL = "jdbc:h2:mem:slot_pool;DB_CLOSE_DELAY=-1";
+
+    private AtomicInteger opened;
+    private SlotConnectionPool connectionPool;
+
+    @Before
+    public void init(){
+
+        opened = new AtomicInteger();
+        connectionPool = new SlotConnectionPool(1, 3, 200, 0, 600000, 0, () -> {
+            try {
+                opened.incrementAndGet();
+                return DriverManager.getConnection(URL, "sa", "");
+            } catch (SQLException e) {
+                throw new RuntimeException(e);
+            }
+        });
+    }
+
+    @After
+    public void close(){
+
+        connectionPool.close();
+    }
+
+    @Test
+    public void growsUpToMaxSizeTest() throws Exception {
+
+        List<Connection> connections = new ArrayList<>();
+        for (int i = 0; i < 3; i++)
+            connections.add(connectionPool.getConnection());
+
+        assertThat(opened.get(), is(3));
+        assertThat(connectionPool.getActive(), is(3));
+
+        for (Connection connection : connections)
+            connection.close();
+
+        assertThat(connectionPool.getActive(), is(0));
+        assertThat(connectionPool.getIdle(), is(3));
+    }
+
+    @Test
+    public void acquireTimesOutWhenExhaustedTest() throws Exception {
+
+        List<Connection> connections = new ArrayList<>();
+        for (int i = 0; i < 3; i++)
+            connections.add(connectionPool.getConnection());
+
+        try {
+            connectionPool.getConnection();
+            fail();
+        } catch (Exception e) {
+            assertThat(e instanceof SQLTransientConnectionException, is(true));
+        }
+
+        connections.get(0).close();
+        connectionPool.getConnection().close();
+    }
+
+    @Test(expected = SQLException.class)
+    public void secondCloseFailsTest() throws Exception {
+
+        Connection connection = connectionPool.getConnection();
+        connection.close();
+        connection.close();
+    }
+
+    @Test
+    public void brokenConnectionIsReplacedTest() throws Exception {
+
+        Connection connection = connectionPool.getConnection();
+        connection.unwrap(Connection.class).close();
+        connection.close();
+
+        try (Connection fresh = connectionPool.getConnection()) {
+            assertThat(fresh.isValid(1), is(true));
+        }
+    }
+
+    @Test
+    public void statementsAreReusedAcrossBorrowsTest() throws Exception {
+
+        for (int i = 0; i < 5; i++) {
+            try (Connection connection = connectionPool.getConnection()) {
+                PreparedStatement preparedStatement = connection.prepareStatement("SELECT ?");
+                preparedStatement.setInt(1, i);
+                ResultSet resultSet = preparedStatement.executeQuery();
+                resultSet.next();
+                assertThat(resultSet.getInt(1), is(i));
+                preparedStatement.close();
+            }
+        }
+
+        assertThat(connectionPool.getStatementCacheMisses(), is(1L));
+        assertThat(connectionPool.getStatementCacheHits(), is(4L));
+    }
+
+    @Test
+    public void concurrentBorrowersShareThePoolTest() throws Exception {
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        CountDownLatch done = new CountDownLatch(400);
+        AtomicInteger failures = new AtomicInteger();
+
+        for (int i = 0; i < 400; i++)
+            executor.execute(() -> {
+                try (Connection connection = connectionPool.getConnection()) {
+                    connection.createStatement().execute("SELECT 1");
+                } catch (Exception e) {
+                    failures.incrementAndGet();
+                } finally {
+                    done.countDown();
+                }
+            });
+
+        assertThat(done.await(30, TimeUnit.SECONDS), is(true));
+        executor.shutdown();
+
+        assertThat(failures.get(), is(0));
+        assertThat(connectionPool.getActive(), is(0));
+        assertThat(opened.get() <= 3, is(true));
+    }
+}
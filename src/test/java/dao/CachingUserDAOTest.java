@@ -0,0 +1,167 @@
+package dao;
+
+import model.User;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+public class CachingUserDAOTest {
+
+    private static final long TTL = 1000;
+
+    private Map<Long, User> table;
+    private AtomicInteger queries;
+    private AtomicLong now;
+    private CachingUserDAO userDAO;
+    private Runnable duringRead;
+
+    @Before
+    public void init(){
+
+        table = new HashMap<>();
+        queries = new AtomicInteger();
+        now = new AtomicLong();
+        duringRead = () -> {};
+
+        for (long id = 1; id <= 5; id++)
+            table.put(id, new User(id, "user" + id, "", "", "", ""));
+
+        UserDAO h2 = new UserDAO() {
+            @Override
+            public Collection<User> getAll() {
+                queries.incrementAndGet();
+                Collection<User> users = new ArrayList<>(table.values());
+                duringRead.run();
+                return users;
+            }
+
+            @Override
+            public Collection<String> getUserRole(User user) {
+                return Collections.emptyList();
+            }
+
+            @Override
+            public void addUser(User user) {
+                table.put(user.getId(), user);
+            }
+
+            @Override
+            public User updateUser(User user) {
+                table.put(user.getId(), user);
+                return user;
+            }
+
+            @Override
+            public void deleteUser(User user) {
+                table.remove(user.getId());
+            }
+
+            @Override
+            public Collection<User> searchUser(String text, long offsetId, int limit) {
+                return Collections.emptyList();
+            }
+        };
+
+        userDAO = new CachingUserDAO(h2, 3, TTL, now::get);
+    }
+
+    @Test
+    public void repeatedLookupsHitTheCacheTest(){
+
+        userDAO.getById(1);
+        userDAO.getById(1);
+        assertThat(userDAO.getByUsername("user1").get().getId(), is(1L));
+
+        assertThat(queries.get(), is(1));
+        assertThat(userDAO.getHits(), is(2L));
+        assertThat(userDAO.getMisses(), is(1L));
+    }
+
+    @Test
+    public void entriesExpireAfterTtlTest(){
+
+        userDAO.getById(1);
+        now.addAndGet(TTL + 1);
+        userDAO.getById(1);
+
+        assertThat(queries.get(), is(2));
+    }
+
+    @Test
+    public void updateAndDeleteEvictTest(){
+
+        userDAO.getById(1);
+        userDAO.updateUser(new User(1, "renamed", "", "", "", ""));
+
+        assertThat(userDAO.getById(1).get().getUsername(), is("renamed"));
+        assertThat(userDAO.getByUsername("user1"), is(Optional.empty()));
+
+        userDAO.deleteUser(table.get(1L));
+        assertThat(userDAO.getById(1), is(Optional.empty()));
+    }
+
+    @Test
+    public void userDeletedDuringReadIsNotCachedTest(){
+
+        duringRead = () -> {
+            duringRead = () -> {};
+            userDAO.deleteUser(table.get(1L));
+        };
+
+//        the read saw the user before the delete went through
+        assertThat(userDAO.getById(1).isPresent(), is(true));
+
+        assertThat(userDAO.size(), is(0));
+        assertThat(userDAO.getById(1), is(Optional.empty()));
+        assertThat(userDAO.getByIds(Arrays.asList(1L, 2L)).keySet(), is(Collections.singleton(2L)));
+    }
+
+    @Test
+    public void userUpdatedDuringBulkReadIsNotCachedTest(){
+
+        duringRead = () -> {
+            duringRead = () -> {};
+            userDAO.updateUser(new User(2, "renamed", "", "", "", ""));
+        };
+
+        userDAO.getByIds(Arrays.asList(1L, 2L));
+
+        assertThat(userDAO.getById(2).get().getUsername(), is("renamed"));
+        assertThat(userDAO.getByUsername("user2"), is(Optional.empty()));
+    }
+
+    @Test
+    public void bulkLookupLoadsOnlyMissingUsersTest(){
+
+        userDAO.getById(1);
+        queries.set(0);
+
+        Map<Long, User> users = userDAO.getByIds(Arrays.asList(1L, 2L));
+
+        assertThat(users.size(), is(2));
+        assertThat(queries.get(), is(1));
+        assertThat(userDAO.getByIds(Arrays.asList(1L, 2L)).size(), is(2));
+        assertThat(queries.get(), is(1));
+    }
+
+    @Test
+    public void sizeStaysBoundedTest(){
+
+        for (long id = 1; id <= 5; id++)
+            userDAO.getById(id);
+
+        assertThat(userDAO.size() <= 3, is(true));
+    }
+}
@@ -0,0 +1,119 @@
+package dao.H2;
+
+import common.ConnectionPool;
+import common.EventBus;
+import dao.CommentDAO;
+import dao.LikeDAO;
+import dao.PostDAO;
+import model.Comment;
+import model.Like;
+import model.Post;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+/**
+ * Batched writes have to end up as if every row had been written on its own.
+ */
+public class H2BatchWriterTest {
+
+    @Rule
+    public final TestDatabase database = new TestDatabase();
+
+    private H2BatchWriter batchWriter;
+    private H2PostCounters postCounters;
+    private PostDAO postDAO;
+    private CommentDAO commentDAO;
+    private LikeDAO likeDAO;
+
+    @Before
+    public void init(){
+
+        ConnectionPool connectionPool = database.getConnectionPool();
+
+        EventBus eventBus = new EventBus();
+        batchWriter = new H2BatchWriter(connectionPool, 50, 20);
+        postCounters = new H2PostCounters(connectionPool);
+        postDAO = new H2PostDAO(connectionPool, eventBus, batchWriter);
+        commentDAO = new H2CommentDAO(connectionPool, eventBus, batchWriter);
+        likeDAO = new H2LikeDAO(connectionPool, eventBus, batchWriter);
+    }
+
+    @After
+    public void close(){
+
+        batchWriter.close();
+        postCounters.close();
+    }
+
+    @Test
+    public void queuedWritesGetTheirOwnIdsTest(){
+
+        List<Post> posts = new ArrayList<>();
+        List<CompletableFuture<Long>> futures = new ArrayList<>();
+
+        for (int i = 0; i < 120; i++) {
+            Post post = new Post(0, 1 + i % 4, LocalDate.now(), LocalTime.now(), "batched " + i, false, false, 0, 0);
+            posts.add(post);
+            futures.add(postDAO.addPostAsync(post));
+        }
+
+        Set<Long> ids = new HashSet<>();
+        for (int i = 0; i < posts.size(); i++) {
+            long id = futures.get(i).join();
+            ids.add(id);
+            assertThat(postDAO.getPostById(id).get().getText(), is("batched " + i));
+        }
+        assertThat(ids.size(), is(120));
+    }
+
+    @Test
+    public void countersFollowBatchedCommentsAndLikesTest(){
+
+        List<CompletableFuture<?>> futures = new ArrayList<>();
+        for (int i = 0; i < 10; i++)
+            futures.add(commentDAO.addCommentAsync(new Comment(0, 2, "peter", 4, "batched", LocalDate.now(), LocalTime.now())));
+        futures.add(likeDAO.addLikeAsync(new Like(1, 4)));
+        CompletableFuture<Boolean> again = likeDAO.addLikeAsync(new Like(1, 4));
+        futures.forEach(CompletableFuture::join);
+
+        assertThat(again.join(), is(false));
+        assertThat(likeDAO.addLike(new Like(1, 4)), is(false));
+        assertThat(postDAO.getPostById(4).get().getCommentsCount(), is(35L));
+        assertThat(postDAO.getPostById(4).get().getLikesCount(), is(1L));
+        assertThat(postCounters.repair(), is(0));
+    }
+
+    @Test
+    public void badRowFailsAloneTest(){
+
+        CompletableFuture<Boolean> good = likeDAO.addLikeAsync(new Like(1, 4));
+        CompletableFuture<Boolean> bad = likeDAO.addLikeAsync(new Like(1, 100500));
+        CompletableFuture<Boolean> alsoGood = likeDAO.addLikeAsync(new Like(2, 4));
+
+        assertThat(good.join(), is(true));
+        assertThat(alsoGood.join(), is(true));
+        try {
+            bad.join();
+            fail();
+        } catch (CompletionException e) {
+            assertThat(e.getCause(), instanceOf(java.sql.SQLException.class));
+        }
+        assertThat(likeDAO.countByPostId(4), is(2L));
+    }
+}
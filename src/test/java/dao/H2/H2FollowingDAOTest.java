@@ -1,6 +1,7 @@
 package dao.H2;
 
 import common.ConnectionPool;
+import common.Migrations;
 import dao.FollowingDAO;
 import model.Following;
 import org.junit.Before;
@@ -17,6 +18,7 @@ import static org.junit.Assert.assertThat;
 public class H2FollowingDAOTest {
 
     private static final String PATH_TO_CONFIG = "src/main/resources/db.properties";
+    private static final String PATH_TO_MIGRATIONS = "src/main/resources/db/migration";
     private static final String PATH_TO_INIT = "src/main/resources/h2_jsp.sql";
 
     private FollowingDAO followingDAO;
@@ -25,6 +27,7 @@ public class H2FollowingDAOTest {
     public void init(){
 
         ConnectionPool connectionPool = ConnectionPool.create(PATH_TO_CONFIG);
+        new Migrations(connectionPool, PATH_TO_MIGRATIONS).migrate();
         connectionPool.initDb(PATH_TO_INIT);
         followingDAO = new H2FollowingDAO(connectionPool);
     }
@@ -0,0 +1,206 @@
+package dao.H2;
+
+import common.ConnectionPool;
+import common.EventBus;
+import dao.FollowingDAO;
+import dao.PostQuery;
+import model.Following;
+import model.Post;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Timelines read from TimelineInbox have to match the ones read from Post and Following.
+ */
+public class H2InboxPostDAOTest {
+
+    @Rule
+    public final TestDatabase database = new TestDatabase();
+
+    private H2PostDAO plainDAO;
+    private H2InboxPostDAO inboxDAO;
+    private FollowingDAO followingDAO;
+
+    @Before
+    public void init() throws Exception {
+
+        ConnectionPool connectionPool = database.getConnectionPool();
+
+//        fill the inbox from the test data, as V5 does when it upgrades a database that has posts
+        try (Connection connection = connectionPool.getConnection()) {
+            connection.createStatement().execute("DELETE FROM SchemaVersion WHERE version = 5");
+        }
+        database.migrate();
+
+        EventBus eventBus = new EventBus();
+        plainDAO = new H2PostDAO(connectionPool);
+        inboxDAO = new H2InboxPostDAO(connectionPool, eventBus, 20, 3);
+        followingDAO = new H2FollowingDAO(connectionPool, eventBus);
+    }
+
+    @After
+    public void close(){
+
+        inboxDAO.close();
+    }
+
+    @Test
+    public void filledInboxMatchesPlainTimelineTest(){
+
+        for (long userId = 1; userId <= 4; userId++) {
+            assertThat(ids(inboxDAO.find(PostQuery.timeline(userId).limit(10).build())), is(ids(plainDAO.find(PostQuery.timeline(userId).limit(10).build()))));
+            assertThat(ids(inboxDAO.find(PostQuery.timeline(userId).before(25).limit(10).build())), is(ids(plainDAO.find(PostQuery.timeline(userId).before(25).limit(10).build()))));
+        }
+    }
+
+    @Test
+    public void newPostReachesFollowersTest(){
+
+        Post post = newPost(2);
+        inboxDAO.addPost(post);
+
+        assertThat(ids(inboxDAO.find(PostQuery.timeline(1).limit(1).build())).get(0), is(post.getId()));
+        assertThat(inboxDAO.isTimelineReadyToUpdate(1, post.getId() - 1), is(true));
+        assertThat(inboxDAO.isTimelineReadyToUpdate(3, post.getId() - 1), is(false));
+    }
+
+    @Test
+    public void celebrityPostsAreMergedOnReadTest(){
+
+//        user 1 has three followers, which is the threshold of this test
+        Post post = newPost(1);
+        inboxDAO.addPost(post);
+
+        for (long userId = 1; userId <= 4; userId++)
+            assertThat(ids(inboxDAO.find(PostQuery.timeline(userId).limit(10).build())), is(ids(plainDAO.find(PostQuery.timeline(userId).limit(10).build()))));
+    }
+
+    @Test
+    public void followAndUnfollowUpdateInboxTest(){
+
+        followingDAO.addFollowing(new Following(3, 2));
+        assertThat(ids(inboxDAO.find(PostQuery.timeline(3).limit(10).build())), is(ids(plainDAO.find(PostQuery.timeline(3).limit(10).build()))));
+
+        followingDAO.deleteFollowing(new Following(3, 2));
+        assertThat(ids(inboxDAO.find(PostQuery.timeline(3).limit(10).build())), is(ids(plainDAO.find(PostQuery.timeline(3).limit(10).build()))));
+
+        followingDAO.deleteFollowing(new Following(4, 1));
+        inboxDAO.addPost(newPost(1));
+        assertThat(ids(inboxDAO.find(PostQuery.timeline(2).limit(10).build())), is(ids(plainDAO.find(PostQuery.timeline(2).limit(10).build()))));
+    }
+
+    @Test
+    public void followFillsAndUnfollowEmptiesInboxTest() throws Exception {
+
+//        user 3 starts following user 2, the author of post 33, over the same bus the inbox listens to
+        followingDAO.addFollowing(new Following(3, 2));
+
+        assertThat(countInboxRows(3, 2), is(1));
+        assertThat(ids(inboxDAO.find(PostQuery.timeline(3).limit(1).build())), is(Arrays.asList(33L)));
+
+        followingDAO.deleteFollowing(new Following(3, 2));
+
+        assertThat(countInboxRows(3, 2), is(0));
+        assertThat(ids(inboxDAO.find(PostQuery.timeline(3).limit(10).build())).contains(33L), is(false));
+    }
+
+    @Test
+    public void trimmedInboxPagesMatchPlainTimelineTest() throws Exception {
+
+//        user 2 follows the celebrity user 1: their posts interleave, user 2's own ones only in the inbox
+        for (int i = 0; i < 6; i++) {
+            inboxDAO.addPost(newPost(1));
+            inboxDAO.addPost(newPost(2));
+        }
+        execute("DELETE FROM TimelineInbox WHERE user_id = 2 AND post_id < 40");
+
+        assertThat(olderPages(inboxDAO, 2, 4), is(olderPages(plainDAO, 2, 4)));
+        assertThat(newerPages(inboxDAO, 2, 4), is(newerPages(plainDAO, 2, 4)));
+        assertThat(newerPages(inboxDAO, 2, 20), is(newerPages(plainDAO, 2, 20)));
+    }
+
+    @Test
+    public void newerPagesMatchPlainTimelineTest() throws Exception {
+
+        for (long userId = 1; userId <= 4; userId++)
+            assertThat(newerPages(inboxDAO, userId, 3), is(newerPages(plainDAO, userId, 3)));
+
+//        rows the inbox never got, as for data loaded after V5 filled it
+        execute("DELETE FROM TimelineInbox WHERE user_id = 3");
+        assertThat(newerPages(inboxDAO, 3, 40), is(newerPages(plainDAO, 3, 40)));
+        assertThat(olderPages(inboxDAO, 3, 3), is(olderPages(plainDAO, 3, 3)));
+    }
+
+    /**
+     * The whole timeline, newest first, a page before the last id at a time.
+     */
+    private static List<Long> olderPages(H2PostDAO dao, long userId, int limit){
+
+        List<Long> ids = new ArrayList<>();
+        List<Long> page = ids(dao.find(PostQuery.timeline(userId).before(Integer.MAX_VALUE).limit(limit).build()));
+
+        while (!page.isEmpty()) {
+            ids.addAll(page);
+            page = ids(dao.find(PostQuery.timeline(userId).before(page.get(page.size() - 1)).limit(limit).build()));
+        }
+        return ids;
+    }
+
+    /**
+     * Pages after ever higher cursors, as a client polling from the start of the timeline would see them.
+     */
+    private static List<List<Long>> newerPages(H2PostDAO dao, long userId, int limit){
+
+        List<List<Long>> pages = new ArrayList<>();
+
+        for (long cursor = 0; cursor <= 50; cursor += 5)
+            pages.add(ids(dao.find(PostQuery.timeline(userId).after(cursor).limit(limit).build())));
+        return pages;
+    }
+
+    private void execute(String sql) throws Exception {
+
+        try (Connection connection = database.getConnectionPool().getConnection()) {
+            connection.createStatement().execute(sql);
+        }
+    }
+
+    private int countInboxRows(long userId, long authorId) throws Exception {
+
+        try (Connection connection = database.getConnectionPool().getConnection()) {
+            PreparedStatement statement = connection.prepareStatement(
+                    "SELECT COUNT(*) FROM TimelineInbox WHERE user_id = ? AND author_id = ?");
+            statement.setLong(1, userId);
+            statement.setLong(2, authorId);
+            ResultSet rs = statement.executeQuery();
+            rs.next();
+            return rs.getInt(1);
+        }
+    }
+
+    private static Post newPost(long authorId){
+
+        return new Post(0, authorId, LocalDate.now(), LocalTime.now(), "new", false, false, 0, 0);
+    }
+
+    private static List<Long> ids(Collection<Post> posts){
+
+        return posts.stream().map(Post::getId).collect(Collectors.toList());
+    }
+}
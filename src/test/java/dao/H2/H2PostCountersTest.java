@@ -0,0 +1,98 @@
+package dao.H2;
+
+import common.ConnectionPool;
+import dao.CommentDAO;
+import dao.LikeDAO;
+import dao.PostDAO;
+import model.Comment;
+import model.Like;
+import model.Post;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.time.LocalDate;
+import java.time.LocalTime;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Post counters have to match COUNT(...) over Likes and Comment after every write.
+ */
+public class H2PostCountersTest {
+
+    @Rule
+    public final TestDatabase database = new TestDatabase();
+
+    private H2PostCounters postCounters;
+    private PostDAO postDAO;
+    private LikeDAO likeDAO;
+    private CommentDAO commentDAO;
+
+    @Before
+    public void init(){
+
+        ConnectionPool connectionPool = database.getConnectionPool();
+
+        postCounters = new H2PostCounters(connectionPool);
+        postDAO = new H2PostDAO(connectionPool);
+        likeDAO = new H2LikeDAO(connectionPool);
+        commentDAO = new H2CommentDAO(connectionPool);
+    }
+
+    @After
+    public void close(){
+
+        postCounters.close();
+    }
+
+    @Test
+    public void seededCountersMatchRowsTest(){
+
+        assertThat(postCounters.repair(), is(0));
+        assertThat(post(3).getLikesCount(), is(4L));
+        assertThat(post(4).getCommentsCount(), is(25L));
+    }
+
+    @Test
+    public void likesAndCommentsMoveCountersTest(){
+
+        likeDAO.addLike(new Like(1, 4));
+        likeDAO.addLike(new Like(2, 4));
+        likeDAO.removeLike(new Like(1, 4));
+        assertThat(likeDAO.removeLike(new Like(1, 4)), is(false));
+
+        Comment comment = new Comment(0, 2, "peter", 4, "counted", LocalDate.now(), LocalTime.now());
+        commentDAO.addComment(comment);
+        commentDAO.addComment(new Comment(0, 2, "peter", 4, "counted too", LocalDate.now(), LocalTime.now()));
+        commentDAO.deleteComment(comment.getId());
+        assertThat(commentDAO.deleteComment(comment.getId()), is(false));
+
+        Post post = post(4);
+        assertThat(post.getLikesCount(), is(1L));
+        assertThat(post.getCommentsCount(), is(26L));
+        assertThat(postCounters.repair(), is(0));
+    }
+
+    @Test
+    public void repairFixesDriftTest() throws Exception {
+
+        try (Connection connection = database.getConnectionPool().getConnection()) {
+            connection.createStatement().execute("DELETE FROM Likes WHERE to_postId = 3");
+            connection.createStatement().execute("UPDATE Post SET comments_count = 100 WHERE id = 1");
+        }
+
+        assertThat(postCounters.repair(), is(2));
+        assertThat(post(3).getLikesCount(), is(0L));
+        assertThat(post(1).getCommentsCount(), is(1L));
+    }
+
+    @SuppressWarnings("OptionalGetWithoutIsPresent")
+    private Post post(long id){
+
+        return postDAO.getPostById(id).get();
+    }
+}
@@ -0,0 +1,77 @@
+package dao.H2;
+
+import common.ConnectionPool;
+import dao.PostQuery;
+import model.Post;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Pages of {@link PostQuery}: user 1 wrote posts 2 and 3 and the private 4 to 32,
+ * user 2 follows user 1 and wrote post 33.
+ */
+public class H2PostDAOTest {
+
+    private static final int POOL_SIZE = 5;
+
+    @Rule
+    public final TestDatabase database = new TestDatabase();
+
+    private ConnectionPool connectionPool;
+    private H2PostDAO postDAO;
+
+    @Before
+    public void init(){
+
+        connectionPool = database.getConnectionPool();
+        postDAO = new H2PostDAO(connectionPool);
+    }
+
+    @Test
+    public void newerPageIsNewestAboveCursorOldestFirstTest(){
+
+        assertThat(ids(postDAO.find(PostQuery.byAuthor(1).limit(5).build())), is(Arrays.asList(28L, 29L, 30L, 31L, 32L)));
+        assertThat(ids(postDAO.find(PostQuery.byAuthor(1).after(30).limit(5).build())), is(Arrays.asList(31L, 32L)));
+        assertThat(ids(postDAO.find(PostQuery.timeline(2).limit(3).build())), is(Arrays.asList(31L, 32L, 33L)));
+    }
+
+    @Test
+    public void olderPageIsNewestFirstTest(){
+
+        assertThat(ids(postDAO.find(PostQuery.byAuthor(1).before(10).limit(3).build())), is(Arrays.asList(9L, 8L, 7L)));
+        assertThat(ids(postDAO.find(PostQuery.timeline(2).before(5).limit(10).build())), is(Arrays.asList(4L, 3L, 2L)));
+    }
+
+    @Test
+    public void publicOnlyLeavesOutPrivatePostsTest(){
+
+        assertThat(ids(postDAO.find(PostQuery.byAuthor(1).publicOnly(true).limit(10).build())), is(Arrays.asList(2L, 3L)));
+        assertThat(ids(postDAO.find(PostQuery.timeline(2).publicOnly(true).before(33).limit(10).build())), is(Arrays.asList(3L, 2L)));
+    }
+
+    @Test
+    public void sameShapeReusesItsStatementTest(){
+
+        long misses = connectionPool.getStatementCacheMisses();
+
+        for (long cursor = 10; cursor < 30; cursor++)
+            postDAO.find(PostQuery.timeline(cursor % 4 + 1).before(cursor).limit(3).build());
+
+//        prepared once on each of the pool's connections at most
+        assertThat(connectionPool.getStatementCacheMisses() - misses <= POOL_SIZE, is(true));
+    }
+
+    private static List<Long> ids(Collection<Post> posts){
+
+        return posts.stream().map(Post::getId).collect(Collectors.toList());
+    }
+}
@@ -1,6 +1,7 @@
 package dao.H2;
 
 import common.ConnectionPool;
+import common.Migrations;
 import dao.UserDAO;
 import dao.UserRoleDAO;
 import model.Role;
@@ -21,6 +22,7 @@ import static org.junit.Assert.assertThat;
 public class H2UserRoleDAOTest {
 
     private static final String PATH_TO_CONFIG = "src/main/resources/db.properties";
+    private static final String PATH_TO_MIGRATIONS = "src/main/resources/db/migration";
     private static final String PATH_TO_INIT = "src/main/resources/h2_jsp.sql";
 
     private ConnectionPool connectionPool;
@@ -31,6 +33,7 @@ public class H2UserRoleDAOTest {
     public void init(){
 
         connectionPool = ConnectionPool.create(PATH_TO_CONFIG);
+        new Migrations(connectionPool, PATH_TO_MIGRATIONS).migrate();
         connectionPool.initDb(PATH_TO_INIT);
         userRoleDAO = new H2UserRoleDAO(connectionPool);
     }
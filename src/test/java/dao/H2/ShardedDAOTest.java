@@ -0,0 +1,198 @@
+package dao.H2;
+
+import common.ConnectionPool;
+import common.EventBus;
+import common.Migrations;
+import dao.PostQuery;
+import model.Comment;
+import model.Following;
+import model.Like;
+import model.Post;
+import model.User;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Three in-memory databases as shards, the first two in use from the start.
+ */
+public class ShardedDAOTest {
+
+    private static final String PATH_TO_MIGRATIONS = "src/main/resources/db/migration";
+    private static final String[] URLS = {
+            "jdbc:h2:mem:shard0;DB_CLOSE_DELAY=-1",
+            "jdbc:h2:mem:shard1;DB_CLOSE_DELAY=-1",
+            "jdbc:h2:mem:shard2;DB_CLOSE_DELAY=-1"};
+
+    private ConnectionPool primary;
+    private Shards shards;
+    private ShardedUserDAO userDAO;
+    private ShardedPostDAO postDAO;
+    private ShardedCommentDAO commentDAO;
+    private ShardedLikeDAO likeDAO;
+    private ShardedFollowingDAO followingDAO;
+    private List<Long> users;
+
+    @Before
+    public void init() throws Exception {
+
+        for (String url : URLS) {
+            try (ConnectionPool connectionPool = ConnectionPool.create(settings(url, ""));
+                 Connection connection = connectionPool.getConnection()) {
+                connection.createStatement().execute("DROP ALL OBJECTS");
+            }
+        }
+
+        open(2);
+
+        users = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            User user = new User(0, "user" + i, "user" + i + "@mail.com", "password", null, null);
+            userDAO.addUser(user);
+            users.add(user.getId());
+        }
+
+//        everyone follows user 0, user 0 follows everyone
+        for (long user : users.subList(1, users.size())) {
+            followingDAO.addFollowing(new Following(user, users.get(0)));
+            followingDAO.addFollowing(new Following(users.get(0), user));
+        }
+
+        for (int round = 0; round < 3; round++)
+            for (long user : users)
+                postDAO.addPost(new Post(0, user, LocalDate.now(), LocalTime.now(), "round " + round, false, false, 0, 0));
+    }
+
+    @After
+    public void close() throws Exception {
+
+        shards.close();
+        primary.close();
+    }
+
+    @Test
+    public void usersAndPostsAreSpreadTest(){
+
+        Set<Integer> userShards = users.stream().map(shards::shardOf).collect(Collectors.toSet());
+
+        assertThat(userShards.size(), is(2));
+        assertThat(userDAO.getByUsername("user5").get().getId(), is(users.get(5)));
+        assertThat(postDAO.countUserPosts(users.get(5)), is(3));
+        assertThat(followingDAO.countFollowersById(users.get(0)), is(7));
+    }
+
+    @Test
+    public void timelineMergesShardsInPageOrderTest(){
+
+        List<Post> timeline = postDAO.find(PostQuery.timeline(users.get(0)).limit(10).build());
+        List<Long> ids = timeline.stream().map(Post::getId).collect(Collectors.toList());
+        List<Long> sorted = new ArrayList<>(ids);
+        sorted.sort(Long::compare);
+
+//        the newest ten, oldest first
+        assertThat(ids.size(), is(10));
+        assertThat(ids, is(sorted));
+        assertThat(timeline.get(timeline.size() - 1).getText(), is("round 2"));
+        assertThat(postDAO.countPostsInTimeline(users.get(0)), is(24));
+
+        List<Post> older = postDAO.find(PostQuery.timeline(users.get(0)).before(ids.get(0)).limit(100).build());
+        assertThat(older.size(), is(14));
+        assertThat(older.get(0).getId() > older.get(older.size() - 1).getId(), is(true));
+    }
+
+    @Test
+    public void commentsAndLikesFollowTheirPostTest(){
+
+        Post post = postDAO.find(PostQuery.byAuthor(users.get(3)).limit(1).build()).iterator().next();
+
+        Comment comment = commentDAO.addComment(new Comment(0, users.get(4), "user4", post.getId(), "hi", LocalDate.now(), LocalTime.now()));
+        likeDAO.addLike(new Like(users.get(4), post.getId()));
+        likeDAO.addLike(new Like(users.get(5), post.getId()));
+
+        assertThat(shards.shardOf(comment.getId()), is(shards.shardOf(post.getId())));
+        assertThat(commentDAO.getCommentsFromPost(post.getId(), 0, 10).size(), is(1));
+        assertThat(postDAO.getPostById(post.getId()).get().getCommentsCount(), is(1L));
+        assertThat(postDAO.getPostById(post.getId()).get().getLikesCount(), is(2L));
+        assertThat(likeDAO.getAllUserPost(users.get(4)).size(), is(1));
+    }
+
+    @Test
+    public void rebalanceOntoNewShardKeepsEverythingReadableTest() throws Exception {
+
+        Set<Long> before = ids(postDAO.find(PostQuery.timeline(users.get(0)).limit(100).build()));
+
+        shards.close();
+        open(3);
+
+        assertThat(new ShardRebalancer(shards).rebalance() > 0, is(true));
+        assertThat(shards.bucketsByShard().get(2).isEmpty(), is(false));
+        assertThat(ids(postDAO.find(PostQuery.timeline(users.get(0)).limit(100).build())), is(before));
+        assertThat(countPosts(shards.pool(0)) + countPosts(shards.pool(1)) + countPosts(shards.pool(2)), is(24));
+        assertThat(userDAO.getAll().size(), is(8));
+        assertThat(followingDAO.getFollowingsById(users.get(0)).size(), is(7));
+    }
+
+    private void open(int count){
+
+        StringBuilder urls = new StringBuilder();
+        for (int i = 0; i < count; i++)
+            urls.append(i == 0 ? "" : ",").append(URLS[i]);
+
+        Properties settings = settings(URLS[0], urls.toString());
+
+        if (primary == null) {
+            primary = ConnectionPool.create(settings);
+            new Migrations(primary, PATH_TO_MIGRATIONS).migrate();
+        }
+        shards = Shards.create(settings, primary, PATH_TO_MIGRATIONS);
+
+        EventBus eventBus = new EventBus();
+        userDAO = new ShardedUserDAO(shards, eventBus);
+        postDAO = new ShardedPostDAO(shards, eventBus);
+        commentDAO = new ShardedCommentDAO(shards, eventBus);
+        likeDAO = new ShardedLikeDAO(shards, eventBus);
+        followingDAO = new ShardedFollowingDAO(shards, eventBus);
+    }
+
+    private static Properties settings(String url, String shardUrls){
+
+        Properties properties = new Properties();
+        properties.setProperty("driver", "org.h2.Driver");
+        properties.setProperty("url", url);
+        properties.setProperty("user", "sa");
+        properties.setProperty("password", "");
+        properties.setProperty("poolSize", "4");
+        properties.setProperty("shards.urls", shardUrls);
+        properties.setProperty("shards.buckets", "8");
+        return properties;
+    }
+
+    private static Set<Long> ids(Collection<Post> posts){
+
+        return posts.stream().map(Post::getId).collect(Collectors.toCollection(HashSet::new));
+    }
+
+    private static int countPosts(ConnectionPool connectionPool) throws Exception {
+
+        try (Connection connection = connectionPool.getConnection()) {
+            ResultSet rs = connection.createStatement().executeQuery("SELECT COUNT(*) FROM Post");
+            rs.next();
+            return rs.getInt(1);
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package dao.H2;
+
+import common.ConnectionPool;
+import common.Migrations;
+import org.junit.rules.ExternalResource;
+
+import java.sql.Connection;
+
+/**
+ * The in-memory test database, emptied, migrated and filled with h2_jsp.sql before every test
+ * and its pool closed after it, once the test's own {@code @After} has closed what uses the pool.
+ */
+class TestDatabase extends ExternalResource {
+
+    private static final String PATH_TO_CONFIG = "src/test/resources/h2_mem.properties";
+    private static final String PATH_TO_MIGRATIONS = "src/main/resources/db/migration";
+    private static final String PATH_TO_INIT = "src/main/resources/h2_jsp.sql";
+
+    private ConnectionPool connectionPool;
+
+    ConnectionPool getConnectionPool() {
+
+        return connectionPool;
+    }
+
+    /**
+     * Runs the migrations again, for those the test has taken out of SchemaVersion.
+     */
+    void migrate() {
+
+        new Migrations(connectionPool, PATH_TO_MIGRATIONS).migrate();
+    }
+
+    @Override
+    protected void before() throws Throwable {
+
+        connectionPool = ConnectionPool.create(PATH_TO_CONFIG);
+        try (Connection connection = connectionPool.getConnection()) {
+            connection.createStatement().execute("DROP ALL OBJECTS");
+        }
+        migrate();
+        connectionPool.initDb(PATH_TO_INIT);
+    }
+
+    @Override
+    protected void after() {
+
+        try {
+            connectionPool.close();
+        } catch (Exception e) {
+            throw new IllegalStateException("cannot close the test database", e);
+        }
+    }
+}
@@ -0,0 +1,248 @@
+package dao;
+
+import common.EventBus;
+import model.Like;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+public class LikeCounterServiceTest {
+
+    private Path directory;
+    private Path journal;
+    private FakeLikeDAO database;
+
+    @Before
+    public void init() throws Exception {
+
+        directory = Files.createTempDirectory("likes");
+        journal = directory.resolve("likes.journal");
+        database = new FakeLikeDAO();
+    }
+
+    @After
+    public void clean() throws Exception {
+
+        for (Path path : Files.list(directory).collect(Collectors.toList()))
+            Files.delete(path);
+        Files.delete(directory);
+    }
+
+    @Test
+    public void likesAreServedFromMemoryUntilFlushTest(){
+
+        database.likes.add(new Like(1, 10));
+        database.likes.add(new Like(2, 10));
+
+        LikeCounterService service = new LikeCounterService(database, new EventBus(), journal);
+
+        assertThat(service.countByPostId(10), is(2L));
+        assertThat(service.addLike(new Like(3, 10)), is(true));
+        assertThat(service.addLike(new Like(3, 10)), is(false));
+        assertThat(service.removeLike(new Like(1, 10)), is(true));
+        assertThat(service.isLiked(new Like(3, 10)), is(true));
+        assertThat(service.isLiked(new Like(1, 10)), is(false));
+        assertThat(service.countByPostId(10), is(2L));
+
+        assertThat(database.loads.get(), is(1));
+        assertThat(database.likes.contains(new Like(1, 10)), is(true));
+
+        service.flush();
+
+        assertThat(database.likes, is(set(new Like(2, 10), new Like(3, 10))));
+        service.close();
+    }
+
+    @Test
+    public void journalIsReplayedAfterCrashTest() throws Exception {
+
+        LikeCounterService crashed = new LikeCounterService(database, new EventBus(), journal);
+        crashed.addLike(new Like(1, 10));
+        crashed.addLike(new Like(2, 10));
+        crashed.removeLike(new Like(2, 10));
+        crashed.addLike(new Like(1, 11));
+
+//        a crash in the middle of writing a line
+        Files.write(journal, "+7 1".getBytes(), StandardOpenOption.APPEND);
+
+        assertThat(database.likes.isEmpty(), is(true));
+
+        LikeCounterService restarted = new LikeCounterService(database, new EventBus(), journal);
+        assertThat(database.likes.isEmpty(), is(true));
+        restarted.start();
+
+        assertThat(database.likes, is(set(new Like(1, 10), new Like(1, 11))));
+        assertThat(restarted.countByPostId(10), is(1L));
+        restarted.close();
+    }
+
+    @Test
+    public void failedFlushLosesNothingTest() throws Exception {
+
+        LikeCounterService service = new LikeCounterService(database, new EventBus(), journal);
+        service.addLike(new Like(1, 10));
+
+        database.failing.set(true);
+        try {
+            service.flush();
+        } catch (IllegalStateException expected) {
+        }
+        service.addLike(new Like(2, 10));
+        assertThat(service.countPending(), is(2));
+
+//        still in the journal if the process dies now
+        database.failing.set(false);
+        LikeCounterService restarted = new LikeCounterService(database, new EventBus(), journal);
+        restarted.start();
+        restarted.close();
+
+        assertThat(database.likes, is(set(new Like(1, 10), new Like(2, 10))));
+    }
+
+    @Test
+    public void concurrentLikesAreNotLostTest() throws Exception {
+
+        LikeCounterService service = new LikeCounterService(database, new EventBus(), journal);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<?>> futures = new ArrayList<>();
+
+        for (long userId = 1; userId <= 8; userId++) {
+            long user = userId;
+            futures.add(executor.submit(() -> {
+                for (int i = 0; i < 1000; i++) {
+                    service.addLike(new Like(user, i % 10));
+                    if (i % 3 == 0)
+                        service.removeLike(new Like(user, i % 10));
+                    if (i % 100 == 0)
+                        service.flush();
+                }
+            }));
+        }
+        for (Future<?> future : futures)
+            future.get();
+        executor.shutdown();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+
+        long inMemory = 0;
+        for (long postId = 0; postId < 10; postId++)
+            inMemory += service.countByPostId(postId);
+
+        service.close();
+
+        assertThat((long) database.likes.size(), is(inMemory));
+        assertThat(database.likes.size(), is(48));
+    }
+
+    @Test
+    public void evictedPostIsReadAgainTest() throws Exception {
+
+        LikeCounterService service = new LikeCounterService(database, new EventBus(), journal, 2);
+        service.addLike(new Like(1, 10));
+        service.addLike(new Like(2, 10));
+        service.flush();
+        service.addLike(new Like(1, 11));
+        service.addLike(new Like(1, 12));
+
+//        10 is the least recently used, 11 and 12 still have changes to write
+        service.flush();
+        assertThat(service.countPosts(), is(2));
+
+        int loads = database.loads.get();
+        assertThat(service.countByPostId(10), is(2L));
+        assertThat(service.isLiked(new Like(2, 10)), is(true));
+        assertThat(database.loads.get(), is(loads + 1));
+
+        service.removeLike(new Like(2, 10));
+        service.close();
+
+        assertThat(database.likes, is(set(new Like(1, 10), new Like(1, 11), new Like(1, 12))));
+    }
+
+    @Test
+    public void postsWithPendingChangesAreKeptTest() throws Exception {
+
+        LikeCounterService service = new LikeCounterService(database, new EventBus(), journal, 1);
+        database.failing.set(true);
+        service.addLike(new Like(1, 10));
+        service.addLike(new Like(1, 11));
+        try {
+            service.flush();
+        } catch (IllegalStateException expected) {
+        }
+        assertThat(service.countPosts(), is(2));
+
+        database.failing.set(false);
+        service.flush();
+        assertThat(service.countPosts(), is(1));
+        service.close();
+    }
+
+    private static Set<Like> set(Like... likes){
+
+        Set<Like> set = new HashSet<>();
+        for (Like like : likes)
+            set.add(like);
+        return set;
+    }
+
+    private static class FakeLikeDAO implements LikeDAO {
+
+        private final Set<Like> likes = ConcurrentHashMap.newKeySet();
+        private final AtomicInteger loads = new AtomicInteger();
+        private final AtomicBoolean failing = new AtomicBoolean();
+
+        @Override
+        public Collection<Like> getAll() {
+            return new HashSet<>(likes);
+        }
+
+        @Override
+        public Collection<Like> getByPostId(long postId) {
+            loads.incrementAndGet();
+            return LikeDAO.super.getByPostId(postId);
+        }
+
+        @Override
+        public boolean isLiked(Like like) {
+            return likes.contains(like);
+        }
+
+        @Override
+        public boolean addLike(Like like) {
+            return likes.add(like);
+        }
+
+        @Override
+        public boolean removeLike(Like like) {
+            return likes.remove(like);
+        }
+
+        @Override
+        public void saveLikes(Map<Like, Boolean> changes) {
+            if (failing.get())
+                throw new IllegalStateException("database is down");
+            LikeDAO.super.saveLikes(changes);
+        }
+    }
+}
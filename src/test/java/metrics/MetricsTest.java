@@ -0,0 +1,95 @@
+package metrics;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class MetricsTest {
+
+    private final Metrics metrics = new Metrics(true);
+
+    @After
+    public void close(){
+
+        metrics.close();
+    }
+
+    @Test
+    public void bucketsCoverValuesWithoutGapsTest(){
+
+        for (long value = 0; value < 100_000; value++) {
+            int index = Timer.indexOf(value);
+            assertTrue(Timer.lowerBound(index) <= value);
+            assertTrue(value < Timer.lowerBound(index + 1));
+        }
+    }
+
+    @Test
+    public void percentilesAreWithinBucketPrecisionTest(){
+
+        Timer timer = metrics.timer("test.timer");
+
+        for (int millis = 1; millis <= 100; millis++)
+            timer.record(TimeUnit.MILLISECONDS.toNanos(millis));
+
+        assertThat(timer.getCount(), is(100L));
+        assertTrue(Math.abs(timer.getP50Millis() - 50) <= 50 / 8.0);
+        assertTrue(Math.abs(timer.getP99Millis() - 99) <= 99 / 8.0);
+        assertThat(timer.getMaxMillis(), is(100.0));
+    }
+
+    @Test
+    public void instrumentTimesCallsAndCountsErrorsTest() throws Exception {
+
+        Callable<String> target = new FailingCallable();
+        @SuppressWarnings("unchecked")
+        Callable<String> instrumented = metrics.instrument(Callable.class, target, "test.dao");
+
+        assertThat(instrumented.call(), is("ok"));
+        try {
+            instrumented.call();
+            fail();
+        } catch (IllegalStateException e) {
+            assertThat(e.getMessage(), is("second"));
+        }
+
+        assertThat(metrics.timer("test.dao.call").getCount(), is(2L));
+        assertThat(metrics.counter("test.dao.call.errors").getCount(), is(1L));
+        assertThat(instrumented, instanceOf(AutoCloseable.class));
+    }
+
+    @Test
+    public void disabledRegistryLeavesTargetsAloneTest(){
+
+        Runnable target = () -> {};
+
+        assertThat(Metrics.DISABLED.instrument(Runnable.class, target, "test"), sameInstance(target));
+        assertThat(Metrics.DISABLED.getAll().isEmpty(), is(true));
+    }
+
+    private static class FailingCallable implements Callable<String>, AutoCloseable {
+
+        private int calls;
+
+        @Override
+        public String call() {
+
+            if (++calls > 1)
+                throw new IllegalStateException("second");
+            return "ok";
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
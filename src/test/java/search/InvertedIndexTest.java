@@ -0,0 +1,91 @@
+package search;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+public class InvertedIndexTest {
+
+    private static List<Long> ids(List<InvertedIndex.Hit> hits){
+
+        return hits.stream().map(InvertedIndex.Hit::getId).collect(Collectors.toList());
+    }
+
+    @Test
+    public void everyWordHasToMatchTest(){
+
+        InvertedIndex index = new InvertedIndex();
+        index.add(1, "Java and H2");
+        index.add(2, "Java streams");
+        index.add(3, "Kotlin");
+
+        assertThat(ids(index.search("java")), is(Arrays.asList(2L, 1L)));
+        assertThat(ids(index.search("java h2")), is(Arrays.asList(1L)));
+        assertThat(ids(index.search("java kotlin")).isEmpty(), is(true));
+        assertThat(ids(index.search("  ")).isEmpty(), is(true));
+    }
+
+    @Test
+    public void inflectionsAndPrefixesMatchTest(){
+
+        InvertedIndex index = new InvertedIndex();
+        index.add(1, "Смотрите, котики!");
+        index.add(2, "Posted from my phone");
+        index.add(3, "Ёлка");
+
+        assertThat(ids(index.search("котика")), is(Arrays.asList(1L)));
+        assertThat(ids(index.search("post")), is(Arrays.asList(2L)));
+        assertThat(ids(index.search("posting")), is(Arrays.asList(2L)));
+        assertThat(ids(index.search("ЕЛК")), is(Arrays.asList(3L)));
+    }
+
+    @Test
+    public void exactTermsRankAbovePrefixesTest(){
+
+        InvertedIndex index = new InvertedIndex();
+        index.add(1, "cat");
+        index.add(2, "category");
+
+        assertThat(ids(index.search("cat")), is(Arrays.asList(1L, 2L)));
+    }
+
+    @Test
+    public void removedAndReplacedDocumentsTest(){
+
+        InvertedIndex index = new InvertedIndex();
+        index.add(1, "first draft");
+        index.add(1, "final text");
+        index.add(2, "draft");
+
+        assertThat(ids(index.search("draft")), is(Arrays.asList(2L)));
+        assertThat(ids(index.search("final")), is(Arrays.asList(1L)));
+
+        index.remove(2);
+        assertThat(ids(index.search("draft")).isEmpty(), is(true));
+        assertThat(index.size(), is(1));
+    }
+
+    @Test
+    public void pagesFollowCursorsTest(){
+
+        InvertedIndex index = new InvertedIndex();
+        for (long id = 1; id <= 5; id++)
+            index.add(id, "page");
+        index.add(6, "page page");
+
+        List<InvertedIndex.Hit> first = index.search("page", null, 2);
+        assertThat(ids(first), is(Arrays.asList(6L, 5L)));
+
+        InvertedIndex.Hit after = InvertedIndex.Hit.fromCursor(first.get(1).toCursor());
+        assertThat(ids(index.search("page", after, 2)), is(Arrays.asList(4L, 3L)));
+
+//        a cursor still works after its document is gone
+        index.remove(5);
+        assertThat(ids(index.search("page", after, 10)), is(Arrays.asList(4L, 3L, 2L, 1L)));
+    }
+}
@@ -0,0 +1,30 @@
+package security;
+
+import common.EventBus;
+import events.UserChangedEvent;
+import model.User;
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+public class UserRevocationsTest {
+
+    @Test
+    public void sessionStampedBeforeChangeIsRevokedTest(){
+
+        EventBus eventBus = new EventBus();
+        UserRevocations userRevocations = new UserRevocations(eventBus);
+        User user = new User(1, "user", "", "", "", "");
+
+        long stamp = userRevocations.currentVersion();
+        assertThat(userRevocations.isChangedSince(1, stamp), is(false));
+
+        eventBus.publish(new UserChangedEvent(user, false));
+        assertThat(userRevocations.isChangedSince(1, stamp), is(true));
+        assertThat(userRevocations.isChangedSince(2, stamp), is(false));
+
+        long restamp = userRevocations.currentVersion();
+        assertThat(userRevocations.isChangedSince(1, restamp), is(false));
+    }
+}
@@ -0,0 +1,133 @@
+package webapi;
+
+import metrics.Counter;
+import metrics.Gauge;
+import metrics.Metrics;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.Response;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+public class DaoExecutorTest {
+
+    private static final int THREADS = 2;
+    private static final int QUEUE_SIZE = 3;
+    private static final long RETRY_AFTER_SECONDS = 7;
+
+    private final Metrics metrics = new Metrics(true);
+    private DaoExecutor daoExecutor;
+
+    @Before
+    public void init(){
+
+        daoExecutor = new DaoExecutor(THREADS, QUEUE_SIZE, RETRY_AFTER_SECONDS, false);
+        daoExecutor.instrument(metrics);
+    }
+
+    @After
+    public void close(){
+
+        daoExecutor.close();
+        metrics.close();
+    }
+
+    @Test
+    public void requestsOverTheBoundAreTurnedAwayTest() throws Exception {
+
+        CountDownLatch blocked = new CountDownLatch(1);
+        List<FakeAsyncResponse> accepted = new ArrayList<>();
+
+        for (int i = 0; i < THREADS + QUEUE_SIZE; i++) {
+            FakeAsyncResponse asyncResponse = new FakeAsyncResponse();
+            daoExecutor.submit(asyncResponse, () -> {
+                blocked.await();
+                return "done";
+            });
+            accepted.add(asyncResponse);
+        }
+        assertThat(inFlight(), is((long) (THREADS + QUEUE_SIZE)));
+
+        FakeAsyncResponse turnedAway = new FakeAsyncResponse();
+        daoExecutor.submit(turnedAway, () -> "done");
+
+        assertServiceUnavailable(turnedAway);
+        assertThat(rejected(), is(1L));
+
+        blocked.countDown();
+        for (FakeAsyncResponse asyncResponse : accepted)
+            assertThat(asyncResponse.await(), is("done"));
+        awaitIdle();
+
+        FakeAsyncResponse afterwards = new FakeAsyncResponse();
+        daoExecutor.submit(afterwards, () -> "done");
+        assertThat(afterwards.await(), is("done"));
+    }
+
+    @Test
+    public void whatTheCallThrowsIsTheAnswerTest() throws Exception {
+
+        IllegalStateException failure = new IllegalStateException("no connection");
+        FakeAsyncResponse asyncResponse = new FakeAsyncResponse();
+
+        daoExecutor.submit(asyncResponse, () -> {
+            throw failure;
+        });
+
+        assertThat(asyncResponse.await(), is(failure));
+        awaitIdle();
+    }
+
+    @Test
+    public void rejectedExecutionGivesBackItsPermitTest() throws Exception {
+
+        daoExecutor.close();
+
+//        more than the bound: each one has to release what it took
+        for (int i = 0; i < THREADS + QUEUE_SIZE + 1; i++) {
+            FakeAsyncResponse asyncResponse = new FakeAsyncResponse();
+            daoExecutor.submit(asyncResponse, () -> "done");
+
+            assertServiceUnavailable(asyncResponse);
+            assertThat(inFlight(), is(0L));
+        }
+        assertThat(rejected(), is((long) (THREADS + QUEUE_SIZE + 1)));
+    }
+
+    private static void assertServiceUnavailable(FakeAsyncResponse asyncResponse) throws InterruptedException {
+
+        Response response = (Response) asyncResponse.await();
+
+        assertThat(response.getStatus(), is(Response.Status.SERVICE_UNAVAILABLE.getStatusCode()));
+        assertThat(response.getHeaderString(HttpHeaders.RETRY_AFTER), is(String.valueOf(RETRY_AFTER_SECONDS)));
+        assertThat(response.getEntity(), is(nullValue()));
+    }
+
+    /**
+     * Permits are released after the response is resumed, so wait for the last of them.
+     */
+    private void awaitIdle() throws InterruptedException {
+
+        for (int i = 0; i < 100 && inFlight() > 0; i++)
+            Thread.sleep(10);
+        assertThat(inFlight(), is(0L));
+    }
+
+    private long inFlight(){
+
+        return ((Gauge) metrics.getAll().get("daoExecutor.inFlight")).getValue();
+    }
+
+    private long rejected(){
+
+        return ((Counter) metrics.getAll().get("daoExecutor.rejected")).getCount();
+    }
+}
@@ -0,0 +1,136 @@
+package webapi;
+
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.CompletionCallback;
+import javax.ws.rs.container.TimeoutHandler;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Records what a request is resumed with; {@link #expire()} plays the container's timeout.
+ */
+class FakeAsyncResponse implements AsyncResponse {
+
+    private final CountDownLatch done = new CountDownLatch(1);
+    private final List<CompletionCallback> callbacks = new ArrayList<>();
+    private volatile Object result;
+    private volatile int resumes;
+    private TimeoutHandler timeoutHandler;
+
+    /**
+     * What the request was resumed with, waiting up to a second for it.
+     */
+    Object await() throws InterruptedException {
+
+        done.await(1, TimeUnit.SECONDS);
+        return result;
+    }
+
+    int getResumes() {
+
+        return resumes;
+    }
+
+    void expire() {
+
+        timeoutHandler.handleTimeout(this);
+    }
+
+    @Override
+    public synchronized boolean resume(Object response) {
+
+        resumes++;
+        if (result != null)
+            return false;
+
+        result = response;
+        callbacks.forEach(c -> c.onComplete(null));
+        done.countDown();
+        return true;
+    }
+
+    @Override
+    public boolean resume(Throwable response) {
+
+        return resume((Object) response);
+    }
+
+    @Override
+    public boolean cancel() {
+
+        return resume((Object) "cancelled");
+    }
+
+    @Override
+    public boolean cancel(int retryAfter) {
+
+        return cancel();
+    }
+
+    @Override
+    public boolean cancel(Date retryAfter) {
+
+        return cancel();
+    }
+
+    @Override
+    public boolean isSuspended() {
+
+        return result == null;
+    }
+
+    @Override
+    public boolean isCancelled() {
+
+        return "cancelled".equals(result);
+    }
+
+    @Override
+    public boolean isDone() {
+
+        return result != null;
+    }
+
+    @Override
+    public boolean setTimeout(long time, TimeUnit unit) {
+
+        return true;
+    }
+
+    @Override
+    public void setTimeoutHandler(TimeoutHandler handler) {
+
+        timeoutHandler = handler;
+    }
+
+    @Override
+    public Collection<Class<?>> register(Class<?> callback) {
+
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Map<Class<?>, Collection<Class<?>>> register(Class<?> callback, Class<?>... callbacks) {
+
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public synchronized Collection<Class<?>> register(Object callback) {
+
+        callbacks.add((CompletionCallback) callback);
+        return Collections.singletonList(CompletionCallback.class);
+    }
+
+    @Override
+    public Map<Class<?>, Collection<Class<?>>> register(Object callback, Object... callbacks) {
+
+        throw new UnsupportedOperationException();
+    }
+}
@@ -0,0 +1,209 @@
+package webapi;
+
+import common.EventBus;
+import dao.FollowingDAO;
+import events.CommentAddedEvent;
+import events.PostAddedEvent;
+import model.Comment;
+import model.Following;
+import model.Post;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.ws.rs.core.Response;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+public class PendingUpdatesTest {
+
+    private static final long AUTHOR = 1;
+    private static final long FOLLOWER = 2;
+
+    private EventBus eventBus;
+    private DaoExecutor daoExecutor;
+    private PendingUpdates pendingUpdates;
+    private final AtomicInteger followerQueries = new AtomicInteger();
+
+    @Before
+    public void init(){
+
+        eventBus = new EventBus();
+        daoExecutor = new DaoExecutor(2, 10, 1, false);
+        pendingUpdates = new PendingUpdates(eventBus, new Followers(), daoExecutor);
+    }
+
+    @After
+    public void close(){
+
+        pendingUpdates.close();
+        daoExecutor.close();
+    }
+
+    @Test
+    public void commentWakesItsPostWaiterTest() throws Exception {
+
+        FakeAsyncResponse asyncResponse = new FakeAsyncResponse();
+        pendingUpdates.suspend(asyncResponse, PendingUpdates.Channel.COMMENTS, 5, () -> false, () -> Response.ok("new").build());
+
+        assertThat(pendingUpdates.countWaiting(), is(1));
+
+        eventBus.publish(new CommentAddedEvent(comment(5)));
+
+        assertThat(((Response) asyncResponse.await()).getEntity(), is("new"));
+        assertThat(pendingUpdates.countWaiting(), is(0));
+    }
+
+    @Test
+    public void postWakesFollowerTimelineTest() throws Exception {
+
+        FakeAsyncResponse asyncResponse = new FakeAsyncResponse();
+        pendingUpdates.suspend(asyncResponse, PendingUpdates.Channel.TIMELINE, FOLLOWER, () -> false, () -> Response.ok("new").build());
+
+        eventBus.publish(new PostAddedEvent(post(AUTHOR)));
+
+        assertThat(((Response) asyncResponse.await()).getEntity(), is("new"));
+        assertThat(followerQueries.get(), is(1));
+    }
+
+    @Test
+    public void timeoutAnswersEmptyAndLeavesNoQueriesBehindTest() throws Exception {
+
+        FakeAsyncResponse asyncResponse = new FakeAsyncResponse();
+        pendingUpdates.suspend(asyncResponse, PendingUpdates.Channel.TIMELINE, FOLLOWER, () -> false, () -> Response.ok("new").build());
+
+        asyncResponse.expire();
+
+        assertThat(((Response) asyncResponse.await()).getEntity(), is("[]"));
+        assertThat(pendingUpdates.countWaiting(), is(0));
+
+//        posts are handled in order, so once the second wakes its waiter the first has been handled too
+        eventBus.publish(new PostAddedEvent(post(AUTHOR)));
+        FakeAsyncResponse marker = new FakeAsyncResponse();
+        pendingUpdates.suspend(marker, PendingUpdates.Channel.POSTS, 3, () -> false, () -> Response.ok().build());
+        eventBus.publish(new PostAddedEvent(post(3)));
+        marker.await();
+
+        assertThat(followerQueries.get(), is(0));
+        assertThat(asyncResponse.getResumes(), is(1));
+    }
+
+    @Test
+    public void readyUpdateIsAnsweredOnceTest() throws Exception {
+
+//        a comment arriving between registering and checking: both would answer without the guard
+        FakeAsyncResponse asyncResponse = new FakeAsyncResponse();
+        pendingUpdates.suspend(asyncResponse, PendingUpdates.Channel.COMMENTS, 7,
+                () -> {
+                    eventBus.publish(new CommentAddedEvent(comment(7)));
+                    return true;
+                },
+                () -> Response.ok("new").build());
+
+        assertThat(((Response) asyncResponse.await()).getEntity(), is("new"));
+
+        assertThat(asyncResponse.getResumes(), is(1));
+        assertThat(pendingUpdates.countWaiting(), is(0));
+    }
+
+    @Test
+    public void firstCheckRunsOnDaoExecutorTest() throws Exception {
+
+        AtomicReference<String> checkedOn = new AtomicReference<>();
+        FakeAsyncResponse asyncResponse = new FakeAsyncResponse();
+
+        pendingUpdates.suspend(asyncResponse, PendingUpdates.Channel.COMMENTS, 8,
+                () -> {
+                    checkedOn.set(Thread.currentThread().getName());
+                    return true;
+                },
+                () -> Response.ok("new").build());
+
+        assertThat(((Response) asyncResponse.await()).getEntity(), is("new"));
+        assertThat(checkedOn.get().startsWith("dao-executor-"), is(true));
+    }
+
+    @Test
+    public void fullDaoExecutorTurnsPollAwayTest() throws Exception {
+
+        DaoExecutor full = new DaoExecutor(1, 0, 1, false);
+        PendingUpdates pending = new PendingUpdates(eventBus, new Followers(), full);
+        CountDownLatch blocked = new CountDownLatch(1);
+        try {
+            full.submit(new FakeAsyncResponse(), () -> {
+                blocked.await();
+                return "busy";
+            });
+
+            FakeAsyncResponse asyncResponse = new FakeAsyncResponse();
+            pending.suspend(asyncResponse, PendingUpdates.Channel.COMMENTS, 9, () -> false, () -> Response.ok("new").build());
+
+            assertThat(((Response) asyncResponse.await()).getStatus(), is(Response.Status.SERVICE_UNAVAILABLE.getStatusCode()));
+            assertThat(pending.countWaiting(), is(0));
+        } finally {
+            blocked.countDown();
+            pending.close();
+            full.close();
+        }
+    }
+
+    private static Post post(long authorId){
+
+        return new Post(10, authorId, LocalDate.now(), LocalTime.now(), "post", false, false, 0, 0);
+    }
+
+    private static Comment comment(long postId){
+
+        return new Comment(20, FOLLOWER, "follower", postId, "comment", LocalDate.now(), LocalTime.now());
+    }
+
+    private class Followers implements FollowingDAO {
+
+        @Override
+        public Collection<Following> getFollowersById(long followId) {
+
+            followerQueries.incrementAndGet();
+            return followId == AUTHOR
+                    ? Collections.singletonList(new Following(FOLLOWER, AUTHOR))
+                    : Collections.emptyList();
+        }
+
+        @Override
+        public Collection<Following> getFollowingsById(long followerId) {
+
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean revertFollowing(Following following) {
+
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean isFirstFollowSecond(long followerId, long followId) {
+
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void addFollowing(Following following) {
+
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void deleteFollowing(Following following) {
+
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package websocket;
+
+import javax.websocket.CloseReason;
+import javax.websocket.RemoteEndpoint;
+import javax.websocket.SendHandler;
+import javax.websocket.SendResult;
+import javax.websocket.Session;
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A socket whose asynchronous sends complete only when the test says so,
+ * or at once on the sending thread with {@link #completeAtOnce()}.
+ * Only what {@link Subscriber} calls is there; anything else throws.
+ */
+class FakeSession {
+
+    private final List<String> sent = new CopyOnWriteArrayList<>();
+    private final Deque<SendHandler> pending = new ArrayDeque<>();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+    private volatile boolean completeAtOnce;
+    private volatile CloseReason closeReason;
+
+    private final RemoteEndpoint.Async remote = (RemoteEndpoint.Async) Proxy.newProxyInstance(
+            getClass().getClassLoader(), new Class<?>[]{RemoteEndpoint.Async.class}, (proxy, method, args) -> {
+                if (!method.getName().equals("sendText") || args.length != 2)
+                    throw new UnsupportedOperationException(method.getName());
+                sendText((String) args[0], (SendHandler) args[1]);
+                return null;
+            });
+
+    private final Session session = (Session) Proxy.newProxyInstance(
+            getClass().getClassLoader(), new Class<?>[]{Session.class}, (proxy, method, args) -> {
+                switch (method.getName()) {
+                    case "getAsyncRemote":
+                        return remote;
+                    case "isOpen":
+                        return closeReason == null;
+                    case "close":
+                        closeReason = (CloseReason) args[0];
+                        return null;
+                    default:
+                        throw new UnsupportedOperationException(method.getName());
+                }
+            });
+
+    Session session() {
+
+        return session;
+    }
+
+    List<String> getSent() {
+
+        return sent;
+    }
+
+    int getMaxInFlight() {
+
+        return maxInFlight.get();
+    }
+
+    CloseReason getCloseReason() {
+
+        return closeReason;
+    }
+
+    void completeAtOnce() {
+
+        completeAtOnce = true;
+    }
+
+    /**
+     * Finishes the oldest send still in flight.
+     */
+    void complete(boolean ok) {
+
+        SendHandler handler;
+        synchronized (pending) {
+            handler = pending.poll();
+        }
+        finish(handler, ok);
+    }
+
+    private void sendText(String text, SendHandler handler) {
+
+        maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+        sent.add(text);
+
+        if (completeAtOnce) {
+            finish(handler, true);
+            return;
+        }
+        synchronized (pending) {
+            pending.add(handler);
+        }
+    }
+
+    private void finish(SendHandler handler, boolean ok) {
+
+        inFlight.decrementAndGet();
+        handler.onResult(ok ? new SendResult() : new SendResult(new IOException("broken pipe")));
+    }
+}
@@ -0,0 +1,99 @@
+package websocket;
+
+import org.junit.Test;
+
+import javax.websocket.CloseReason;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+public class SubscriberTest {
+
+    private final FakeSession socket = new FakeSession();
+    private final Subscriber subscriber = new Subscriber(1, socket.session());
+
+    @Test
+    public void nextMessageWaitsForTheSendInFlightTest(){
+
+        subscriber.send("a");
+        subscriber.send("b");
+        subscriber.send("c");
+
+        assertThat(socket.getSent(), is(Arrays.asList("a")));
+
+        socket.complete(true);
+        assertThat(socket.getSent(), is(Arrays.asList("a", "b")));
+
+        socket.complete(true);
+        socket.complete(true);
+        assertThat(socket.getSent(), is(Arrays.asList("a", "b", "c")));
+        assertThat(socket.getMaxInFlight(), is(1));
+
+//        idle again: the next one goes at once
+        subscriber.send("d");
+        assertThat(socket.getSent(), is(Arrays.asList("a", "b", "c", "d")));
+    }
+
+    @Test
+    public void fullQueueClosesTheSocketTest(){
+
+//        one in flight, the rest queued behind it
+        for (int i = 0; i <= Subscriber.QUEUE_CAPACITY; i++)
+            subscriber.send("m" + i);
+        assertThat(socket.getCloseReason(), is(nullValue()));
+
+        subscriber.send("one too many");
+
+        assertThat(socket.getCloseReason().getCloseCode(), is(CloseReason.CloseCodes.TRY_AGAIN_LATER));
+
+//        the queue was dropped with the socket
+        socket.complete(true);
+        assertThat(socket.getSent().size(), is(1));
+    }
+
+    @Test
+    public void failedSendClosesTheSocketTest(){
+
+        subscriber.send("a");
+        subscriber.send("b");
+
+        socket.complete(false);
+
+        assertThat(socket.getCloseReason().getCloseCode(), is(CloseReason.CloseCodes.UNEXPECTED_CONDITION));
+        assertThat(socket.getSent(), is(Arrays.asList("a")));
+    }
+
+    @Test
+    public void concurrentSendsGoOneAtATimeTest() throws Exception {
+
+        socket.completeAtOnce();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<Future<?>> futures = new ArrayList<>();
+
+//        fewer than the queue holds, so whatever the interleaving nobody is disconnected
+        for (int thread = 0; thread < 4; thread++) {
+            int from = thread * 10;
+            futures.add(executor.submit(() -> {
+                for (int i = from; i < from + 10; i++)
+                    subscriber.send(String.valueOf(i));
+            }));
+        }
+        for (Future<?> future : futures)
+            future.get();
+        executor.shutdown();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+
+        assertThat(socket.getMaxInFlight(), is(1));
+        assertThat(socket.getCloseReason(), is(nullValue()));
+        assertThat(new HashSet<>(socket.getSent()).size(), is(40));
+    }
+}